@@ -0,0 +1,464 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.model;
+
+import java.util.*;
+
+/**
+ * A {@link Mapping} that is expressed as a set of changes over a base mapping.
+ * The base mapping is never modified. The global sets of elements only store
+ * their differences with the base mapping while the sets of VMs hosted by
+ * a node are copied the first time the node is modified.
+ * <p/>
+ * A copy of the mapping is then only proportional to the number of elements
+ * that were modified. The base mapping must however not be modified while
+ * the mapping is in use.
+ * When the base mapping is itself a {@code CopyOnWriteMapping}, its changes are
+ * copied over its own base so the layers never stack up.
+ * Sets returned by the getters are read-only. The getters do not modify the
+ * mapping so it can be read concurrently as long as it is not modified.
+ *
+ * @author Fabien Hermenier
+ */
+public class CopyOnWriteMapping implements Mapping, Cloneable {
+
+    private static final int NO_STATE = -1;
+
+    private static final int RUNNING_STATE = 0;
+
+    private static final int SLEEPING_STATE = 1;
+
+    private static final int READY_STATE = 2;
+
+    private static final int ONLINE_STATE = 0;
+
+    private static final int OFFLINE_STATE = 1;
+
+    private Mapping base;
+
+    /**
+     * The node by states (online, offline)
+     */
+    private DeltaSet<UUID>[] nodeState;
+
+    /**
+     * The VMs by state (running, sleeping, ready).
+     */
+    private DeltaSet<UUID>[] vmState;
+
+    /**
+     * The current location of the modified VMs.
+     * A {@code null} value indicates a VM that is not placed.
+     */
+    private Map<UUID, UUID> place;
+
+    /**
+     * The VMs hosted by each modified node, by state (running or sleeping)
+     */
+    private Map<UUID, Set<UUID>>[] host;
+
+    /**
+     * Make a new mapping that is initially equals to a base mapping.
+     *
+     * @param b the base mapping. Must not be modified while the mapping is in use
+     */
+    public CopyOnWriteMapping(Mapping b) {
+        if (b instanceof CopyOnWriteMapping) {
+            copy((CopyOnWriteMapping) b);
+            return;
+        }
+        this.base = b;
+        nodeState = new DeltaSet[2];
+        nodeState[ONLINE_STATE] = new DeltaSet<UUID>(b.getOnlineNodes());
+        nodeState[OFFLINE_STATE] = new DeltaSet<UUID>(b.getOfflineNodes());
+
+        vmState = new DeltaSet[3];
+        vmState[RUNNING_STATE] = new DeltaSet<UUID>(b.getRunningVMs());
+        vmState[SLEEPING_STATE] = new DeltaSet<UUID>(b.getSleepingVMs());
+        vmState[READY_STATE] = new DeltaSet<UUID>(b.getReadyVMs());
+
+        place = new HashMap<UUID, UUID>();
+
+        host = new Map[2];
+        host[RUNNING_STATE] = new HashMap<UUID, Set<UUID>>();
+        host[SLEEPING_STATE] = new HashMap<UUID, Set<UUID>>();
+    }
+
+    /**
+     * Make a copy of a mapping. The base mapping is shared.
+     *
+     * @param m the mapping to copy
+     */
+    private CopyOnWriteMapping(CopyOnWriteMapping m) {
+        copy(m);
+    }
+
+    /**
+     * Initialize the mapping with the base and the changes of another mapping.
+     *
+     * @param m the mapping to copy
+     */
+    private void copy(CopyOnWriteMapping m) {
+        this.base = m.base;
+        nodeState = new DeltaSet[2];
+        nodeState[ONLINE_STATE] = new DeltaSet<UUID>(m.nodeState[ONLINE_STATE]);
+        nodeState[OFFLINE_STATE] = new DeltaSet<UUID>(m.nodeState[OFFLINE_STATE]);
+
+        vmState = new DeltaSet[3];
+        vmState[RUNNING_STATE] = new DeltaSet<UUID>(m.vmState[RUNNING_STATE]);
+        vmState[SLEEPING_STATE] = new DeltaSet<UUID>(m.vmState[SLEEPING_STATE]);
+        vmState[READY_STATE] = new DeltaSet<UUID>(m.vmState[READY_STATE]);
+
+        place = new HashMap<UUID, UUID>(m.place);
+
+        host = new Map[2];
+        for (int st = RUNNING_STATE; st <= SLEEPING_STATE; st++) {
+            host[st] = new HashMap<UUID, Set<UUID>>(m.host[st].size());
+            for (Map.Entry<UUID, Set<UUID>> e : m.host[st].entrySet()) {
+                host[st].put(e.getKey(), new HashSet<UUID>(e.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Get the VMs hosted on a node.
+     *
+     * @param st    the state of the VMs
+     * @param n     the node
+     * @param write {@code true} to get a private copy that can be modified
+     * @return a set of VMs
+     */
+    private Set<UUID> hosted(int st, UUID n, boolean write) {
+        Set<UUID> s = host[st].get(n);
+        if (s != null) {
+            return write ? s : Collections.unmodifiableSet(s);
+        }
+        Set<UUID> in = st == RUNNING_STATE ? base.getRunningVMs(n) : base.getSleepingVMs(n);
+        if (!write) {
+            return Collections.unmodifiableSet(in);
+        }
+        s = new HashSet<UUID>(in);
+        host[st].put(n, s);
+        return s;
+    }
+
+    private int getState(UUID vm) {
+        for (int st = RUNNING_STATE; st <= READY_STATE; st++) {
+            if (vmState[st].contains(vm)) {
+                return st;
+            }
+        }
+        return NO_STATE;
+    }
+
+    private boolean isHosting(UUID n) {
+        return !hosted(RUNNING_STATE, n, false).isEmpty() || !hosted(SLEEPING_STATE, n, false).isEmpty();
+    }
+
+    /**
+     * Change the state of a VM.
+     *
+     * @param vm the VM
+     * @param st the new state
+     * @param n  the hosting node if the VM is running or sleeping
+     */
+    private void setState(UUID vm, int st, UUID n) {
+        int old = getState(vm);
+        UUID loc = getVMLocation(vm);
+        if (old == st && (loc == null ? n == null : loc.equals(n))) {
+            return;
+        }
+        if (old == RUNNING_STATE || old == SLEEPING_STATE) {
+            hosted(old, loc, true).remove(vm);
+        }
+        if (old != NO_STATE) {
+            vmState[old].remove(vm);
+        }
+        if (st != NO_STATE) {
+            vmState[st].add(vm);
+        }
+        if (st == RUNNING_STATE || st == SLEEPING_STATE) {
+            hosted(st, n, true).add(vm);
+        }
+        place.put(vm, n);
+    }
+
+    @Override
+    public boolean addRunningVM(UUID vm, UUID n) {
+        if (!nodeState[ONLINE_STATE].contains(n)) {
+            return false;
+        }
+        setState(vm, RUNNING_STATE, n);
+        return true;
+    }
+
+    @Override
+    public boolean addSleepingVM(UUID vm, UUID n) {
+        if (!nodeState[ONLINE_STATE].contains(n)) {
+            return false;
+        }
+        setState(vm, SLEEPING_STATE, n);
+        return true;
+    }
+
+    @Override
+    public void addReadyVM(UUID vm) {
+        setState(vm, READY_STATE, null);
+    }
+
+    @Override
+    public boolean removeVM(UUID vm) {
+        if (getState(vm) == NO_STATE) {
+            return false;
+        }
+        setState(vm, NO_STATE, null);
+        return true;
+    }
+
+    @Override
+    public boolean removeNode(UUID n) {
+        if (nodeState[ONLINE_STATE].contains(n)) {
+            if (isHosting(n)) {
+                return false;
+            }
+            return nodeState[ONLINE_STATE].remove(n);
+        }
+        return nodeState[OFFLINE_STATE].remove(n);
+    }
+
+    @Override
+    public Set<UUID> getOnlineNodes() {
+        return Collections.unmodifiableSet(nodeState[ONLINE_STATE]);
+    }
+
+    @Override
+    public void addOnlineNode(UUID n) {
+        nodeState[OFFLINE_STATE].remove(n);
+        nodeState[ONLINE_STATE].add(n);
+    }
+
+    @Override
+    public boolean addOfflineNode(UUID n) {
+        if (nodeState[ONLINE_STATE].contains(n)) {
+            if (isHosting(n)) {
+                //It already host VMs, not possible
+                return false;
+            }
+            nodeState[ONLINE_STATE].remove(n);
+        }
+        nodeState[OFFLINE_STATE].add(n);
+        return true;
+    }
+
+    @Override
+    public Set<UUID> getOfflineNodes() {
+        return Collections.unmodifiableSet(nodeState[OFFLINE_STATE]);
+    }
+
+    @Override
+    public Set<UUID> getRunningVMs() {
+        return Collections.unmodifiableSet(vmState[RUNNING_STATE]);
+    }
+
+    @Override
+    public Set<UUID> getSleepingVMs() {
+        return Collections.unmodifiableSet(vmState[SLEEPING_STATE]);
+    }
+
+    @Override
+    public Set<UUID> getSleepingVMs(UUID n) {
+        return hosted(SLEEPING_STATE, n, false);
+    }
+
+    @Override
+    public Set<UUID> getRunningVMs(UUID n) {
+        return hosted(RUNNING_STATE, n, false);
+    }
+
+    @Override
+    public Set<UUID> getReadyVMs() {
+        return Collections.unmodifiableSet(vmState[READY_STATE]);
+    }
+
+    @Override
+    public Set<UUID> getAllVMs() {
+        Set<UUID> vms = new HashSet<UUID>(
+                vmState[READY_STATE].size() +
+                        vmState[SLEEPING_STATE].size() +
+                        vmState[RUNNING_STATE].size());
+        vms.addAll(vmState[READY_STATE]);
+        vms.addAll(vmState[SLEEPING_STATE]);
+        vms.addAll(vmState[RUNNING_STATE]);
+        return vms;
+    }
+
+    @Override
+    public Set<UUID> getAllNodes() {
+        Set<UUID> ns = new HashSet<UUID>(
+                nodeState[OFFLINE_STATE].size() +
+                        nodeState[ONLINE_STATE].size());
+        ns.addAll(nodeState[OFFLINE_STATE]);
+        ns.addAll(nodeState[ONLINE_STATE]);
+        return ns;
+    }
+
+    @Override
+    public UUID getVMLocation(UUID vm) {
+        if (place.containsKey(vm)) {
+            return place.get(vm);
+        }
+        return base.getVMLocation(vm);
+    }
+
+    @Override
+    public Set<UUID> getRunningVMs(Collection<UUID> ns) {
+        Set<UUID> vms = new HashSet<UUID>();
+        for (UUID n : ns) {
+            vms.addAll(getRunningVMs(n));
+        }
+        return vms;
+    }
+
+    @Override
+    public CopyOnWriteMapping clone() {
+        return new CopyOnWriteMapping(this);
+    }
+
+    @Override
+    public boolean containsVM(UUID vm) {
+        return getState(vm) != NO_STATE;
+    }
+
+    @Override
+    public boolean containsNode(UUID n) {
+        return nodeState[OFFLINE_STATE].contains(n) || nodeState[ONLINE_STATE].contains(n);
+    }
+
+    @Override
+    public void clear() {
+        rebase(new DefaultMapping());
+    }
+
+    @Override
+    public void clearNode(UUID n) {
+        for (int st = RUNNING_STATE; st <= SLEEPING_STATE; st++) {
+            for (UUID vm : new ArrayList<UUID>(hosted(st, n, false))) {
+                removeVM(vm);
+            }
+        }
+    }
+
+    @Override
+    public void clearAllVMs() {
+        Mapping m = new DefaultMapping();
+        for (UUID n : getOnlineNodes()) {
+            m.addOnlineNode(n);
+        }
+        for (UUID n : getOfflineNodes()) {
+            m.addOfflineNode(n);
+        }
+        rebase(m);
+    }
+
+    /**
+     * Replace the base mapping and forget all the changes.
+     *
+     * @param b the new base mapping
+     */
+    private void rebase(Mapping b) {
+        base = b;
+        nodeState[ONLINE_STATE] = new DeltaSet<UUID>(b.getOnlineNodes());
+        nodeState[OFFLINE_STATE] = new DeltaSet<UUID>(b.getOfflineNodes());
+        vmState[RUNNING_STATE] = new DeltaSet<UUID>(b.getRunningVMs());
+        vmState[SLEEPING_STATE] = new DeltaSet<UUID>(b.getSleepingVMs());
+        vmState[READY_STATE] = new DeltaSet<UUID>(b.getReadyVMs());
+        place.clear();
+        host[RUNNING_STATE].clear();
+        host[SLEEPING_STATE].clear();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Mapping)) {
+            return false;
+        }
+
+        Mapping that = (Mapping) o;
+
+        if (!getOnlineNodes().equals(that.getOnlineNodes())
+                || !getOfflineNodes().equals(that.getOfflineNodes())
+                || !getReadyVMs().equals(that.getReadyVMs())) {
+            return false;
+        }
+
+        for (UUID n : getOnlineNodes()) {
+            if (!getRunningVMs(n).equals(that.getRunningVMs(n))
+                    || !getSleepingVMs(n).equals(that.getSleepingVMs(n))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = getOfflineNodes().hashCode();
+        result = 31 * result + getReadyVMs().hashCode();
+        result = 31 * result + getOnlineNodes().hashCode();
+        for (UUID n : getOnlineNodes()) {
+            result += n.hashCode() * (getRunningVMs(n).hashCode() * 31 + getSleepingVMs(n).hashCode());
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+
+        for (UUID n : nodeState[ONLINE_STATE]) {
+            buf.append(n);
+            buf.append(':');
+            if (this.getRunningVMs(n).isEmpty() && this.getSleepingVMs(n).isEmpty()) {
+                buf.append(" - ");
+            }
+            for (UUID vm : this.getRunningVMs(n)) {
+                buf.append(' ').append(vm);
+            }
+            for (UUID vm : this.getSleepingVMs(n)) {
+                buf.append(" (").append(vm).append(')');
+            }
+            buf.append('\n');
+        }
+
+        for (UUID n : nodeState[OFFLINE_STATE]) {
+            buf.append('(').append(n).append(")\n");
+        }
+
+        buf.append("READY");
+
+        for (UUID vm : this.getReadyVMs()) {
+            buf.append(' ').append(vm);
+        }
+
+        return buf.append('\n').toString();
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.model;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link Model} that is expressed as a set of changes over a base model.
+ * The creation of such a model and its copies only cost the changes
+ * made with regards to the base model:
+ * <ul>
+ * <li>the mapping is a {@link CopyOnWriteMapping}</li>
+ * <li>the views are copied from the base model the first time they are accessed</li>
+ * <li>the attributes are copied from the base model the first time they are accessed</li>
+ * </ul>
+ * The base model is never modified but it must not be modified while the model is in use.
+ * When the base model is itself a {@code CopyOnWriteModel}, its changes are copied
+ * over its own base so the layers never stack up.
+ * <p/>
+ * The model can be read concurrently by several threads: the copies made on
+ * the first access are safely published. The modifications, including the ones
+ * made through the views and the attributes, must however be made by a single
+ * thread while nobody is reading the model.
+ *
+ * @author Fabien Hermenier
+ */
+public class CopyOnWriteModel implements Model, Cloneable {
+
+    private Model base;
+
+    private CopyOnWriteMapping cfg;
+
+    /**
+     * The identifiers of the attached views.
+     */
+    private Set<String> viewIds;
+
+    /**
+     * The views that have been copied or attached.
+     */
+    private ConcurrentMap<String, ModelView> views;
+
+    /**
+     * The attributes, {@code null} until they are accessed.
+     */
+    private volatile Attributes attrs;
+
+    /**
+     * Make a new model that is initially equals to a base model.
+     *
+     * @param b the base model. Must not be modified while the model is in use
+     */
+    public CopyOnWriteModel(Model b) {
+        if (b instanceof CopyOnWriteModel) {
+            copy((CopyOnWriteModel) b);
+            return;
+        }
+        this.base = b;
+        this.cfg = new CopyOnWriteMapping(b.getMapping());
+        this.viewIds = new HashSet<String>();
+        for (ModelView v : b.getViews()) {
+            viewIds.add(v.getIdentifier());
+        }
+        this.views = new ConcurrentHashMap<String, ModelView>();
+        this.attrs = null;
+    }
+
+    /**
+     * Make a copy of a model. The base model is shared.
+     *
+     * @param m the model to copy
+     */
+    private CopyOnWriteModel(CopyOnWriteModel m) {
+        copy(m);
+    }
+
+    /**
+     * Initialize the model with the base and the changes of another model.
+     *
+     * @param m the model to copy
+     */
+    private void copy(CopyOnWriteModel m) {
+        this.base = m.base;
+        this.cfg = m.cfg.clone();
+        this.viewIds = new HashSet<String>(m.viewIds);
+        this.views = new ConcurrentHashMap<String, ModelView>(Math.max(m.views.size(), 1));
+        for (ModelView v : m.views.values()) {
+            views.put(v.getIdentifier(), v.clone());
+        }
+        Attributes a = m.attrs;
+        this.attrs = a == null ? null : a.clone();
+    }
+
+    @Override
+    public ModelView getView(String id) {
+        if (!viewIds.contains(id)) {
+            return null;
+        }
+        ModelView v = views.get(id);
+        if (v == null) {
+            v = base.getView(id).clone();
+            ModelView prev = views.putIfAbsent(id, v);
+            if (prev != null) {
+                //Another reader made the copy first
+                return prev;
+            }
+        }
+        return v;
+    }
+
+    @Override
+    public Collection<ModelView> getViews() {
+        List<ModelView> l = new ArrayList<ModelView>(viewIds.size());
+        for (String id : viewIds) {
+            l.add(getView(id));
+        }
+        return l;
+    }
+
+    @Override
+    public boolean attach(ModelView v) {
+        if (!viewIds.add(v.getIdentifier())) {
+            return false;
+        }
+        views.put(v.getIdentifier(), v);
+        return true;
+    }
+
+    @Override
+    public boolean detach(ModelView v) {
+        views.remove(v.getIdentifier());
+        return viewIds.remove(v.getIdentifier());
+    }
+
+    @Override
+    public void clearViews() {
+        viewIds.clear();
+        views.clear();
+    }
+
+    @Override
+    public Mapping getMapping() {
+        return cfg;
+    }
+
+    @Override
+    public Attributes getAttributes() {
+        Attributes a = attrs;
+        if (a == null) {
+            synchronized (this) {
+                a = attrs;
+                if (a == null) {
+                    a = base.getAttributes().clone();
+                    attrs = a;
+                }
+            }
+        }
+        return a;
+    }
+
+    @Override
+    public void setAttributes(Attributes a) {
+        attrs = a;
+    }
+
+    @Override
+    public CopyOnWriteModel clone() {
+        return new CopyOnWriteModel(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Model)) {
+            return false;
+        }
+
+        Model that = (Model) o;
+
+        if (!cfg.equals(that.getMapping())) {
+            return false;
+        }
+
+        if (!getAttributes().equals(that.getAttributes())) {
+            return false;
+        }
+        Collection<ModelView> thatRrcs = that.getViews();
+        return viewIds.size() == thatRrcs.size() && getViews().containsAll(thatRrcs);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (ModelView v : getViews()) {
+            h += v.getIdentifier().hashCode() ^ v.hashCode();
+        }
+        int result = cfg.hashCode();
+        result = 31 * result + h;
+        result = 31 * result + getAttributes().hashCode();
+        return result;
+    }
+}
@@ -67,7 +67,11 @@ public class DefaultAttributes implements Attributes, Cloneable {
         if (m == null) {
             return false;
         }
-        return m.remove(k) != null;
+        boolean res = m.remove(k) != null;
+        if (m.isEmpty()) {
+            attrs.remove(e);
+        }
+        return res;
 
     }
 
@@ -107,7 +111,7 @@ public class DefaultAttributes implements Attributes, Cloneable {
         if (o == this) {
             return true;
         }
-        if (!o.getClass().equals(getClass())) {
+        if (!(o instanceof DefaultAttributes)) {
             return false;
         }
         DefaultAttributes that = (DefaultAttributes) o;
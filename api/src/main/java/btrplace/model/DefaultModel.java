@@ -76,7 +76,7 @@ public class DefaultModel implements Model, Cloneable {
         if (this == o) {
             return true;
         }
-        if (o == null || getClass() != o.getClass()) {
+        if (!(o instanceof Model)) {
             return false;
         }
 
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.model;
+
+import java.util.*;
+
+/**
+ * A set that is expressed as a delta over a base set.
+ * The base set is never modified: the elements that are added
+ * or removed are stored aside.
+ * <p/>
+ * The base set must not be modified while the delta set is in use.
+ *
+ * @author Fabien Hermenier
+ */
+class DeltaSet<E> extends AbstractSet<E> {
+
+    private Set<E> base;
+
+    /**
+     * The elements that are not in the base set but in the current set.
+     */
+    private Set<E> added;
+
+    /**
+     * The elements of the base set that are no longer in the current set.
+     */
+    private Set<E> removed;
+
+    /**
+     * Make a new set that is initially equals to a base set.
+     *
+     * @param b the base set
+     */
+    DeltaSet(Set<E> b) {
+        this.base = b;
+        this.added = new HashSet<E>();
+        this.removed = new HashSet<E>();
+    }
+
+    /**
+     * Make a copy of a delta set. The base set is shared.
+     *
+     * @param d the set to copy
+     */
+    DeltaSet(DeltaSet<E> d) {
+        this.base = d.base;
+        this.added = new HashSet<E>(d.added);
+        this.removed = new HashSet<E>(d.removed);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return added.contains(o) || (!removed.contains(o) && base.contains(o));
+    }
+
+    @Override
+    public boolean add(E e) {
+        if (removed.remove(e)) {
+            return true;
+        }
+        return !base.contains(e) && added.add(e);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (added.remove(o)) {
+            return true;
+        }
+        return base.contains(o) && removed.add((E) o);
+    }
+
+    @Override
+    public int size() {
+        return base.size() - removed.size() + added.size();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+
+            private Iterator<E> ite = base.iterator();
+
+            private boolean inBase = true;
+
+            private E next = null;
+
+            private boolean ready = false;
+
+            @Override
+            public boolean hasNext() {
+                while (!ready) {
+                    if (ite.hasNext()) {
+                        E e = ite.next();
+                        if (!inBase || !removed.contains(e)) {
+                            next = e;
+                            ready = true;
+                        }
+                    } else if (inBase) {
+                        inBase = false;
+                        ite = added.iterator();
+                    } else {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public E next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ready = false;
+                return next;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
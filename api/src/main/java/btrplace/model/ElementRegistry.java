@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.model;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A registry that interns element identifiers to dense integer indexes.
+ * Once registered, an element keeps its index for the lifetime of the registry
+ * so that data structures indexed by the registry can be shared or copied
+ * using simple array operations.
+ * <p/>
+ * A registry may be shared between several mappings, typically a mapping
+ * and its clones. The methods are thread-safe. The lookups do not lock,
+ * only the registration of a new element does.
+ *
+ * @author Fabien Hermenier
+ */
+public class ElementRegistry {
+
+    /**
+     * The index to denote an unregistered element.
+     */
+    public static final int NO_INDEX = -1;
+
+    private ConcurrentHashMap<UUID, Integer> indexes;
+
+    /**
+     * The registered elements, by index. Only the {@code size} first slots are used.
+     */
+    private volatile UUID[] elements;
+
+    private volatile int size;
+
+    /**
+     * Make a new empty registry.
+     */
+    public ElementRegistry() {
+        this(16);
+    }
+
+    /**
+     * Make a new empty registry.
+     *
+     * @param capacity the expected number of elements
+     */
+    public ElementRegistry(int capacity) {
+        indexes = new ConcurrentHashMap<UUID, Integer>(capacity);
+        elements = new UUID[Math.max(capacity, 1)];
+        size = 0;
+    }
+
+    /**
+     * Register an element.
+     * If the element was already registered, its index is returned.
+     *
+     * @param u the element identifier
+     * @return the index of the element
+     */
+    public int register(UUID u) {
+        Integer i = indexes.get(u);
+        if (i != null) {
+            return i;
+        }
+        synchronized (this) {
+            i = indexes.get(u);
+            if (i == null) {
+                i = size;
+                UUID[] els = elements;
+                if (i == els.length) {
+                    els = Arrays.copyOf(els, els.length * 2);
+                }
+                els[i] = u;
+                elements = els;
+                //The element is published before its index so a reader that gets the index can get the element
+                indexes.put(u, i);
+                size = i + 1;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Get the index of an element.
+     *
+     * @param u the element identifier
+     * @return the index of the element or {@link #NO_INDEX} if the element is not registered
+     */
+    public int getIndex(UUID u) {
+        Integer i = indexes.get(u);
+        return i == null ? NO_INDEX : i;
+    }
+
+    /**
+     * Get the element associated to an index.
+     * The index must have been returned by the registry.
+     *
+     * @param i the index
+     * @return the element identifier
+     */
+    public UUID getElement(int i) {
+        return elements[i];
+    }
+
+    /**
+     * Get the number of registered elements.
+     *
+     * @return a positive integer
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "registry(" + size() + " elements)";
+    }
+}
@@ -0,0 +1,689 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.model;
+
+import java.util.*;
+
+/**
+ * A {@link Mapping} that relies on an {@link ElementRegistry} to index the elements.
+ * The state and the location of each element are stored into primitive arrays
+ * indexed by the registry while the VMs hosted by each node are stored into
+ * dense integer buckets. Lookups and state changes are then constant-time
+ * and a clone is only a matter of array copies.
+ * <p/>
+ * The registry can be shared among several mappings. It is shared by a mapping and its clones.
+ * Sets returned by the getters are read-only views of the mapping, except
+ * {@link #getAllVMs()}, {@link #getAllNodes()} and {@link #getRunningVMs(java.util.Collection)}
+ * that return a copy. The iterators of the views are fail-fast: a modification of the underlying
+ * state while iterating leads to a {@link ConcurrentModificationException}.
+ *
+ * @author Fabien Hermenier
+ */
+public class IndexedMapping implements Mapping, Cloneable {
+
+    private static final byte NO_STATE = 0;
+
+    private static final byte RUNNING_STATE = 1;
+
+    private static final byte SLEEPING_STATE = 2;
+
+    private static final byte READY_STATE = 3;
+
+    private static final byte ONLINE_STATE = 1;
+
+    private static final byte OFFLINE_STATE = 2;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private ElementRegistry registry;
+
+    /**
+     * The state of each node, by index.
+     */
+    private byte[] nodeState;
+
+    /**
+     * The state of each VM, by index.
+     */
+    private byte[] vmState;
+
+    /**
+     * The index of the node hosting each VM.
+     */
+    private int[] place;
+
+    /**
+     * The position of each node inside its state bucket.
+     */
+    private int[] nodeSlot;
+
+    /**
+     * The position of each VM inside its state bucket.
+     */
+    private int[] vmSlot;
+
+    /**
+     * The position of each VM inside the bucket of its hosting node.
+     */
+    private int[] hostSlot;
+
+    /**
+     * The nodes by state (online, offline).
+     */
+    private Bucket[] nodes;
+
+    /**
+     * The VMs by state (running, sleeping, ready).
+     */
+    private Bucket[] vms;
+
+    /**
+     * The VMs hosted by each node, by state (running or sleeping), then by node index.
+     */
+    private Bucket[][] hosted;
+
+    private Set<UUID> onlineNodes, offlineNodes, runningVMs, sleepingVMs, readyVMs;
+
+    /**
+     * Make a new mapping with its own registry.
+     */
+    public IndexedMapping() {
+        this(new ElementRegistry());
+    }
+
+    /**
+     * Make a new mapping that relies on a given registry.
+     *
+     * @param r the registry to use to index the elements
+     */
+    public IndexedMapping(ElementRegistry r) {
+        registry = r;
+        int cap = Math.max(DEFAULT_CAPACITY, r.size());
+        nodeState = new byte[cap];
+        vmState = new byte[cap];
+        place = new int[cap];
+        Arrays.fill(place, ElementRegistry.NO_INDEX);
+        nodeSlot = new int[cap];
+        vmSlot = new int[cap];
+        hostSlot = new int[cap];
+
+        nodes = new Bucket[3];
+        nodes[ONLINE_STATE] = new Bucket();
+        nodes[OFFLINE_STATE] = new Bucket();
+
+        vms = new Bucket[4];
+        vms[RUNNING_STATE] = new Bucket();
+        vms[SLEEPING_STATE] = new Bucket();
+        vms[READY_STATE] = new Bucket();
+
+        hosted = new Bucket[3][];
+        hosted[RUNNING_STATE] = new Bucket[cap];
+        hosted[SLEEPING_STATE] = new Bucket[cap];
+        makeViews();
+    }
+
+    /**
+     * Make a copy of a mapping.
+     *
+     * @param m the mapping to copy
+     */
+    private IndexedMapping(IndexedMapping m) {
+        registry = m.registry;
+        nodeState = m.nodeState.clone();
+        vmState = m.vmState.clone();
+        place = m.place.clone();
+        nodeSlot = m.nodeSlot.clone();
+        vmSlot = m.vmSlot.clone();
+        hostSlot = m.hostSlot.clone();
+
+        nodes = new Bucket[3];
+        nodes[ONLINE_STATE] = new Bucket(m.nodes[ONLINE_STATE]);
+        nodes[OFFLINE_STATE] = new Bucket(m.nodes[OFFLINE_STATE]);
+
+        vms = new Bucket[4];
+        vms[RUNNING_STATE] = new Bucket(m.vms[RUNNING_STATE]);
+        vms[SLEEPING_STATE] = new Bucket(m.vms[SLEEPING_STATE]);
+        vms[READY_STATE] = new Bucket(m.vms[READY_STATE]);
+
+        hosted = new Bucket[3][];
+        hosted[RUNNING_STATE] = new Bucket[m.hosted[RUNNING_STATE].length];
+        hosted[SLEEPING_STATE] = new Bucket[m.hosted[SLEEPING_STATE].length];
+        for (int i = 0; i < m.nodes[ONLINE_STATE].size; i++) {
+            int n = m.nodes[ONLINE_STATE].elems[i];
+            hosted[RUNNING_STATE][n] = new Bucket(m.hosted[RUNNING_STATE][n]);
+            hosted[SLEEPING_STATE][n] = new Bucket(m.hosted[SLEEPING_STATE][n]);
+        }
+        makeViews();
+    }
+
+    private void makeViews() {
+        onlineNodes = new ElementSet(false, ElementRegistry.NO_INDEX, nodes[ONLINE_STATE]);
+        offlineNodes = new ElementSet(false, ElementRegistry.NO_INDEX, nodes[OFFLINE_STATE]);
+        runningVMs = new ElementSet(true, ElementRegistry.NO_INDEX, vms[RUNNING_STATE]);
+        sleepingVMs = new ElementSet(true, ElementRegistry.NO_INDEX, vms[SLEEPING_STATE]);
+        readyVMs = new ElementSet(true, ElementRegistry.NO_INDEX, vms[READY_STATE]);
+    }
+
+    /**
+     * Get the registry used to index the elements.
+     *
+     * @return the registry
+     */
+    public ElementRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Get the index of an element, if the mapping has storage for it.
+     *
+     * @param u the element identifier
+     * @return the index or {@link ElementRegistry#NO_INDEX}
+     */
+    private int indexOf(UUID u) {
+        int i = registry.getIndex(u);
+        return i < nodeState.length ? i : ElementRegistry.NO_INDEX;
+    }
+
+    /**
+     * Register an element and ensure the mapping has storage for it.
+     *
+     * @param u the element identifier
+     * @return the element index
+     */
+    private int register(UUID u) {
+        int i = registry.register(u);
+        if (i >= nodeState.length) {
+            int cap = Math.max(Math.max(i + 1, nodeState.length * 2), registry.size());
+            int old = nodeState.length;
+            nodeState = Arrays.copyOf(nodeState, cap);
+            vmState = Arrays.copyOf(vmState, cap);
+            place = Arrays.copyOf(place, cap);
+            Arrays.fill(place, old, cap, ElementRegistry.NO_INDEX);
+            nodeSlot = Arrays.copyOf(nodeSlot, cap);
+            vmSlot = Arrays.copyOf(vmSlot, cap);
+            hostSlot = Arrays.copyOf(hostSlot, cap);
+            hosted[RUNNING_STATE] = Arrays.copyOf(hosted[RUNNING_STATE], cap);
+            hosted[SLEEPING_STATE] = Arrays.copyOf(hosted[SLEEPING_STATE], cap);
+        }
+        return i;
+    }
+
+    /**
+     * Change the state of a VM.
+     *
+     * @param v  the VM index
+     * @param st the new state
+     * @param n  the index of the hosting node if the VM is running or sleeping
+     */
+    private void setVMState(int v, byte st, int n) {
+        byte old = vmState[v];
+        if (old == st && place[v] == n) {
+            return;
+        }
+        if (old == RUNNING_STATE || old == SLEEPING_STATE) {
+            hosted[old][place[v]].remove(v, hostSlot);
+        }
+        if (old != st) {
+            if (old != NO_STATE) {
+                vms[old].remove(v, vmSlot);
+            }
+            if (st != NO_STATE) {
+                vms[st].add(v, vmSlot);
+            }
+        }
+        if (st == RUNNING_STATE || st == SLEEPING_STATE) {
+            hosted[st][n].add(v, hostSlot);
+            place[v] = n;
+        } else {
+            place[v] = ElementRegistry.NO_INDEX;
+        }
+        vmState[v] = st;
+    }
+
+    private boolean isHosting(int n) {
+        return hosted[RUNNING_STATE][n].size > 0 || hosted[SLEEPING_STATE][n].size > 0;
+    }
+
+    @Override
+    public boolean addRunningVM(UUID vm, UUID node) {
+        int n = indexOf(node);
+        if (n == ElementRegistry.NO_INDEX || nodeState[n] != ONLINE_STATE) {
+            return false;
+        }
+        setVMState(register(vm), RUNNING_STATE, n);
+        return true;
+    }
+
+    @Override
+    public boolean addSleepingVM(UUID vm, UUID node) {
+        int n = indexOf(node);
+        if (n == ElementRegistry.NO_INDEX || nodeState[n] != ONLINE_STATE) {
+            return false;
+        }
+        setVMState(register(vm), SLEEPING_STATE, n);
+        return true;
+    }
+
+    @Override
+    public void addReadyVM(UUID vm) {
+        setVMState(register(vm), READY_STATE, ElementRegistry.NO_INDEX);
+    }
+
+    @Override
+    public boolean removeVM(UUID vm) {
+        int v = indexOf(vm);
+        if (v == ElementRegistry.NO_INDEX || vmState[v] == NO_STATE) {
+            return false;
+        }
+        setVMState(v, NO_STATE, ElementRegistry.NO_INDEX);
+        return true;
+    }
+
+    @Override
+    public boolean removeNode(UUID node) {
+        int n = indexOf(node);
+        if (n == ElementRegistry.NO_INDEX || nodeState[n] == NO_STATE) {
+            return false;
+        }
+        if (nodeState[n] == ONLINE_STATE && isHosting(n)) {
+            return false;
+        }
+        nodes[nodeState[n]].remove(n, nodeSlot);
+        nodeState[n] = NO_STATE;
+        return true;
+    }
+
+    @Override
+    public Set<UUID> getOnlineNodes() {
+        return onlineNodes;
+    }
+
+    @Override
+    public void addOnlineNode(UUID node) {
+        int n = register(node);
+        if (nodeState[n] == ONLINE_STATE) {
+            return;
+        }
+        if (nodeState[n] == OFFLINE_STATE) {
+            nodes[OFFLINE_STATE].remove(n, nodeSlot);
+        }
+        nodes[ONLINE_STATE].add(n, nodeSlot);
+        nodeState[n] = ONLINE_STATE;
+        if (hosted[RUNNING_STATE][n] == null) {
+            hosted[RUNNING_STATE][n] = new Bucket();
+            hosted[SLEEPING_STATE][n] = new Bucket();
+        }
+    }
+
+    @Override
+    public boolean addOfflineNode(UUID node) {
+        int n = register(node);
+        if (nodeState[n] == OFFLINE_STATE) {
+            return true;
+        }
+        if (nodeState[n] == ONLINE_STATE) {
+            if (isHosting(n)) {
+                //It already host VMs, not possible
+                return false;
+            }
+            nodes[ONLINE_STATE].remove(n, nodeSlot);
+        }
+        nodes[OFFLINE_STATE].add(n, nodeSlot);
+        nodeState[n] = OFFLINE_STATE;
+        return true;
+    }
+
+    @Override
+    public Set<UUID> getOfflineNodes() {
+        return offlineNodes;
+    }
+
+    @Override
+    public Set<UUID> getRunningVMs() {
+        return runningVMs;
+    }
+
+    @Override
+    public Set<UUID> getSleepingVMs() {
+        return sleepingVMs;
+    }
+
+    @Override
+    public Set<UUID> getSleepingVMs(UUID node) {
+        return getHostedVMs(node, SLEEPING_STATE);
+    }
+
+    @Override
+    public Set<UUID> getRunningVMs(UUID node) {
+        return getHostedVMs(node, RUNNING_STATE);
+    }
+
+    private Set<UUID> getHostedVMs(UUID node, byte st) {
+        int n = indexOf(node);
+        if (n == ElementRegistry.NO_INDEX || hosted[st][n] == null) {
+            return Collections.emptySet();
+        }
+        return new ElementSet(true, n, hosted[st][n]);
+    }
+
+    @Override
+    public Set<UUID> getReadyVMs() {
+        return readyVMs;
+    }
+
+    @Override
+    public Set<UUID> getAllVMs() {
+        Set<UUID> res = new HashSet<UUID>(vms[RUNNING_STATE].size + vms[SLEEPING_STATE].size + vms[READY_STATE].size);
+        vms[READY_STATE].copyTo(res);
+        vms[SLEEPING_STATE].copyTo(res);
+        vms[RUNNING_STATE].copyTo(res);
+        return res;
+    }
+
+    @Override
+    public Set<UUID> getAllNodes() {
+        Set<UUID> res = new HashSet<UUID>(nodes[ONLINE_STATE].size + nodes[OFFLINE_STATE].size);
+        nodes[OFFLINE_STATE].copyTo(res);
+        nodes[ONLINE_STATE].copyTo(res);
+        return res;
+    }
+
+    @Override
+    public UUID getVMLocation(UUID vm) {
+        int v = indexOf(vm);
+        if (v == ElementRegistry.NO_INDEX || place[v] == ElementRegistry.NO_INDEX) {
+            return null;
+        }
+        return registry.getElement(place[v]);
+    }
+
+    @Override
+    public Set<UUID> getRunningVMs(Collection<UUID> ns) {
+        int[] idx = new int[ns.size()];
+        int nb = 0;
+        int i = 0;
+        for (UUID n : ns) {
+            idx[i] = indexOf(n);
+            if (idx[i] != ElementRegistry.NO_INDEX && hosted[RUNNING_STATE][idx[i]] != null) {
+                nb += hosted[RUNNING_STATE][idx[i]].size;
+            }
+            i++;
+        }
+        Set<UUID> res = new HashSet<UUID>(nb);
+        for (int n : idx) {
+            if (n != ElementRegistry.NO_INDEX && hosted[RUNNING_STATE][n] != null) {
+                hosted[RUNNING_STATE][n].copyTo(res);
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public IndexedMapping clone() {
+        return new IndexedMapping(this);
+    }
+
+    @Override
+    public boolean containsVM(UUID vm) {
+        int v = indexOf(vm);
+        return v != ElementRegistry.NO_INDEX && vmState[v] != NO_STATE;
+    }
+
+    @Override
+    public boolean containsNode(UUID node) {
+        int n = indexOf(node);
+        return n != ElementRegistry.NO_INDEX && nodeState[n] != NO_STATE;
+    }
+
+    @Override
+    public void clear() {
+        clearAllVMs();
+        nodes[ONLINE_STATE].clear();
+        nodes[OFFLINE_STATE].clear();
+        Arrays.fill(nodeState, NO_STATE);
+    }
+
+    @Override
+    public void clearNode(UUID node) {
+        int n = indexOf(node);
+        if (n == ElementRegistry.NO_INDEX || hosted[RUNNING_STATE][n] == null) {
+            return;
+        }
+        for (byte st = RUNNING_STATE; st <= SLEEPING_STATE; st++) {
+            Bucket b = hosted[st][n];
+            while (b.size > 0) {
+                setVMState(b.elems[b.size - 1], NO_STATE, ElementRegistry.NO_INDEX);
+            }
+        }
+    }
+
+    @Override
+    public void clearAllVMs() {
+        for (byte st = RUNNING_STATE; st <= READY_STATE; st++) {
+            vms[st].clear();
+        }
+        for (int i = 0; i < nodes[ONLINE_STATE].size; i++) {
+            int n = nodes[ONLINE_STATE].elems[i];
+            hosted[RUNNING_STATE][n].clear();
+            hosted[SLEEPING_STATE][n].clear();
+        }
+        Arrays.fill(vmState, NO_STATE);
+        Arrays.fill(place, ElementRegistry.NO_INDEX);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Mapping)) {
+            return false;
+        }
+
+        Mapping that = (Mapping) o;
+
+        if (!getOnlineNodes().equals(that.getOnlineNodes())
+                || !getOfflineNodes().equals(that.getOfflineNodes())
+                || !getReadyVMs().equals(that.getReadyVMs())) {
+            return false;
+        }
+
+        for (UUID n : getOnlineNodes()) {
+            if (!getRunningVMs(n).equals(that.getRunningVMs(n))
+                    || !getSleepingVMs(n).equals(that.getSleepingVMs(n))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = getOfflineNodes().hashCode();
+        result = 31 * result + getReadyVMs().hashCode();
+        result = 31 * result + getOnlineNodes().hashCode();
+        for (UUID n : getOnlineNodes()) {
+            result += n.hashCode() * (getRunningVMs(n).hashCode() * 31 + getSleepingVMs(n).hashCode());
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+
+        for (UUID n : getOnlineNodes()) {
+            buf.append(n);
+            buf.append(':');
+            if (this.getRunningVMs(n).isEmpty() && this.getSleepingVMs(n).isEmpty()) {
+                buf.append(" - ");
+            }
+            for (UUID vm : this.getRunningVMs(n)) {
+                buf.append(' ').append(vm);
+            }
+            for (UUID vm : this.getSleepingVMs(n)) {
+                buf.append(" (").append(vm).append(')');
+            }
+            buf.append('\n');
+        }
+
+        for (UUID n : getOfflineNodes()) {
+            buf.append('(').append(n).append(")\n");
+        }
+
+        buf.append("READY");
+
+        for (UUID vm : this.getReadyVMs()) {
+            buf.append(' ').append(vm);
+        }
+
+        return buf.append('\n').toString();
+    }
+
+    /**
+     * A dense set of element indexes.
+     * The position of each element is stored in an external array
+     * to provide a constant-time removal.
+     */
+    private final class Bucket {
+
+        private int[] elems;
+
+        private int size;
+
+        /**
+         * The number of modifications, to make the iterators fail-fast.
+         */
+        private int modCount;
+
+        Bucket() {
+            elems = new int[4];
+            size = 0;
+        }
+
+        Bucket(Bucket b) {
+            elems = Arrays.copyOf(b.elems, Math.max(b.size, 4));
+            size = b.size;
+        }
+
+        void add(int e, int[] slots) {
+            if (size == elems.length) {
+                elems = Arrays.copyOf(elems, size * 2);
+            }
+            slots[e] = size;
+            elems[size++] = e;
+            modCount++;
+        }
+
+        void remove(int e, int[] slots) {
+            int p = slots[e];
+            int last = elems[--size];
+            elems[p] = last;
+            slots[last] = p;
+            modCount++;
+        }
+
+        void clear() {
+            size = 0;
+            modCount++;
+        }
+
+        void copyTo(Collection<UUID> to) {
+            for (int i = 0; i < size; i++) {
+                to.add(registry.getElement(elems[i]));
+            }
+        }
+    }
+
+    /**
+     * A read-only view over a bucket.
+     */
+    private final class ElementSet extends AbstractSet<UUID> {
+
+        private final boolean vm;
+
+        private final int host;
+
+        private final Bucket bucket;
+
+        /**
+         * Make a new view.
+         *
+         * @param vm   {@code true} if the bucket contains VMs, {@code false} for nodes
+         * @param host the index of the node hosting the VMs in the bucket, {@link ElementRegistry#NO_INDEX} otherwise
+         * @param b    the bucket to browse
+         */
+        ElementSet(boolean vm, int host, Bucket b) {
+            this.vm = vm;
+            this.host = host;
+            this.bucket = b;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof UUID)) {
+                return false;
+            }
+            int i = indexOf((UUID) o);
+            if (i == ElementRegistry.NO_INDEX) {
+                return false;
+            }
+            if (vm) {
+                return vmState[i] != NO_STATE && vms[vmState[i]] == bucket
+                        || host != ElementRegistry.NO_INDEX && place[i] == host && hosted[vmState[i]][host] == bucket;
+            }
+            return nodeState[i] != NO_STATE && nodes[nodeState[i]] == bucket;
+        }
+
+        @Override
+        public Iterator<UUID> iterator() {
+            return new Iterator<UUID>() {
+                private int p = 0;
+
+                private final int expectedModCount = bucket.modCount;
+
+                @Override
+                public boolean hasNext() {
+                    return p < bucket.size;
+                }
+
+                @Override
+                public UUID next() {
+                    if (bucket.modCount != expectedModCount) {
+                        throw new ConcurrentModificationException();
+                    }
+                    if (p >= bucket.size) {
+                        throw new NoSuchElementException();
+                    }
+                    return registry.getElement(bucket.elems[p++]);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return bucket.size;
+        }
+    }
+}
@@ -0,0 +1,545 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.model;
+
+import btrplace.model.view.ShareableResource;
+
+import java.util.*;
+
+/**
+ * The differences between two models.
+ * <p/>
+ * A delta is computed using {@link #diff(Model, Model)} and then
+ * applied in place on a copy of the source model using {@link #applyTo(Model)}.
+ * It states the new state and the new location of the elements that changed, the values
+ * of the {@link ShareableResource} views that changed and the attributes that changed.
+ * The other views are replaced when they differ.
+ *
+ * @author Fabien Hermenier
+ */
+public class ModelDelta {
+
+    /**
+     * The possible new states for a node.
+     */
+    public static enum NodeState {
+        /**
+         * The node is online.
+         */
+        ONLINE,
+        /**
+         * The node is offline.
+         */
+        OFFLINE,
+        /**
+         * The node is no longer in the mapping.
+         */
+        REMOVED
+    }
+
+    /**
+     * The possible new states for a VM.
+     */
+    public static enum VMState {
+        /**
+         * The VM is running.
+         */
+        RUNNING,
+        /**
+         * The VM is sleeping.
+         */
+        SLEEPING,
+        /**
+         * The VM is ready.
+         */
+        READY,
+        /**
+         * The VM is no longer in the mapping.
+         */
+        REMOVED
+    }
+
+    private Map<UUID, NodeState> nodes;
+
+    private Map<UUID, VMState> vms;
+
+    private Map<UUID, UUID> hosts;
+
+    private Map<String, Map<UUID, Integer>> rcValues;
+
+    private Map<String, Set<UUID>> rcUnset;
+
+    private Map<String, ModelView> attached;
+
+    private Set<String> detached;
+
+    private Map<UUID, Map<String, Object>> attrValues;
+
+    private Map<UUID, Set<String>> attrUnset;
+
+    /**
+     * Make a new empty delta.
+     */
+    public ModelDelta() {
+        nodes = new HashMap<UUID, NodeState>();
+        vms = new HashMap<UUID, VMState>();
+        hosts = new HashMap<UUID, UUID>();
+        rcValues = new HashMap<String, Map<UUID, Integer>>();
+        rcUnset = new HashMap<String, Set<UUID>>();
+        attached = new HashMap<String, ModelView>();
+        detached = new HashSet<String>();
+        attrValues = new HashMap<UUID, Map<String, Object>>();
+        attrUnset = new HashMap<UUID, Set<String>>();
+    }
+
+    /**
+     * Compute the differences between two models.
+     *
+     * @param src the source model
+     * @param dst the destination model
+     * @return the delta to apply on the source model to get the destination model
+     */
+    public static ModelDelta diff(Model src, Model dst) {
+        ModelDelta d = new ModelDelta();
+        diffMapping(d, src.getMapping(), dst.getMapping());
+        diffViews(d, src, dst);
+        diffAttributes(d, src.getAttributes(), dst.getAttributes());
+        return d;
+    }
+
+    private static NodeState nodeState(Mapping m, UUID n) {
+        if (m.getOnlineNodes().contains(n)) {
+            return NodeState.ONLINE;
+        } else if (m.getOfflineNodes().contains(n)) {
+            return NodeState.OFFLINE;
+        }
+        return NodeState.REMOVED;
+    }
+
+    private static VMState vmState(Mapping m, UUID vm) {
+        if (m.getRunningVMs().contains(vm)) {
+            return VMState.RUNNING;
+        } else if (m.getSleepingVMs().contains(vm)) {
+            return VMState.SLEEPING;
+        } else if (m.getReadyVMs().contains(vm)) {
+            return VMState.READY;
+        }
+        return VMState.REMOVED;
+    }
+
+    private static void diffMapping(ModelDelta d, Mapping src, Mapping dst) {
+        for (UUID n : dst.getAllNodes()) {
+            NodeState st = nodeState(dst, n);
+            if (st != nodeState(src, n)) {
+                d.setNodeState(n, st);
+            }
+        }
+        for (UUID n : src.getAllNodes()) {
+            if (!dst.containsNode(n)) {
+                d.setNodeState(n, NodeState.REMOVED);
+            }
+        }
+        for (UUID vm : dst.getAllVMs()) {
+            VMState st = vmState(dst, vm);
+            UUID host = dst.getVMLocation(vm);
+            UUID prev = src.getVMLocation(vm);
+            if (st != vmState(src, vm) || (host == null ? prev != null : !host.equals(prev))) {
+                d.setVMState(vm, st, host);
+            }
+        }
+        for (UUID vm : src.getAllVMs()) {
+            if (!dst.containsVM(vm)) {
+                d.setVMState(vm, VMState.REMOVED, null);
+            }
+        }
+    }
+
+    private static void diffViews(ModelDelta d, Model src, Model dst) {
+        for (ModelView v : dst.getViews()) {
+            ModelView prev = src.getView(v.getIdentifier());
+            if (prev == null) {
+                d.attach(v.clone());
+            } else if (v instanceof ShareableResource && prev instanceof ShareableResource
+                    && ((ShareableResource) v).getDefaultValue() == ((ShareableResource) prev).getDefaultValue()) {
+                diffResource(d, (ShareableResource) prev, (ShareableResource) v);
+            } else if (!v.equals(prev)) {
+                d.detach(v.getIdentifier());
+                d.attach(v.clone());
+            }
+        }
+        for (ModelView v : src.getViews()) {
+            if (dst.getView(v.getIdentifier()) == null) {
+                d.detach(v.getIdentifier());
+            }
+        }
+    }
+
+    private static void diffResource(ModelDelta d, ShareableResource src, ShareableResource dst) {
+        String rcId = dst.getResourceIdentifier();
+        for (UUID u : dst.getDefined()) {
+            if (!src.defined(u) || src.get(u) != dst.get(u)) {
+                d.setResourceValue(rcId, u, dst.get(u));
+            }
+        }
+        for (UUID u : src.getDefined()) {
+            if (!dst.defined(u)) {
+                d.unsetResourceValue(rcId, u);
+            }
+        }
+    }
+
+    private static void diffAttributes(ModelDelta d, Attributes src, Attributes dst) {
+        for (UUID u : dst.getElements()) {
+            for (String k : dst.getKeys(u)) {
+                Object v = dst.get(u, k);
+                if (!v.equals(src.get(u, k))) {
+                    d.putAttribute(u, k, v);
+                }
+            }
+        }
+        for (UUID u : src.getElements()) {
+            for (String k : src.getKeys(u)) {
+                if (!dst.isSet(u, k)) {
+                    d.unsetAttribute(u, k);
+                }
+            }
+        }
+    }
+
+    /**
+     * State the new state of a node.
+     *
+     * @param n  the node
+     * @param st the new state
+     */
+    public void setNodeState(UUID n, NodeState st) {
+        nodes.put(n, st);
+    }
+
+    /**
+     * Get the nodes that changed.
+     *
+     * @return a map associating each node to its new state
+     */
+    public Map<UUID, NodeState> getNodeStates() {
+        return nodes;
+    }
+
+    /**
+     * State the new state of a VM.
+     *
+     * @param vm   the VM
+     * @param st   the new state
+     * @param host the new host if the VM is running or sleeping. {@code null} otherwise
+     */
+    public void setVMState(UUID vm, VMState st, UUID host) {
+        vms.put(vm, st);
+        if (host != null) {
+            hosts.put(vm, host);
+        } else {
+            hosts.remove(vm);
+        }
+    }
+
+    /**
+     * Get the VMs that changed.
+     *
+     * @return a map associating each VM to its new state
+     */
+    public Map<UUID, VMState> getVMStates() {
+        return vms;
+    }
+
+    /**
+     * Get the new host of a VM that changed.
+     *
+     * @param vm the VM
+     * @return the host, {@code null} if the VM is not running nor sleeping
+     */
+    public UUID getVMHost(UUID vm) {
+        return hosts.get(vm);
+    }
+
+    /**
+     * State a new value for an element in a {@link ShareableResource}.
+     *
+     * @param rcId the resource identifier
+     * @param u    the element
+     * @param v    the new value
+     */
+    public void setResourceValue(String rcId, UUID u, int v) {
+        Map<UUID, Integer> m = rcValues.get(rcId);
+        if (m == null) {
+            m = new HashMap<UUID, Integer>();
+            rcValues.put(rcId, m);
+        }
+        m.put(u, v);
+    }
+
+    /**
+     * State an element has no longer a value in a {@link ShareableResource}.
+     *
+     * @param rcId the resource identifier
+     * @param u    the element
+     */
+    public void unsetResourceValue(String rcId, UUID u) {
+        Set<UUID> s = rcUnset.get(rcId);
+        if (s == null) {
+            s = new HashSet<UUID>();
+            rcUnset.put(rcId, s);
+        }
+        s.add(u);
+    }
+
+    /**
+     * Get the new values of the resources.
+     *
+     * @return a map associating each resource identifier to the values that changed
+     */
+    public Map<String, Map<UUID, Integer>> getResourceValues() {
+        return rcValues;
+    }
+
+    /**
+     * Get the elements that no longer have a value for the resources.
+     *
+     * @return a map associating each resource identifier to the elements
+     */
+    public Map<String, Set<UUID>> getUnsetResourceValues() {
+        return rcUnset;
+    }
+
+    /**
+     * State a view to attach.
+     *
+     * @param v the view
+     */
+    public void attach(ModelView v) {
+        attached.put(v.getIdentifier(), v);
+    }
+
+    /**
+     * State a view to detach.
+     * If a view with the same identifier is attached by the delta, it is detached first.
+     *
+     * @param id the view identifier
+     */
+    public void detach(String id) {
+        detached.add(id);
+    }
+
+    /**
+     * Get the views to attach.
+     *
+     * @return a collection of views
+     */
+    public Collection<ModelView> getAttachedViews() {
+        return attached.values();
+    }
+
+    /**
+     * Get the views to detach.
+     *
+     * @return a set of view identifiers
+     */
+    public Set<String> getDetachedViews() {
+        return detached;
+    }
+
+    /**
+     * State a new value for an attribute.
+     *
+     * @param u the element
+     * @param k the attribute key
+     * @param v the value. Either a {@link Boolean}, a {@link Long}, a {@link Double} or a {@link String}
+     */
+    public void putAttribute(UUID u, String k, Object v) {
+        Map<String, Object> m = attrValues.get(u);
+        if (m == null) {
+            m = new HashMap<String, Object>();
+            attrValues.put(u, m);
+        }
+        m.put(k, v);
+    }
+
+    /**
+     * State an attribute that is no longer set.
+     *
+     * @param u the element
+     * @param k the attribute key
+     */
+    public void unsetAttribute(UUID u, String k) {
+        Set<String> s = attrUnset.get(u);
+        if (s == null) {
+            s = new HashSet<String>();
+            attrUnset.put(u, s);
+        }
+        s.add(k);
+    }
+
+    /**
+     * Get the new values of the attributes.
+     *
+     * @return a map associating each element to its new values
+     */
+    public Map<UUID, Map<String, Object>> getAttributeValues() {
+        return attrValues;
+    }
+
+    /**
+     * Get the attributes that are no longer set.
+     *
+     * @return a map associating each element to the keys of its attributes
+     */
+    public Map<UUID, Set<String>> getUnsetAttributes() {
+        return attrUnset;
+    }
+
+    /**
+     * Check if the delta is empty.
+     *
+     * @return {@code true} iff the delta states no change
+     */
+    public boolean isEmpty() {
+        return nodes.isEmpty() && vms.isEmpty()
+                && rcValues.isEmpty() && rcUnset.isEmpty()
+                && attached.isEmpty() && detached.isEmpty()
+                && attrValues.isEmpty() && attrUnset.isEmpty();
+    }
+
+    /**
+     * Apply the delta in place.
+     * The nodes that are brought online are added first, then the VMs are updated and
+     * finally the nodes are set offline or removed.
+     *
+     * @param mo the model to modify. Must be equal to the source model of the delta
+     * @return {@code true} iff the delta was applied. If {@code false}, the model has been
+     *         partially modified
+     */
+    public boolean applyTo(Model mo) {
+        Mapping map = mo.getMapping();
+        for (Map.Entry<UUID, NodeState> e : nodes.entrySet()) {
+            if (e.getValue() == NodeState.ONLINE) {
+                map.addOnlineNode(e.getKey());
+            }
+        }
+        for (Map.Entry<UUID, VMState> e : vms.entrySet()) {
+            UUID vm = e.getKey();
+            boolean ok;
+            switch (e.getValue()) {
+                case RUNNING:
+                    ok = map.addRunningVM(vm, hosts.get(vm));
+                    break;
+                case SLEEPING:
+                    ok = map.addSleepingVM(vm, hosts.get(vm));
+                    break;
+                case READY:
+                    map.addReadyVM(vm);
+                    ok = true;
+                    break;
+                default:
+                    ok = map.removeVM(vm);
+            }
+            if (!ok) {
+                return false;
+            }
+        }
+        for (Map.Entry<UUID, NodeState> e : nodes.entrySet()) {
+            if (e.getValue() == NodeState.OFFLINE && !map.addOfflineNode(e.getKey())) {
+                return false;
+            } else if (e.getValue() == NodeState.REMOVED && !map.removeNode(e.getKey())) {
+                return false;
+            }
+        }
+
+        for (String id : detached) {
+            ModelView v = mo.getView(id);
+            if (v == null || !mo.detach(v)) {
+                return false;
+            }
+        }
+        for (ModelView v : attached.values()) {
+            if (!mo.attach(v.clone())) {
+                return false;
+            }
+        }
+        if (!applyResources(mo)) {
+            return false;
+        }
+        applyAttributes(mo.getAttributes());
+        return true;
+    }
+
+    private boolean applyResources(Model mo) {
+        for (Map.Entry<String, Map<UUID, Integer>> e : rcValues.entrySet()) {
+            ShareableResource rc = (ShareableResource) mo.getView(ShareableResource.VIEW_ID_BASE + e.getKey());
+            if (rc == null) {
+                return false;
+            }
+            for (Map.Entry<UUID, Integer> v : e.getValue().entrySet()) {
+                rc.set(v.getKey(), v.getValue());
+            }
+        }
+        for (Map.Entry<String, Set<UUID>> e : rcUnset.entrySet()) {
+            ShareableResource rc = (ShareableResource) mo.getView(ShareableResource.VIEW_ID_BASE + e.getKey());
+            if (rc == null) {
+                return false;
+            }
+            for (UUID u : e.getValue()) {
+                rc.unset(u);
+            }
+        }
+        return true;
+    }
+
+    private void applyAttributes(Attributes attrs) {
+        for (Map.Entry<UUID, Set<String>> e : attrUnset.entrySet()) {
+            for (String k : e.getValue()) {
+                attrs.unset(e.getKey(), k);
+            }
+        }
+        for (Map.Entry<UUID, Map<String, Object>> e : attrValues.entrySet()) {
+            UUID u = e.getKey();
+            for (Map.Entry<String, Object> a : e.getValue().entrySet()) {
+                Object v = a.getValue();
+                if (v instanceof Boolean) {
+                    attrs.put(u, a.getKey(), (Boolean) v);
+                } else if (v instanceof Double || v instanceof Float) {
+                    attrs.put(u, a.getKey(), ((Number) v).doubleValue());
+                } else if (v instanceof Number) {
+                    attrs.put(u, a.getKey(), ((Number) v).longValue());
+                } else {
+                    attrs.put(u, a.getKey(), v.toString());
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        b.append("nodes: ").append(nodes);
+        b.append(", vms: ").append(vms);
+        b.append(", hosts: ").append(hosts);
+        b.append(", resources: ").append(rcValues).append(" unset: ").append(rcUnset);
+        b.append(", attached: ").append(attached.keySet()).append(" detached: ").append(detached);
+        b.append(", attributes: ").append(attrValues).append(" unset: ").append(attrUnset);
+        return b.toString();
+    }
+}
@@ -18,6 +18,7 @@
 
 package btrplace.model.constraint;
 
+import btrplace.model.CopyOnWriteModel;
 import btrplace.model.Model;
 import btrplace.model.SatConstraint;
 import btrplace.plan.Action;
@@ -86,7 +87,7 @@ public class CumulatedRunningCapacity extends SatConstraint {
         if (!isSatisfied(mo).equals(Sat.SATISFIED)) {
             return Sat.UNSATISFIED;
         }
-        mo = p.getOrigin().clone();
+        mo = new CopyOnWriteModel(p.getOrigin());
         for (Action a : p) {
             if (!a.apply(mo)) {
                 return Sat.UNSATISFIED;
@@ -18,6 +18,7 @@
 
 package btrplace.model.constraint;
 
+import btrplace.model.CopyOnWriteModel;
 import btrplace.model.Mapping;
 import btrplace.model.Model;
 import btrplace.model.SatConstraint;
@@ -87,7 +88,7 @@ public class Lonely extends SatConstraint {
         if (!isSatisfied(mo).equals(Sat.SATISFIED)) {
             return Sat.UNSATISFIED;
         }
-        mo = p.getOrigin().clone();
+        mo = new CopyOnWriteModel(p.getOrigin());
         for (Action a : p) {
             if (!a.apply(mo)) {
                 return Sat.UNSATISFIED;
@@ -18,6 +18,7 @@
 
 package btrplace.model.constraint;
 
+import btrplace.model.CopyOnWriteModel;
 import btrplace.model.Mapping;
 import btrplace.model.Model;
 import btrplace.model.SatConstraint;
@@ -134,7 +135,7 @@ public class Overbook extends SatConstraint {
         if (!res.equals(Sat.SATISFIED)) {
             return Sat.UNSATISFIED;
         }
-        Model cur = plan.getOrigin().clone();
+        Model cur = new CopyOnWriteModel(plan.getOrigin());
         for (Action a : plan) {
 
             if (!a.apply(cur)) {
@@ -18,6 +18,7 @@
 
 package btrplace.model.constraint;
 
+import btrplace.model.CopyOnWriteModel;
 import btrplace.model.Model;
 import btrplace.model.SatConstraint;
 import btrplace.plan.Action;
@@ -57,7 +58,7 @@ public class Quarantine extends SatConstraint {
             return Sat.SATISFIED;
         }
         Model src = plan.getOrigin();
-        Model mo = plan.getOrigin().clone();
+        Model mo = new CopyOnWriteModel(plan.getOrigin());
         Map<UUID, Set<UUID>> on = new HashMap<UUID, Set<UUID>>();
         for (UUID n : getInvolvedNodes()) {
             on.put(n, mo.getMapping().getRunningVMs(n));
@@ -18,6 +18,7 @@
 
 package btrplace.model.constraint;
 
+import btrplace.model.CopyOnWriteModel;
 import btrplace.model.Mapping;
 import btrplace.model.Model;
 import btrplace.model.SatConstraint;
@@ -113,7 +114,7 @@ public class SingleResourceCapacity extends SatConstraint {
         if (!isSatisfied(mo).equals(SatConstraint.Sat.SATISFIED)) {
             return Sat.UNSATISFIED;
         }
-        mo = plan.getOrigin().clone();
+        mo = new CopyOnWriteModel(plan.getOrigin());
         for (Action a : plan) {
             if (!a.apply(mo)) {
                 return Sat.UNSATISFIED;
@@ -18,6 +18,7 @@
 
 package btrplace.model.constraint;
 
+import btrplace.model.CopyOnWriteModel;
 import btrplace.model.Mapping;
 import btrplace.model.Model;
 import btrplace.model.SatConstraint;
@@ -94,7 +95,7 @@ public class SingleRunningCapacity extends SatConstraint {
         if (!isSatisfied(mo).equals(SatConstraint.Sat.SATISFIED)) {
             return Sat.UNSATISFIED;
         }
-        mo = plan.getOrigin().clone();
+        mo = new CopyOnWriteModel(plan.getOrigin());
 
         for (Action a : plan) {
             if (!a.apply(mo)) {
@@ -18,6 +18,7 @@
 
 package btrplace.model.constraint;
 
+import btrplace.model.CopyOnWriteModel;
 import btrplace.model.Mapping;
 import btrplace.model.Model;
 import btrplace.model.SatConstraint;
@@ -164,7 +165,7 @@ public class SplitAmong extends SatConstraint {
         if (!isSatisfied(o).equals(Sat.SATISFIED)) {
             return Sat.UNSATISFIED;
         }
-        o = p.getOrigin().clone();
+        o = new CopyOnWriteModel(p.getOrigin());
         for (Action a : p) {
             if (!a.apply(o)) {
                 return Sat.UNSATISFIED;
@@ -18,6 +18,7 @@
 
 package btrplace.model.constraint;
 
+import btrplace.model.CopyOnWriteModel;
 import btrplace.model.Mapping;
 import btrplace.model.Model;
 import btrplace.model.SatConstraint;
@@ -83,7 +84,7 @@ public class Spread extends SatConstraint {
 
         //For each relocation action, we check if the
         //destination node is not hosting a VM involved in the constraint
-        Model cur = plan.getOrigin().clone();
+        Model cur = new CopyOnWriteModel(plan.getOrigin());
         for (Action a : plan) {
             if (!a.apply(cur)) {
                 return Sat.UNSATISFIED;
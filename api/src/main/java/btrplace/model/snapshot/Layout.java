@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.model.snapshot;
+
+/**
+ * The layout of a snapshot file.
+ * <p/>
+ * The header is followed by fixed-size sections whose
+ * offsets only depend on the number of elements:
+ * <ol>
+ * <li>the UUIDs of the nodes, sorted, on 16 bytes each</li>
+ * <li>the state of the nodes, one byte each</li>
+ * <li>for each node, the offset and the number of its running then sleeping VMs in the hosting section</li>
+ * <li>the UUIDs of the VMs, sorted, on 16 bytes each</li>
+ * <li>the state of the VMs, one byte each</li>
+ * <li>the index of the host of each VM, {@link #NO_HOST} if the VM is not hosted</li>
+ * <li>the hosting section: the indexes of the VMs grouped by host and by state</li>
+ * <li>the indexes of the online nodes, the offline nodes, the running VMs, the sleeping VMs
+ * and the ready VMs</li>
+ * </ol>
+ * The attributes and the views come last, at the offsets stated in the header.
+ *
+ * @author Fabien Hermenier
+ */
+class Layout {
+
+    static final int MAGIC = 0x42545253;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 9 * 4 + 2 * 8;
+
+    static final int UUID_SIZE = 16;
+
+    static final int NO_HOST = -1;
+
+    static final byte ONLINE = 0;
+
+    static final byte OFFLINE = 1;
+
+    static final byte RUNNING = 0;
+
+    static final byte SLEEPING = 1;
+
+    static final byte READY = 2;
+
+    static final byte BOOLEAN_VALUE = 0;
+
+    static final byte LONG_VALUE = 1;
+
+    static final byte DOUBLE_VALUE = 2;
+
+    static final byte STRING_VALUE = 3;
+
+    /**
+     * The number of elements for each list:
+     * online and offline nodes, running, sleeping and ready VMs.
+     */
+    final int[] counts = new int[5];
+
+    final int nbNodes;
+
+    final int nbVMs;
+
+    final int nodeIds;
+
+    final int nodeStates;
+
+    final int nodeHosted;
+
+    final int vmIds;
+
+    final int vmStates;
+
+    final int vmHosts;
+
+    final int hosted;
+
+    /**
+     * The offset of the lists, indexed like {@link #counts}.
+     */
+    final int[] lists = new int[5];
+
+    final int end;
+
+    /**
+     * Compute the layout.
+     *
+     * @param nbNodes the number of nodes
+     * @param nbVMs   the number of VMs
+     * @param counts  the number of elements in each list
+     */
+    Layout(int nbNodes, int nbVMs, int[] counts) {
+        this.nbNodes = nbNodes;
+        this.nbVMs = nbVMs;
+        System.arraycopy(counts, 0, this.counts, 0, counts.length);
+        nodeIds = HEADER_SIZE;
+        nodeStates = nodeIds + nbNodes * UUID_SIZE;
+        nodeHosted = nodeStates + nbNodes;
+        vmIds = nodeHosted + nbNodes * 4 * 4;
+        vmStates = vmIds + nbVMs * UUID_SIZE;
+        vmHosts = vmStates + nbVMs;
+        hosted = vmHosts + nbVMs * 4;
+        int o = hosted + (counts[2] + counts[3]) * 4;
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = o;
+            o += counts[i] * 4;
+        }
+        end = o;
+    }
+}
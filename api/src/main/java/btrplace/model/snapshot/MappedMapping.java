@@ -0,0 +1,431 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.model.snapshot;
+
+import btrplace.model.CopyOnWriteMapping;
+import btrplace.model.Mapping;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * A read-only {@link Mapping} that is read directly from a snapshot.
+ * Elements are located using a binary search over the sorted UUIDs stored in the snapshot
+ * while the sets returned by the getters are views over the snapshot that are decoded on demand.
+ * <p/>
+ * The modifiers throw an {@link UnsupportedOperationException}. A modifiable copy that
+ * shares the snapshot is obtained using {@link #clone()}.
+ *
+ * @author Fabien Hermenier
+ */
+public class MappedMapping implements Mapping {
+
+    private static final int ONLINE_LIST = 0;
+
+    private static final int OFFLINE_LIST = 1;
+
+    private static final int RUNNING_LIST = 2;
+
+    private static final int SLEEPING_LIST = 3;
+
+    private static final int READY_LIST = 4;
+
+    private ByteBuffer buf;
+
+    private Layout l;
+
+    /**
+     * Make a new mapping.
+     *
+     * @param b the buffer containing the snapshot
+     * @param l the layout of the snapshot
+     */
+    MappedMapping(ByteBuffer b, Layout l) {
+        this.buf = b;
+        this.l = l;
+    }
+
+    private UUID uuid(int table, int i) {
+        int o = table + i * Layout.UUID_SIZE;
+        return new UUID(buf.getLong(o), buf.getLong(o + 8));
+    }
+
+    /**
+     * Get the index of an element using a binary search.
+     *
+     * @param table the offset of the sorted UUIDs
+     * @param nb    the number of UUIDs
+     * @param u     the element to look for
+     * @return the index of the element, {@code -1} if it is not in the table
+     */
+    private int indexOf(int table, int nb, Object u) {
+        if (!(u instanceof UUID)) {
+            return -1;
+        }
+        long msb = ((UUID) u).getMostSignificantBits();
+        long lsb = ((UUID) u).getLeastSignificantBits();
+        int lo = 0;
+        int hi = nb - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int o = table + mid * Layout.UUID_SIZE;
+            int c = Snapshots.compareLongs(buf.getLong(o), msb);
+            if (c == 0) {
+                c = Snapshots.compareLongs(buf.getLong(o + 8), lsb);
+            }
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int nodeIndex(Object n) {
+        return indexOf(l.nodeIds, l.nbNodes, n);
+    }
+
+    private int vmIndex(Object vm) {
+        return indexOf(l.vmIds, l.nbVMs, vm);
+    }
+
+    private boolean isVM(Object vm, byte st) {
+        int i = vmIndex(vm);
+        return i >= 0 && buf.get(l.vmStates + i) == st;
+    }
+
+    private boolean isNode(Object n, byte st) {
+        int i = nodeIndex(n);
+        return i >= 0 && buf.get(l.nodeStates + i) == st;
+    }
+
+    /**
+     * Get the VMs hosted by a node.
+     *
+     * @param n  the node
+     * @param st the state of the VMs
+     * @return a set that may be empty
+     */
+    private Set<UUID> hosted(UUID n, final byte st) {
+        final int i = nodeIndex(n);
+        if (i < 0) {
+            return Collections.emptySet();
+        }
+        int o = l.nodeHosted + i * 16 + st * 8;
+        return new IndexSet(l.vmIds, l.hosted + buf.getInt(o) * 4, buf.getInt(o + 4)) {
+            @Override
+            public boolean contains(Object vm) {
+                int v = vmIndex(vm);
+                return v >= 0 && buf.get(l.vmStates + v) == st && buf.getInt(l.vmHosts + v * 4) == i;
+            }
+        };
+    }
+
+    private Set<UUID> list(final int list, int table) {
+        return new IndexSet(table, l.lists[list], l.counts[list]) {
+            @Override
+            public boolean contains(Object o) {
+                switch (list) {
+                    case ONLINE_LIST:
+                        return isNode(o, Layout.ONLINE);
+                    case OFFLINE_LIST:
+                        return isNode(o, Layout.OFFLINE);
+                    case RUNNING_LIST:
+                        return isVM(o, Layout.RUNNING);
+                    case SLEEPING_LIST:
+                        return isVM(o, Layout.SLEEPING);
+                    default:
+                        return isVM(o, Layout.READY);
+                }
+            }
+        };
+    }
+
+    @Override
+    public Set<UUID> getOnlineNodes() {
+        return list(ONLINE_LIST, l.nodeIds);
+    }
+
+    @Override
+    public Set<UUID> getOfflineNodes() {
+        return list(OFFLINE_LIST, l.nodeIds);
+    }
+
+    @Override
+    public Set<UUID> getRunningVMs() {
+        return list(RUNNING_LIST, l.vmIds);
+    }
+
+    @Override
+    public Set<UUID> getSleepingVMs() {
+        return list(SLEEPING_LIST, l.vmIds);
+    }
+
+    @Override
+    public Set<UUID> getReadyVMs() {
+        return list(READY_LIST, l.vmIds);
+    }
+
+    @Override
+    public Set<UUID> getSleepingVMs(UUID n) {
+        return hosted(n, Layout.SLEEPING);
+    }
+
+    @Override
+    public Set<UUID> getRunningVMs(UUID n) {
+        return hosted(n, Layout.RUNNING);
+    }
+
+    @Override
+    public Set<UUID> getAllVMs() {
+        Set<UUID> vms = new HashSet<UUID>(l.nbVMs);
+        for (int i = 0; i < l.nbVMs; i++) {
+            vms.add(uuid(l.vmIds, i));
+        }
+        return vms;
+    }
+
+    @Override
+    public Set<UUID> getAllNodes() {
+        Set<UUID> ns = new HashSet<UUID>(l.nbNodes);
+        for (int i = 0; i < l.nbNodes; i++) {
+            ns.add(uuid(l.nodeIds, i));
+        }
+        return ns;
+    }
+
+    @Override
+    public UUID getVMLocation(UUID vm) {
+        int i = vmIndex(vm);
+        if (i < 0) {
+            return null;
+        }
+        int n = buf.getInt(l.vmHosts + i * 4);
+        return n == Layout.NO_HOST ? null : uuid(l.nodeIds, n);
+    }
+
+    @Override
+    public Set<UUID> getRunningVMs(Collection<UUID> ns) {
+        Set<UUID> vms = new HashSet<UUID>();
+        for (UUID n : ns) {
+            vms.addAll(getRunningVMs(n));
+        }
+        return vms;
+    }
+
+    @Override
+    public boolean containsVM(UUID vm) {
+        return vmIndex(vm) >= 0;
+    }
+
+    @Override
+    public boolean containsNode(UUID n) {
+        return nodeIndex(n) >= 0;
+    }
+
+    /**
+     * Get a modifiable copy of the mapping.
+     * The copy is a {@link CopyOnWriteMapping} that shares the snapshot.
+     *
+     * @return a modifiable mapping
+     */
+    @Override
+    public Mapping clone() {
+        return new CopyOnWriteMapping(this);
+    }
+
+    @Override
+    public boolean addRunningVM(UUID vm, UUID node) {
+        throw new UnsupportedOperationException("Read-only mapping");
+    }
+
+    @Override
+    public boolean addSleepingVM(UUID vm, UUID node) {
+        throw new UnsupportedOperationException("Read-only mapping");
+    }
+
+    @Override
+    public void addReadyVM(UUID vm) {
+        throw new UnsupportedOperationException("Read-only mapping");
+    }
+
+    @Override
+    public boolean removeVM(UUID vm) {
+        throw new UnsupportedOperationException("Read-only mapping");
+    }
+
+    @Override
+    public boolean removeNode(UUID n) {
+        throw new UnsupportedOperationException("Read-only mapping");
+    }
+
+    @Override
+    public void addOnlineNode(UUID node) {
+        throw new UnsupportedOperationException("Read-only mapping");
+    }
+
+    @Override
+    public boolean addOfflineNode(UUID node) {
+        throw new UnsupportedOperationException("Read-only mapping");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Read-only mapping");
+    }
+
+    @Override
+    public void clearNode(UUID u) {
+        throw new UnsupportedOperationException("Read-only mapping");
+    }
+
+    @Override
+    public void clearAllVMs() {
+        throw new UnsupportedOperationException("Read-only mapping");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Mapping)) {
+            return false;
+        }
+
+        Mapping that = (Mapping) o;
+
+        if (!getOnlineNodes().equals(that.getOnlineNodes())
+                || !getOfflineNodes().equals(that.getOfflineNodes())
+                || !getReadyVMs().equals(that.getReadyVMs())) {
+            return false;
+        }
+
+        for (UUID n : getOnlineNodes()) {
+            if (!getRunningVMs(n).equals(that.getRunningVMs(n))
+                    || !getSleepingVMs(n).equals(that.getSleepingVMs(n))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = getOfflineNodes().hashCode();
+        result = 31 * result + getReadyVMs().hashCode();
+        result = 31 * result + getOnlineNodes().hashCode();
+        for (UUID n : getOnlineNodes()) {
+            result += n.hashCode() * (getRunningVMs(n).hashCode() * 31 + getSleepingVMs(n).hashCode());
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        for (UUID n : getOnlineNodes()) {
+            buf.append(n);
+            buf.append(':');
+            if (this.getRunningVMs(n).isEmpty() && this.getSleepingVMs(n).isEmpty()) {
+                buf.append(" - ");
+            }
+            for (UUID vm : this.getRunningVMs(n)) {
+                buf.append(' ').append(vm);
+            }
+            for (UUID vm : this.getSleepingVMs(n)) {
+                buf.append(" (").append(vm).append(')');
+            }
+            buf.append('\n');
+        }
+
+        for (UUID n : getOfflineNodes()) {
+            buf.append('(').append(n).append(")\n");
+        }
+
+        buf.append("READY");
+
+        for (UUID vm : this.getReadyVMs()) {
+            buf.append(' ').append(vm);
+        }
+
+        return buf.append('\n').toString();
+    }
+
+    /**
+     * A read-only set of elements stored as a list of indexes in the snapshot.
+     */
+    private abstract class IndexSet extends AbstractSet<UUID> {
+
+        private int table;
+
+        private int from;
+
+        private int size;
+
+        /**
+         * Make a new set.
+         *
+         * @param table the offset of the UUIDs the indexes refer to
+         * @param from  the offset of the first index
+         * @param size  the number of indexes
+         */
+        IndexSet(int table, int from, int size) {
+            this.table = table;
+            this.from = from;
+            this.size = size;
+        }
+
+        @Override
+        public abstract boolean contains(Object o);
+
+        @Override
+        public Iterator<UUID> iterator() {
+            return new Iterator<UUID>() {
+                private int p = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return p < size;
+                }
+
+                @Override
+                public UUID next() {
+                    if (p >= size) {
+                        throw new NoSuchElementException();
+                    }
+                    return uuid(table, buf.getInt(from + 4 * p++));
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
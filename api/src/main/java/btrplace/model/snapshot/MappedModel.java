@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.model.snapshot;
+
+import btrplace.model.*;
+import btrplace.model.view.ShareableResource;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * A read-only {@link Model} that is read from a snapshot.
+ * The mapping is a {@link MappedMapping} while the attributes and the views
+ * are decoded the first time they are requested.
+ * <p/>
+ * The modifiers throw an {@link UnsupportedOperationException}.
+ * A modifiable copy that shares the snapshot is obtained using {@link #clone()}.
+ * The attributes and the views are decoded once and cached, so they are read-only too:
+ * their modifiers throw an {@link UnsupportedOperationException} and their
+ * {@code clone()} method provides a modifiable copy.
+ *
+ * @author Fabien Hermenier
+ * @see Snapshots#open(java.io.File)
+ */
+public class MappedModel implements Model {
+
+    private ByteBuffer buf;
+
+    private MappedMapping cfg;
+
+    private Attributes attrs;
+
+    /**
+     * The offset of each view, by identifier.
+     */
+    private Map<String, Integer> viewOffsets;
+
+    private Map<String, ModelView> views;
+
+    /**
+     * Make a new model.
+     *
+     * @param b the buffer containing the snapshot
+     */
+    MappedModel(ByteBuffer b) {
+        this.buf = b;
+        int[] counts = new int[5];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = b.getInt(16 + i * 4);
+        }
+        Layout l = new Layout(b.getInt(8), b.getInt(12), counts);
+        cfg = new MappedMapping(b, l);
+
+        //Only the headers of the views are read to locate them
+        int o = (int) b.getLong(Layout.HEADER_SIZE - 8);
+        int nb = b.getInt(o);
+        o += 4;
+        viewOffsets = new LinkedHashMap<String, Integer>(nb);
+        for (int i = 0; i < nb; i++) {
+            int start = o;
+            String rcId = readString(o);
+            o += 4 + b.getInt(o);
+            int nbValues = b.getInt(o + 4);
+            o += 8 + nbValues * (Layout.UUID_SIZE + 4);
+            viewOffsets.put(ShareableResource.VIEW_ID_BASE + rcId, start);
+        }
+        views = new HashMap<String, ModelView>(nb);
+    }
+
+    private String readString(int o) {
+        byte[] bytes = new byte[buf.getInt(o)];
+        ByteBuffer b = buf.duplicate();
+        b.position(o + 4);
+        b.get(bytes);
+        return new String(bytes, Snapshots.UTF8);
+    }
+
+    private UUID readUUID(int o) {
+        return new UUID(buf.getLong(o), buf.getLong(o + 8));
+    }
+
+    @Override
+    public synchronized ModelView getView(String id) {
+        ModelView v = views.get(id);
+        if (v == null) {
+            Integer o = viewOffsets.get(id);
+            if (o == null) {
+                return null;
+            }
+            v = readResource(o);
+            views.put(id, v);
+        }
+        return v;
+    }
+
+    private ShareableResource readResource(int o) {
+        String rcId = readString(o);
+        o += 4 + buf.getInt(o);
+        ReadOnlyShareableResource rc = new ReadOnlyShareableResource(rcId, buf.getInt(o));
+        int nb = buf.getInt(o + 4);
+        o += 8;
+        for (int i = 0; i < nb; i++) {
+            rc.set(readUUID(o), buf.getInt(o + Layout.UUID_SIZE));
+            o += Layout.UUID_SIZE + 4;
+        }
+        rc.seal();
+        return rc;
+    }
+
+    @Override
+    public Collection<ModelView> getViews() {
+        List<ModelView> l = new ArrayList<ModelView>(viewOffsets.size());
+        for (String id : viewOffsets.keySet()) {
+            l.add(getView(id));
+        }
+        return l;
+    }
+
+    @Override
+    public MappedMapping getMapping() {
+        return cfg;
+    }
+
+    @Override
+    public synchronized Attributes getAttributes() {
+        if (attrs == null) {
+            attrs = readAttributes((int) buf.getLong(Layout.HEADER_SIZE - 16));
+        }
+        return attrs;
+    }
+
+    private Attributes readAttributes(int o) {
+        ReadOnlyAttributes a = new ReadOnlyAttributes();
+        int nb = buf.getInt(o);
+        o += 4;
+        for (int i = 0; i < nb; i++) {
+            UUID u = readUUID(o);
+            int nbKeys = buf.getInt(o + Layout.UUID_SIZE);
+            o += Layout.UUID_SIZE + 4;
+            for (int j = 0; j < nbKeys; j++) {
+                String k = readString(o);
+                o += 4 + buf.getInt(o);
+                byte t = buf.get(o++);
+                switch (t) {
+                    case Layout.BOOLEAN_VALUE:
+                        a.put(u, k, buf.get(o++) != 0);
+                        break;
+                    case Layout.LONG_VALUE:
+                        a.put(u, k, buf.getLong(o));
+                        o += 8;
+                        break;
+                    case Layout.DOUBLE_VALUE:
+                        a.put(u, k, buf.getDouble(o));
+                        o += 8;
+                        break;
+                    default:
+                        a.put(u, k, readString(o));
+                        o += 4 + buf.getInt(o);
+                }
+            }
+        }
+        a.seal();
+        return a;
+    }
+
+    /**
+     * Get a modifiable copy of the model.
+     * The copy is a {@link CopyOnWriteModel} that shares the snapshot.
+     *
+     * @return a modifiable model
+     */
+    @Override
+    public Model clone() {
+        return new CopyOnWriteModel(this);
+    }
+
+    @Override
+    public boolean attach(ModelView v) {
+        throw new UnsupportedOperationException("Read-only model");
+    }
+
+    @Override
+    public boolean detach(ModelView v) {
+        throw new UnsupportedOperationException("Read-only model");
+    }
+
+    @Override
+    public void clearViews() {
+        throw new UnsupportedOperationException("Read-only model");
+    }
+
+    @Override
+    public void setAttributes(Attributes a) {
+        throw new UnsupportedOperationException("Read-only model");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Model)) {
+            return false;
+        }
+
+        Model that = (Model) o;
+
+        if (!cfg.equals(that.getMapping())) {
+            return false;
+        }
+
+        if (!getAttributes().equals(that.getAttributes())) {
+            return false;
+        }
+        Collection<ModelView> thatRrcs = that.getViews();
+        return viewOffsets.size() == thatRrcs.size() && getViews().containsAll(thatRrcs);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (ModelView v : getViews()) {
+            h += v.getIdentifier().hashCode() ^ v.hashCode();
+        }
+        int result = cfg.hashCode();
+        result = 31 * result + h;
+        result = 31 * result + getAttributes().hashCode();
+        return result;
+    }
+}
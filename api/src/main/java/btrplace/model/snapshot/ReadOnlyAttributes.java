@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.model.snapshot;
+
+import btrplace.model.Attributes;
+import btrplace.model.DefaultAttributes;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Attributes decoded from a snapshot that cannot be modified once sealed.
+ * The modifiers then throw an {@link UnsupportedOperationException}
+ * while {@link #clone()} provides a modifiable copy.
+ *
+ * @author Fabien Hermenier
+ */
+class ReadOnlyAttributes extends DefaultAttributes {
+
+    private boolean sealed = false;
+
+    /**
+     * Prevent any further modification.
+     */
+    void seal() {
+        sealed = true;
+    }
+
+    private void checkModifiable() {
+        if (sealed) {
+            throw new UnsupportedOperationException("Read-only attributes");
+        }
+    }
+
+    @Override
+    public boolean put(UUID e, String k, boolean b) {
+        checkModifiable();
+        return super.put(e, k, b);
+    }
+
+    @Override
+    public boolean put(UUID e, String k, String s) {
+        checkModifiable();
+        return super.put(e, k, s);
+    }
+
+    @Override
+    public boolean put(UUID e, String k, long l) {
+        checkModifiable();
+        return super.put(e, k, l);
+    }
+
+    @Override
+    public boolean put(UUID e, String k, double d) {
+        checkModifiable();
+        return super.put(e, k, d);
+    }
+
+    @Override
+    public boolean unset(UUID e, String k) {
+        checkModifiable();
+        return super.unset(e, k);
+    }
+
+    @Override
+    public boolean castAndPut(UUID u, String k, String v) {
+        checkModifiable();
+        return super.castAndPut(u, k, v);
+    }
+
+    @Override
+    public void clear() {
+        checkModifiable();
+        super.clear();
+    }
+
+    @Override
+    public Set<UUID> getElements() {
+        return Collections.unmodifiableSet(super.getElements());
+    }
+
+    @Override
+    public Set<String> getKeys(UUID u) {
+        return Collections.unmodifiableSet(super.getKeys(u));
+    }
+
+    /**
+     * {@inheritDoc}
+     * The copy is a modifiable {@link DefaultAttributes}.
+     */
+    @Override
+    public Attributes clone() {
+        return super.clone();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.model.snapshot;
+
+import btrplace.model.view.ShareableResource;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A resource decoded from a snapshot that cannot be modified once sealed.
+ * The modifiers then throw an {@link UnsupportedOperationException}
+ * while {@link #clone()} provides a modifiable copy.
+ *
+ * @author Fabien Hermenier
+ */
+class ReadOnlyShareableResource extends ShareableResource {
+
+    private boolean sealed = false;
+
+    /**
+     * Make a new resource.
+     *
+     * @param id      the resource identifier
+     * @param noValue the value to use to denote an undefined value
+     */
+    ReadOnlyShareableResource(String id, int noValue) {
+        super(id, noValue);
+    }
+
+    /**
+     * Prevent any further modification.
+     */
+    void seal() {
+        sealed = true;
+    }
+
+    private void checkModifiable() {
+        if (sealed) {
+            throw new UnsupportedOperationException("Read-only resource");
+        }
+    }
+
+    @Override
+    public ShareableResource set(UUID n, int val) {
+        checkModifiable();
+        return super.set(n, val);
+    }
+
+    @Override
+    public boolean unset(UUID n) {
+        checkModifiable();
+        return super.unset(n);
+    }
+
+    @Override
+    public Set<UUID> getDefined() {
+        return Collections.unmodifiableSet(super.getDefined());
+    }
+
+    /**
+     * {@inheritDoc}
+     * The copy is a modifiable {@link ShareableResource}.
+     */
+    @Override
+    public ShareableResource clone() {
+        return super.clone();
+    }
+}
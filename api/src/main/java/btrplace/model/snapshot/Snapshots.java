@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.model.snapshot;
+
+import btrplace.model.Attributes;
+import btrplace.model.Mapping;
+import btrplace.model.Model;
+import btrplace.model.ModelView;
+import btrplace.model.view.ShareableResource;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Store models into snapshot files and open them as memory-mapped models.
+ * <p/>
+ * A snapshot stores the mapping, the attributes and the {@link ShareableResource} views
+ * of a model. Once opened, the mapping is read directly from the file using
+ * binary searches over the sorted elements so the cost of opening a snapshot does not
+ * depend on its size. As the file is mapped read-only, several JVMs opening the same
+ * snapshot share the same pages.
+ *
+ * @author Fabien Hermenier
+ * @see MappedModel
+ */
+public final class Snapshots {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Compare UUIDs according to their signed bits, like the binary searches.
+     */
+    static final Comparator<UUID> UUID_ORDER = new Comparator<UUID>() {
+        @Override
+        public int compare(UUID u1, UUID u2) {
+            int c = compareLongs(u1.getMostSignificantBits(), u2.getMostSignificantBits());
+            return c != 0 ? c : compareLongs(u1.getLeastSignificantBits(), u2.getLeastSignificantBits());
+        }
+    };
+
+    /**
+     * Utility class. No instantiation.
+     */
+    private Snapshots() {
+    }
+
+    static int compareLongs(long a, long b) {
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+
+    /**
+     * Write a snapshot of a model.
+     *
+     * @param mo the model to store. Only the {@link ShareableResource} views are supported
+     * @param f  the file to write
+     * @throws IOException              if an error occurred while writing the file
+     * @throws IllegalArgumentException if the model has a view that is not supported
+     */
+    public static void write(Model mo, File f) throws IOException {
+        for (ModelView v : mo.getViews()) {
+            if (v.getClass() != ShareableResource.class && v.getClass() != ReadOnlyShareableResource.class) {
+                throw new IllegalArgumentException("Unsupported view '" + v.getIdentifier() + "'");
+            }
+        }
+        Mapping map = mo.getMapping();
+
+        UUID[] nodes = sorted(map.getAllNodes());
+        UUID[] vms = sorted(map.getAllVMs());
+        Map<UUID, Integer> nodeIdx = indexes(nodes);
+        Map<UUID, Integer> vmIdx = indexes(vms);
+        int[] counts = {map.getOnlineNodes().size(),
+                map.getOfflineNodes().size(),
+                map.getRunningVMs().size(),
+                map.getSleepingVMs().size(),
+                map.getReadyVMs().size()};
+        Layout l = new Layout(nodes.length, vms.length, counts);
+
+        //The variable-size sections are serialized first to state their offset
+        ByteArrayOutputStream attrs = new ByteArrayOutputStream();
+        writeAttributes(mo.getAttributes(), new DataOutputStream(attrs));
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)));
+        try {
+            out.writeInt(Layout.MAGIC);
+            out.writeInt(Layout.VERSION);
+            out.writeInt(nodes.length);
+            out.writeInt(vms.length);
+            for (int c : counts) {
+                out.writeInt(c);
+            }
+            out.writeLong(l.end);
+            out.writeLong(l.end + attrs.size());
+
+            for (UUID n : nodes) {
+                writeUUID(out, n);
+            }
+            for (UUID n : nodes) {
+                out.writeByte(map.getOnlineNodes().contains(n) ? Layout.ONLINE : Layout.OFFLINE);
+            }
+            int o = 0;
+            for (UUID n : nodes) {
+                int nbRunnings = map.getRunningVMs(n).size();
+                int nbSleepings = map.getSleepingVMs(n).size();
+                out.writeInt(o);
+                out.writeInt(nbRunnings);
+                out.writeInt(o + nbRunnings);
+                out.writeInt(nbSleepings);
+                o += nbRunnings + nbSleepings;
+            }
+
+            for (UUID vm : vms) {
+                writeUUID(out, vm);
+            }
+            for (UUID vm : vms) {
+                if (map.getRunningVMs().contains(vm)) {
+                    out.writeByte(Layout.RUNNING);
+                } else if (map.getSleepingVMs().contains(vm)) {
+                    out.writeByte(Layout.SLEEPING);
+                } else {
+                    out.writeByte(Layout.READY);
+                }
+            }
+            for (UUID vm : vms) {
+                UUID host = map.getVMLocation(vm);
+                out.writeInt(host == null ? Layout.NO_HOST : nodeIdx.get(host));
+            }
+            for (UUID n : nodes) {
+                writeIndexes(out, map.getRunningVMs(n), vmIdx);
+                writeIndexes(out, map.getSleepingVMs(n), vmIdx);
+            }
+
+            writeIndexes(out, map.getOnlineNodes(), nodeIdx);
+            writeIndexes(out, map.getOfflineNodes(), nodeIdx);
+            writeIndexes(out, map.getRunningVMs(), vmIdx);
+            writeIndexes(out, map.getSleepingVMs(), vmIdx);
+            writeIndexes(out, map.getReadyVMs(), vmIdx);
+
+            attrs.writeTo(out);
+
+            out.writeInt(mo.getViews().size());
+            for (ModelView v : mo.getViews()) {
+                ShareableResource rc = (ShareableResource) v;
+                writeString(out, rc.getResourceIdentifier());
+                out.writeInt(rc.getDefaultValue());
+                out.writeInt(rc.getDefined().size());
+                for (UUID u : rc.getDefined()) {
+                    writeUUID(out, u);
+                    out.writeInt(rc.get(u));
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Open a snapshot.
+     * The file is mapped in memory in read-only mode and must not be modified
+     * while the model is in use.
+     *
+     * @param f the snapshot file
+     * @return the model stored in the snapshot
+     * @throws IOException if an error occurred while reading the file or if it is not a snapshot
+     */
+    public static MappedModel open(File f) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(f, "r");
+        try {
+            FileChannel ch = raf.getChannel();
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.capacity() < Layout.HEADER_SIZE || buf.getInt(0) != Layout.MAGIC) {
+                throw new IOException("'" + f + "' is not a snapshot");
+            }
+            if (buf.getInt(4) != Layout.VERSION) {
+                throw new IOException("Unsupported snapshot version '" + buf.getInt(4) + "'");
+            }
+            return new MappedModel(buf);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static UUID[] sorted(Set<UUID> s) {
+        UUID[] us = s.toArray(new UUID[s.size()]);
+        Arrays.sort(us, UUID_ORDER);
+        return us;
+    }
+
+    private static Map<UUID, Integer> indexes(UUID[] us) {
+        Map<UUID, Integer> m = new HashMap<UUID, Integer>(us.length * 2);
+        for (int i = 0; i < us.length; i++) {
+            m.put(us[i], i);
+        }
+        return m;
+    }
+
+    private static void writeIndexes(DataOutputStream out, Set<UUID> s, Map<UUID, Integer> idx) throws IOException {
+        for (UUID u : s) {
+            out.writeInt(idx.get(u));
+        }
+    }
+
+    private static void writeUUID(DataOutputStream out, UUID u) throws IOException {
+        out.writeLong(u.getMostSignificantBits());
+        out.writeLong(u.getLeastSignificantBits());
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(UTF8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static void writeAttributes(Attributes attrs, DataOutputStream out) throws IOException {
+        Set<UUID> elems = attrs.getElements();
+        out.writeInt(elems.size());
+        for (UUID u : elems) {
+            writeUUID(out, u);
+            Set<String> keys = attrs.getKeys(u);
+            out.writeInt(keys.size());
+            for (String k : keys) {
+                writeString(out, k);
+                Object v = attrs.get(u, k);
+                if (v instanceof Boolean) {
+                    out.writeByte(Layout.BOOLEAN_VALUE);
+                    out.writeBoolean((Boolean) v);
+                } else if (v instanceof Double || v instanceof Float) {
+                    out.writeByte(Layout.DOUBLE_VALUE);
+                    out.writeDouble(((Number) v).doubleValue());
+                } else if (v instanceof Number) {
+                    out.writeByte(Layout.LONG_VALUE);
+                    out.writeLong(((Number) v).longValue());
+                } else {
+                    out.writeByte(Layout.STRING_VALUE);
+                    writeString(out, v.toString());
+                }
+            }
+        }
+    }
+}
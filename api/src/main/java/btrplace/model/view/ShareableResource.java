@@ -240,7 +240,7 @@ public class ShareableResource implements ModelView, Cloneable, Comparator<UUID>
         if (this == o) {
             return true;
         }
-        if (o == null || getClass() != o.getClass()) {
+        if (!(o instanceof ShareableResource)) {
             return false;
         }
 
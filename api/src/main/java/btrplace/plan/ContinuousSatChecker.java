@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.plan;
+
+import btrplace.model.Mapping;
+import btrplace.model.Model;
+import btrplace.model.SatConstraint;
+import btrplace.model.constraint.Lonely;
+import btrplace.model.constraint.Quarantine;
+import btrplace.model.constraint.Root;
+import btrplace.model.constraint.SequentialVMTransitions;
+
+import java.util.*;
+
+/**
+ * A {@link ReplayListener} that checks the continuous constraints
+ * against every intermediary model of a plan, in a single replay.
+ * <p/>
+ * The constraints are first checked against the origin model of the plan.
+ * They are then indexed by their involved elements. Once the actions starting at a
+ * same moment are applied, only the constraints involving a node or a VM they affected,
+ * or a VM hosted on a node they affected, are evaluated using {@link SatConstraint#isSatisfied(btrplace.model.Model)}.
+ * This way, a constraint that only names VMs, such as {@link Lonely}, is re-checked
+ * when a VM it does not name arrives on a node hosting one of its VMs.
+ * The discrete constraints are ignored.
+ * <p/>
+ * {@link Root}, {@link Quarantine} and {@link SequentialVMTransitions} restrict
+ * the transitions rather than the states, so they cannot be evaluated on a model.
+ * They are evaluated once, before the replay, using
+ * {@link SatConstraint#isSatisfied(ReconfigurationPlan)} and their violation
+ * is reported at moment {@code 0}.
+ *
+ * @author Fabien Hermenier
+ */
+public class ContinuousSatChecker implements ReplayListener {
+
+    private List<SatConstraint> continuous;
+
+    /**
+     * The continuous constraints that are evaluated on the whole plan.
+     */
+    private List<SatConstraint> onPlan;
+
+    private Map<UUID, List<SatConstraint>> byElement;
+
+    private SatConstraint violated;
+
+    private int violationMoment;
+
+    /**
+     * Make a new checker.
+     *
+     * @param cstrs the constraints to check. Only the continuous ones are considered
+     */
+    public ContinuousSatChecker(Collection<SatConstraint> cstrs) {
+        continuous = new ArrayList<SatConstraint>();
+        onPlan = new ArrayList<SatConstraint>();
+        byElement = new HashMap<UUID, List<SatConstraint>>();
+        for (SatConstraint c : cstrs) {
+            if (!c.isContinuous()) {
+                continue;
+            }
+            if (isTransitionBased(c)) {
+                onPlan.add(c);
+            } else {
+                continuous.add(c);
+                index(c, c.getInvolvedVMs());
+                index(c, c.getInvolvedNodes());
+            }
+        }
+    }
+
+    /**
+     * Check if a constraint restricts the transitions rather than the states.
+     *
+     * @param c the constraint
+     * @return {@code true} iff the constraint must be evaluated on a plan
+     */
+    private static boolean isTransitionBased(SatConstraint c) {
+        return c instanceof Root || c instanceof Quarantine || c instanceof SequentialVMTransitions;
+    }
+
+    private void index(SatConstraint c, Collection<UUID> elems) {
+        for (UUID u : elems) {
+            List<SatConstraint> l = byElement.get(u);
+            if (l == null) {
+                l = new ArrayList<SatConstraint>();
+                byElement.put(u, l);
+            }
+            l.add(c);
+        }
+    }
+
+    /**
+     * Check a plan.
+     *
+     * @param p the plan to check
+     * @return {@code true} iff the plan is applyable and the origin model and every intermediary model
+     *         satisfy the continuous constraints
+     */
+    public boolean check(ReconfigurationPlan p) {
+        violated = null;
+        violationMoment = -1;
+        for (SatConstraint c : continuous) {
+            if (c.isSatisfied(p.getOrigin()) != SatConstraint.Sat.SATISFIED) {
+                violated = c;
+                violationMoment = 0;
+                return false;
+            }
+        }
+        for (SatConstraint c : onPlan) {
+            if (c.isSatisfied(p) != SatConstraint.Sat.SATISFIED) {
+                violated = c;
+                violationMoment = 0;
+                return false;
+            }
+        }
+        ReconfigurationPlanReplayer r = new ReconfigurationPlanReplayer(p);
+        r.addListener(this);
+        return r.replay();
+    }
+
+    @Override
+    public boolean onTimePoint(Model mo, int moment, List<Action> actions, Set<UUID> nodes, Set<UUID> vms) {
+        Set<SatConstraint> toCheck = Collections.newSetFromMap(new IdentityHashMap<SatConstraint, Boolean>());
+        collect(nodes, toCheck);
+        collect(vms, toCheck);
+        //The constraints about the VMs hosted on the affected nodes
+        Mapping map = mo.getMapping();
+        for (UUID n : nodes) {
+            collect(map.getRunningVMs(n), toCheck);
+            collect(map.getSleepingVMs(n), toCheck);
+        }
+        for (SatConstraint c : toCheck) {
+            if (c.isSatisfied(mo) != SatConstraint.Sat.SATISFIED) {
+                violated = c;
+                violationMoment = moment;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void collect(Collection<UUID> elems, Set<SatConstraint> to) {
+        for (UUID u : elems) {
+            List<SatConstraint> l = byElement.get(u);
+            if (l != null) {
+                to.addAll(l);
+            }
+        }
+    }
+
+    /**
+     * Get the constraint that was violated during the last check.
+     *
+     * @return the constraint, {@code null} if no constraint was violated
+     */
+    public SatConstraint getViolatedConstraint() {
+        return violated;
+    }
+
+    /**
+     * Get the moment the violation occurred during the last check.
+     * This is the start moment of the actions that led to the violation.
+     *
+     * @return a positive moment, {@code -1} if no constraint was violated
+     */
+    public int getViolationMoment() {
+        return violationMoment;
+    }
+}
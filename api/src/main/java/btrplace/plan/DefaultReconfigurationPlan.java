@@ -18,15 +18,32 @@
 
 package btrplace.plan;
 
+import btrplace.model.CopyOnWriteModel;
 import btrplace.model.Model;
+import btrplace.plan.event.*;
 
-import java.util.Comparator;
-import java.util.Iterator;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.*;
 
 /**
  * Default implementation for {@link ReconfigurationPlan}.
+ * <p/>
+ * The actions are stored in buckets indexed by their start moment, so adding an action
+ * is performed in logarithmic time in the number of distinct start moments.
+ * Inside a bucket, the actions are ordered by their end moment,
+ * then by their insertion order. Buckets are sorted lazily, when the actions are browsed.
+ * Only the start moments that are used have a bucket, so the plans can be expressed
+ * in any time unit.
+ * <p/>
+ * The actions are also indexed by the VMs and the nodes they involve, and the duration of the
+ * plan is maintained while the actions are added.
+ * <p/>
+ * The resulting model and the applyability of the plan are computed
+ * once and cached until a new action is added. {@link #getResult()} then
+ * provides a copy-on-write copy of the cached model so the cache
+ * cannot be altered by the caller.
+ * The cached model is computed over a snapshot of the origin model taken
+ * the first time it is needed. The origin model must then not be modified
+ * once the plan is created, as the changes would be ignored.
  *
  * @author Fabien Hermenier
  */
@@ -34,31 +51,58 @@ public class DefaultReconfigurationPlan implements ReconfigurationPlan {
 
     private Model src;
 
-    private Set<Action> actions;
+    /**
+     * The actions, grouped by start moment.
+     */
+    private TreeMap<Integer, List<Action>> buckets;
+
+    /**
+     * The start moments of the buckets that are not sorted by end moment.
+     */
+    private Set<Integer> unsorted;
+
+    private Set<Action> index;
+
+    private Map<UUID, List<Action>> byElement;
+
+    private int duration;
+
+    private Set<Action> view;
+
+    /**
+     * The cached dependency graph. {@code null} if it must be computed.
+     */
+    private DependencyGraph graph;
+
+    /**
+     * The snapshot of the origin model the actions are applied on.
+     * {@code null} until the first replay.
+     */
+    private Model snapshot;
+
+    /**
+     * The cached resulting model. {@code null} if the plan is not applyable.
+     */
+    private CopyOnWriteModel result;
+
+    private boolean applyable;
+
+    /**
+     * {@code true} iff {@link #result} and {@link #applyable} are consistent with the actions.
+     */
+    private boolean upToDate;
 
     /**
      * A comparator to sort the actions in the increasing order of their start moment.
-     * If they start at the same moment, the action that ends first in considered
+     * If they start at the same moment, the action that ends first in considered.
+     * The sort being stable, the actions that start and end at the same moment
+     * stay in their insertion order.
      */
     private static Comparator<Action> startFirstComparator = new Comparator<Action>() {
         @Override
         public int compare(Action a1, Action a2) {
             int d = a1.getStart() - a2.getStart();
-            if (d == 0) {
-                if (a1.equals(a2)) {
-                    return 0;
-                } else {
-                    d = a1.getEnd() - a2.getEnd();
-                    //At this level we don't care but we must not return 0 because the action will
-                    //not be added
-                    if (d == 0) {
-                        return -1;
-                    }
-                    return d;
-                }
-            } else {
-                return d;
-            }
+            return d == 0 ? a1.getEnd() - a2.getEnd() : d;
         }
     };
 
@@ -69,7 +113,12 @@ public class DefaultReconfigurationPlan implements ReconfigurationPlan {
      */
     public DefaultReconfigurationPlan(Model src) {
         this.src = src;
-        this.actions = new TreeSet<Action>(startFirstComparator);
+        this.buckets = new TreeMap<Integer, List<Action>>();
+        this.unsorted = new HashSet<Integer>();
+        this.index = new HashSet<Action>();
+        this.byElement = new HashMap<UUID, List<Action>>();
+        this.view = new ActionsView();
+        this.upToDate = false;
     }
 
     @Override
@@ -78,65 +127,180 @@ public class DefaultReconfigurationPlan implements ReconfigurationPlan {
     }
 
     @Override
-    public boolean add(Action a) {
-        return this.actions.add(a);
+    public synchronized boolean add(Action a) {
+        if (!index.add(a)) {
+            return false;
+        }
+        List<Action> b = bucket(a.getStart());
+        if (!b.isEmpty() && b.get(b.size() - 1).getEnd() > a.getEnd()) {
+            unsorted.add(a.getStart());
+        }
+        b.add(a);
+        for (UUID u : getInvolvedElements(a)) {
+            List<Action> l = byElement.get(u);
+            if (l == null) {
+                l = new ArrayList<Action>(2);
+                byElement.put(u, l);
+            }
+            l.add(a);
+        }
+        if (a.getEnd() > duration) {
+            duration = a.getEnd();
+        }
+        upToDate = false;
+        result = null;
+        graph = null;
+        return true;
+    }
+
+    /**
+     * Get the bucket for a given start moment, create it if needed.
+     *
+     * @param st the start moment
+     * @return the bucket
+     */
+    private List<Action> bucket(int st) {
+        List<Action> b = buckets.get(st);
+        if (b == null) {
+            b = new ArrayList<Action>(4);
+            buckets.put(st, b);
+        }
+        return b;
+    }
+
+    /**
+     * Sort the buckets that are not sorted.
+     */
+    private synchronized void sortBuckets() {
+        for (Integer st : unsorted) {
+            Collections.sort(buckets.get(st), startFirstComparator);
+        }
+        unsorted.clear();
     }
 
     @Override
     public int getSize() {
-        return actions.size();
+        return index.size();
     }
 
     @Override
     public int getDuration() {
-        int m = 0;
-        for (Action a : actions) {
-            if (a.getEnd() > m) {
-                m = a.getEnd();
-            }
-        }
-        return m;
+        return duration;
     }
 
     @Override
     public Set<Action> getActions() {
-        return actions;
+        return view;
+    }
+
+    @Override
+    public synchronized List<Action> getActions(UUID e) {
+        List<Action> l = byElement.get(e);
+        if (l == null) {
+            return Collections.emptyList();
+        }
+        List<Action> res = new ArrayList<Action>(l);
+        Collections.sort(res, startFirstComparator);
+        return res;
+    }
+
+    /**
+     * Get the VMs and the nodes involved in an action.
+     *
+     * @param a the action
+     * @return the element identifiers
+     */
+    static Set<UUID> getInvolvedElements(Action a) {
+        Set<UUID> s = new HashSet<UUID>(4);
+        if (a instanceof VMEvent) {
+            s.add(((VMEvent) a).getVM());
+        }
+        if (a instanceof NodeEvent) {
+            s.add(((NodeEvent) a).getNode());
+        }
+        if (a instanceof RunningVMPlacement) {
+            s.add(((RunningVMPlacement) a).getDestinationNode());
+        }
+        if (a instanceof MigrateVM) {
+            s.add(((MigrateVM) a).getSourceNode());
+        } else if (a instanceof ResumeVM) {
+            s.add(((ResumeVM) a).getSourceNode());
+        } else if (a instanceof SuspendVM) {
+            s.add(((SuspendVM) a).getSourceNode());
+            s.add(((SuspendVM) a).getDestinationNode());
+        } else if (a instanceof ShutdownVM) {
+            s.add(((ShutdownVM) a).getNode());
+        } else if (a instanceof KillVM) {
+            s.add(((KillVM) a).getNode());
+        } else if (a instanceof Allocate) {
+            s.add(((Allocate) a).getHost());
+        }
+        s.remove(null);
+        return s;
     }
 
     @Override
     public Iterator<Action> iterator() {
-        return actions.iterator();
+        return getActions().iterator();
     }
 
     @Override
-    public Model getResult() {
-        Model res = src.clone();
-        for (Action a : actions) {
+    public synchronized DependencyGraph getDependencyGraph() {
+        if (graph == null) {
+            graph = new DependencyGraph(this);
+        }
+        return graph;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The returned model is a {@link CopyOnWriteModel} layered over a
+     * private snapshot of the origin model, not a {@link btrplace.model.DefaultModel}.
+     * Each call returns a new copy that can be modified freely.
+     */
+    @Override
+    public synchronized Model getResult() {
+        replay();
+        return result == null ? null : result.clone();
+    }
+
+    /**
+     * Apply the actions on the origin model, if not already done.
+     * The callers hold the lock of the plan so the result can be queried concurrently.
+     */
+    private void replay() {
+        if (upToDate) {
+            return;
+        }
+        if (snapshot == null) {
+            snapshot = src.clone();
+        }
+        CopyOnWriteModel res = new CopyOnWriteModel(snapshot);
+        applyable = true;
+        for (Action a : view) {
             if (!a.apply(res)) {
-                return null;
+                applyable = false;
+                break;
             }
         }
-        return res;
+        result = applyable ? res : null;
+        upToDate = true;
     }
 
     @Override
     public String toString() {
         StringBuilder b = new StringBuilder();
-        for (Action a : actions) {
+        for (Action a : view) {
             b.append(a.getStart()).append(':').append(a.getEnd()).append(' ').append(a.toString()).append('\n');
         }
         return b.toString();
     }
 
     @Override
-    public boolean isApplyable() {
-        Model m = src.clone();
-        for (Action a : actions) {
-            if (!a.apply(m)) {
-                return false;
-            }
-        }
-        return true;
+    public synchronized boolean isApplyable() {
+        replay();
+        return applyable;
     }
 
     @Override
@@ -150,13 +314,61 @@ public class DefaultReconfigurationPlan implements ReconfigurationPlan {
 
         ReconfigurationPlan op = (ReconfigurationPlan) o;
 
-        return (actions.equals(op.getActions()) && src.equals(op.getOrigin()));
+        return (view.equals(op.getActions()) && src.equals(op.getOrigin()));
     }
 
     @Override
     public int hashCode() {
         int result = src.hashCode();
-        result = 31 * result + actions.hashCode();
+        result = 31 * result + view.hashCode();
         return result;
     }
+
+    /**
+     * A read-only view on the actions, in the plan ordering.
+     */
+    private class ActionsView extends AbstractSet<Action> {
+
+        @Override
+        public Iterator<Action> iterator() {
+            sortBuckets();
+            return new Iterator<Action>() {
+
+                private Iterator<List<Action>> bucket = buckets.values().iterator();
+
+                private Iterator<Action> pos = Collections.<Action>emptyList().iterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!pos.hasNext() && bucket.hasNext()) {
+                        pos = bucket.next().iterator();
+                    }
+                    return pos.hasNext();
+                }
+
+                @Override
+                public Action next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return pos.next();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return index.contains(o);
+        }
+
+        @Override
+        public int size() {
+            return index.size();
+        }
+    }
 }
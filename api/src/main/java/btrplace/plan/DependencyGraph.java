@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.plan;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The dependencies between the actions of a reconfiguration plan.
+ * <p/>
+ * An action depends on another action if both involve a common VM or node
+ * (this includes the hosts of the VMs and then the resources that are shared on them),
+ * if the other action precedes it in the plan ordering and if the other action ends
+ * before the action starts. Only the dependencies that cannot be deduced by
+ * transitivity through a common element are retained.
+ * As the dependencies follow the plan ordering, browsing the actions
+ * in the plan ordering is a topological iteration.
+ * <p/>
+ * The graph is immutable. To dispatch the actions, an executor
+ * asks for a {@link Progress} that tracks the actions that are ready to be executed.
+ *
+ * @author Fabien Hermenier
+ */
+public class DependencyGraph implements Iterable<Action> {
+
+    private Action[] actions;
+
+    private Map<Action, Integer> index;
+
+    private int[][] preds;
+
+    private int[][] succs;
+
+    /**
+     * Make the graph for a plan.
+     *
+     * @param plan the plan
+     */
+    public DependencyGraph(ReconfigurationPlan plan) {
+        actions = plan.getActions().toArray(new Action[plan.getSize()]);
+        index = new HashMap<Action, Integer>(actions.length * 2);
+        for (int i = 0; i < actions.length; i++) {
+            index.put(actions[i], i);
+        }
+
+        //The dependencies are computed element per element
+        List<Set<Integer>> deps = new ArrayList<Set<Integer>>(actions.length);
+        Set<UUID> elements = new HashSet<UUID>();
+        for (Action a : actions) {
+            deps.add(new HashSet<Integer>());
+            elements.addAll(DefaultReconfigurationPlan.getInvolvedElements(a));
+        }
+        for (UUID e : elements) {
+            addDependencies(plan.getActions(e), deps);
+        }
+
+        preds = new int[actions.length][];
+        int[] nbSuccs = new int[actions.length];
+        for (int i = 0; i < actions.length; i++) {
+            preds[i] = toArray(deps.get(i));
+            for (int p : preds[i]) {
+                nbSuccs[p]++;
+            }
+        }
+        succs = new int[actions.length][];
+        for (int i = 0; i < actions.length; i++) {
+            succs[i] = new int[nbSuccs[i]];
+            nbSuccs[i] = 0;
+        }
+        for (int i = 0; i < actions.length; i++) {
+            for (int p : preds[i]) {
+                succs[p][nbSuccs[p]++] = i;
+            }
+        }
+    }
+
+    /**
+     * Compute the dependencies among the actions of a single element.
+     * For an action {@code a}, let {@code c} be the preceding action that ends before
+     * {@code a} starts with the latest start moment. Any preceding action that ends before {@code c} starts
+     * is a dependency of {@code c}, so it is a dependency of {@code a} by transitivity.
+     *
+     * @param l    the actions of the element, in the plan ordering
+     * @param deps the dependencies to complete
+     */
+    private void addDependencies(List<Action> l, List<Set<Integer>> deps) {
+        int maxDuration = 0;
+        for (Action a : l) {
+            maxDuration = Math.max(maxDuration, a.getEnd() - a.getStart());
+        }
+        for (int k = 1; k < l.size(); k++) {
+            Action a = l.get(k);
+            Set<Integer> ds = deps.get(index.get(a));
+            Action c = null;
+            for (int j = k - 1; j >= 0; j--) {
+                Action b = l.get(j);
+                if (c != null && b.getStart() + maxDuration <= c.getStart()) {
+                    //The previous actions end before c starts
+                    break;
+                }
+                if (b.getEnd() <= a.getStart()) {
+                    if (c == null) {
+                        //The first candidate has the latest start moment
+                        c = b;
+                        ds.add(index.get(b));
+                    } else if (b.getEnd() > c.getStart()) {
+                        ds.add(index.get(b));
+                    }
+                }
+            }
+        }
+    }
+
+    private static int[] toArray(Set<Integer> s) {
+        int[] res = new int[s.size()];
+        int i = 0;
+        for (int x : s) {
+            res[i++] = x;
+        }
+        Arrays.sort(res);
+        return res;
+    }
+
+    private int indexOf(Action a) {
+        Integer i = index.get(a);
+        if (i == null) {
+            throw new IllegalArgumentException("Action '" + a + "' is not a part of the plan");
+        }
+        return i;
+    }
+
+    /**
+     * Get the actions that must be terminated before executing a given action.
+     *
+     * @param a the action
+     * @return the actions, in the plan ordering. May be empty
+     */
+    public List<Action> getDependencies(Action a) {
+        return toActions(preds[indexOf(a)]);
+    }
+
+    /**
+     * Get the actions that depend on a given action.
+     *
+     * @param a the action
+     * @return the actions, in the plan ordering. May be empty
+     */
+    public List<Action> getDependents(Action a) {
+        return toActions(succs[indexOf(a)]);
+    }
+
+    private List<Action> toActions(int[] idx) {
+        List<Action> l = new ArrayList<Action>(idx.length);
+        for (int i : idx) {
+            l.add(actions[i]);
+        }
+        return l;
+    }
+
+    /**
+     * Get the number of actions in the graph.
+     *
+     * @return a positive integer
+     */
+    public int size() {
+        return actions.length;
+    }
+
+    /**
+     * Browse the actions in a topological order, which is the plan ordering.
+     *
+     * @return an iterator
+     */
+    @Override
+    public Iterator<Action> iterator() {
+        return Collections.unmodifiableList(Arrays.asList(actions)).iterator();
+    }
+
+    /**
+     * Start tracking the execution of the actions.
+     *
+     * @return a new tracker, where no action is terminated
+     */
+    public Progress newProgress() {
+        return new Progress();
+    }
+
+    /**
+     * Track the actions that are ready to be executed while the actions
+     * are terminated. Terminating an action updates its dependents in constant time
+     * each, so an executor can dispatch the ready actions in parallel.
+     * The tracker is thread-safe.
+     */
+    public class Progress {
+
+        /**
+         * For each action, the number of dependencies that are not terminated.
+         * {@code -1} once the action is terminated.
+         */
+        private AtomicIntegerArray remaining;
+
+        private AtomicInteger nbTerminated;
+
+        private Progress() {
+            remaining = new AtomicIntegerArray(actions.length);
+            nbTerminated = new AtomicInteger(0);
+            for (int i = 0; i < actions.length; i++) {
+                remaining.set(i, preds[i].length);
+            }
+        }
+
+        /**
+         * Get the actions that are ready at the beginning of the execution.
+         *
+         * @return the actions without dependencies, in the plan ordering
+         */
+        public List<Action> getInitialActions() {
+            List<Action> l = new ArrayList<Action>();
+            for (int i = 0; i < actions.length; i++) {
+                if (preds[i].length == 0) {
+                    l.add(actions[i]);
+                }
+            }
+            return l;
+        }
+
+        /**
+         * Check if an action can be executed.
+         *
+         * @param a the action
+         * @return {@code true} iff all its dependencies are terminated and it is not terminated
+         */
+        public boolean isReady(Action a) {
+            return remaining.get(indexOf(a)) == 0;
+        }
+
+        /**
+         * Indicate an action is terminated.
+         *
+         * @param a the terminated action
+         * @return the actions that became ready, in the plan ordering. May be empty
+         * @throws IllegalArgumentException if the action was not ready
+         */
+        public List<Action> terminate(Action a) {
+            int i = indexOf(a);
+            if (!remaining.compareAndSet(i, 0, -1)) {
+                throw new IllegalArgumentException("Action '" + a + "' is not ready or already terminated");
+            }
+            nbTerminated.incrementAndGet();
+            List<Action> ready = new ArrayList<Action>(2);
+            for (int s : succs[i]) {
+                if (remaining.decrementAndGet(s) == 0) {
+                    ready.add(actions[s]);
+                }
+            }
+            return ready;
+        }
+
+        /**
+         * Check if all the actions are terminated.
+         *
+         * @return {@code true} iff all the actions are terminated
+         */
+        public boolean isDone() {
+            return nbTerminated.get() == actions.length;
+        }
+    }
+}
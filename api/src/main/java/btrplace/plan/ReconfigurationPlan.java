@@ -20,7 +20,9 @@ package btrplace.plan;
 
 import btrplace.model.Model;
 
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * A reconfiguration plan is a set of actions to execute
@@ -62,13 +64,36 @@ public interface ReconfigurationPlan extends Iterable<Action> {
 
     /**
      * Get all the actions to perform.
+     * Actions must be added using {@link #add(Action)}.
      *
      * @return a list of actions. May be empty
      */
     Set<Action> getActions();
 
+    /**
+     * Get the actions that involve a given VM or a given node.
+     * A VM action involves the VM, the node hosting it before the action
+     * and the node hosting it after the action.
+     *
+     * @param e the element identifier
+     * @return the actions in the plan ordering. May be empty
+     */
+    List<Action> getActions(UUID e);
+
+    /**
+     * Get the dependencies between the actions.
+     *
+     * @return the dependency graph of the current actions
+     */
+    DependencyGraph getDependencyGraph();
+
     /**
      * Get the resulting model once all the actions are executed.
+     * The resulting model may share the elements that are not modified
+     * by the plan with the origin model. The origin model must then not be modified
+     * while the resulting model is in use.
+     * The implementation of the returned model is not specified: it may not
+     * be the implementation of the origin model.
      *
      * @return the resulting model or {@code null} if the plan can be applied
      */
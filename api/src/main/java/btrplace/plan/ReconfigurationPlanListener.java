@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.plan;
+
+import btrplace.model.Model;
+
+/**
+ * A listener to be notified of the actions of a reconfiguration plan
+ * as soon as they are available, so their execution or their
+ * serialisation can start before the whole plan is built.
+ * <p/>
+ * The actions are notified in the increasing order of their start moment.
+ * A producer checks each action before notifying it, so a notified action is final
+ * and can be executed right away. {@link #endPlan()} is only called once the whole
+ * plan passed its checks: a producer that detects an inconsistency after some actions
+ * were notified stops the notifications without calling it.
+ * A plan read from a stream is relayed as it was checked when written.
+ *
+ * @author Fabien Hermenier
+ */
+public interface ReconfigurationPlanListener {
+
+    /**
+     * Notify that the actions of a plan are going to be notified.
+     *
+     * @param origin the model the plan starts from
+     */
+    void beginPlan(Model origin);
+
+    /**
+     * Notify a new action of the plan.
+     *
+     * @param a the action
+     */
+    void onAction(Action a);
+
+    /**
+     * Notify that all the actions of the plan have been notified.
+     */
+    void endPlan();
+}
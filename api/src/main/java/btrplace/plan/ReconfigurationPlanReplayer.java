@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.plan;
+
+import btrplace.model.CopyOnWriteModel;
+import btrplace.model.Mapping;
+import btrplace.model.Model;
+
+import java.util.*;
+
+/**
+ * Replay a reconfiguration plan incrementally.
+ * <p/>
+ * The actions are applied on a single copy-on-write copy of the origin model
+ * in the plan ordering, so in the increasing order of their start moment,
+ * as with {@link ReconfigurationPlan#isApplyable()}. Once all the actions starting
+ * at a same moment are applied, the {@link ReplayListener}s are notified with the
+ * nodes and the VMs these actions affected, so they can focus on the changes
+ * instead of re-evaluating the whole model.
+ *
+ * @author Fabien Hermenier
+ */
+public class ReconfigurationPlanReplayer {
+
+    private ReconfigurationPlan plan;
+
+    private List<ReplayListener> listeners;
+
+    private Model mo;
+
+    private Action failure;
+
+    /**
+     * Make a new replayer.
+     *
+     * @param p the plan to replay
+     */
+    public ReconfigurationPlanReplayer(ReconfigurationPlan p) {
+        this.plan = p;
+        this.listeners = new ArrayList<ReplayListener>();
+    }
+
+    /**
+     * Add a listener.
+     *
+     * @param l the listener to add
+     */
+    public void addListener(ReplayListener l) {
+        listeners.add(l);
+    }
+
+    /**
+     * Remove a listener.
+     *
+     * @param l the listener to remove
+     * @return {@code true} iff the listener was registered
+     */
+    public boolean removeListener(ReplayListener l) {
+        return listeners.remove(l);
+    }
+
+    /**
+     * Replay the plan.
+     *
+     * @return {@code true} iff all the actions have been applied and no listener stopped the replay
+     */
+    public boolean replay() {
+        failure = null;
+        mo = new CopyOnWriteModel(plan.getOrigin());
+        Mapping map = mo.getMapping();
+        Iterator<Action> ite = plan.iterator();
+        Action next = ite.hasNext() ? ite.next() : null;
+        while (next != null) {
+            //Apply all the actions starting at the same moment
+            int moment = next.getStart();
+            List<Action> actions = new ArrayList<Action>();
+            Set<UUID> nodes = new HashSet<UUID>();
+            Set<UUID> vms = new HashSet<UUID>();
+            while (next != null && next.getStart() == moment) {
+                collectElements(next, map, nodes, vms);
+                if (!next.apply(mo)) {
+                    failure = next;
+                    return false;
+                }
+                collectElements(next, map, nodes, vms);
+                actions.add(next);
+                next = ite.hasNext() ? ite.next() : null;
+            }
+            for (ReplayListener l : listeners) {
+                if (!l.onTimePoint(mo, moment, actions, nodes, vms)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collect the elements affected by an action and its events.
+     * VMs are retrieved from {@link VMEvent}s with their current location,
+     * nodes from {@link NodeEvent}s.
+     */
+    private static void collectElements(Action a, Mapping map, Set<UUID> nodes, Set<UUID> vms) {
+        collectElements((Event) a, map, nodes, vms);
+        for (Action.Hook k : Action.Hook.values()) {
+            for (Event e : a.getEvents(k)) {
+                collectElements(e, map, nodes, vms);
+            }
+        }
+    }
+
+    private static void collectElements(Event e, Mapping map, Set<UUID> nodes, Set<UUID> vms) {
+        if (e instanceof VMEvent) {
+            UUID vm = ((VMEvent) e).getVM();
+            vms.add(vm);
+            UUID loc = map.getVMLocation(vm);
+            if (loc != null) {
+                nodes.add(loc);
+            }
+        }
+        if (e instanceof NodeEvent) {
+            nodes.add(((NodeEvent) e).getNode());
+        }
+    }
+
+    /**
+     * Get the model resulting from the last replay.
+     * If the replay was stopped, the model reflects the last time point applied.
+     *
+     * @return the model, {@code null} if the plan has not been replayed
+     */
+    public Model getModel() {
+        return mo;
+    }
+
+    /**
+     * Get the action that could not be applied during the last replay.
+     *
+     * @return the action, {@code null} if there was no such action
+     */
+    public Action getFailure() {
+        return failure;
+    }
+}
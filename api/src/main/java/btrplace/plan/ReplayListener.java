@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.plan;
+
+import btrplace.model.Model;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A listener to be notified by a {@link ReconfigurationPlanReplayer}
+ * each time the replayed model reaches a new state.
+ *
+ * @author Fabien Hermenier
+ */
+public interface ReplayListener {
+
+    /**
+     * Notify that the actions starting at a given moment have been applied.
+     * The time points are notified in increasing order.
+     * The actions starting at a same moment are applied together, so the
+     * intermediary states between two simultaneous actions are never notified.
+     *
+     * @param mo      the model once the actions have been applied. It must not be modified
+     * @param moment  the start moment of the applied actions
+     * @param actions the applied actions, in the plan ordering
+     * @param nodes   the nodes that have been affected by the actions
+     * @param vms     the VMs that have been affected by the actions
+     * @return {@code false} to stop the replay
+     */
+    boolean onTimePoint(Model mo, int moment, List<Action> actions, Set<UUID> nodes, Set<UUID> vms);
+}
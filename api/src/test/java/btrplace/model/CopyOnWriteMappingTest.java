@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.model;
+
+import btrplace.test.PremadeElements;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.UUID;
+
+/**
+ * Unit tests for {@link CopyOnWriteMapping}.
+ *
+ * @author Fabien Hermenier
+ */
+public class CopyOnWriteMappingTest implements PremadeElements {
+
+    private static Mapping makeBase() {
+        Mapping b = new DefaultMapping();
+        b.addOnlineNode(n1);
+        b.addOnlineNode(n2);
+        b.addOfflineNode(n3);
+        b.addRunningVM(vm1, n1);
+        b.addRunningVM(vm2, n1);
+        b.addSleepingVM(vm3, n2);
+        b.addReadyVM(vm4);
+        return b;
+    }
+
+    @Test
+    public void testInstantiation() {
+        Mapping b = makeBase();
+        Mapping c = new CopyOnWriteMapping(b);
+        Assert.assertEquals(c, b);
+        Assert.assertEquals(b, c);
+        Assert.assertEquals(c.hashCode(), b.hashCode());
+        Assert.assertEquals(c.getVMLocation(vm1), n1);
+        Assert.assertEquals(c.getAllVMs(), b.getAllVMs());
+        Assert.assertEquals(c.getAllNodes(), b.getAllNodes());
+        Assert.assertTrue(c.containsVM(vm4));
+        Assert.assertTrue(c.containsNode(n3));
+        Assert.assertNotNull(c.toString());
+    }
+
+    @Test(dependsOnMethods = {"testInstantiation"})
+    public void testModificationsAreIsolated() {
+        Mapping b = makeBase();
+        Mapping ref = b.clone();
+        Mapping c = new CopyOnWriteMapping(b);
+
+        Assert.assertTrue(c.addRunningVM(vm1, n2));
+        Assert.assertTrue(c.addRunningVM(vm3, n2));
+        c.addReadyVM(vm2);
+        Assert.assertTrue(c.removeVM(vm4));
+        c.addOnlineNode(n3);
+        Assert.assertTrue(c.addSleepingVM(vm5, n3));
+        Assert.assertFalse(c.addRunningVM(vm6, n4));
+
+        Assert.assertEquals(c.getVMLocation(vm1), n2);
+        Assert.assertNull(c.getVMLocation(vm2));
+        Assert.assertTrue(c.getRunningVMs(n1).isEmpty());
+        Assert.assertEquals(c.getRunningVMs(n2), new HashSet<UUID>(Arrays.asList(vm1, vm3)));
+        Assert.assertTrue(c.getSleepingVMs(n2).isEmpty());
+        Assert.assertEquals(c.getSleepingVMs(n3), Collections.singleton(vm5));
+        Assert.assertEquals(c.getReadyVMs(), Collections.singleton(vm2));
+        Assert.assertEquals(c.getRunningVMs().size(), 2);
+        Assert.assertFalse(c.containsVM(vm4));
+        Assert.assertTrue(c.getOfflineNodes().isEmpty());
+        Assert.assertEquals(c.getRunningVMs(Arrays.asList(n1, n2)).size(), 2);
+
+        //The base is unchanged
+        Assert.assertEquals(b, ref);
+
+        //Node state changes depend on the hosted VMs
+        Assert.assertFalse(c.addOfflineNode(n2));
+        Assert.assertFalse(c.removeNode(n3));
+        Assert.assertTrue(c.addOfflineNode(n1));
+        Assert.assertTrue(c.removeNode(n1));
+        Assert.assertFalse(c.containsNode(n1));
+        Assert.assertTrue(b.containsNode(n1));
+    }
+
+    @Test(dependsOnMethods = {"testModificationsAreIsolated"})
+    public void testClone() {
+        Mapping b = makeBase();
+        Mapping c1 = new CopyOnWriteMapping(b);
+        c1.addRunningVM(vm3, n1);
+        Mapping c2 = c1.clone();
+        Assert.assertEquals(c1, c2);
+        c2.addRunningVM(vm1, n2);
+        c2.removeVM(vm3);
+        Assert.assertEquals(c1.getRunningVMs(n1), new HashSet<UUID>(Arrays.asList(vm1, vm2, vm3)));
+        Assert.assertEquals(c2.getRunningVMs(n1), Collections.singleton(vm2));
+        Assert.assertFalse(c1.equals(c2));
+    }
+
+    @Test(dependsOnMethods = {"testInstantiation"})
+    public void testClearing() {
+        Mapping b = makeBase();
+        Mapping c = new CopyOnWriteMapping(b);
+        c.clearNode(n1);
+        Assert.assertTrue(c.getRunningVMs(n1).isEmpty());
+        Assert.assertFalse(c.containsVM(vm1));
+        Assert.assertEquals(b.getRunningVMs(n1).size(), 2);
+
+        c.clearAllVMs();
+        Assert.assertTrue(c.getAllVMs().isEmpty());
+        Assert.assertEquals(c.getAllNodes().size(), 3);
+
+        c.clear();
+        Assert.assertTrue(c.getAllNodes().isEmpty());
+        Assert.assertEquals(b.getAllNodes().size(), 3);
+    }
+
+    @Test(expectedExceptions = {UnsupportedOperationException.class})
+    public void testReadOnlyViews() {
+        Mapping c = new CopyOnWriteMapping(makeBase());
+        c.getRunningVMs(n1).add(vm9);
+    }
+}
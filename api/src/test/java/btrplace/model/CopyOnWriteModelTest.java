@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.model;
+
+import btrplace.model.view.ShareableResource;
+import btrplace.test.PremadeElements;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Unit tests for {@link CopyOnWriteModel}.
+ *
+ * @author Fabien Hermenier
+ */
+public class CopyOnWriteModelTest implements PremadeElements {
+
+    private static Model makeBase() {
+        Mapping map = new DefaultMapping();
+        map.addOnlineNode(n1);
+        map.addOnlineNode(n2);
+        map.addRunningVM(vm1, n1);
+        Model mo = new DefaultModel(map);
+        ShareableResource rc = new ShareableResource("cpu");
+        rc.set(n1, 4).set(vm1, 2);
+        mo.attach(rc);
+        mo.getAttributes().put(vm1, "foo", true);
+        return mo;
+    }
+
+    @Test
+    public void testInstantiation() {
+        Model b = makeBase();
+        Model m = new CopyOnWriteModel(b);
+        Assert.assertEquals(m, b);
+        Assert.assertEquals(b, m);
+        Assert.assertEquals(m.hashCode(), b.hashCode());
+        Assert.assertEquals(m.getViews().size(), 1);
+        Assert.assertEquals(m.getView("ShareableResource.cpu"), b.getView("ShareableResource.cpu"));
+        Assert.assertNull(m.getView("bar"));
+    }
+
+    @Test(dependsOnMethods = {"testInstantiation"})
+    public void testModificationsAreIsolated() {
+        Model b = makeBase();
+        Model ref = b.clone();
+        Model m = new CopyOnWriteModel(b);
+        m.getMapping().addRunningVM(vm1, n2);
+        ((ShareableResource) m.getView("ShareableResource.cpu")).set(vm1, 3);
+        m.getAttributes().put(vm1, "foo", false);
+        Assert.assertFalse(m.equals(b));
+        Assert.assertEquals(b, ref);
+
+        ShareableResource mem = new ShareableResource("mem");
+        Assert.assertTrue(m.attach(mem));
+        Assert.assertFalse(m.attach(mem));
+        Assert.assertNull(b.getView("ShareableResource.mem"));
+        Assert.assertTrue(m.detach(b.getView("ShareableResource.cpu")));
+        Assert.assertEquals(m.getViews().size(), 1);
+        Assert.assertNotNull(b.getView("ShareableResource.cpu"));
+        m.clearViews();
+        Assert.assertTrue(m.getViews().isEmpty());
+        Assert.assertEquals(b.getViews().size(), 1);
+    }
+
+    @Test(dependsOnMethods = {"testModificationsAreIsolated"})
+    public void testClone() {
+        Model b = makeBase();
+        Model m = new CopyOnWriteModel(b);
+        ((ShareableResource) m.getView("ShareableResource.cpu")).set(vm1, 3);
+        Model c = m.clone();
+        Assert.assertEquals(c, m);
+        ((ShareableResource) c.getView("ShareableResource.cpu")).set(vm1, 1);
+        c.getMapping().addReadyVM(vm1);
+        Assert.assertEquals(((ShareableResource) m.getView("ShareableResource.cpu")).get(vm1), 3);
+        Assert.assertEquals(m.getMapping().getVMLocation(vm1), n1);
+        Assert.assertFalse(c.equals(m));
+    }
+
+    @Test(dependsOnMethods = {"testClone"})
+    public void testLayering() {
+        Model b = makeBase();
+        Model m = new CopyOnWriteModel(b);
+        m.getMapping().addRunningVM(vm2, n2);
+        ((ShareableResource) m.getView("ShareableResource.cpu")).set(vm1, 3);
+        m.getAttributes().put(vm1, "foo", false);
+
+        //A model over a copy-on-write model sees its changes but remains isolated
+        Model l = new CopyOnWriteModel(m);
+        Assert.assertEquals(l, m);
+        l.getMapping().addReadyVM(vm2);
+        ((ShareableResource) l.getView("ShareableResource.cpu")).set(vm1, 1);
+        l.getAttributes().put(vm1, "foo", true);
+        Assert.assertEquals(m.getMapping().getVMLocation(vm2), n2);
+        Assert.assertEquals(((ShareableResource) m.getView("ShareableResource.cpu")).get(vm1), 3);
+        Assert.assertFalse(m.getAttributes().getBoolean(vm1, "foo"));
+        Assert.assertEquals(b, makeBase());
+
+        //Chaining many layers must keep the same content
+        Model cur = m;
+        for (int i = 0; i < 100; i++) {
+            cur = new CopyOnWriteModel(cur);
+        }
+        Assert.assertEquals(cur, m);
+    }
+
+    @Test(dependsOnMethods = {"testInstantiation"})
+    public void testConcurrentReads() throws Exception {
+        Model b = makeBase();
+        final Model m = new CopyOnWriteModel(b);
+        ExecutorService exe = Executors.newFixedThreadPool(4);
+        final CyclicBarrier barrier = new CyclicBarrier(4);
+        try {
+            List<Future<Object[]>> res = new ArrayList<Future<Object[]>>();
+            for (int i = 0; i < 4; i++) {
+                res.add(exe.submit(new Callable<Object[]>() {
+                    @Override
+                    public Object[] call() throws Exception {
+                        barrier.await();
+                        return new Object[]{m.getView("ShareableResource.cpu"), m.getAttributes()};
+                    }
+                }));
+            }
+            Object[] first = res.get(0).get();
+            for (Future<Object[]> f : res) {
+                Object[] o = f.get();
+                //Every reader must get the same copies
+                Assert.assertSame(o[0], first[0]);
+                Assert.assertSame(o[1], first[1]);
+            }
+        } finally {
+            exe.shutdown();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.model;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link DeltaSet}.
+ *
+ * @author Fabien Hermenier
+ */
+public class DeltaSetTest {
+
+    @Test
+    public void testOperations() {
+        Set<Integer> base = new HashSet<Integer>(Arrays.asList(1, 2, 3));
+        DeltaSet<Integer> d = new DeltaSet<Integer>(base);
+        Assert.assertEquals(d, base);
+        Assert.assertFalse(d.add(1));
+        Assert.assertTrue(d.add(4));
+        Assert.assertTrue(d.remove(2));
+        Assert.assertFalse(d.remove(2));
+        Assert.assertFalse(d.remove(5));
+        Assert.assertEquals(d.size(), 3);
+        Assert.assertEquals(d, new HashSet<Integer>(Arrays.asList(1, 3, 4)));
+        Assert.assertTrue(d.add(2));
+        Assert.assertTrue(d.remove(4));
+        Assert.assertEquals(d, base);
+        Assert.assertEquals(base, new HashSet<Integer>(Arrays.asList(1, 2, 3)));
+
+        DeltaSet<Integer> c = new DeltaSet<Integer>(d);
+        c.remove(1);
+        Assert.assertTrue(d.contains(1));
+        Assert.assertFalse(c.contains(1));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.model;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Unit tests for {@link ElementRegistry}.
+ *
+ * @author Fabien Hermenier
+ */
+public class ElementRegistryTest {
+
+    @Test
+    public void testRegistration() {
+        ElementRegistry r = new ElementRegistry(1);
+        Assert.assertEquals(r.size(), 0);
+        UUID u = UUID.randomUUID();
+        Assert.assertEquals(r.getIndex(u), ElementRegistry.NO_INDEX);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(r.register(UUID.randomUUID()), i);
+        }
+        int i = r.register(u);
+        Assert.assertEquals(i, 100);
+        Assert.assertEquals(r.register(u), i);
+        Assert.assertEquals(r.getIndex(u), i);
+        Assert.assertSame(r.getElement(i), u);
+        Assert.assertEquals(r.size(), 101);
+        Assert.assertNotNull(r.toString());
+    }
+
+    @Test
+    public void testConcurrentRegistration() throws Exception {
+        final ElementRegistry r = new ElementRegistry(1);
+        final List<UUID> uuids = new ArrayList<UUID>();
+        for (int i = 0; i < 1000; i++) {
+            uuids.add(UUID.randomUUID());
+        }
+        ExecutorService exe = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> res = new ArrayList<Future<Boolean>>();
+        for (int t = 0; t < 4; t++) {
+            res.add(exe.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    for (UUID u : uuids) {
+                        int i = r.register(u);
+                        if (r.getIndex(u) != i || !r.getElement(i).equals(u)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            }));
+        }
+        for (Future<Boolean> f : res) {
+            Assert.assertTrue(f.get());
+        }
+        exe.shutdown();
+        //Each element got a single index
+        Assert.assertEquals(r.size(), uuids.size());
+        Set<Integer> indexes = new HashSet<Integer>();
+        for (UUID u : uuids) {
+            indexes.add(r.getIndex(u));
+        }
+        Assert.assertEquals(indexes.size(), uuids.size());
+    }
+}
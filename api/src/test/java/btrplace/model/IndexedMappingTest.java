@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.model;
+
+import btrplace.test.PremadeElements;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+/**
+ * Unit tests for {@link IndexedMapping}.
+ *
+ * @author Fabien Hermenier
+ */
+public class IndexedMappingTest implements PremadeElements {
+
+    @Test
+    public void testInstantiation() {
+        Mapping c = new IndexedMapping();
+        Assert.assertTrue(c.getAllNodes().isEmpty());
+        Assert.assertTrue(c.getAllVMs().isEmpty());
+        Assert.assertTrue(c.getRunningVMs(UUID.randomUUID()).isEmpty());
+        Assert.assertTrue(c.getSleepingVMs(UUID.randomUUID()).isEmpty());
+        Assert.assertNull(c.getVMLocation(UUID.randomUUID()));
+        Assert.assertFalse(c.removeVM(UUID.randomUUID()));
+        Assert.assertFalse(c.removeNode(UUID.randomUUID()));
+        Assert.assertFalse(c.containsNode(UUID.randomUUID()));
+        Assert.assertFalse(c.containsVM(UUID.randomUUID()));
+        Assert.assertNotNull(c.toString());
+    }
+
+    @Test(dependsOnMethods = {"testInstantiation"})
+    public void testNodeStates() {
+        Mapping c = new IndexedMapping();
+        c.addOnlineNode(n1);
+        Assert.assertTrue(c.addOfflineNode(n2));
+        Assert.assertEquals(c.getOnlineNodes(), Collections.singleton(n1));
+        Assert.assertEquals(c.getOfflineNodes(), Collections.singleton(n2));
+        Assert.assertEquals(c.getAllNodes().size(), 2);
+
+        c.addOnlineNode(n2);
+        Assert.assertTrue(c.getOfflineNodes().isEmpty());
+        Assert.assertEquals(c.getOnlineNodes().size(), 2);
+
+        //Cannot turn off or remove a node hosting VMs
+        c.addRunningVM(vm1, n1);
+        c.addSleepingVM(vm2, n2);
+        Assert.assertFalse(c.addOfflineNode(n1));
+        Assert.assertFalse(c.addOfflineNode(n2));
+        Assert.assertFalse(c.removeNode(n1));
+        Assert.assertTrue(c.containsNode(n1));
+
+        c.removeVM(vm1);
+        Assert.assertTrue(c.removeNode(n1));
+        Assert.assertFalse(c.containsNode(n1));
+        Assert.assertFalse(c.getOnlineNodes().contains(n1));
+    }
+
+    @Test(dependsOnMethods = {"testInstantiation"})
+    public void testVMStates() {
+        Mapping c = new IndexedMapping();
+        c.addOnlineNode(n1);
+        c.addOnlineNode(n2);
+        c.addOfflineNode(n3);
+
+        Assert.assertTrue(c.addRunningVM(vm1, n1));
+        Assert.assertFalse(c.addRunningVM(vm2, n3));
+        Assert.assertFalse(c.addSleepingVM(vm2, UUID.randomUUID()));
+        Assert.assertEquals(c.getVMLocation(vm1), n1);
+        Assert.assertTrue(c.getRunningVMs(n1).contains(vm1));
+
+        //Migrate
+        Assert.assertTrue(c.addRunningVM(vm1, n2));
+        Assert.assertTrue(c.getRunningVMs(n1).isEmpty());
+        Assert.assertEquals(c.getRunningVMs(n2), Collections.singleton(vm1));
+        Assert.assertEquals(c.getVMLocation(vm1), n2);
+
+        //Suspend
+        Assert.assertTrue(c.addSleepingVM(vm1, n2));
+        Assert.assertTrue(c.getRunningVMs().isEmpty());
+        Assert.assertTrue(c.getRunningVMs(n2).isEmpty());
+        Assert.assertEquals(c.getSleepingVMs(n2), Collections.singleton(vm1));
+        Assert.assertFalse(c.getRunningVMs(n2).contains(vm1));
+
+        //Ready
+        c.addReadyVM(vm1);
+        Assert.assertNull(c.getVMLocation(vm1));
+        Assert.assertTrue(c.getSleepingVMs().isEmpty());
+        Assert.assertEquals(c.getReadyVMs(), Collections.singleton(vm1));
+        Assert.assertTrue(c.containsVM(vm1));
+
+        Assert.assertTrue(c.removeVM(vm1));
+        Assert.assertFalse(c.containsVM(vm1));
+        Assert.assertTrue(c.getAllVMs().isEmpty());
+    }
+
+    @Test(dependsOnMethods = {"testVMStates"})
+    public void testGetRunningVMsOnNodes() {
+        Mapping c = new IndexedMapping();
+        c.addOnlineNode(n1);
+        c.addOnlineNode(n2);
+        c.addOnlineNode(n3);
+        c.addRunningVM(vm1, n1);
+        c.addRunningVM(vm2, n1);
+        c.addRunningVM(vm3, n2);
+        c.addSleepingVM(vm4, n1);
+        c.addRunningVM(vm5, n3);
+        Set<UUID> on = c.getRunningVMs(Arrays.asList(n1, n2, UUID.randomUUID()));
+        Assert.assertEquals(on, new HashSet<UUID>(Arrays.asList(vm1, vm2, vm3)));
+    }
+
+    @Test(dependsOnMethods = {"testVMStates"})
+    public void testClearing() {
+        Mapping c = new IndexedMapping();
+        c.addOnlineNode(n1);
+        c.addOnlineNode(n2);
+        c.addOfflineNode(n3);
+        c.addRunningVM(vm1, n1);
+        c.addRunningVM(vm2, n2);
+        c.addSleepingVM(vm3, n1);
+        c.addSleepingVM(vm4, n2);
+        c.addReadyVM(vm5);
+
+        c.clearNode(n1);
+        Assert.assertEquals(c.getAllVMs(), new HashSet<UUID>(Arrays.asList(vm2, vm4, vm5)));
+        Assert.assertTrue(c.getRunningVMs(n1).isEmpty());
+        Assert.assertTrue(c.getSleepingVMs(n1).isEmpty());
+
+        c.clearAllVMs();
+        Assert.assertTrue(c.getAllVMs().isEmpty());
+        Assert.assertTrue(c.getRunningVMs(n2).isEmpty());
+        Assert.assertEquals(c.getAllNodes().size(), 3);
+
+        c.clear();
+        Assert.assertTrue(c.getAllNodes().isEmpty());
+        Assert.assertFalse(c.containsNode(n3));
+    }
+
+    @Test(dependsOnMethods = {"testVMStates"})
+    public void testReadOnlyViews() {
+        Mapping c = new IndexedMapping();
+        c.addOnlineNode(n1);
+        c.addRunningVM(vm1, n1);
+        try {
+            c.getRunningVMs(n1).add(vm2);
+            Assert.fail();
+        } catch (UnsupportedOperationException ex) {
+        }
+        try {
+            c.getOnlineNodes().clear();
+            Assert.fail();
+        } catch (UnsupportedOperationException ex) {
+        }
+    }
+
+    @Test(dependsOnMethods = {"testVMStates"})
+    public void testFailFastViews() {
+        Mapping c = new IndexedMapping();
+        c.addOnlineNode(n1);
+        c.addOnlineNode(n2);
+        c.addRunningVM(vm1, n1);
+        c.addRunningVM(vm2, n1);
+        c.addRunningVM(vm3, n1);
+        //Moving the VMs while browsing the view must not silently skip some of them
+        try {
+            for (UUID vm : c.getRunningVMs(n1)) {
+                c.addRunningVM(vm, n2);
+            }
+            Assert.fail();
+        } catch (ConcurrentModificationException ex) {
+        }
+        c.addOnlineNode(n3);
+        try {
+            for (UUID n : c.getOnlineNodes()) {
+                c.addOfflineNode(n3);
+            }
+            Assert.fail();
+        } catch (ConcurrentModificationException ex) {
+        }
+
+        //Browsing a copy is fine
+        for (UUID vm : new ArrayList<UUID>(c.getRunningVMs(n2))) {
+            c.addRunningVM(vm, n1);
+        }
+        Assert.assertEquals(c.getRunningVMs(n1).size(), 3);
+        Assert.assertTrue(c.getRunningVMs(n2).isEmpty());
+    }
+
+    @Test(dependsOnMethods = {"testVMStates"})
+    public void testCloneAndEquals() {
+        IndexedMapping c1 = new IndexedMapping();
+        c1.addOnlineNode(n1);
+        c1.addOnlineNode(n2);
+        c1.addOfflineNode(n3);
+        c1.addReadyVM(vm1);
+        c1.addRunningVM(vm2, n1);
+        c1.addSleepingVM(vm3, n1);
+        c1.addRunningVM(vm4, n2);
+
+        Mapping d = new DefaultMapping();
+        d.addOnlineNode(n1);
+        d.addOnlineNode(n2);
+        d.addOfflineNode(n3);
+        d.addReadyVM(vm1);
+        d.addRunningVM(vm2, n1);
+        d.addSleepingVM(vm3, n1);
+        d.addRunningVM(vm4, n2);
+
+        Assert.assertEquals(c1, d);
+        Assert.assertEquals(d, c1);
+        Assert.assertEquals(c1.hashCode(), d.hashCode());
+
+        IndexedMapping c2 = c1.clone();
+        Assert.assertSame(c2.getRegistry(), c1.getRegistry());
+        Assert.assertEquals(c1, c2);
+
+        //The clone is independent
+        c2.addRunningVM(vm2, n2);
+        c2.addReadyVM(vm10);
+        Assert.assertEquals(c1.getVMLocation(vm2), n1);
+        Assert.assertFalse(c1.containsVM(vm10));
+        Assert.assertFalse(c1.equals(c2));
+        Assert.assertEquals(c1, d);
+    }
+
+    @Test(dependsOnMethods = {"testCloneAndEquals"})
+    public void testSharedRegistry() {
+        ElementRegistry r = new ElementRegistry();
+        IndexedMapping c1 = new IndexedMapping(r);
+        c1.addOnlineNode(n1);
+        IndexedMapping c2 = c1.clone();
+
+        //Many elements registered by c1 after the cloning
+        List<UUID> vms = new ArrayList<UUID>();
+        for (int i = 0; i < 1000; i++) {
+            UUID u = UUID.randomUUID();
+            vms.add(u);
+            Assert.assertTrue(c1.addRunningVM(u, n1));
+        }
+        Assert.assertEquals(c1.getRunningVMs(n1).size(), 1000);
+        Assert.assertTrue(c1.getRunningVMs().containsAll(vms));
+        Assert.assertTrue(c2.getRunningVMs(n1).isEmpty());
+        for (UUID u : vms) {
+            Assert.assertFalse(c2.containsVM(u));
+            Assert.assertNull(c2.getVMLocation(u));
+        }
+        Assert.assertTrue(c2.addSleepingVM(vms.get(999), n1));
+        Assert.assertEquals(c2.getSleepingVMs(n1), Collections.singleton(vms.get(999)));
+        Assert.assertEquals(r.size(), 1001);
+    }
+}
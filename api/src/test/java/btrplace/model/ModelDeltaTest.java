@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.model;
+
+import btrplace.model.view.ShareableResource;
+import btrplace.test.PremadeElements;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for {@link ModelDelta}.
+ *
+ * @author Fabien Hermenier
+ */
+public class ModelDeltaTest implements PremadeElements {
+
+    private static Model makeModel() {
+        Mapping map = new DefaultMapping();
+        map.addOnlineNode(n1);
+        map.addOnlineNode(n2);
+        map.addOfflineNode(n3);
+        map.addOnlineNode(n4);
+        map.addRunningVM(vm1, n1);
+        map.addRunningVM(vm2, n1);
+        map.addSleepingVM(vm3, n2);
+        map.addReadyVM(vm4);
+        map.addRunningVM(vm5, n4);
+        Model mo = new DefaultModel(map);
+        ShareableResource rc = new ShareableResource("cpu");
+        rc.set(n1, 4).set(n2, 4).set(vm1, 2).set(vm2, 1);
+        mo.attach(rc);
+        mo.attach(new ShareableResource("mem"));
+        mo.getAttributes().put(vm1, "boot", 5);
+        mo.getAttributes().put(vm2, "template", "small");
+        return mo;
+    }
+
+    @Test
+    public void testEmptyDelta() {
+        Model mo = makeModel();
+        ModelDelta d = ModelDelta.diff(mo, mo.clone());
+        Assert.assertTrue(d.isEmpty(), d.toString());
+    }
+
+    @Test
+    public void testDiffAndApply() {
+        Model src = makeModel();
+        Model dst = src.clone();
+        Mapping map = dst.getMapping();
+        map.addOnlineNode(n3);
+        map.addRunningVM(vm2, n3);
+        map.addRunningVM(vm3, n2);
+        map.removeVM(vm5);
+        map.addOfflineNode(n4);
+        map.addRunningVM(vm6, n2);
+        map.addOnlineNode(n5);
+        ShareableResource rc = (ShareableResource) dst.getView("ShareableResource.cpu");
+        rc.set(vm1, 3).set(vm6, 1).unset(vm2);
+        dst.detach(dst.getView("ShareableResource.mem"));
+        dst.attach(new ShareableResource("net"));
+        dst.getAttributes().put(vm1, "boot", 7);
+        dst.getAttributes().put(vm6, "fast", true);
+        dst.getAttributes().unset(vm2, "template");
+
+        ModelDelta d = ModelDelta.diff(src, dst);
+        Assert.assertEquals(d.getVMStates().size(), 4);
+        Assert.assertEquals(d.getVMStates().get(vm5), ModelDelta.VMState.REMOVED);
+        Assert.assertEquals(d.getVMHost(vm2), n3);
+        Assert.assertEquals(d.getNodeStates().size(), 3);
+        Assert.assertEquals(d.getResourceValues().get("cpu").size(), 2);
+
+        Model cpy = src.clone();
+        Assert.assertTrue(d.applyTo(cpy));
+        Assert.assertEquals(cpy, dst);
+        Assert.assertTrue(ModelDelta.diff(cpy, dst).isEmpty());
+
+        //Works on copy-on-write models too
+        Model cow = new CopyOnWriteModel(src);
+        Assert.assertTrue(d.applyTo(cow));
+        Assert.assertEquals(cow, dst);
+    }
+
+    @Test
+    public void testApplyOnInconsistentModel() {
+        Model src = makeModel();
+        Model dst = src.clone();
+        dst.getMapping().addRunningVM(vm4, n2);
+        ModelDelta d = ModelDelta.diff(src, dst);
+        Model other = makeModel();
+        other.getMapping().clearNode(n2);
+        Assert.assertTrue(other.getMapping().removeNode(n2));
+        Assert.assertFalse(d.applyTo(other));
+    }
+}
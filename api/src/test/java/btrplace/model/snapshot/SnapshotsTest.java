@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.model.snapshot;
+
+import btrplace.model.*;
+import btrplace.model.view.ShareableResource;
+import btrplace.test.PremadeElements;
+import btrplace.test.WorkloadGenerator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.UUID;
+
+/**
+ * Unit tests for {@link Snapshots}, {@link MappedModel} and {@link MappedMapping}.
+ *
+ * @author Fabien Hermenier
+ */
+public class SnapshotsTest implements PremadeElements {
+
+    private static Model makeModel() {
+        Mapping map = new DefaultMapping();
+        map.addOnlineNode(n1);
+        map.addOnlineNode(n2);
+        map.addOfflineNode(n3);
+        map.addRunningVM(vm1, n1);
+        map.addRunningVM(vm2, n1);
+        map.addSleepingVM(vm3, n2);
+        map.addReadyVM(vm4);
+        Model mo = new DefaultModel(map);
+        ShareableResource rc = new ShareableResource("cpu", 3);
+        rc.set(n1, 4).set(vm1, 2).set(vm2, -1);
+        mo.attach(rc);
+        mo.attach(new ShareableResource("mem"));
+        mo.getAttributes().put(vm1, "foo", true);
+        mo.getAttributes().put(vm1, "bar", 12);
+        mo.getAttributes().put(n2, "baz", 1.5);
+        mo.getAttributes().put(n3, "template", "\u00e9a");
+        return mo;
+    }
+
+    private static MappedModel store(Model mo) throws IOException {
+        File f = File.createTempFile("snapshot", ".bin");
+        f.deleteOnExit();
+        Snapshots.write(mo, f);
+        return Snapshots.open(f);
+    }
+
+    @Test
+    public void testWriteAndOpen() throws IOException {
+        Model mo = makeModel();
+        MappedModel mm = store(mo);
+        Assert.assertEquals(mm, mo);
+        Assert.assertEquals(mo, mm);
+        Assert.assertEquals(mm.hashCode(), mo.hashCode());
+        Assert.assertEquals(mm.getAttributes(), mo.getAttributes());
+        Assert.assertEquals(mm.getView("ShareableResource.cpu"), mo.getView("ShareableResource.cpu"));
+        Assert.assertEquals(((ShareableResource) mm.getView("ShareableResource.cpu")).get(n2), 3);
+        Assert.assertNull(mm.getView("foo"));
+    }
+
+    @Test
+    public void testMapping() throws IOException {
+        Model mo = makeModel();
+        Mapping m = store(mo).getMapping();
+        Mapping ref = mo.getMapping();
+        Assert.assertEquals(m, ref);
+        Assert.assertEquals(m.hashCode(), ref.hashCode());
+        Assert.assertEquals(m.getAllNodes(), ref.getAllNodes());
+        Assert.assertEquals(m.getAllVMs(), ref.getAllVMs());
+        Assert.assertEquals(m.getRunningVMs(), ref.getRunningVMs());
+        Assert.assertEquals(m.getSleepingVMs(), ref.getSleepingVMs());
+        Assert.assertTrue(m.getRunningVMs(n1).contains(vm2));
+        Assert.assertFalse(m.getRunningVMs(n2).contains(vm2));
+        Assert.assertFalse(m.getRunningVMs(n1).contains(vm3));
+        Assert.assertTrue(m.getRunningVMs(n3).isEmpty());
+        Assert.assertTrue(m.getRunningVMs(n4).isEmpty());
+        Assert.assertEquals(m.getVMLocation(vm3), n2);
+        Assert.assertNull(m.getVMLocation(vm4));
+        Assert.assertNull(m.getVMLocation(vm5));
+        Assert.assertTrue(m.containsVM(vm4));
+        Assert.assertFalse(m.containsVM(vm5));
+        Assert.assertTrue(m.containsNode(n3));
+        Assert.assertFalse(m.getOnlineNodes().contains(n3));
+        Assert.assertFalse(m.getOnlineNodes().contains("foo"));
+        Assert.assertEquals(m.getRunningVMs(Collections.singleton(n1)), ref.getRunningVMs(n1));
+    }
+
+    @Test(expectedExceptions = {UnsupportedOperationException.class})
+    public void testReadOnly() throws IOException {
+        store(makeModel()).getMapping().addReadyVM(vm5);
+    }
+
+    @Test
+    public void testReadOnlyViewsAndAttributes() throws IOException {
+        Model mo = makeModel();
+        MappedModel mm = store(mo);
+        ShareableResource rc = (ShareableResource) mm.getView("ShareableResource.cpu");
+        try {
+            rc.set(n1, 7);
+            Assert.fail();
+        } catch (UnsupportedOperationException ex) {
+        }
+        try {
+            rc.getDefined().clear();
+            Assert.fail();
+        } catch (UnsupportedOperationException ex) {
+        }
+        try {
+            mm.getAttributes().put(vm1, "foo", false);
+            Assert.fail();
+        } catch (UnsupportedOperationException ex) {
+        }
+        try {
+            mm.getAttributes().getElements().clear();
+            Assert.fail();
+        } catch (UnsupportedOperationException ex) {
+        }
+        Assert.assertEquals(mm, mo);
+        Assert.assertEquals(store(mm), mo);
+
+        //The copies are modifiable
+        ShareableResource cpy = rc.clone();
+        cpy.set(n1, 7);
+        Assert.assertEquals(cpy.get(n1), 7);
+        Attributes attrs = mm.getAttributes().clone();
+        attrs.put(vm1, "foo", false);
+        Assert.assertFalse(attrs.getBoolean(vm1, "foo"));
+        Assert.assertEquals(rc.get(n1), 4);
+        Assert.assertTrue(mm.getAttributes().getBoolean(vm1, "foo"));
+    }
+
+    @Test
+    public void testDelta() throws IOException {
+        Model mo = makeModel();
+        MappedModel mm = store(mo);
+        Assert.assertTrue(ModelDelta.diff(mm, mo).isEmpty());
+        Model c = mm.clone();
+        ((ShareableResource) c.getView("ShareableResource.cpu")).set(n2, 8);
+        //The read-only resource is diffed value by value, not replaced
+        ModelDelta d = ModelDelta.diff(mm, c);
+        Assert.assertTrue(d.getDetachedViews().isEmpty());
+        Assert.assertTrue(d.getAttachedViews().isEmpty());
+        Assert.assertEquals(d.getResourceValues().get("cpu").size(), 1);
+        Assert.assertEquals(d.getResourceValues().get("cpu").get(n2).intValue(), 8);
+    }
+
+    @Test
+    public void testClone() throws IOException {
+        Model mo = makeModel();
+        MappedModel mm = store(mo);
+        Model c = mm.clone();
+        c.getMapping().addRunningVM(vm4, n2);
+        c.getAttributes().put(vm4, "foo", false);
+        Assert.assertEquals(mm, mo);
+        Assert.assertNotEquals(c, mm);
+        Assert.assertTrue(c.getMapping().getRunningVMs(n2).contains(vm4));
+    }
+
+    @Test
+    public void testLarge() throws IOException {
+        Model mo = new WorkloadGenerator(5).setNbNodes(200).setNbVMs(1000).generateModel();
+        MappedModel mm = store(mo);
+        Assert.assertEquals(mm, mo);
+        for (UUID vm : mo.getMapping().getAllVMs()) {
+            Assert.assertEquals(mm.getMapping().getVMLocation(vm), mo.getMapping().getVMLocation(vm));
+        }
+    }
+
+    @Test(expectedExceptions = {IllegalArgumentException.class})
+    public void testUnsupportedView() throws IOException {
+        Model mo = makeModel();
+        mo.attach(new ShareableResource("net") {
+        });
+        store(mo);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.plan;
+
+import btrplace.model.*;
+import btrplace.model.constraint.*;
+import btrplace.plan.event.BootVM;
+import btrplace.plan.event.MigrateVM;
+import btrplace.plan.event.ShutdownVM;
+import btrplace.test.PremadeElements;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+/**
+ * Unit tests for {@link ContinuousSatChecker}.
+ *
+ * @author Fabien Hermenier
+ */
+public class ContinuousSatCheckerTest implements PremadeElements {
+
+    @Test
+    public void testCheck() {
+        Mapping map = new DefaultMapping();
+        map.addOnlineNode(n1);
+        map.addOnlineNode(n2);
+        map.addOnlineNode(n3);
+        map.addRunningVM(vm1, n1);
+        map.addRunningVM(vm2, n2);
+        map.addRunningVM(vm3, n3);
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(new DefaultModel(map));
+        //vm1 joins vm2 on n2 before vm2 leaves to n1
+        p.add(new MigrateVM(vm1, n1, n2, 0, 2));
+        p.add(new MigrateVM(vm2, n2, n1, 1, 4));
+
+        Spread s = new Spread(new HashSet<UUID>(Arrays.asList(vm1, vm2)));
+        List<SatConstraint> cstrs = new ArrayList<SatConstraint>();
+        cstrs.add(s);
+        cstrs.add(new Ban(Collections.singleton(vm3), Collections.singleton(n1)));
+
+        //The final model is fine, not the intermediary one
+        Assert.assertEquals(s.isSatisfied(p.getResult()), SatConstraint.Sat.SATISFIED);
+        ContinuousSatChecker c = new ContinuousSatChecker(cstrs);
+        Assert.assertFalse(c.check(p));
+        Assert.assertEquals(c.getViolatedConstraint(), s);
+        //The migration of vm1 starts at 0
+        Assert.assertEquals(c.getViolationMoment(), 0);
+
+        //Discrete constraints are ignored
+        s.setContinuous(false);
+        c = new ContinuousSatChecker(cstrs);
+        Assert.assertTrue(c.check(p));
+        Assert.assertNull(c.getViolatedConstraint());
+        Assert.assertEquals(c.getViolationMoment(), -1);
+    }
+
+    @Test
+    public void testViolatedOrigin() {
+        Mapping map = new DefaultMapping();
+        map.addOnlineNode(n1);
+        map.addOnlineNode(n2);
+        map.addRunningVM(vm1, n1);
+        map.addRunningVM(vm2, n2);
+        map.addRunningVM(vm3, n2);
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(new DefaultModel(map));
+        p.add(new MigrateVM(vm1, n1, n2, 0, 2));
+
+        //vm2 and vm3 are already together in the origin model and the plan never moves them
+        Spread s = new Spread(new HashSet<UUID>(Arrays.asList(vm2, vm3)));
+        ContinuousSatChecker c = new ContinuousSatChecker(Collections.<SatConstraint>singleton(s));
+        Assert.assertFalse(c.check(p));
+        Assert.assertEquals(c.getViolatedConstraint(), s);
+        Assert.assertEquals(c.getViolationMoment(), 0);
+    }
+
+    private static Model makeModel() {
+        Mapping map = new DefaultMapping();
+        map.addOnlineNode(n1);
+        map.addOnlineNode(n2);
+        map.addOnlineNode(n3);
+        map.addRunningVM(vm1, n1);
+        map.addRunningVM(vm2, n2);
+        map.addReadyVM(vm3);
+        return new DefaultModel(map);
+    }
+
+    @Test
+    public void testRoot() {
+        Root root = new Root(Collections.singleton(vm1));
+        ContinuousSatChecker c = new ContinuousSatChecker(Collections.<SatConstraint>singleton(root));
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(makeModel());
+        p.add(new MigrateVM(vm2, n2, n3, 0, 2));
+        Assert.assertTrue(c.check(p));
+
+        //The rooted VM is migrated
+        p.add(new MigrateVM(vm1, n1, n3, 2, 4));
+        Assert.assertFalse(c.check(p));
+        Assert.assertEquals(c.getViolatedConstraint(), root);
+        Assert.assertEquals(c.getViolationMoment(), 0);
+    }
+
+    @Test
+    public void testQuarantine() {
+        Quarantine q = new Quarantine(Collections.singleton(n1));
+        ContinuousSatChecker c = new ContinuousSatChecker(Collections.<SatConstraint>singleton(q));
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(makeModel());
+        p.add(new MigrateVM(vm2, n2, n3, 0, 2));
+        Assert.assertTrue(c.check(p));
+
+        //A VM enters the quarantine zone
+        p.add(new BootVM(vm3, n1, 2, 4));
+        Assert.assertFalse(c.check(p));
+        Assert.assertEquals(c.getViolatedConstraint(), q);
+    }
+
+    @Test
+    public void testSequentialVMTransitions() {
+        SequentialVMTransitions seq = new SequentialVMTransitions(Arrays.asList(vm2, vm3));
+        ContinuousSatChecker c = new ContinuousSatChecker(Collections.<SatConstraint>singleton(seq));
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(makeModel());
+        p.add(new ShutdownVM(vm2, n2, 0, 2));
+        p.add(new BootVM(vm3, n3, 2, 4));
+        Assert.assertTrue(c.check(p));
+
+        //The transitions overlap
+        p = new DefaultReconfigurationPlan(makeModel());
+        p.add(new ShutdownVM(vm2, n2, 0, 2));
+        p.add(new BootVM(vm3, n3, 1, 4));
+        Assert.assertFalse(c.check(p));
+        Assert.assertEquals(c.getViolatedConstraint(), seq);
+    }
+
+    @Test
+    public void testForeignVMOnLonelyHost() {
+        Lonely l = new Lonely(Collections.singleton(vm1), true);
+        ContinuousSatChecker c = new ContinuousSatChecker(Collections.<SatConstraint>singleton(l));
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(makeModel());
+        //vm2 stays on n1 with the lonely VM then leaves it
+        p.add(new MigrateVM(vm2, n2, n1, 0, 2));
+        p.add(new MigrateVM(vm2, n1, n3, 3, 5));
+
+        Assert.assertEquals(l.isSatisfied(p.getResult()), SatConstraint.Sat.SATISFIED);
+        Assert.assertEquals(l.isSatisfied(p), SatConstraint.Sat.UNSATISFIED);
+        Assert.assertFalse(c.check(p));
+        Assert.assertEquals(c.getViolatedConstraint(), l);
+        Assert.assertEquals(c.getViolationMoment(), 0);
+    }
+
+    /**
+     * Simultaneous actions are applied together,
+     * so the state between two of them is not checked.
+     */
+    @Test
+    public void testSimultaneousActions() {
+        Mapping map = new DefaultMapping();
+        map.addOnlineNode(n1);
+        map.addOnlineNode(n2);
+        map.addOnlineNode(n3);
+        map.addRunningVM(vm1, n1);
+        map.addRunningVM(vm2, n2);
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(new DefaultModel(map));
+        //vm1 goes to n2 while vm2 leaves it. vm1 is applied first
+        p.add(new MigrateVM(vm1, n1, n2, 0, 2));
+        p.add(new MigrateVM(vm2, n2, n3, 0, 4));
+        Spread s = new Spread(new HashSet<UUID>(Arrays.asList(vm1, vm2)), true);
+        ContinuousSatChecker c = new ContinuousSatChecker(Collections.<SatConstraint>singleton(s));
+        Assert.assertTrue(c.check(p));
+        Assert.assertNull(c.getViolatedConstraint());
+    }
+}
@@ -20,12 +20,17 @@ package btrplace.plan;
 
 import btrplace.model.DefaultMapping;
 import btrplace.model.DefaultModel;
+import btrplace.model.Mapping;
 import btrplace.model.Model;
 import btrplace.plan.event.ActionVisitor;
+import btrplace.plan.event.BootVM;
+import btrplace.plan.event.MigrateVM;
 import btrplace.test.PremadeElements;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.UUID;
 
 /**
@@ -73,6 +78,101 @@ public class DefaultReconfigurationPlanTest implements PremadeElements {
         Assert.assertFalse(p.toString().contains("null"));
     }
 
+    @Test(dependsOnMethods = {"testInstantiate"})
+    public void testCachedResult() {
+        Mapping map = new DefaultMapping();
+        map.addOnlineNode(n1);
+        map.addOnlineNode(n2);
+        map.addRunningVM(vm1, n1);
+        map.addReadyVM(vm2);
+        Model m = new DefaultModel(map);
+        DefaultReconfigurationPlan p = new DefaultReconfigurationPlan(m);
+        p.add(new MigrateVM(vm1, n1, n2, 0, 3));
+        Assert.assertTrue(p.isApplyable());
+        Model r1 = p.getResult();
+        Assert.assertEquals(r1.getMapping().getVMLocation(vm1), n2);
+
+        //Modifying the result does not alter the cache nor the origin
+        r1.getMapping().addRunningVM(vm1, n1);
+        Model r2 = p.getResult();
+        Assert.assertEquals(r2.getMapping().getVMLocation(vm1), n2);
+        Assert.assertEquals(m.getMapping().getVMLocation(vm1), n1);
+
+        //The results are computed over a snapshot of the origin
+        m.getMapping().addOfflineNode(n3);
+        Assert.assertFalse(r2.getMapping().containsNode(n3));
+        Assert.assertFalse(p.getResult().getMapping().containsNode(n3));
+        Assert.assertTrue(p.isApplyable());
+
+        //Adding an action invalidates the cache
+        p.add(new BootVM(vm2, n1, 3, 5));
+        Assert.assertTrue(p.getResult().getMapping().getRunningVMs(n1).contains(vm2));
+
+        //A non-applyable action
+        p.add(new BootVM(vm2, n2, 5, 7));
+        Assert.assertFalse(p.isApplyable());
+        Assert.assertNull(p.getResult());
+    }
+
+    @Test(dependsOnMethods = {"testInstantiate"})
+    public void testStableOrdering() {
+        DefaultReconfigurationPlan p = new DefaultReconfigurationPlan(new DefaultModel(new DefaultMapping()));
+        Action a1 = new MockAction(vm1, 5, 9);
+        Action a2 = new MockAction(vm2, 5, 7);
+        Action a3 = new MockAction(vm3, 5, 9);
+        Action a4 = new MockAction(vm4, 2, 3);
+        Action a5 = new MockAction(vm5, 0, 8);
+        p.add(a1);
+        p.add(a2);
+        p.add(a3);
+        p.add(a4);
+        //Earlier than every other action
+        p.add(a5);
+        Assert.assertEquals(new ArrayList<Action>(p.getActions()), Arrays.asList(a5, a4, a2, a1, a3));
+        Assert.assertEquals(p.getDuration(), 9);
+        Assert.assertTrue(p.getActions().contains(a3));
+        Assert.assertFalse(p.getActions().contains(new MockAction(vm6, 5, 9)));
+    }
+
+    @Test(dependsOnMethods = {"testInstantiate"})
+    public void testSparseStartMoments() {
+        DefaultReconfigurationPlan p = new DefaultReconfigurationPlan(new DefaultModel(new DefaultMapping()));
+        Action a1 = new MockAction(vm1, 1000000000, 1000000005);
+        Action a2 = new MockAction(vm2, -1000000000, 10);
+        Action a3 = new MockAction(vm3, 0, 1000000002);
+        Action a4 = new MockAction(vm4, 1000000000, 1000000001);
+        p.add(a1);
+        p.add(a2);
+        p.add(a3);
+        p.add(a4);
+        Assert.assertEquals(new ArrayList<Action>(p.getActions()), Arrays.asList(a2, a3, a4, a1));
+        Assert.assertEquals(p.getDuration(), 1000000005);
+        Assert.assertEquals(p.getSize(), 4);
+    }
+
+    @Test(dependsOnMethods = {"testInstantiate"})
+    public void testActionsByElement() {
+        Mapping map = new DefaultMapping();
+        map.addOnlineNode(n1);
+        map.addOnlineNode(n2);
+        map.addRunningVM(vm1, n1);
+        map.addReadyVM(vm2);
+        DefaultReconfigurationPlan p = new DefaultReconfigurationPlan(new DefaultModel(map));
+        Action a1 = new BootVM(vm2, n1, 3, 5);
+        Action a2 = new MigrateVM(vm1, n1, n2, 0, 3);
+        p.add(a1);
+        p.add(a2);
+        Assert.assertEquals(p.getActions(n1), Arrays.asList(a2, a1));
+        Assert.assertEquals(p.getActions(n2), Arrays.asList(a2));
+        Assert.assertEquals(p.getActions(vm2), Arrays.asList(a1));
+        Assert.assertTrue(p.getActions(n3).isEmpty());
+    }
+
+    @Test(expectedExceptions = {UnsupportedOperationException.class})
+    public void testReadOnlyActions() {
+        DefaultReconfigurationPlan p = new DefaultReconfigurationPlan(new DefaultModel(new DefaultMapping()));
+        p.getActions().add(new MockAction(vm1, 1, 3));
+    }
 
     static class MockAction extends Action {
 
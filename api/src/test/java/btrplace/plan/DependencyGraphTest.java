@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.plan;
+
+import btrplace.model.DefaultMapping;
+import btrplace.model.DefaultModel;
+import btrplace.model.Mapping;
+import btrplace.model.Model;
+import btrplace.plan.event.*;
+import btrplace.test.PremadeElements;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+/**
+ * Unit tests for {@link DependencyGraph}.
+ *
+ * @author Fabien Hermenier
+ */
+public class DependencyGraphTest implements PremadeElements {
+
+    private static Model makeModel() {
+        Mapping map = new DefaultMapping();
+        map.addOnlineNode(n1);
+        map.addOnlineNode(n2);
+        map.addOfflineNode(n3);
+        map.addRunningVM(vm1, n1);
+        map.addRunningVM(vm2, n1);
+        map.addRunningVM(vm3, n2);
+        return new DefaultModel(map);
+    }
+
+    @Test
+    public void testDependencies() {
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(makeModel());
+        Action boot = new BootNode(n3, 0, 3);
+        Action m1 = new MigrateVM(vm1, n1, n3, 3, 5);
+        Action m2 = new MigrateVM(vm2, n1, n3, 4, 6);
+        Action m3 = new MigrateVM(vm3, n2, n1, 0, 2);
+        Action off = new ShutdownNode(n1, 6, 8);
+        p.add(boot);
+        p.add(m1);
+        p.add(m2);
+        p.add(m3);
+        p.add(off);
+        DependencyGraph g = p.getDependencyGraph();
+        Assert.assertSame(p.getDependencyGraph(), g);
+        Assert.assertEquals(g.size(), 5);
+
+        Assert.assertTrue(g.getDependencies(boot).isEmpty());
+        Assert.assertTrue(g.getDependencies(m3).isEmpty());
+        Assert.assertEquals(g.getDependencies(m1), Arrays.asList(m3, boot));
+        Assert.assertEquals(g.getDependencies(m2), Arrays.asList(m3, boot));
+        //m3 -> off is implied by m3 -> m2 -> off
+        Assert.assertEquals(g.getDependencies(off), Arrays.asList(m1, m2));
+        Assert.assertEquals(g.getDependents(boot), Arrays.asList(m1, m2));
+
+        //The plan ordering is topological
+        Set<Action> seen = new HashSet<Action>();
+        for (Action a : g) {
+            Assert.assertTrue(seen.containsAll(g.getDependencies(a)));
+            seen.add(a);
+        }
+
+        //Adding an action invalidates the graph
+        p.add(new MigrateVM(vm3, n1, n2, 8, 10));
+        Assert.assertNotSame(p.getDependencyGraph(), g);
+        Assert.assertEquals(p.getDependencyGraph().size(), 6);
+    }
+
+    @Test
+    public void testSimultaneousActions() {
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(makeModel());
+        Action a1 = new Allocate(vm1, n1, "cpu", 3, 2, 2);
+        Action a2 = new Allocate(vm2, n1, "cpu", 3, 2, 2);
+        p.add(a1);
+        p.add(a2);
+        DependencyGraph g = p.getDependencyGraph();
+        //No cycle between instantaneous actions
+        Assert.assertTrue(g.getDependencies(a1).isEmpty());
+        Assert.assertEquals(g.getDependencies(a2), Arrays.asList(a1));
+    }
+
+    @Test
+    public void testProgress() {
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(makeModel());
+        Action boot = new BootNode(n3, 0, 3);
+        Action m1 = new MigrateVM(vm1, n1, n3, 3, 5);
+        Action m2 = new MigrateVM(vm2, n1, n3, 4, 6);
+        Action m3 = new MigrateVM(vm3, n2, n1, 0, 2);
+        Action off = new ShutdownNode(n1, 6, 8);
+        p.add(boot);
+        p.add(m1);
+        p.add(m2);
+        p.add(m3);
+        p.add(off);
+        DependencyGraph.Progress pr = p.getDependencyGraph().newProgress();
+        Assert.assertEquals(pr.getInitialActions(), Arrays.asList(m3, boot));
+        Assert.assertFalse(pr.isReady(m1));
+        Assert.assertTrue(pr.terminate(m3).isEmpty());
+        Assert.assertEquals(pr.terminate(boot), Arrays.asList(m1, m2));
+        Assert.assertTrue(pr.terminate(m2).isEmpty());
+        Assert.assertEquals(pr.terminate(m1), Arrays.asList(off));
+        Assert.assertFalse(pr.isDone());
+        pr.terminate(off);
+        Assert.assertTrue(pr.isDone());
+    }
+
+    @Test(expectedExceptions = {IllegalArgumentException.class})
+    public void testTerminateUnreadyAction() {
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(makeModel());
+        Action boot = new BootNode(n3, 0, 3);
+        Action m1 = new MigrateVM(vm1, n1, n3, 3, 5);
+        p.add(boot);
+        p.add(m1);
+        p.getDependencyGraph().newProgress().terminate(m1);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.plan;
+
+import btrplace.model.*;
+import btrplace.plan.event.BootNode;
+import btrplace.plan.event.MigrateVM;
+import btrplace.plan.event.ShutdownNode;
+import btrplace.test.PremadeElements;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+/**
+ * Unit tests for {@link ReconfigurationPlanReplayer}.
+ *
+ * @author Fabien Hermenier
+ */
+public class ReconfigurationPlanReplayerTest implements PremadeElements {
+
+    private static ReconfigurationPlan makePlan() {
+        Mapping map = new DefaultMapping();
+        map.addOnlineNode(n1);
+        map.addOnlineNode(n2);
+        map.addOfflineNode(n3);
+        map.addRunningVM(vm1, n1);
+        map.addRunningVM(vm2, n1);
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(new DefaultModel(map));
+        p.add(new BootNode(n3, 0, 2));
+        p.add(new MigrateVM(vm1, n1, n2, 0, 3));
+        p.add(new MigrateVM(vm2, n1, n3, 2, 5));
+        p.add(new ShutdownNode(n1, 5, 7));
+        return p;
+    }
+
+    @Test
+    public void testReplay() {
+        ReconfigurationPlan p = makePlan();
+        final List<Integer> moments = new ArrayList<Integer>();
+        ReconfigurationPlanReplayer r = new ReconfigurationPlanReplayer(p);
+        r.addListener(new ReplayListener() {
+            @Override
+            public boolean onTimePoint(Model mo, int moment, List<Action> actions, Set<UUID> nodes, Set<UUID> vms) {
+                moments.add(moment);
+                for (Action a : actions) {
+                    Assert.assertEquals(a.getStart(), moment);
+                }
+                if (moment == 0) {
+                    //The boot of n3 and the migration of vm1 are applied together
+                    Assert.assertEquals(actions.size(), 2);
+                    Assert.assertEquals(mo.getMapping().getVMLocation(vm1), n2);
+                    Assert.assertEquals(mo.getMapping().getVMLocation(vm2), n1);
+                    Assert.assertTrue(mo.getMapping().getOnlineNodes().contains(n3));
+                    Assert.assertEquals(nodes, new HashSet<UUID>(Arrays.asList(n1, n2, n3)));
+                    Assert.assertEquals(vms, Collections.singleton(vm1));
+                } else {
+                    Assert.assertEquals(actions.size(), 1);
+                }
+                return true;
+            }
+        });
+        Assert.assertTrue(r.replay());
+        Assert.assertNull(r.getFailure());
+        //One notification per time point
+        Assert.assertEquals(moments.toString(), "[0, 2, 5]");
+        Assert.assertEquals(r.getModel(), p.getResult());
+        Assert.assertTrue(p.getOrigin().getMapping().getOnlineNodes().contains(n1));
+    }
+
+    @Test
+    public void testStoppedReplay() {
+        ReconfigurationPlan p = makePlan();
+        ReconfigurationPlanReplayer r = new ReconfigurationPlanReplayer(p);
+        r.addListener(new ReplayListener() {
+            @Override
+            public boolean onTimePoint(Model mo, int moment, List<Action> actions, Set<UUID> nodes, Set<UUID> vms) {
+                return moment < 2;
+            }
+        });
+        Assert.assertFalse(r.replay());
+        Assert.assertNull(r.getFailure());
+        //Stopped once the migration of vm2 was applied
+        Assert.assertEquals(r.getModel().getMapping().getVMLocation(vm2), n3);
+        Assert.assertTrue(r.getModel().getMapping().getOnlineNodes().contains(n1));
+    }
+
+    /**
+     * The replay must agree with {@link ReconfigurationPlan#isApplyable()}:
+     * an action that ends first but relies on an action that started before is applyable.
+     */
+    @Test
+    public void testStartOrdering() {
+        Mapping map = new DefaultMapping();
+        map.addOnlineNode(n1);
+        map.addOfflineNode(n2);
+        map.addRunningVM(vm1, n1);
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(new DefaultModel(map));
+        p.add(new BootNode(n2, 0, 10));
+        p.add(new MigrateVM(vm1, n1, n2, 2, 4));
+        Assert.assertTrue(p.isApplyable());
+        ReconfigurationPlanReplayer r = new ReconfigurationPlanReplayer(p);
+        Assert.assertTrue(r.replay());
+        Assert.assertEquals(r.getModel(), p.getResult());
+    }
+
+    @Test
+    public void testFailure() {
+        ReconfigurationPlan p = makePlan();
+        Action bad = new ShutdownNode(n2, 3, 4);
+        p.add(bad);
+        ReconfigurationPlanReplayer r = new ReconfigurationPlanReplayer(p);
+        Assert.assertFalse(r.replay());
+        Assert.assertEquals(r.getFailure(), bad);
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.test;
+
+import btrplace.model.*;
+import btrplace.model.constraint.*;
+import btrplace.model.view.ShareableResource;
+
+import java.util.*;
+
+/**
+ * A generator of synthetic datacenter workloads.
+ * <p/>
+ * The generated model contains online nodes grouped into racks and VMs that are
+ * placed according to a fragmentation level. Each node and VM declares a "cpu"
+ * and a "mem" resource using {@link ShareableResource} views. The generator can also
+ * produce a mix of {@link Spread}, {@link Among}, {@link Ban}, {@link Overbook}
+ * and {@link SingleResourceCapacity} constraints that are satisfied by the generated model.
+ * <p/>
+ * The generation only depends on the parameters and the seed, so the same instance
+ * can be generated again. The resulting model and constraints can then be written
+ * using the JSON converters.
+ *
+ * @author Fabien Hermenier
+ */
+public class WorkloadGenerator {
+
+    /**
+     * The identifier of the CPU resource.
+     */
+    public static final String CPU = "cpu";
+
+    /**
+     * The identifier of the memory resource.
+     */
+    public static final String MEM = "mem";
+
+    private long seed;
+
+    private int nbNodes = 100;
+
+    private int nbVMs = 400;
+
+    private int rackSize = 10;
+
+    private int cpuCapacity = 32, memCapacity = 64;
+
+    private int maxCPUDemand = 8, maxMemDemand = 16;
+
+    private double cpuSkew = 1, memSkew = 1;
+
+    private double fragmentation = 0.5;
+
+    private int nbSpreads, nbAmongs, nbBans, nbOverbooks, nbCapacities;
+
+    /**
+     * Make a new generator.
+     *
+     * @param seed the seed of the random generator
+     */
+    public WorkloadGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Set the number of nodes.
+     *
+     * @param n a positive number
+     * @return the current generator
+     */
+    public WorkloadGenerator setNbNodes(int n) {
+        nbNodes = n;
+        return this;
+    }
+
+    /**
+     * Set the number of VMs.
+     * The VMs that cannot be placed stay in the ready state.
+     *
+     * @param n a positive number
+     * @return the current generator
+     */
+    public WorkloadGenerator setNbVMs(int n) {
+        nbVMs = n;
+        return this;
+    }
+
+    /**
+     * Set the number of nodes per rack.
+     * Racks are used to make the groups of nodes of the {@link Among} constraints.
+     *
+     * @param n a positive number
+     * @return the current generator
+     */
+    public WorkloadGenerator setRackSize(int n) {
+        rackSize = n;
+        return this;
+    }
+
+    /**
+     * Set the capacities of each node.
+     *
+     * @param cpu the CPU capacity
+     * @param mem the memory capacity
+     * @return the current generator
+     */
+    public WorkloadGenerator setNodeCapacities(int cpu, int mem) {
+        cpuCapacity = cpu;
+        memCapacity = mem;
+        return this;
+    }
+
+    /**
+     * Set the maximum demands of the VMs.
+     * The demands are picked between 1 and these values.
+     *
+     * @param cpu the maximum CPU demand
+     * @param mem the maximum memory demand
+     * @return the current generator
+     */
+    public WorkloadGenerator setMaxVMDemands(int cpu, int mem) {
+        maxCPUDemand = cpu;
+        maxMemDemand = mem;
+        return this;
+    }
+
+    /**
+     * Set the skew of the demands distribution.
+     * With a skew of {@code 0}, the demands are uniformly distributed.
+     * The higher the skew, the more small VMs with a few large ones.
+     *
+     * @param cpu the skew of the CPU demands
+     * @param mem the skew of the memory demands
+     * @return the current generator
+     */
+    public WorkloadGenerator setSkew(double cpu, double mem) {
+        cpuSkew = cpu;
+        memSkew = mem;
+        return this;
+    }
+
+    /**
+     * Set the fragmentation level.
+     * With a level of {@code 0}, the VMs are packed on the first nodes.
+     * With a level of {@code 1}, the VMs are scattered over all the nodes.
+     *
+     * @param f a value between 0 and 1
+     * @return the current generator
+     */
+    public WorkloadGenerator setFragmentation(double f) {
+        fragmentation = f;
+        return this;
+    }
+
+    /**
+     * Set the number of constraints of each kind to generate.
+     *
+     * @param spreads    the number of {@link Spread} constraints
+     * @param amongs     the number of {@link Among} constraints
+     * @param bans       the number of {@link Ban} constraints
+     * @param overbooks  the number of {@link Overbook} constraints
+     * @param capacities the number of {@link SingleResourceCapacity} constraints
+     * @return the current generator
+     */
+    public WorkloadGenerator setConstraintMix(int spreads, int amongs, int bans, int overbooks, int capacities) {
+        nbSpreads = spreads;
+        nbAmongs = amongs;
+        nbBans = bans;
+        nbOverbooks = overbooks;
+        nbCapacities = capacities;
+        return this;
+    }
+
+    /**
+     * Get the seed of the generator.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    private static int demand(Random rnd, int max, double skew) {
+        return 1 + (int) ((max - 1) * Math.pow(rnd.nextDouble(), 1 + skew) + 0.5);
+    }
+
+    private static UUID nextUUID(Random rnd) {
+        return new UUID(rnd.nextLong(), rnd.nextLong());
+    }
+
+    /**
+     * Generate the model.
+     *
+     * @return a new model
+     */
+    public Model generateModel() {
+        Random rnd = new Random(seed);
+        Mapping map = new DefaultMapping();
+        ShareableResource cpu = new ShareableResource(CPU);
+        ShareableResource mem = new ShareableResource(MEM);
+
+        UUID[] nodes = new UUID[nbNodes];
+        int[] freeCPU = new int[nbNodes];
+        int[] freeMem = new int[nbNodes];
+        for (int i = 0; i < nbNodes; i++) {
+            nodes[i] = nextUUID(rnd);
+            map.addOnlineNode(nodes[i]);
+            cpu.set(nodes[i], cpuCapacity);
+            mem.set(nodes[i], memCapacity);
+            freeCPU[i] = cpuCapacity;
+            freeMem[i] = memCapacity;
+        }
+
+        //Next-fit for packed VMs, random tries for scattered VMs
+        int cur = 0;
+        for (int i = 0; i < nbVMs; i++) {
+            UUID vm = nextUUID(rnd);
+            int c = demand(rnd, maxCPUDemand, cpuSkew);
+            int m = demand(rnd, maxMemDemand, memSkew);
+            cpu.set(vm, c);
+            mem.set(vm, m);
+            int dst = -1;
+            if (nbNodes > 0 && rnd.nextDouble() < fragmentation) {
+                for (int t = 0; t < 10 && dst < 0; t++) {
+                    int x = rnd.nextInt(nbNodes);
+                    if (freeCPU[x] >= c && freeMem[x] >= m) {
+                        dst = x;
+                    }
+                }
+            }
+            while (dst < 0 && cur < nbNodes) {
+                if (freeCPU[cur] >= c && freeMem[cur] >= m) {
+                    dst = cur;
+                } else {
+                    cur++;
+                }
+            }
+            if (dst < 0) {
+                map.addReadyVM(vm);
+            } else {
+                map.addRunningVM(vm, nodes[dst]);
+                freeCPU[dst] -= c;
+                freeMem[dst] -= m;
+            }
+        }
+        Model mo = new DefaultModel(map);
+        mo.attach(cpu);
+        mo.attach(mem);
+        return mo;
+    }
+
+    /**
+     * Generate the constraints for a model made by this generator.
+     * The constraints are satisfied by the model.
+     *
+     * @param mo the model to consider
+     * @return a list of constraints
+     */
+    public List<SatConstraint> generateConstraints(Model mo) {
+        Random rnd = new Random(seed + 1);
+        Mapping map = mo.getMapping();
+        List<SatConstraint> cstrs = new ArrayList<SatConstraint>();
+        List<UUID> nodes = new ArrayList<UUID>(map.getOnlineNodes());
+        Collections.sort(nodes);
+        List<UUID> vms = new ArrayList<UUID>(map.getRunningVMs());
+        Collections.sort(vms);
+        if (nodes.isEmpty() || vms.isEmpty()) {
+            return cstrs;
+        }
+        List<Set<UUID>> racks = new ArrayList<Set<UUID>>();
+        for (int i = 0; i < nodes.size(); i += rackSize) {
+            racks.add(new HashSet<UUID>(nodes.subList(i, Math.min(i + rackSize, nodes.size()))));
+        }
+
+        //Spread: VMs on distinct nodes
+        for (int i = 0; i < nbSpreads; i++) {
+            Set<UUID> hosts = new HashSet<UUID>();
+            Set<UUID> grp = new HashSet<UUID>();
+            int size = 2 + rnd.nextInt(3);
+            for (int t = 0; t < 3 * size && grp.size() < size; t++) {
+                UUID vm = vms.get(rnd.nextInt(vms.size()));
+                if (hosts.add(map.getVMLocation(vm))) {
+                    grp.add(vm);
+                }
+            }
+            if (grp.size() > 1) {
+                cstrs.add(new Spread(grp));
+            }
+        }
+
+        //Among: VMs of a same rack, the rack and some others are candidates
+        for (int i = 0; i < nbAmongs; i++) {
+            int r = rnd.nextInt(racks.size());
+            List<UUID> inRack = new ArrayList<UUID>(map.getRunningVMs(racks.get(r)));
+            if (inRack.isEmpty()) {
+                continue;
+            }
+            Collections.sort(inRack);
+            Set<UUID> grp = new HashSet<UUID>();
+            int size = 2 + rnd.nextInt(4);
+            for (int t = 0; t < size; t++) {
+                grp.add(inRack.get(rnd.nextInt(inRack.size())));
+            }
+            Set<Set<UUID>> groups = new HashSet<Set<UUID>>();
+            groups.add(racks.get(r));
+            groups.add(racks.get(rnd.nextInt(racks.size())));
+            cstrs.add(new Among(grp, groups));
+        }
+
+        //Ban: VMs out of some nodes that do not host them
+        for (int i = 0; i < nbBans; i++) {
+            Set<UUID> grp = new HashSet<UUID>();
+            int size = 1 + rnd.nextInt(3);
+            for (int t = 0; t < size; t++) {
+                grp.add(vms.get(rnd.nextInt(vms.size())));
+            }
+            Set<UUID> hosts = hostsOf(map, grp);
+            Set<UUID> banned = new HashSet<UUID>();
+            int nb = 1 + rnd.nextInt(Math.min(5, nodes.size()));
+            for (int t = 0; t < nb; t++) {
+                UUID n = nodes.get(rnd.nextInt(nodes.size()));
+                if (!hosts.contains(n)) {
+                    banned.add(n);
+                }
+            }
+            if (!banned.isEmpty()) {
+                cstrs.add(new Ban(grp, banned));
+            }
+        }
+
+        //Overbook: a ratio between 1 and 2 over a rack
+        for (int i = 0; i < nbOverbooks; i++) {
+            Set<UUID> rack = racks.get(rnd.nextInt(racks.size()));
+            double ratio = 1 + Math.round(rnd.nextDouble() * 10) / 10.0;
+            cstrs.add(new Overbook(rack, rnd.nextBoolean() ? CPU : MEM, ratio));
+        }
+
+        //SingleResourceCapacity: the current maximum usage inside a rack, plus a margin
+        for (int i = 0; i < nbCapacities; i++) {
+            Set<UUID> rack = racks.get(rnd.nextInt(racks.size()));
+            String rcId = rnd.nextBoolean() ? CPU : MEM;
+            ShareableResource rc = (ShareableResource) mo.getView(ShareableResource.VIEW_ID_BASE + rcId);
+            int max = 0;
+            for (UUID n : rack) {
+                max = Math.max(max, rc.sum(map.getRunningVMs(n), true));
+            }
+            int capa = rcId.equals(CPU) ? cpuCapacity : memCapacity;
+            cstrs.add(new SingleResourceCapacity(rack, rcId, Math.min(capa, max + rnd.nextInt(capa - max + 1))));
+        }
+        return cstrs;
+    }
+
+    private static Set<UUID> hostsOf(Mapping map, Set<UUID> vms) {
+        Set<UUID> hosts = new HashSet<UUID>();
+        for (UUID vm : vms) {
+            hosts.add(map.getVMLocation(vm));
+        }
+        return hosts;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder("workloadGenerator(seed=").append(seed)
+                .append(", nodes=").append(nbNodes)
+                .append(", vms=").append(nbVMs)
+                .append(", fragmentation=").append(fragmentation)
+                .append(')').toString();
+    }
+}
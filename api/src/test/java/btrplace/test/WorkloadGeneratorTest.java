@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.test;
+
+import btrplace.model.*;
+import btrplace.model.view.ShareableResource;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Unit tests for {@link WorkloadGenerator}.
+ *
+ * @author Fabien Hermenier
+ */
+public class WorkloadGeneratorTest {
+
+    @Test
+    public void testModel() {
+        WorkloadGenerator g = new WorkloadGenerator(17).setNbNodes(50).setNbVMs(200);
+        Assert.assertEquals(g.getSeed(), 17);
+        Model mo = g.generateModel();
+        Mapping map = mo.getMapping();
+        Assert.assertEquals(map.getOnlineNodes().size(), 50);
+        Assert.assertEquals(map.getAllVMs().size(), 200);
+        ShareableResource cpu = (ShareableResource) mo.getView(ShareableResource.VIEW_ID_BASE + WorkloadGenerator.CPU);
+        ShareableResource mem = (ShareableResource) mo.getView(ShareableResource.VIEW_ID_BASE + WorkloadGenerator.MEM);
+        Assert.assertNotNull(cpu);
+        Assert.assertNotNull(mem);
+        //The capacities are respected
+        for (UUID n : map.getOnlineNodes()) {
+            Assert.assertTrue(cpu.sum(map.getRunningVMs(n), true) <= cpu.get(n));
+            Assert.assertTrue(mem.sum(map.getRunningVMs(n), true) <= mem.get(n));
+        }
+    }
+
+    @Test
+    public void testReproducible() {
+        WorkloadGenerator g1 = new WorkloadGenerator(3).setConstraintMix(5, 5, 5, 5, 5);
+        WorkloadGenerator g2 = new WorkloadGenerator(3).setConstraintMix(5, 5, 5, 5, 5);
+        Model mo = g1.generateModel();
+        Assert.assertEquals(g2.generateModel(), mo);
+        Assert.assertEquals(g2.generateConstraints(mo), g1.generateConstraints(mo));
+        Assert.assertFalse(new WorkloadGenerator(4).generateModel().equals(mo));
+    }
+
+    @Test
+    public void testFragmentation() {
+        WorkloadGenerator g = new WorkloadGenerator(5).setNbNodes(100).setNbVMs(150);
+        Mapping packed = g.setFragmentation(0).generateModel().getMapping();
+        Mapping scattered = g.setFragmentation(1).generateModel().getMapping();
+        int nbPacked = MappingUtils.usedNodes(packed, EnumSet.of(MappingUtils.State.Runnings)).size();
+        int nbScattered = MappingUtils.usedNodes(scattered, EnumSet.of(MappingUtils.State.Runnings)).size();
+        Assert.assertTrue(nbPacked < nbScattered, nbPacked + " >= " + nbScattered);
+    }
+
+    @Test
+    public void testConstraints() {
+        WorkloadGenerator g = new WorkloadGenerator(11).setNbNodes(60).setNbVMs(240)
+                .setSkew(2, 0).setConstraintMix(10, 10, 10, 10, 10);
+        Model mo = g.generateModel();
+        List<SatConstraint> cstrs = g.generateConstraints(mo);
+        Assert.assertTrue(cstrs.size() > 30);
+        for (SatConstraint c : cstrs) {
+            Assert.assertEquals(c.isSatisfied(mo), SatConstraint.Sat.SATISFIED, c.toString());
+        }
+    }
+
+    @Test
+    public void testOverloaded() {
+        //Not enough room, some VMs stay ready
+        Model mo = new WorkloadGenerator(1).setNbNodes(2).setNbVMs(100).generateModel();
+        Assert.assertFalse(mo.getMapping().getReadyVMs().isEmpty());
+        Assert.assertEquals(mo.getMapping().getAllVMs().size(), 100);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the benchmarks and store the results in a JSON file
+ * to track the performance between releases.
+ * <p/>
+ * Usage: {@code java -jar benchmarks.jar [output] [regex]}.
+ * The results are written in {@code benchmarks.json} by default and
+ * all the benchmarks are run unless a regular expression selects some of them.
+ * For a finer control, use {@code org.openjdk.jmh.Main} instead.
+ *
+ * @author Fabien Hermenier
+ */
+public final class BenchmarksRunner {
+
+    /**
+     * The default output file.
+     */
+    public static final String DEFAULT_OUTPUT = "benchmarks.json";
+
+    private BenchmarksRunner() {
+    }
+
+    /**
+     * Launcher.
+     *
+     * @param args the output file then a regular expression to select the benchmarks
+     * @throws RunnerException if an error occurred while running the benchmarks
+     */
+    public static void main(String[] args) throws RunnerException {
+        String output = args.length > 0 ? args[0] : DEFAULT_OUTPUT;
+        String include = args.length > 1 ? args[1] : BenchmarksRunner.class.getPackage().getName() + ".*";
+        Options opts = new OptionsBuilder()
+                .include(include)
+                .resultFormat(ResultFormatType.JSON)
+                .result(output)
+                .build();
+        new Runner(opts).run();
+    }
+}
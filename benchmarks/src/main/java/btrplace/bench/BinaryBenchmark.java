@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.bench;
+
+import btrplace.json.JSONConverterException;
+import btrplace.json.binary.BinaryConverter;
+import btrplace.json.model.Instance;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the binary serialisation of an instance using {@link BinaryConverter}.
+ * The parameters are the same as in {@link JSONBenchmark} to compare the two formats.
+ *
+ * @author Fabien Hermenier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int nbNodes;
+
+    @Param({"4"})
+    public int vmsPerNode;
+
+    @Param({"none", "mixed", "generated"})
+    public String mix;
+
+    private Instance instance;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() throws JSONConverterException, IOException {
+        instance = Workloads.makeInstance(nbNodes, vmsPerNode, mix, 0);
+        bytes = serialize();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JSONConverterException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinaryConverter().write(instance, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Instance parse() throws JSONConverterException, IOException {
+        return new BinaryConverter().readInstance(new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.bench;
+
+import btrplace.json.JSONConverterException;
+import btrplace.json.JSONUtils;
+import btrplace.json.model.Instance;
+import btrplace.json.model.InstanceConverter;
+import net.minidev.json.JSONObject;
+import net.minidev.json.parser.ParseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the JSON serialisation of an instance using {@link InstanceConverter}.
+ *
+ * @author Fabien Hermenier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JSONBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int nbNodes;
+
+    @Param({"4"})
+    public int vmsPerNode;
+
+    @Param({"none", "mixed", "generated"})
+    public String mix;
+
+    private Instance instance;
+
+    private String json;
+
+    @Setup
+    public void setup() throws JSONConverterException {
+        instance = Workloads.makeInstance(nbNodes, vmsPerNode, mix, 0);
+        json = new InstanceConverter().toJSON(instance).toJSONString();
+    }
+
+    @Benchmark
+    public String serialize() throws JSONConverterException {
+        return new InstanceConverter().toJSON(instance).toJSONString();
+    }
+
+    @Benchmark
+    public Instance parse() throws JSONConverterException, ParseException {
+        JSONObject o = JSONUtils.readObject(json);
+        return new InstanceConverter().fromJSON(o);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.bench;
+
+import btrplace.model.DefaultMapping;
+import btrplace.model.Mapping;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the main operations of {@link DefaultMapping}.
+ *
+ * @author Fabien Hermenier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int nbNodes;
+
+    @Param({"4", "16"})
+    public int vmsPerNode;
+
+    private Mapping map;
+
+    private List<UUID> nodes;
+
+    private List<UUID> vms;
+
+    @Setup
+    public void setup() {
+        map = Workloads.makeModel(nbNodes, vmsPerNode, 0).getMapping();
+        nodes = new ArrayList<UUID>(map.getAllNodes());
+        vms = new ArrayList<UUID>(map.getAllVMs());
+    }
+
+    @Benchmark
+    public Mapping fill() {
+        Mapping m = new DefaultMapping();
+        for (UUID n : nodes) {
+            m.addOnlineNode(n);
+        }
+        int i = 0;
+        for (UUID vm : vms) {
+            m.addRunningVM(vm, nodes.get(i++ % nodes.size()));
+        }
+        return m;
+    }
+
+    @Benchmark
+    public void locations(Blackhole bh) {
+        for (UUID vm : vms) {
+            bh.consume(map.getVMLocation(vm));
+        }
+    }
+
+    @Benchmark
+    public void hostedVMs(Blackhole bh) {
+        for (UUID n : nodes) {
+            bh.consume(map.getRunningVMs(n).size());
+        }
+    }
+
+    @Benchmark
+    public int allRunningVMs() {
+        return map.getRunningVMs().size();
+    }
+
+    @Benchmark
+    public Mapping copy() {
+        return map.clone();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.bench;
+
+import btrplace.json.model.Instance;
+import btrplace.plan.ReconfigurationPlan;
+import btrplace.solver.SolverException;
+import btrplace.solver.choco.ChocoReconfigurationAlgorithm;
+import btrplace.solver.choco.DefaultChocoReconfigurationAlgorithm;
+import btrplace.solver.choco.DefaultReconfigurationProblemBuilder;
+import btrplace.solver.choco.ReconfigurationProblem;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the construction of a reconfiguration problem and its resolution.
+ *
+ * @author Fabien Hermenier
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ProblemBenchmark {
+
+    @Param({"50", "200", "1000"})
+    public int nbNodes;
+
+    @Param({"4"})
+    public int vmsPerNode;
+
+    @Param({"offline", "fence", "mixed", "generated"})
+    public String mix;
+
+    @Param({"false", "true"})
+    public boolean repair;
+
+    private Instance instance;
+
+    @Setup
+    public void setup() {
+        instance = Workloads.makeInstance(nbNodes, vmsPerNode, mix, 0);
+    }
+
+    /**
+     * Build the core problem only.
+     */
+    @Benchmark
+    public ReconfigurationProblem build() throws SolverException {
+        return new DefaultReconfigurationProblemBuilder(instance.getModel()).build();
+    }
+
+    /**
+     * Customize then solve the problem, without optimisation.
+     */
+    @Benchmark
+    public ReconfigurationPlan solve() throws SolverException {
+        ChocoReconfigurationAlgorithm cra = new DefaultChocoReconfigurationAlgorithm();
+        cra.repair(repair);
+        cra.setTimeLimit(60);
+        return cra.solve(instance.getModel(), instance.getConstraints());
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.bench;
+
+import btrplace.model.Model;
+import btrplace.solver.SolverException;
+import btrplace.solver.choco.ChocoModelView;
+import btrplace.solver.choco.DefaultReconfigurationProblemBuilder;
+import btrplace.solver.choco.ReconfigurationProblem;
+import btrplace.solver.choco.VMActionModel;
+import btrplace.solver.choco.chocoUtil.VectorPacking;
+import choco.cp.solver.CPSolver;
+import choco.kernel.solver.ContradictionException;
+import choco.kernel.solver.variables.integer.IntDomainVar;
+import gnu.trove.list.array.TIntArrayList;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the initial propagation of the global constraints
+ * {@link VectorPacking} and {@link btrplace.solver.choco.chocoUtil.TaskScheduler}.
+ * The solvers are re-created before each invocation as the propagation alters them.
+ *
+ * @author Fabien Hermenier
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PropagationBenchmark {
+
+    @Param({"50", "200", "1000"})
+    public int nbNodes;
+
+    @Param({"4", "16"})
+    public int vmsPerNode;
+
+    private CPSolver packing;
+
+    private ReconfigurationProblem scheduling;
+
+    @Setup(Level.Invocation)
+    public void setup() throws SolverException {
+        //A 2-dimensional vector packing with partially instantiated items
+        Random rnd = new Random(0);
+        packing = new CPSolver();
+        int nbItems = nbNodes * vmsPerNode;
+        IntDomainVar[][] loads = new IntDomainVar[2][nbNodes];
+        IntDomainVar[][] sizes = new IntDomainVar[2][nbItems];
+        for (int d = 0; d < 2; d++) {
+            for (int i = 0; i < nbNodes; i++) {
+                loads[d][i] = packing.createBoundIntVar("load" + d + "-" + i, 0, 4 * vmsPerNode);
+            }
+            for (int i = 0; i < nbItems; i++) {
+                sizes[d][i] = packing.makeConstantIntVar(1 + rnd.nextInt(3));
+            }
+        }
+        IntDomainVar[] bins = new IntDomainVar[nbItems];
+        for (int i = 0; i < nbItems; i++) {
+            bins[i] = packing.createEnumIntVar("bin" + i, 0, nbNodes - 1);
+            if (rnd.nextBoolean()) {
+                bins[i] = packing.makeConstantIntVar(i / vmsPerNode);
+            }
+        }
+        packing.post(new VectorPacking(packing.getEnvironment(), loads, sizes, bins));
+
+        //The scheduling constraint of a core problem
+        Model mo = Workloads.makeModel(nbNodes, vmsPerNode, 0);
+        scheduling = new DefaultReconfigurationProblemBuilder(mo).build();
+        //The views declare their dimensions to the scheduler
+        for (ChocoModelView v : scheduling.getViews()) {
+            v.beforeSolve(scheduling);
+        }
+        //The number of running VMs, as declared by the problem before solving
+        TIntArrayList cUse = new TIntArrayList();
+        List<IntDomainVar> dUse = new ArrayList<IntDomainVar>();
+        for (VMActionModel a : scheduling.getVMActions()) {
+            if (a.getDSlice() != null) {
+                dUse.add(scheduling.getSolver().makeConstantIntVar(1));
+            }
+            if (a.getCSlice() != null) {
+                cUse.add(1);
+            }
+        }
+        scheduling.getTaskSchedulerBuilder().add(scheduling.getNbRunningVMs(),
+                cUse.toArray(),
+                dUse.toArray(new IntDomainVar[dUse.size()]));
+        scheduling.getSolver().post(scheduling.getTaskSchedulerBuilder().build());
+    }
+
+    @Benchmark
+    public boolean vectorPacking() {
+        try {
+            packing.propagate();
+        } catch (ContradictionException e) {
+            return false;
+        }
+        return true;
+    }
+
+    @Benchmark
+    public boolean taskScheduler() {
+        try {
+            scheduling.getSolver().propagate();
+        } catch (ContradictionException e) {
+            return false;
+        }
+        return true;
+    }
+}
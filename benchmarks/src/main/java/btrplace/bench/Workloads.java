@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.bench;
+
+import btrplace.json.model.Instance;
+import btrplace.model.DefaultMapping;
+import btrplace.model.DefaultModel;
+import btrplace.model.Mapping;
+import btrplace.model.Model;
+import btrplace.model.SatConstraint;
+import btrplace.model.constraint.Fence;
+import btrplace.model.constraint.Offline;
+import btrplace.model.constraint.SingleRunningCapacity;
+import btrplace.model.constraint.Spread;
+import btrplace.model.view.ShareableResource;
+import btrplace.test.WorkloadGenerator;
+
+import java.util.*;
+
+/**
+ * Generate reproducible instances for the benchmarks.
+ * <p/>
+ * Every node is online and provides a "cpu" and a "mem" resource.
+ * The VMs are running and evenly spread over the nodes.
+ * The constraints depend on a mix:
+ * <ul>
+ * <li>{@code none}: no constraint</li>
+ * <li>{@code offline}: 5% of the nodes must be turned off</li>
+ * <li>{@code fence}: the nodes are grouped by 10. The VMs are fenced into the group of their host.
+ * 5% of the nodes must be turned off</li>
+ * <li>{@code mixed}: {@code fence} plus spread constraints over pairs of VMs and a capacity
+ * restriction on every node</li>
+ * <li>{@code generated}: a model and constraints made by a {@link WorkloadGenerator}</li>
+ * </ul>
+ *
+ * @author Fabien Hermenier
+ */
+public final class Workloads {
+
+    /**
+     * The constraint mixes that are available.
+     */
+    public static final String[] MIXES = {"none", "offline", "fence", "mixed", "generated"};
+
+    /**
+     * Utility class. No instantiation.
+     */
+    private Workloads() {
+    }
+
+    /**
+     * Generate a model.
+     *
+     * @param nbNodes    the number of nodes
+     * @param vmsPerNode the number of VMs hosted on each node
+     * @param seed       the seed of the generator
+     * @return the resulting model
+     */
+    public static Model makeModel(int nbNodes, int vmsPerNode, long seed) {
+        Random rnd = new Random(seed);
+        Mapping map = new DefaultMapping();
+        ShareableResource cpu = new ShareableResource("cpu");
+        ShareableResource mem = new ShareableResource("mem");
+        for (int i = 0; i < nbNodes; i++) {
+            UUID n = new UUID(0, i);
+            map.addOnlineNode(n);
+            cpu.set(n, 4 * vmsPerNode);
+            mem.set(n, 8 * vmsPerNode);
+            for (int j = 0; j < vmsPerNode; j++) {
+                UUID vm = new UUID(1, (long) i * vmsPerNode + j);
+                map.addRunningVM(vm, n);
+                cpu.set(vm, 1 + rnd.nextInt(3));
+                mem.set(vm, 1 + rnd.nextInt(6));
+            }
+        }
+        Model mo = new DefaultModel(map);
+        mo.attach(cpu);
+        mo.attach(mem);
+        return mo;
+    }
+
+    /**
+     * Generate an instance.
+     *
+     * @param nbNodes    the number of nodes
+     * @param vmsPerNode the number of VMs hosted on each node
+     * @param mix        the constraint mix. One of {@link #MIXES}
+     * @param seed       the seed of the generator
+     * @return the resulting instance
+     */
+    public static Instance makeInstance(int nbNodes, int vmsPerNode, String mix, long seed) {
+        if ("generated".equals(mix)) {
+            int nb = nbNodes / 5;
+            WorkloadGenerator g = new WorkloadGenerator(seed).setNbNodes(nbNodes)
+                    .setNbVMs(nbNodes * vmsPerNode)
+                    .setConstraintMix(nb, nb, nb, nb, nb);
+            Model mo = g.generateModel();
+            return new Instance(mo, g.generateConstraints(mo));
+        }
+        Model mo = makeModel(nbNodes, vmsPerNode, seed);
+        Mapping map = mo.getMapping();
+        List<SatConstraint> cstrs = new ArrayList<SatConstraint>();
+        if ("none".equals(mix)) {
+            return new Instance(mo, cstrs);
+        }
+        List<UUID> nodes = new ArrayList<UUID>(map.getOnlineNodes());
+        Collections.sort(nodes);
+        //Turn off the first node of each group of 20 nodes
+        Set<UUID> offs = new HashSet<UUID>();
+        for (int i = 0; i < nodes.size(); i += 20) {
+            offs.add(nodes.get(i));
+        }
+        cstrs.add(new Offline(offs));
+        if ("offline".equals(mix)) {
+            return new Instance(mo, cstrs);
+        }
+
+        for (int i = 0; i < nodes.size(); i += 10) {
+            Set<UUID> grp = new HashSet<UUID>(nodes.subList(i, Math.min(i + 10, nodes.size())));
+            cstrs.add(new Fence(new HashSet<UUID>(map.getRunningVMs(grp)), grp));
+        }
+        if ("fence".equals(mix)) {
+            return new Instance(mo, cstrs);
+        }
+
+        if (!"mixed".equals(mix)) {
+            throw new IllegalArgumentException("Unsupported mix '" + mix + "'. Expecting one of " + Arrays.toString(MIXES));
+        }
+        //Spread 2 VMs of consecutive nodes inside a same group
+        for (int i = 0; i + 1 < nodes.size(); i += 2) {
+            if (i / 10 != (i + 1) / 10) {
+                continue;
+            }
+            Set<UUID> pair = new HashSet<UUID>();
+            pair.add(map.getRunningVMs(nodes.get(i)).iterator().next());
+            pair.add(map.getRunningVMs(nodes.get(i + 1)).iterator().next());
+            cstrs.add(new Spread(pair));
+        }
+        int max = map.getRunningVMs().size() / nodes.size() + 2;
+        cstrs.add(new SingleRunningCapacity(new HashSet<UUID>(nodes), max));
+        return new Instance(mo, cstrs);
+    }
+}
@@ -18,9 +18,17 @@
 
 package btrplace.solver.choco;
 
+import btrplace.model.Model;
+import btrplace.model.SatConstraint;
+import btrplace.plan.ReconfigurationPlan;
+import btrplace.plan.ReconfigurationPlanListener;
 import btrplace.solver.ReconfigurationAlgorithm;
+import btrplace.solver.SolverException;
 import btrplace.solver.choco.constraint.SatConstraintMapper;
 
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+
 /**
  * A reconfiguration algorithm based on the Choco constraint solver.
  *
@@ -153,4 +161,112 @@ public interface ChocoReconfigurationAlgorithm extends ReconfigurationAlgorithm
      */
     int getMaxEnd();
 
+    /**
+     * Set the executor to use to map the constraints and to estimate
+     * the misplaced VMs in parallel before solving.
+     * The injection of the constraints into the solver stays sequential.
+     * The source model is then read concurrently by several threads and must
+     * support it. This is the case for {@link btrplace.model.DefaultModel},
+     * {@link btrplace.model.CopyOnWriteModel}, so for the result of a previous plan,
+     * and {@link btrplace.model.snapshot.MappedModel}.
+     *
+     * @param e the executor to use. {@code null} to perform every step sequentially
+     */
+    void setExecutorService(ExecutorService e);
+
+    /**
+     * Get the executor used to prepare the problem in parallel.
+     *
+     * @return the executor, {@code null} if the preparation is sequential
+     */
+    ExecutorService getExecutorService();
+
+    /**
+     * Set the number of attempts to run concurrently to solve a problem.
+     * Each attempt builds and solves its own reconfiguration problem, the objective
+     * is then injected into every problem and must not retain any state.
+     * Without optimisation, the first computed plan is returned. Otherwise, the
+     * attempts share their best objective value and the best plan is returned.
+     *
+     * @param n the number of attempts. A value lower than 2 disables the portfolio
+     */
+    void setPortfolioSize(int n);
+
+    /**
+     * Get the number of attempts to run concurrently to solve a problem.
+     *
+     * @return a positive integer
+     */
+    int getPortfolioSize();
+
+    /**
+     * Set the listener to notify with the actions of the computed plans.
+     * The actions are notified in the increasing order of their start moment
+     * as soon as they are extracted from the solution and checked one by one, so their execution can
+     * start before the plan is returned. With a portfolio and no optimisation, the actions
+     * of the first attempt that computes a plan are notified the same way and this plan is returned.
+     * When optimising with a portfolio, the best plan is only known once every attempt terminated,
+     * so its actions are notified at that moment.
+     *
+     * @param l the listener to notify. {@code null} to disable the notifications
+     */
+    void setPlanListener(ReconfigurationPlanListener l);
+
+    /**
+     * Get the listener notified with the actions of the computed plans.
+     *
+     * @return the listener if it was defined, {@code null} otherwise
+     */
+    ReconfigurationPlanListener getPlanListener();
+
+    /**
+     * Set the filtering level of the constraints that schedule the slices.
+     * A stronger filtering provides earlier bounds on the plan duration, which
+     * is helpful to prove the optimality of dense problems.
+     *
+     * @param f the filtering level
+     */
+    void setSchedulingFiltering(SchedulingFiltering f);
+
+    /**
+     * Get the filtering level of the constraints that schedule the slices.
+     *
+     * @return the filtering level. {@link SchedulingFiltering#BASIC} by default
+     */
+    SchedulingFiltering getSchedulingFiltering();
+
+    /**
+     * Set the seed of the random heuristics to make the solving process reproducible.
+     * By default, no seed is set and every solving process draws a random one.
+     * With a portfolio, the attempt {@code i} uses the seed {@code s + i}
+     * so the attempts explore the search space differently.
+     *
+     * @param s the seed to use
+     */
+    void setRandomSeed(long s);
+
+    /**
+     * Get the seed of the random heuristics.
+     *
+     * @return the seed. {@code null} if no seed was set
+     */
+    Long getRandomSeed();
+
+    /**
+     * Compute a reconfiguration plan using a previous plan as a hint.
+     * The VMs that are not affected by the changes between the result of the
+     * previous plan and the current model are not manageable, unless the repair mode
+     * or the constraints state otherwise. The placement heuristics try first the placement
+     * of the previous plan. The objective is not bounded by the value of the previous
+     * plan, as the optimum of the new problem may be worse.
+     * If no solution is found using these hints, the problem is solved from scratch.
+     *
+     * @param i        the current model
+     * @param cstrs    the constraints that must be considered
+     * @param previous the previous plan. {@code null} to solve the problem from scratch
+     * @return the plan to execute to reach the new solution or {@code null} if there is no solution
+     * @throws SolverException if an error occurred while trying to solve the problem
+     */
+    ReconfigurationPlan solve(Model i, Collection<SatConstraint> cstrs, ReconfigurationPlan previous) throws SolverException;
+
 }
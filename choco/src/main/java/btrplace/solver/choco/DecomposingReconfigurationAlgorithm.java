@@ -0,0 +1,455 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.solver.choco;
+
+import btrplace.model.*;
+import btrplace.model.constraint.Among;
+import btrplace.model.constraint.Fence;
+import btrplace.model.constraint.Quarantine;
+import btrplace.model.constraint.Running;
+import btrplace.model.view.ShareableResource;
+import btrplace.plan.Action;
+import btrplace.plan.DefaultReconfigurationPlan;
+import btrplace.plan.ReconfigurationPlan;
+import btrplace.solver.ReconfigurationAlgorithm;
+import btrplace.solver.SolverException;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A reconfiguration algorithm that splits a problem into independent
+ * sub-problems, solves them concurrently then merges the resulting plans.
+ * <p/>
+ * A partition is a group of nodes that share no VM and no constraint with the
+ * other groups. Partitions are either detected or deduced from groups of nodes
+ * provided using {@link #setPartitions(java.util.Collection)}:
+ * <ul>
+ * <li>without any provided group, every VM must be confined by a {@link Fence},
+ * an {@link Among} or a {@link Quarantine}. Otherwise the problem is not decomposed</li>
+ * <li>with provided groups, the VMs are considered to stay inside the group of their
+ * current host</li>
+ * </ul>
+ * In both cases, the groups that are involved in a same constraint are merged.
+ * Each sub-problem is solved by a {@link DefaultChocoReconfigurationAlgorithm}
+ * that uses the parameters of the algorithm given at instantiation.
+ *
+ * @author Fabien Hermenier
+ */
+public class DecomposingReconfigurationAlgorithm implements ReconfigurationAlgorithm {
+
+    private ChocoReconfigurationAlgorithm params;
+
+    private Collection<Set<UUID>> partitions;
+
+    private int parallelism;
+
+    /**
+     * Make a new algorithm.
+     *
+     * @param cra the algorithm that provides the parameters to solve each sub-problem
+     */
+    public DecomposingReconfigurationAlgorithm(ChocoReconfigurationAlgorithm cra) {
+        params = cra;
+        partitions = Collections.emptyList();
+        parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Set the groups of nodes the VMs are restricted to.
+     *
+     * @param parts disjoint sets of nodes. An empty collection to detect the partitions
+     */
+    public void setPartitions(Collection<Set<UUID>> parts) {
+        partitions = parts;
+    }
+
+    /**
+     * Get the groups of nodes the VMs are restricted to.
+     *
+     * @return the groups of nodes. Empty if the partitions are detected
+     */
+    public Collection<Set<UUID>> getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Set the maximum number of sub-problems to solve concurrently.
+     *
+     * @param n a positive integer
+     */
+    public void setParallelism(int n) {
+        parallelism = n;
+    }
+
+    /**
+     * Get the maximum number of sub-problems to solve concurrently.
+     *
+     * @return a positive integer. The number of available processors by default
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Get the algorithm that provides the parameters to solve each sub-problem.
+     *
+     * @return the algorithm
+     */
+    public ChocoReconfigurationAlgorithm getParameters() {
+        return params;
+    }
+
+    @Override
+    public ReconfigurationPlan solve(Model i, Collection<SatConstraint> cstrs) throws SolverException {
+        List<Set<UUID>> parts = computePartitions(i, cstrs);
+        if (parts.size() <= 1) {
+            return new DefaultChocoReconfigurationAlgorithm(params).solve(i, cstrs);
+        }
+        Map<UUID, Integer> index = new HashMap<UUID, Integer>();
+        for (int x = 0; x < parts.size(); x++) {
+            for (UUID n : parts.get(x)) {
+                index.put(n, x);
+            }
+        }
+
+        //Dispatch the VMs and the constraints
+        Mapping map = i.getMapping();
+        List<Set<UUID>> vms = new ArrayList<Set<UUID>>(parts.size());
+        List<List<SatConstraint>> subCstrs = new ArrayList<List<SatConstraint>>(parts.size());
+        for (int x = 0; x < parts.size(); x++) {
+            vms.add(new HashSet<UUID>());
+            subCstrs.add(new ArrayList<SatConstraint>());
+        }
+        Map<UUID, UUID> anchors = getAnchors(i, cstrs);
+        for (UUID vm : map.getAllVMs()) {
+            UUID n = anchors.get(vm);
+            vms.get(n == null ? 0 : index.get(n)).add(vm);
+        }
+        for (SatConstraint cstr : cstrs) {
+            subCstrs.get(partOf(cstr, anchors, index)).add(cstr);
+        }
+
+        List<Callable<ReconfigurationPlan>> tasks = new ArrayList<Callable<ReconfigurationPlan>>(parts.size());
+        for (int x = 0; x < parts.size(); x++) {
+            Model sub = subModel(i, MappingUtils.subMapping(map, parts.get(x), vms.get(x)));
+            tasks.add(new SubProblem(sub, subCstrs.get(x)));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, parts.size())));
+        DefaultReconfigurationPlan plan = new DefaultReconfigurationPlan(i);
+        try {
+            for (Future<ReconfigurationPlan> f : pool.invokeAll(tasks)) {
+                ReconfigurationPlan p = f.get();
+                if (p == null) {
+                    //The sub-problems are independent, so one failure is enough
+                    return null;
+                }
+                for (Action a : p) {
+                    plan.add(a);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SolverException(i, "Interrupted while solving the sub-problems", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SolverException) {
+                throw (SolverException) e.getCause();
+            }
+            throw new SolverException(i, e.getCause().getMessage(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return plan;
+    }
+
+    /**
+     * Compute the independent partitions of a problem.
+     * The nodes that are not involved in any VM placement or in any constraint
+     * are grouped inside a same partition.
+     *
+     * @param i     the model
+     * @param cstrs the constraints to satisfy
+     * @return the partitions, as disjoint sets of nodes. A single partition if the problem cannot be decomposed
+     */
+    public List<Set<UUID>> computePartitions(Model i, Collection<SatConstraint> cstrs) {
+        Mapping map = i.getMapping();
+        Set<UUID> allNodes = map.getAllNodes();
+        Map<UUID, UUID> anchors = getAnchors(i, cstrs);
+
+        //Every VM that may be running must be restricted to a partition
+        Set<UUID> toRun = new HashSet<UUID>(map.getRunningVMs());
+        toRun.addAll(map.getSleepingVMs());
+        for (SatConstraint cstr : cstrs) {
+            if (cstr instanceof Running) {
+                toRun.addAll(cstr.getInvolvedVMs());
+            }
+        }
+        for (UUID vm : toRun) {
+            if (!anchors.containsKey(vm)) {
+                return Collections.singletonList(allNodes);
+            }
+        }
+
+        Map<UUID, UUID> parents = new HashMap<UUID, UUID>();
+        for (UUID n : allNodes) {
+            parents.put(n, n);
+        }
+        for (Set<UUID> grp : partitions) {
+            UUID first = null;
+            for (UUID n : grp) {
+                first = first == null ? n : union(parents, first, n);
+            }
+        }
+        //The confined VMs tie their host with the nodes they are confined to.
+        for (Map.Entry<UUID, UUID> e : anchors.entrySet()) {
+            UUID host = map.getVMLocation(e.getKey());
+            if (host != null) {
+                union(parents, host, e.getValue());
+            }
+        }
+        for (SatConstraint cstr : cstrs) {
+            UUID first = null;
+            for (UUID n : cstr.getInvolvedNodes()) {
+                first = first == null ? n : union(parents, first, n);
+            }
+            for (UUID vm : cstr.getInvolvedVMs()) {
+                UUID n = anchors.get(vm);
+                if (n != null) {
+                    first = first == null ? n : union(parents, first, n);
+                }
+            }
+        }
+
+        //Gather the nodes by root. Idle partitions are merged together
+        Set<UUID> busy = new HashSet<UUID>();
+        for (UUID n : anchors.values()) {
+            busy.add(find(parents, n));
+        }
+        for (SatConstraint cstr : cstrs) {
+            for (UUID n : cstr.getInvolvedNodes()) {
+                if (parents.containsKey(n)) {
+                    busy.add(find(parents, n));
+                }
+            }
+        }
+        Map<UUID, Set<UUID>> byRoot = new LinkedHashMap<UUID, Set<UUID>>();
+        Set<UUID> idle = new HashSet<UUID>();
+        for (UUID n : allNodes) {
+            UUID r = find(parents, n);
+            if (!busy.contains(r)) {
+                idle.add(n);
+                continue;
+            }
+            Set<UUID> grp = byRoot.get(r);
+            if (grp == null) {
+                grp = new HashSet<UUID>();
+                byRoot.put(r, grp);
+            }
+            grp.add(n);
+        }
+        List<Set<UUID>> res = new ArrayList<Set<UUID>>(byRoot.values());
+        if (!idle.isEmpty()) {
+            res.add(idle);
+        }
+        return res;
+    }
+
+    /**
+     * Get a node each VM is restricted to stay close to.
+     * A hosted VM is anchored to its host when groups of nodes are provided or
+     * when it is confined. A ready VM is anchored to one of the nodes it is confined to.
+     *
+     * @param i     the model
+     * @param cstrs the constraints
+     * @return the anchor of each VM. The VMs that are not restricted are not in the map
+     */
+    private Map<UUID, UUID> getAnchors(Model i, Collection<SatConstraint> cstrs) {
+        Mapping map = i.getMapping();
+        Map<UUID, UUID> anchors = new HashMap<UUID, UUID>();
+        if (!partitions.isEmpty()) {
+            for (UUID vm : map.getAllVMs()) {
+                UUID host = map.getVMLocation(vm);
+                if (host != null) {
+                    anchors.put(vm, host);
+                }
+            }
+        }
+        for (SatConstraint cstr : cstrs) {
+            UUID n = null;
+            for (UUID x : cstr.getInvolvedNodes()) {
+                if (map.containsNode(x)) {
+                    n = x;
+                    break;
+                }
+            }
+            if (n == null) {
+                continue;
+            }
+            if (cstr instanceof Fence || cstr instanceof Among) {
+                for (UUID vm : cstr.getInvolvedVMs()) {
+                    if (!anchors.containsKey(vm)) {
+                        anchors.put(vm, n);
+                    }
+                }
+            } else if (cstr instanceof Quarantine) {
+                for (UUID q : cstr.getInvolvedNodes()) {
+                    if (!map.getOnlineNodes().contains(q)) {
+                        continue;
+                    }
+                    for (UUID vm : map.getRunningVMs(q)) {
+                        anchors.put(vm, q);
+                    }
+                    for (UUID vm : map.getSleepingVMs(q)) {
+                        anchors.put(vm, q);
+                    }
+                }
+            }
+        }
+        return anchors;
+    }
+
+    /**
+     * Make the model of a sub-problem.
+     * The resources and the attributes are restricted to the elements of the sub-mapping,
+     * the other views are copied entirely.
+     *
+     * @param i   the original model
+     * @param map the mapping of the sub-problem
+     * @return the model of the sub-problem
+     */
+    static Model subModel(Model i, Mapping map) {
+        Model sub = new DefaultModel(map);
+        Set<UUID> elems = new HashSet<UUID>(map.getAllNodes());
+        elems.addAll(map.getAllVMs());
+        for (ModelView v : i.getViews()) {
+            if (v instanceof ShareableResource) {
+                ShareableResource rc = (ShareableResource) v;
+                ShareableResource subRc = new ShareableResource(rc.getResourceIdentifier(), rc.getDefaultValue());
+                for (UUID u : rc.getDefined()) {
+                    if (elems.contains(u)) {
+                        subRc.set(u, rc.get(u));
+                    }
+                }
+                sub.attach(subRc);
+            } else {
+                sub.attach(v.clone());
+            }
+        }
+        Attributes attrs = i.getAttributes();
+        Attributes subAttrs = sub.getAttributes();
+        for (UUID u : attrs.getElements()) {
+            if (!elems.contains(u)) {
+                continue;
+            }
+            for (String k : attrs.getKeys(u)) {
+                Object v = attrs.get(u, k);
+                if (v instanceof Boolean) {
+                    subAttrs.put(u, k, (Boolean) v);
+                } else if (v instanceof Double || v instanceof Float) {
+                    subAttrs.put(u, k, ((Number) v).doubleValue());
+                } else if (v instanceof Number) {
+                    subAttrs.put(u, k, ((Number) v).longValue());
+                } else {
+                    subAttrs.put(u, k, v.toString());
+                }
+            }
+        }
+        return sub;
+    }
+
+    private static int partOf(SatConstraint cstr, Map<UUID, UUID> anchors, Map<UUID, Integer> index) {
+        for (UUID n : cstr.getInvolvedNodes()) {
+            Integer x = index.get(n);
+            if (x != null) {
+                return x;
+            }
+        }
+        for (UUID vm : cstr.getInvolvedVMs()) {
+            UUID n = anchors.get(vm);
+            if (n != null) {
+                return index.get(n);
+            }
+        }
+        return 0;
+    }
+
+    private static UUID find(Map<UUID, UUID> parents, UUID n) {
+        UUID r = n;
+        while (!parents.get(r).equals(r)) {
+            r = parents.get(r);
+        }
+        //Path compression
+        UUID cur = n;
+        while (!cur.equals(r)) {
+            UUID next = parents.get(cur);
+            parents.put(cur, r);
+            cur = next;
+        }
+        return r;
+    }
+
+    /**
+     * Merge the groups of two nodes. Unknown nodes are ignored.
+     *
+     * @return the root of the resulting group, or the known node
+     */
+    private static UUID union(Map<UUID, UUID> parents, UUID a, UUID b) {
+        if (!parents.containsKey(a)) {
+            return b;
+        } else if (!parents.containsKey(b)) {
+            return a;
+        }
+        UUID ra = find(parents, a);
+        UUID rb = find(parents, b);
+        if (!ra.equals(rb)) {
+            parents.put(rb, ra);
+        }
+        return ra;
+    }
+
+    /**
+     * Solve a sub-problem with its own algorithm.
+     */
+    private class SubProblem implements Callable<ReconfigurationPlan> {
+
+        private Model mo;
+
+        private Collection<SatConstraint> cstrs;
+
+        public SubProblem(Model mo, Collection<SatConstraint> cstrs) {
+            this.mo = mo;
+            this.cstrs = cstrs;
+        }
+
+        @Override
+        public ReconfigurationPlan call() throws SolverException {
+            return new DefaultChocoReconfigurationAlgorithm(params).solve(mo, cstrs);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder("decomposing(").append(params).append(')').toString();
+    }
+}
@@ -18,21 +18,38 @@
 
 package btrplace.solver.choco;
 
+import btrplace.model.Mapping;
 import btrplace.model.Model;
+import btrplace.model.ModelView;
 import btrplace.model.SatConstraint;
 import btrplace.model.constraint.Killed;
 import btrplace.model.constraint.Ready;
 import btrplace.model.constraint.Running;
 import btrplace.model.constraint.Sleeping;
+import btrplace.model.view.ShareableResource;
+import btrplace.plan.Action;
 import btrplace.plan.ReconfigurationPlan;
+import btrplace.plan.ReconfigurationPlanListener;
 import btrplace.solver.SolverException;
+import btrplace.solver.choco.chocoUtil.SharedStopCut;
 import btrplace.solver.choco.constraint.SatConstraintMapper;
 import btrplace.solver.choco.objective.minMTTR.MinMTTR;
+import choco.cp.solver.CPSolver;
 import choco.kernel.solver.ContradictionException;
 import choco.kernel.solver.Solution;
 import choco.kernel.solver.search.measure.IMeasures;
+import choco.kernel.solver.variables.integer.IntDomainVar;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Default implementation of {@link ChocoReconfigurationAlgorithm}.
@@ -66,6 +83,27 @@ public class DefaultChocoReconfigurationAlgorithm implements ChocoReconfiguratio
 
     private int maxEnd = DefaultReconfigurationProblem.DEFAULT_MAX_TIME;
 
+    /**
+     * No parallel preparation by default.
+     */
+    private ExecutorService executor = null;
+
+    /**
+     * The number of elements processed by a single parallel task.
+     */
+    public static final int BATCH_SIZE = 32;
+
+    /**
+     * A single attempt by default.
+     */
+    private int portfolioSize = 1;
+
+    private ReconfigurationPlanListener planListener = null;
+
+    private SchedulingFiltering schedFiltering = SchedulingFiltering.BASIC;
+
+    private Long randomSeed = null;
+
     /**
      * Make a new algorithm.
      */
@@ -79,6 +117,29 @@ public class DefaultChocoReconfigurationAlgorithm implements ChocoReconfiguratio
         obj = new MinMTTR();
     }
 
+    /**
+     * Make a new algorithm that reuses the parameters of another one.
+     * The constraint mapper, the duration evaluators, the view mapper and
+     * the objective are shared with the given algorithm.
+     *
+     * @param cra the algorithm to copy the parameters from
+     */
+    public DefaultChocoReconfigurationAlgorithm(ChocoReconfigurationAlgorithm cra) {
+        cstrMapper = cra.getSatConstraintMapper();
+        durationEvaluators = cra.getDurationEvaluators();
+        viewMapper = cra.getViewMapper();
+        obj = cra.getObjective();
+        optimize = cra.doOptimize();
+        timeLimit = cra.getTimeLimit();
+        repair = cra.repair();
+        useLabels = cra.areVariablesLabelled();
+        maxEnd = cra.getMaxEnd();
+        executor = cra.getExecutorService();
+        portfolioSize = cra.getPortfolioSize();
+        schedFiltering = cra.getSchedulingFiltering();
+        randomSeed = cra.getRandomSeed();
+    }
+
     @Override
     public void doOptimize(boolean b) {
         this.optimize = b;
@@ -122,108 +183,607 @@ public class DefaultChocoReconfigurationAlgorithm implements ChocoReconfiguratio
 
     @Override
     public ReconfigurationPlan solve(Model i, Collection<SatConstraint> cstrs) throws SolverException {
-        long coreRPDuration, speDuration;
+        return solve(i, cstrs, timeLimit);
+    }
+
+    /**
+     * Solve a problem within a given time limit.
+     *
+     * @param i     the source model
+     * @param cstrs the constraints to satisfy
+     * @param limit the time limit in seconds. {@code 0} for no limit
+     * @return the computed plan, {@code null} if there is no solution
+     * @throws SolverException if an error occurred
+     */
+    private ReconfigurationPlan solve(Model i, Collection<SatConstraint> cstrs, int limit) throws SolverException {
+        rp = null;
+        this.cstrs = cstrs;
+        if (portfolioSize > 1) {
+            return solveWithPortfolio(i, cstrs, limit);
+        }
+        Attempt a = new Attempt(i, cstrs, null);
+        a.timeLimit = limit;
+        a.seed = nextSeed();
+        a.listener = planListener;
+        try {
+            a.call();
+        } finally {
+            rp = a.rp;
+        }
+        return terminate(a);
+    }
+
+    @Override
+    public ReconfigurationPlan solve(Model i, Collection<SatConstraint> cstrs, ReconfigurationPlan previous) throws SolverException {
+        Model expected = previous == null ? null : previous.getResult();
+        if (expected == null) {
+            return solve(i, cstrs);
+        }
+        long st = System.currentTimeMillis();
         rp = null;
         this.cstrs = cstrs;
-        coreRPDuration = -System.currentTimeMillis();
-        //Build the RP. As VM state management is not possible
-        //We extract VM-state related constraints first.
-        //For other constraint, we just create the right choco constraint
-        Set<UUID> toRun = new HashSet<UUID>();
-        Set<UUID> toForge = new HashSet<UUID>();
-        Set<UUID> toKill = new HashSet<UUID>();
-        Set<UUID> toSleep = new HashSet<UUID>();
-
-        List<ChocoSatConstraint> cConstraints = new ArrayList<ChocoSatConstraint>();
-        for (SatConstraint cstr : cstrs) {
-            if (cstr instanceof Running) {
-                toRun.addAll(cstr.getInvolvedVMs());
-            } else if (cstr instanceof Sleeping) {
-                toSleep.addAll(cstr.getInvolvedVMs());
-            } else if (cstr instanceof Ready) {
-                toForge.addAll(cstr.getInvolvedVMs());
-            } else if (cstr instanceof Killed) {
-                toKill.addAll(cstr.getInvolvedVMs());
+        Attempt a = new Attempt(i, cstrs, null);
+        a.seed = nextSeed();
+        a.hint = expected.getMapping();
+        a.affected = getAffectedVMs(expected, i);
+        a.listener = planListener;
+        try {
+            a.call();
+        } finally {
+            rp = a.rp;
+        }
+        if (a.plan == null && a.complete) {
+            //It is proven the hints are too restrictive for the new model.
+            //Without this proof, a limit was reached and there is no time left for another try
+            if (rp != null) {
+                rp.getLogger().debug("No solution using the previous plan as a hint. Solving from scratch");
+            }
+            int limit = timeLimit;
+            if (limit > 0) {
+                //The seconds spent on the first try, rounded up
+                limit -= (int) ((System.currentTimeMillis() - st + 999) / 1000);
+                if (limit <= 0) {
+                    throw new SolverException(i, "Unable to state about the problem feasibility.");
+                }
             }
+            return solve(i, cstrs, limit);
+        }
+        return terminate(a);
+    }
+
+    /**
+     * Check the plan computed by an attempt.
+     *
+     * @param a the attempt that terminated
+     * @return the plan computed by the attempt
+     */
+    private ReconfigurationPlan terminate(Attempt a) {
+        if (a.plan != null) {
+            assert checkSatisfaction(a.plan, cstrs);
+        }
+        return a.plan;
+    }
 
-            ChocoSatConstraintBuilder ccstrb = cstrMapper.getBuilder(cstr.getClass());
-            if (ccstrb == null) {
-                throw new SolverException(i, "Unable to map constraint '" + cstr.getClass().getSimpleName() + "'");
+    /**
+     * Get the VMs that are affected by the changes between two models.
+     * A VM is affected if its state, its location or its resource consumptions changed,
+     * or if its host changed of state or of capacities. When a view cannot be compared,
+     * all the VMs are considered as affected.
+     *
+     * @param expected the model expected by the previous plan
+     * @param cur      the current model
+     * @return the affected VMs
+     */
+    private static Set<UUID> getAffectedVMs(Model expected, Model cur) {
+        Mapping src = expected.getMapping();
+        Mapping dst = cur.getMapping();
+        Set<UUID> res = new HashSet<UUID>();
+        Set<UUID> changedNodes = new HashSet<UUID>();
+        for (UUID n : dst.getAllNodes()) {
+            if (dst.getOnlineNodes().contains(n) != src.getOnlineNodes().contains(n)
+                    || dst.getOfflineNodes().contains(n) != src.getOfflineNodes().contains(n)) {
+                changedNodes.add(n);
             }
-            ChocoSatConstraint ccstr = ccstrb.build(cstr);
-            if (ccstr == null) {
-                throw new SolverException(i, "Error while mapping the constraint '"
-                        + cstr.getClass().getSimpleName() + "'");
+        }
+        for (UUID vm : dst.getAllVMs()) {
+            if (!sameState(src, dst, vm)) {
+                res.add(vm);
             }
-            cConstraints.add(ccstr);
         }
 
-        //Make the core-RP
-        DefaultReconfigurationProblemBuilder rpb = new DefaultReconfigurationProblemBuilder(i)
-                .setNextVMsStates(toForge, toRun, toSleep, toKill)
-                .setViewMapper(viewMapper)
-                .setDurationEvaluatators(durationEvaluators);
-        if (repair) {
-            Set<UUID> toManage = new HashSet<UUID>();
-            for (ChocoSatConstraint cstr : cConstraints) {
-                toManage.addAll(cstr.getMisPlacedVMs(i));
+        for (ModelView v : cur.getViews()) {
+            ModelView prev = expected.getView(v.getIdentifier());
+            if (v.equals(prev)) {
+                continue;
+            }
+            if (!(v instanceof ShareableResource) || !(prev instanceof ShareableResource)) {
+                return dst.getAllVMs();
+            }
+            ShareableResource rc = (ShareableResource) v;
+            ShareableResource old = (ShareableResource) prev;
+            for (UUID vm : dst.getAllVMs()) {
+                if (rc.get(vm) != old.get(vm)) {
+                    res.add(vm);
+                }
+            }
+            for (UUID n : dst.getAllNodes()) {
+                if (rc.get(n) != old.get(n)) {
+                    changedNodes.add(n);
+                }
             }
-            toManage.addAll(obj.getMisPlacedVMs(i));
-            rpb.setManageableVMs(toManage);
         }
-        if (useLabels) {
-            rpb.labelVariables();
+        for (UUID n : changedNodes) {
+            if (dst.getOnlineNodes().contains(n)) {
+                res.addAll(dst.getRunningVMs(n));
+                res.addAll(dst.getSleepingVMs(n));
+            }
         }
-        rp = rpb.build();
+        return res;
+    }
 
-        coreRPDuration += System.currentTimeMillis();
-        //Set the maximum duration
+    private static boolean sameState(Mapping src, Mapping dst, UUID vm) {
+        if (!src.containsVM(vm)) {
+            return false;
+        }
+        if (dst.getRunningVMs().contains(vm)) {
+            return src.getRunningVMs().contains(vm) && dst.getVMLocation(vm).equals(src.getVMLocation(vm));
+        } else if (dst.getSleepingVMs().contains(vm)) {
+            return src.getSleepingVMs().contains(vm) && dst.getVMLocation(vm).equals(src.getVMLocation(vm));
+        }
+        return src.getReadyVMs().contains(vm);
+    }
+
+    /**
+     * Solve a problem using a portfolio of independent attempts.
+     * Each attempt uses its own seed for the random heuristics.
+     * Without optimisation, the plan of the first attempt that computes one is returned.
+     * Otherwise, every attempt run until its termination or the time limit and the
+     * best solutions are exchanged through a {@link SharedBoundAlterer}. Once an attempt
+     * browsed its whole search space, the best solution, if any, is known.
+     * The remaining attempts are then stopped using a {@link SharedStopCut}.
+     *
+     * @param i     the source model
+     * @param cstrs the constraints to satisfy
+     * @param limit the time limit in seconds for each attempt. {@code 0} for no limit
+     * @return the computed plan, {@code null} if there is no solution
+     * @throws SolverException if an error occurred
+     */
+    private ReconfigurationPlan solveWithPortfolio(Model i, Collection<SatConstraint> cstrs, int limit) throws SolverException {
+        AtomicReference<Integer> best = new AtomicReference<Integer>();
+        AtomicReference<Attempt> notified = new AtomicReference<Attempt>();
+        AtomicBoolean stop = new AtomicBoolean(false);
+        List<Attempt> attempts = new ArrayList<Attempt>(portfolioSize);
+        long seed = nextSeed();
+        for (int x = 0; x < portfolioSize; x++) {
+            Attempt a = new Attempt(i, cstrs, optimize ? best : null);
+            a.timeLimit = limit;
+            a.seed = seed + x;
+            a.stop = stop;
+            if (!optimize && planListener != null) {
+                //The first attempt that extracts a plan notifies its actions
+                a.listener = new ExclusiveListener(planListener, notified, a);
+            }
+            attempts.add(a);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(portfolioSize);
+        CompletionService<Attempt> done = new ExecutorCompletionService<Attempt>(pool);
+        Attempt winner = null;
+        SolverException err = null;
         try {
-            rp.getEnd().setSup(maxEnd);
-        } catch (ContradictionException e) {
-            rp.getLogger().error("Unable to restrict the maximum plan duration to {}", maxEnd);
-            return null;
+            for (Attempt a : attempts) {
+                done.submit(a);
+            }
+            for (int x = 0; x < attempts.size(); x++) {
+                try {
+                    Attempt a = done.take().get();
+                    if (winner == null || a.isBetterThan(winner)) {
+                        winner = a;
+                    }
+                    if (!optimize && a.plan != null && (notified.get() == null || notified.get() == a)) {
+                        //The first plan is enough. If its actions were notified, it must be this one
+                        winner = a;
+                        break;
+                    }
+                    if (a.complete) {
+                        //The whole search space was browsed, the other attempts cannot do better
+                        stop.set(true);
+                    }
+                } catch (ExecutionException e) {
+                    err = e.getCause() instanceof SolverException
+                            ? (SolverException) e.getCause()
+                            : new SolverException(i, e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SolverException(i, "Interrupted while waiting for the portfolio", e);
+        } finally {
+            //The search does not check the interruption of the thread, so the remaining attempts are stopped explicitly
+            stop.set(true);
+            pool.shutdownNow();
+        }
+        if (winner == null) {
+            //Every attempt failed
+            throw err;
+        }
+        rp = winner.rp;
+        //When optimising, only the plan of the winner is notified, once known
+        if (optimize && planListener != null && winner.plan != null) {
+            if (!winner.plan.isApplyable()) {
+                throw new SolverException(i, "The computed plan is not consistent");
+            }
+            planListener.beginPlan(winner.plan.getOrigin());
+            for (Action a : winner.plan) {
+                planListener.onAction(a);
+            }
+            planListener.endPlan();
         }
+        return terminate(winner);
+    }
+
+    /**
+     * A listener that forwards the notifications of a single attempt:
+     * the first one that starts to notify a plan.
+     */
+    private static class ExclusiveListener implements ReconfigurationPlanListener {
+
+        private ReconfigurationPlanListener delegate;
 
+        private AtomicReference<Attempt> owner;
 
-        //Customize with the constraints
-        speDuration = -System.currentTimeMillis();
-        for (ChocoSatConstraint ccstr : cConstraints) {
-            if (!ccstr.inject(rp)) {
-                return null;
+        private Attempt me;
+
+        private boolean active = false;
+
+        /**
+         * Make a new listener.
+         *
+         * @param delegate the listener to forward the notifications to
+         * @param owner    the attempt allowed to notify, shared between the listeners
+         * @param me       the attempt that notifies this listener
+         */
+        public ExclusiveListener(ReconfigurationPlanListener delegate, AtomicReference<Attempt> owner, Attempt me) {
+            this.delegate = delegate;
+            this.owner = owner;
+            this.me = me;
+        }
+
+        @Override
+        public void beginPlan(Model origin) {
+            active = owner.compareAndSet(null, me);
+            if (active) {
+                delegate.beginPlan(origin);
             }
         }
 
-        //The objective
-        obj.inject(rp);
-        speDuration += System.currentTimeMillis();
-        rp.getLogger().debug("{} ms to build the core-RP + {} ms to tune it", coreRPDuration, speDuration);
-        ReconfigurationPlan p = rp.solve(timeLimit, optimize);
-        if (p != null) {
-            assert checkSatisfaction(p, cstrs);
-            return p;
-        } else {
-            return null;
+        @Override
+        public void onAction(Action a) {
+            if (active) {
+                delegate.onAction(a);
+            }
+        }
+
+        @Override
+        public void endPlan() {
+            if (active) {
+                delegate.endPlan();
+            }
         }
     }
 
-    private boolean checkSatisfaction(ReconfigurationPlan p, Collection<SatConstraint> cstrs) {
+    /**
+     * A single attempt to solve a problem: the reconfiguration problem
+     * is built, customised with the constraints and the objective, then solved.
+     */
+    private class Attempt implements Callable<Attempt> {
+
+        private Model src;
+
+        private Collection<SatConstraint> cstrs;
+
+        private AtomicReference<Integer> best;
+
+        /**
+         * The problem. Available once the core-RP is built.
+         */
+        private ReconfigurationProblem rp;
+
+        /**
+         * The resulting plan, if any.
+         */
+        private ReconfigurationPlan plan;
+
+        /**
+         * The suggested placement for the VMs. {@code null} if there is no suggestion.
+         */
+        private Mapping hint;
+
+        /**
+         * VMs that must be manageable. {@code null} to rely only on the repair mode.
+         */
+        private Set<UUID> affected;
+
+        /**
+         * The listener to notify with the actions of the plan. {@code null} to not notify.
+         */
+        private ReconfigurationPlanListener listener;
+
+        /**
+         * The seed of the random heuristics.
+         */
+        private long seed;
+
+        /**
+         * The time limit in seconds. {@code 0} for no limit.
+         */
+        private int timeLimit;
+
+        /**
+         * The flag shared with the other attempts to stop the search. {@code null} to not stop it.
+         */
+        private AtomicBoolean stop;
+
+        /**
+         * Indicates whether the attempt terminated without reaching a limit, so the search space was fully browsed.
+         */
+        private boolean complete = false;
+
+        /**
+         * Make a new attempt.
+         *
+         * @param src   the source model
+         * @param cstrs the constraints to satisfy
+         * @param best  the best objective value shared with the other attempts. {@code null} to not share it
+         */
+        public Attempt(Model src, Collection<SatConstraint> cstrs, AtomicReference<Integer> best) {
+            this.src = src;
+            this.cstrs = cstrs;
+            this.best = best;
+            this.timeLimit = DefaultChocoReconfigurationAlgorithm.this.timeLimit;
+        }
+
+        @Override
+        public Attempt call() throws SolverException {
+            final Model i = src;
+            long coreRPDuration, speDuration;
+            coreRPDuration = -System.currentTimeMillis();
+            //Build the RP. As VM state management is not possible
+            //We extract VM-state related constraints first.
+            //For other constraint, we just create the right choco constraint
+            Set<UUID> toRun = new HashSet<UUID>();
+            Set<UUID> toForge = new HashSet<UUID>();
+            Set<UUID> toKill = new HashSet<UUID>();
+            Set<UUID> toSleep = new HashSet<UUID>();
+
+            for (SatConstraint cstr : cstrs) {
+                if (cstr instanceof Running) {
+                    toRun.addAll(cstr.getInvolvedVMs());
+                } else if (cstr instanceof Sleeping) {
+                    toSleep.addAll(cstr.getInvolvedVMs());
+                } else if (cstr instanceof Ready) {
+                    toForge.addAll(cstr.getInvolvedVMs());
+                } else if (cstr instanceof Killed) {
+                    toKill.addAll(cstr.getInvolvedVMs());
+                }
+            }
+
+            //The mapping is performed by batches when an executor is available
+            List<ChocoSatConstraint> cConstraints = forEach(i, new ArrayList<SatConstraint>(cstrs),
+                    new Task<SatConstraint, ChocoSatConstraint>() {
+                        @Override
+                        public ChocoSatConstraint run(SatConstraint cstr) throws SolverException {
+                            ChocoSatConstraintBuilder ccstrb = cstrMapper.getBuilder(cstr.getClass());
+                            if (ccstrb == null) {
+                                throw new SolverException(i, "Unable to map constraint '" + cstr.getClass().getSimpleName() + "'");
+                            }
+                            ChocoSatConstraint ccstr = ccstrb.build(cstr);
+                            if (ccstr == null) {
+                                throw new SolverException(i, "Error while mapping the constraint '"
+                                        + cstr.getClass().getSimpleName() + "'");
+                            }
+                            return ccstr;
+                        }
+                    });
+
+            //Make the core-RP
+            DefaultReconfigurationProblemBuilder rpb = new DefaultReconfigurationProblemBuilder(i)
+                    .setNextVMsStates(toForge, toRun, toSleep, toKill)
+                    .setViewMapper(viewMapper)
+                    .setDurationEvaluatators(durationEvaluators);
+            if (repair || affected != null) {
+                Set<UUID> toManage = new HashSet<UUID>();
+                if (affected != null) {
+                    toManage.addAll(affected);
+                }
+                List<Set<UUID>> misPlaced = forEach(i, cConstraints, new Task<ChocoSatConstraint, Set<UUID>>() {
+                    @Override
+                    public Set<UUID> run(ChocoSatConstraint cstr) {
+                        return cstr.getMisPlacedVMs(i);
+                    }
+                });
+                for (Set<UUID> s : misPlaced) {
+                    toManage.addAll(s);
+                }
+                toManage.addAll(obj.getMisPlacedVMs(i));
+                rpb.setManageableVMs(toManage);
+            }
+            if (useLabels) {
+                rpb.labelVariables();
+            }
+            rp = rpb.build();
+            rp.setPlacementHint(hint);
+            rp.setSchedulingFiltering(schedFiltering);
+            rp.setRandomSeed(seed);
+
+            coreRPDuration += System.currentTimeMillis();
+            //Set the maximum duration
+            try {
+                rp.getEnd().setSup(maxEnd);
+            } catch (ContradictionException e) {
+                rp.getLogger().error("Unable to restrict the maximum plan duration to {}", maxEnd);
+                complete = true;
+                return this;
+            }
+
+
+            //Customize with the constraints
+            speDuration = -System.currentTimeMillis();
+            for (ChocoSatConstraint ccstr : cConstraints) {
+                if (!ccstr.inject(rp)) {
+                    complete = true;
+                    return this;
+                }
+            }
+
+            //The objective
+            obj.inject(rp);
+            if (best != null && rp.getSolver().getObjective() != null) {
+                SharedBoundAlterer shared = new SharedBoundAlterer(rp, best, rp.getObjectiveAlterer());
+                rp.setObjectiveAlterer(shared);
+                //The values computed by the other attempts are considered each time a VM is placed
+                rp.getSolver().post(shared.makeCut());
+            }
+            if (stop != null) {
+                IntDomainVar[] placement = SharedBoundAlterer.getPlacementVariables(rp);
+                if (placement.length > 0) {
+                    rp.getSolver().post(new SharedStopCut(placement, stop));
+                }
+                if (stop.get()) {
+                    //Another attempt already succeeded
+                    return this;
+                }
+            }
+            speDuration += System.currentTimeMillis();
+            rp.getLogger().debug("{} ms to build the core-RP + {} ms to tune it", coreRPDuration, speDuration);
+            rp.setPlanListener(listener);
+            plan = rp.solve(timeLimit, optimize);
+            complete = !rp.getSolver().isEncounteredLimit();
+            return this;
+        }
+
+        /**
+         * Check if this attempt computed a better plan than another one.
+         * Plans are compared using the objective value if any, their duration otherwise.
+         *
+         * @param a the attempt to compare with
+         * @return {@code true} iff this attempt is strictly better
+         */
+        public boolean isBetterThan(Attempt a) {
+            if (plan == null) {
+                return false;
+            } else if (a.plan == null) {
+                return true;
+            }
+            CPSolver s = rp.getSolver();
+            if (s.getObjective() == null || s.getObjectiveValue() == null || a.rp.getSolver().getObjectiveValue() == null) {
+                return plan.getDuration() < a.plan.getDuration();
+            }
+            int mine = s.getObjectiveValue().intValue();
+            int other = a.rp.getSolver().getObjectiveValue().intValue();
+            return SharedBoundAlterer.isMinimization(rp) ? mine < other : mine > other;
+        }
+    }
+
+    private boolean checkSatisfaction(final ReconfigurationPlan p, Collection<SatConstraint> cstrs) {
         Model res = p.getResult();
         if (res == null) {
             rp.getLogger().error("Applying the following plan does not conclude to a model:\n{}", p);
             return false;
         }
-        for (SatConstraint cstr : cstrs) {
-            if (cstr.isContinuous() && !cstr.isSatisfied(p).equals(SatConstraint.Sat.SATISFIED)) {
-                rp.getLogger().error("The following plan does not satisfy {}:\n{}", cstr.toString(), p);
-                return false;
-            } else if (!cstr.isContinuous() && !cstr.isSatisfied(res).equals(SatConstraint.Sat.SATISFIED)) {
-                rp.getLogger().error("The following model does not satisfy {}:\n{}", cstr.toString(), res);
-                return false;
-            }
+        try {
+            //Each task works on its own copy of the resulting model
+            List<Boolean> sats = forEach(p.getOrigin(), new ArrayList<SatConstraint>(cstrs),
+                    new Task<SatConstraint, Boolean>() {
+                        @Override
+                        public Boolean run(SatConstraint cstr) {
+                            if (cstr.isContinuous() && !cstr.isSatisfied(p).equals(SatConstraint.Sat.SATISFIED)) {
+                                rp.getLogger().error("The following plan does not satisfy {}:\n{}", cstr.toString(), p);
+                                return false;
+                            }
+                            if (!cstr.isContinuous()) {
+                                Model r = p.getResult();
+                                if (!cstr.isSatisfied(r).equals(SatConstraint.Sat.SATISFIED)) {
+                                    rp.getLogger().error("The following model does not satisfy {}:\n{}", cstr.toString(), r);
+                                    return false;
+                                }
+                            }
+                            return true;
+                        }
+                    });
+            return !sats.contains(Boolean.FALSE);
+        } catch (SolverException e) {
+            rp.getLogger().error("Unable to check the plan: {}", e.getMessage());
+            return false;
+        }
+    }
 
+    /**
+     * A computation to perform on every element of a list.
+     *
+     * @param <I> the input type
+     * @param <O> the output type
+     */
+    private abstract static class Task<I, O> {
+
+        /**
+         * Process one element.
+         *
+         * @param in the element to process
+         * @return the result
+         * @throws SolverException if an error occurred
+         */
+        public abstract O run(I in) throws SolverException;
+    }
+
+    /**
+     * Run a task on every element of a list.
+     * When an executor is available, the list is split into batches
+     * of {@link #BATCH_SIZE} elements that are processed in parallel.
+     *
+     * @param mo  the model the elements are related to
+     * @param in  the elements to process
+     * @param t   the task to run
+     * @param <I> the input type
+     * @param <O> the output type
+     * @return the results, in the same order than the elements
+     * @throws SolverException if the task failed on one element
+     */
+    private <I, O> List<O> forEach(Model mo, List<I> in, final Task<I, O> t) throws SolverException {
+        List<O> out = new ArrayList<O>(in.size());
+        if (executor == null || in.size() <= BATCH_SIZE) {
+            for (I x : in) {
+                out.add(t.run(x));
+            }
+            return out;
         }
-        return true;
+        List<Callable<List<O>>> batches = new ArrayList<Callable<List<O>>>();
+        for (int from = 0; from < in.size(); from += BATCH_SIZE) {
+            final List<I> batch = in.subList(from, Math.min(from + BATCH_SIZE, in.size()));
+            batches.add(new Callable<List<O>>() {
+                @Override
+                public List<O> call() throws SolverException {
+                    List<O> res = new ArrayList<O>(batch.size());
+                    for (I x : batch) {
+                        res.add(t.run(x));
+                    }
+                    return res;
+                }
+            });
+        }
+        try {
+            for (Future<List<O>> f : executor.invokeAll(batches)) {
+                out.addAll(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SolverException(mo, "Interrupted while preparing the problem", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SolverException) {
+                throw (SolverException) e.getCause();
+            }
+            throw new SolverException(mo, e.getCause().getMessage(), e.getCause());
+        }
+        return out;
     }
 
     @Override
@@ -246,6 +806,45 @@ public class DefaultChocoReconfigurationAlgorithm implements ChocoReconfiguratio
         obj = o;
     }
 
+    @Override
+    public void setPlanListener(ReconfigurationPlanListener l) {
+        planListener = l;
+    }
+
+    @Override
+    public ReconfigurationPlanListener getPlanListener() {
+        return planListener;
+    }
+
+    @Override
+    public void setSchedulingFiltering(SchedulingFiltering f) {
+        schedFiltering = f;
+    }
+
+    @Override
+    public SchedulingFiltering getSchedulingFiltering() {
+        return schedFiltering;
+    }
+
+    @Override
+    public void setRandomSeed(long s) {
+        randomSeed = s;
+    }
+
+    @Override
+    public Long getRandomSeed() {
+        return randomSeed;
+    }
+
+    /**
+     * Get the seed to use for a solving process.
+     *
+     * @return the seed that was set if any, a random one otherwise
+     */
+    private long nextSeed() {
+        return randomSeed != null ? randomSeed : new Random().nextLong();
+    }
+
     @Override
     public SolvingStatistics getSolvingStatistics() {
         if (rp == null) {
@@ -292,6 +891,26 @@ public class DefaultChocoReconfigurationAlgorithm implements ChocoReconfiguratio
         return this.maxEnd;
     }
 
+    @Override
+    public void setExecutorService(ExecutorService e) {
+        this.executor = e;
+    }
+
+    @Override
+    public ExecutorService getExecutorService() {
+        return this.executor;
+    }
+
+    @Override
+    public void setPortfolioSize(int n) {
+        this.portfolioSize = n;
+    }
+
+    @Override
+    public int getPortfolioSize() {
+        return this.portfolioSize;
+    }
+
     @Override
     public ModelViewMapper getViewMapper() {
         return viewMapper;
@@ -24,13 +24,14 @@ import btrplace.model.ModelView;
 import btrplace.plan.Action;
 import btrplace.plan.DefaultReconfigurationPlan;
 import btrplace.plan.ReconfigurationPlan;
+import btrplace.plan.ReconfigurationPlanListener;
 import btrplace.plan.event.Allocate;
 import btrplace.plan.event.AllocateEvent;
 import btrplace.solver.SolverException;
 import btrplace.solver.choco.actionModel.*;
 import btrplace.solver.choco.chocoUtil.AliasedCumulatives;
 import btrplace.solver.choco.chocoUtil.AliasedCumulativesBuilder;
-import btrplace.solver.choco.chocoUtil.LightBinPacking;
+import btrplace.solver.choco.chocoUtil.VectorPackingBuilder;
 import btrplace.solver.choco.view.CShareableResource;
 import choco.cp.solver.CPSolver;
 import choco.cp.solver.search.BranchAndBound;
@@ -101,8 +102,21 @@ public class DefaultReconfigurationProblem implements ReconfigurationProblem {
 
     private AliasedCumulativesBuilder cumulativesBuilder;
 
+    private VectorPackingBuilder packingBuilder;
+
+    private SchedulingFiltering schedFiltering = SchedulingFiltering.BASIC;
+
+    /**
+     * A random seed unless one is set, so the heuristics are not reproducible by default.
+     */
+    private long seed = new Random().nextLong();
+
     private ObjectiveAlterer objAlterer = null;
 
+    private ReconfigurationPlanListener planListener = null;
+
+    private Mapping hint = null;
+
     private ModelViewMapper viewMapper;
 
     private List<CShareableResource> resources;
@@ -156,9 +170,12 @@ public class DefaultReconfigurationProblem implements ReconfigurationProblem {
         makeNodeActionModels();
         makeVMActionModels();
 
+        packingBuilder = new VectorPackingBuilder(this);
+
         makeViews();
 
         linkCardinatiesWithSlices();
+        solver.post(packingBuilder.build());
 
         taskSchedBuilder = new SliceSchedulerBuilder(this);
         cumulativesBuilder = new AliasedCumulativesBuilder(this);
@@ -217,18 +234,89 @@ public class DefaultReconfigurationProblem implements ReconfigurationProblem {
         }
 
         DefaultReconfigurationPlan plan = new DefaultReconfigurationPlan(model);
-        for (ActionModel action : nodeActions) {
-            action.insertActions(plan);
-        }
-        for (ActionModel action : vmActions) {
-            action.insertActions(plan);
+        if (planListener == null) {
+            for (ActionModel action : nodeActions) {
+                action.insertActions(plan);
+            }
+            for (ActionModel action : vmActions) {
+                action.insertActions(plan);
+            }
+            assert plan.isApplyable();
+            assert checkConsistency(plan);
+        } else {
+            insertAndNotify(plan);
+            //The notified actions may be executed right away, so the checks are not left to the assertions
+            if (!checkConsistency(plan)) {
+                throw new SolverException(model, "The computed plan is not consistent");
+            }
+            planListener.endPlan();
         }
-
-        assert plan.isApplyable();
-        assert checkConsistency(plan);
         return plan;
     }
 
+    /**
+     * Insert the actions into the plan and notify the listener with each of them
+     * as soon as no action starting earlier, or at the same moment, can be inserted anymore.
+     * The action models are browsed in the increasing order of their start moment.
+     * As an action never starts before the moment of its model,
+     * the start of the next model bounds the start of the actions remaining to insert.
+     * The actions are then notified in the order of the plan.
+     * <p/>
+     * Each action is checked before being notified: it must end by the end of the plan
+     * and be applyable on the model resulting from the actions notified before.
+     * As the plan is applied in the same order, the plan is applyable once every action is notified.
+     *
+     * @param plan the plan to fill
+     * @throws SolverException if an action fails its checks. The actions notified before are not revoked
+     */
+    private void insertAndNotify(ReconfigurationPlan plan) throws SolverException {
+        List<ActionModel> models = new ArrayList<ActionModel>(nodeActions.length + vmActions.length);
+        models.addAll(Arrays.asList(nodeActions));
+        models.addAll(Arrays.asList(vmActions));
+        Collections.sort(models, new Comparator<ActionModel>() {
+            @Override
+            public int compare(ActionModel a1, ActionModel a2) {
+                return a1.getStart().getVal() - a2.getStart().getVal();
+            }
+        });
+        //The pending actions grouped by start moment, in their insertion order
+        TreeMap<Integer, List<Action>> pending = new TreeMap<Integer, List<Action>>();
+        Comparator<Action> byEnd = new Comparator<Action>() {
+            @Override
+            public int compare(Action a1, Action a2) {
+                return a1.getEnd() - a2.getEnd();
+            }
+        };
+        Model cur = model.clone();
+        int horizon = end.getVal();
+        planListener.beginPlan(model);
+        for (int i = 0; i < models.size(); i++) {
+            ReconfigurationPlan actions = new DefaultReconfigurationPlan(model);
+            models.get(i).insertActions(actions);
+            for (Action a : actions) {
+                plan.add(a);
+                List<Action> l = pending.get(a.getStart());
+                if (l == null) {
+                    l = new ArrayList<Action>();
+                    pending.put(a.getStart(), l);
+                }
+                l.add(a);
+            }
+            int bound = i + 1 < models.size() ? models.get(i + 1).getStart().getVal() : Integer.MAX_VALUE;
+            while (!pending.isEmpty() && pending.firstKey() < bound) {
+                List<Action> l = pending.remove(pending.firstKey());
+                //The order of the plan: by end moment, then by insertion order
+                Collections.sort(l, byEnd);
+                for (Action a : l) {
+                    if (a.getEnd() > horizon || !a.apply(cur)) {
+                        throw new SolverException(model, "The computed plan is not consistent: unable to apply " + a);
+                    }
+                    planListener.onAction(a);
+                }
+            }
+        }
+    }
+
     /**
      * A naïve heuristic to be sure every variables will be instantiated.
      * In practice, instantiate each of the variables to its lower-bound
@@ -334,12 +422,11 @@ public class DefaultReconfigurationProblem implements ReconfigurationProblem {
     }
 
     private void linkCardinatiesWithSlices() {
-        IntDomainVar[] ds = SliceUtils.extractHosters(ActionModelUtils.getDSlices(vmActions));
-        IntDomainVar[] usages = new IntDomainVar[ds.length];
-        for (int i = 0; i < ds.length; i++) {
+        IntDomainVar[] usages = new IntDomainVar[packingBuilder.getHosters().length];
+        for (int i = 0; i < usages.length; i++) {
             usages[i] = solver.makeConstantIntVar(1);
         }
-        solver.post(new LightBinPacking(solver.getEnvironment(), vmsCountOnNodes, usages, ds));
+        packingBuilder.add(vmsCountOnNodes, usages);
     }
 
     private void fillElements() {
@@ -537,6 +624,31 @@ public class DefaultReconfigurationProblem implements ReconfigurationProblem {
         return cumulativesBuilder;
     }
 
+    @Override
+    public VectorPackingBuilder getVectorPackingBuilder() {
+        return packingBuilder;
+    }
+
+    @Override
+    public void setSchedulingFiltering(SchedulingFiltering f) {
+        this.schedFiltering = f;
+    }
+
+    @Override
+    public SchedulingFiltering getSchedulingFiltering() {
+        return schedFiltering;
+    }
+
+    @Override
+    public void setRandomSeed(long s) {
+        seed = s;
+    }
+
+    @Override
+    public long getRandomSeed() {
+        return seed;
+    }
+
     @Override
     public IntDomainVar makeHostVariable(String n) {
         return solver.createEnumIntVar(useLabels ? n : "", 0, nodes.length - 1);
@@ -603,6 +715,26 @@ public class DefaultReconfigurationProblem implements ReconfigurationProblem {
         objAlterer = a;
     }
 
+    @Override
+    public void setPlanListener(ReconfigurationPlanListener l) {
+        planListener = l;
+    }
+
+    @Override
+    public ReconfigurationPlanListener getPlanListener() {
+        return planListener;
+    }
+
+    @Override
+    public Mapping getPlacementHint() {
+        return hint;
+    }
+
+    @Override
+    public void setPlacementHint(Mapping m) {
+        hint = m;
+    }
+
     @Override
     public NodeActionModel[] getNodeActions() {
         return nodeActions;
@@ -18,11 +18,14 @@
 
 package btrplace.solver.choco;
 
+import btrplace.model.Mapping;
 import btrplace.model.Model;
 import btrplace.plan.Action;
 import btrplace.plan.ReconfigurationPlan;
+import btrplace.plan.ReconfigurationPlanListener;
 import btrplace.solver.SolverException;
 import btrplace.solver.choco.chocoUtil.AliasedCumulativesBuilder;
+import btrplace.solver.choco.chocoUtil.VectorPackingBuilder;
 import choco.cp.solver.CPSolver;
 import choco.kernel.solver.variables.integer.IntDomainVar;
 import org.slf4j.Logger;
@@ -348,6 +351,46 @@ public interface ReconfigurationProblem {
      */
     AliasedCumulativesBuilder getAliasedCumulativesBuilder();
 
+    /**
+     * Get the builder that handle the placement of the VMs on the nodes
+     * with regards to every packing dimension.
+     * The dimensions must be declared while the problem is built, the
+     * resulting constraint being posted at the end of the construction.
+     *
+     * @return the builder
+     */
+    VectorPackingBuilder getVectorPackingBuilder();
+
+    /**
+     * Set the filtering level of the constraints that schedule the slices.
+     * This must be called before solving the problem.
+     *
+     * @param f the filtering level
+     */
+    void setSchedulingFiltering(SchedulingFiltering f);
+
+    /**
+     * Get the filtering level of the constraints that schedule the slices.
+     *
+     * @return the filtering level. {@link SchedulingFiltering#BASIC} by default
+     */
+    SchedulingFiltering getSchedulingFiltering();
+
+    /**
+     * Set the seed of the random heuristics.
+     * This must be called before the heuristics are declared.
+     *
+     * @param s the seed to use
+     */
+    void setRandomSeed(long s);
+
+    /**
+     * Get the seed of the random heuristics.
+     *
+     * @return the seed. A random one by default
+     */
+    long getRandomSeed();
+
     /**
      * Get the logger.
      *
@@ -369,4 +412,39 @@ public interface ReconfigurationProblem {
      * @param a the alterer to use
      */
     void setObjectiveAlterer(ObjectiveAlterer a);
+
+    /**
+     * Set the listener to notify with the actions of the computed plan.
+     * The actions are notified in the increasing order of their start moment
+     * while they are extracted from the solution, so before the plan is returned.
+     * Each action is checked before being notified, and
+     * {@link ReconfigurationPlanListener#endPlan()} is called once the whole plan was checked.
+     * When a listener is set, a plan that fails the checks leads to a
+     * {@link btrplace.solver.SolverException} and its remaining actions are not notified.
+     *
+     * @param l the listener to notify. {@code null} to disable the notifications
+     */
+    void setPlanListener(ReconfigurationPlanListener l);
+
+    /**
+     * Get the listener notified with the actions of the computed plan.
+     *
+     * @return the listener if it was defined, {@code null} otherwise
+     */
+    ReconfigurationPlanListener getPlanListener();
+
+    /**
+     * Get the placement suggested for the VMs.
+     * The placement heuristics may try these placements first.
+     *
+     * @return the suggested mapping if it was defined, {@code null} otherwise
+     */
+    Mapping getPlacementHint();
+
+    /**
+     * Suggest a placement for the VMs, typically the result of a previous plan.
+     *
+     * @param m the suggested mapping. {@code null} to remove the suggestion
+     */
+    void setPlacementHint(Mapping m);
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.solver.choco;
+
+/**
+ * The filtering level of the constraints that schedule the slices
+ * with regards to the resource capacities.
+ *
+ * @author Fabien Hermenier
+ * @see btrplace.solver.choco.chocoUtil.TaskScheduler
+ * @see btrplace.solver.choco.chocoUtil.AliasedCumulatives
+ */
+public enum SchedulingFiltering {
+
+    /**
+     * The resources are filtered once every d-slice is placed.
+     */
+    BASIC,
+
+    /**
+     * The resources are also filtered while the d-slices are being placed.
+     * The timetable check of {@link #BASIC} is applied to the d-slices that are already placed.
+     * The d-slices that are not placed yet are checked against the min profile of
+     * each of their candidate resources: the resources where they cannot start on time are
+     * removed from their host, and their start is at least the earliest start among the remaining
+     * resources. This provides earlier bounds on the slices, and so on the plan duration,
+     * at the price of more propagations.
+     * <p/>
+     * The c-slices start at 0 and the d-slices end with the schedule, so the minimal energy
+     * of a slice in a time window is exactly the energy of its mandatory part in that window.
+     * An energetic reasoning would then detect nothing more than this timetable check.
+     */
+    TIMETABLE
+}
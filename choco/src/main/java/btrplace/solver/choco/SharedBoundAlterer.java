@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.solver.choco;
+
+import btrplace.solver.choco.actionModel.VMActionModel;
+import btrplace.solver.choco.chocoUtil.SharedObjectiveCut;
+import choco.kernel.solver.Configuration;
+import choco.kernel.solver.ResolutionPolicy;
+import choco.kernel.solver.variables.integer.IntDomainVar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An alterer to share the best objective value among several problems
+ * that are solved concurrently.
+ * Each time a solution is computed, its value is published and the next
+ * target bound is restricted to improve the best value known so far,
+ * whatever the problem that computed it. As the alterer is only called
+ * on the solutions of its own problem, {@link #makeCut()} provides a
+ * constraint to consider the values published by the other problems
+ * each time a VM is placed.
+ * <p/>
+ * An alterer that was already attached to the problem can be wrapped
+ * to refine its target bound.
+ *
+ * @author Fabien Hermenier
+ */
+public class SharedBoundAlterer extends ObjectiveAlterer {
+
+    private AtomicReference<Integer> best;
+
+    private ObjectiveAlterer alterer;
+
+    private boolean minimize;
+
+    /**
+     * Make a new alterer.
+     * The objective variable and the resolution policy must have been declared.
+     *
+     * @param rp   the reconfiguration problem to consider
+     * @param best the best value shared between the problems. {@code null} while no solution has been computed
+     * @param a    the alterer to wrap. {@code null} to use the default bound
+     */
+    public SharedBoundAlterer(ReconfigurationProblem rp, AtomicReference<Integer> best, ObjectiveAlterer a) {
+        super(rp);
+        this.best = best;
+        this.alterer = a;
+        this.minimize = isMinimization(rp);
+    }
+
+    @Override
+    public int tryNewValue(int currentValue) {
+        int b = publish(currentValue);
+        if (minimize) {
+            int bound = alterer == null ? currentValue - 1 : alterer.tryNewValue(currentValue);
+            return Math.min(bound, b - 1);
+        }
+        int bound = alterer == null ? currentValue + 1 : alterer.tryNewValue(currentValue);
+        return Math.max(bound, b + 1);
+    }
+
+    /**
+     * Publish a solution value.
+     *
+     * @param v the value to publish
+     * @return the best value, including the published one
+     */
+    private int publish(int v) {
+        while (true) {
+            Integer cur = best.get();
+            if (cur != null && (minimize ? cur <= v : cur >= v)) {
+                return cur;
+            }
+            if (best.compareAndSet(cur, v)) {
+                return v;
+            }
+        }
+    }
+
+    /**
+     * Make a constraint that restricts the objective to improve the shared value.
+     * The value is read each time a VM is placed, so the constraint only
+     * observes the placement variables rather than every variable of the problem.
+     *
+     * @return the constraint to post
+     */
+    public SharedObjectiveCut makeCut() {
+        return new SharedObjectiveCut((IntDomainVar) obj, getPlacementVariables(rp), best, minimize);
+    }
+
+    /**
+     * Get the placement variables of the VMs that are not placed yet.
+     *
+     * @param rp the problem to inspect
+     * @return the hosting variables of the d-slices that are not instantiated
+     */
+    static IntDomainVar[] getPlacementVariables(ReconfigurationProblem rp) {
+        List<IntDomainVar> observed = new ArrayList<IntDomainVar>(rp.getVMs().length);
+        for (VMActionModel a : rp.getVMActions()) {
+            Slice d = a.getDSlice();
+            if (d != null && !d.getHoster().isInstantiated()) {
+                observed.add(d.getHoster());
+            }
+        }
+        return observed.toArray(new IntDomainVar[observed.size()]);
+    }
+
+    /**
+     * Get the best value known so far.
+     *
+     * @return the best value. {@code null} if no solution has been computed yet
+     */
+    public Integer getBestValue() {
+        return best.get();
+    }
+
+    /**
+     * Check if the objective of a problem must be minimized.
+     *
+     * @param rp the problem to inspect
+     * @return {@code true} for a minimization problem, {@code false} for a maximization problem
+     */
+    public static boolean isMinimization(ReconfigurationProblem rp) {
+        return rp.getSolver().getConfiguration().readEnum(Configuration.RESOLUTION_POLICY, ResolutionPolicy.class)
+                != ResolutionPolicy.MAXIMIZE;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder("sharedBoundAlterer(").append(obj.getName()).append(')').toString();
+    }
+}
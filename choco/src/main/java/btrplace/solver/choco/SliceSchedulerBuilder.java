@@ -176,6 +176,7 @@ public class SliceSchedulerBuilder {
                 capas,
                 cHosters, cUses, cEnds,
                 dHosters, dUses, dStarts,
-                associations);
+                associations,
+                rp.getSchedulingFiltering() == SchedulingFiltering.TIMETABLE);
     }
 }
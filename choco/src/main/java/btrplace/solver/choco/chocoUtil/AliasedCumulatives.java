@@ -20,6 +20,7 @@ package btrplace.solver.choco.chocoUtil;
 
 import choco.cp.solver.variables.integer.IntVarEvent;
 import choco.kernel.common.logging.ChocoLogging;
+import choco.kernel.common.util.iterators.DisposableIntIterator;
 import choco.kernel.common.util.tools.ArrayUtils;
 import choco.kernel.memory.IEnvironment;
 import choco.kernel.memory.IStateInt;
@@ -75,19 +76,25 @@ public class AliasedCumulatives extends AbstractLargeIntSConstraint {
      */
     private TIntHashSet alias;
 
+    /**
+     * {@code true} to filter the resource and the unplaced dTasks while the dTasks are being placed.
+     */
+    private boolean partialFiltering;
+
     /**
      * Make a new constraint.
      *
-     * @param env      the solver environment
-     * @param alias    the resource identifier related to this cumulative
-     * @param capas    for each dimension, the capacity of each resource
-     * @param cHosters the placement variable of each cTask
-     * @param cUsages  the resource usage of each cTask for each dimension
-     * @param cEnds    the moment each cTask ends
-     * @param dHosters the placement variable of each dTask
-     * @param dUsages  the resource usage of each dTask for each dimension
-     * @param dStarts  the moment each dTask starts
-     * @param assocs   indicate association between cTasks and dTasks. Associated tasks cannot overlap on a same resource
+     * @param env              the solver environment
+     * @param alias            the resource identifier related to this cumulative
+     * @param capas            for each dimension, the capacity of each resource
+     * @param cHosters         the placement variable of each cTask
+     * @param cUsages          the resource usage of each cTask for each dimension
+     * @param cEnds            the moment each cTask ends
+     * @param dHosters         the placement variable of each dTask
+     * @param dUsages          the resource usage of each dTask for each dimension
+     * @param dStarts          the moment each dTask starts
+     * @param assocs           indicate association between cTasks and dTasks. Associated tasks cannot overlap on a same resource
+     * @param partialFiltering {@code true} to filter the resource and the unplaced dTasks before every dTask is placed
      */
     public AliasedCumulatives(IEnvironment env,
                               int[] alias,
@@ -98,11 +105,13 @@ public class AliasedCumulatives extends AbstractLargeIntSConstraint {
                               IntDomainVar[] dHosters,
                               int[][] dUsages,
                               IntDomainVar[] dStarts,
-                              int[] assocs) {
+                              int[] assocs,
+                              boolean partialFiltering) {
 
         super(ArrayUtils.append(dHosters, cHosters, cEnds, dStarts));
         this.alias = new TIntHashSet(alias);
         this.env = env;
+        this.partialFiltering = partialFiltering;
         this.cHosters = cHosters;
         this.dHosters = dHosters;
         this.cEnds = cEnds;
@@ -173,23 +182,106 @@ public class AliasedCumulatives extends AbstractLargeIntSConstraint {
 
     @Override
     public void propagate() throws ContradictionException {
-        if (isFull2() && !resource.propagate()) {
+        boolean full = isFull2();
+        if ((full || partialFiltering) && !resource.propagate(full)) {
             fail();
         }
+        while (!full && partialFiltering && filterUnplaced()) {
+            //Some dTasks have been placed, the resource must be filtered again
+            full = isFull2();
+            if (!resource.propagate(full)) {
+                fail();
+            }
+        }
+    }
+
+    /**
+     * Filter the dTasks that are not placed.
+     *
+     * @return {@code true} if some dTasks have been placed by the filtering
+     * @throws ContradictionException if a dTask cannot be scheduled
+     */
+    private boolean filterUnplaced() throws ContradictionException {
+        //The bounds may have been updated by the resource filtering
+        resource.computeProfiles();
+        boolean placed = false;
+        for (int i = 0; i < dHosters.length; i++) {
+            if (!dHosters[i].isInstantiated() && filterUnplaced(i)) {
+                placed = true;
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * Filter the host and the start of a dTask that is not placed.
+     * If the dTask cannot fit on the resource before the upper bound of its start,
+     * with regards to the min profile, the aliased identifiers are removed from its host.
+     * Otherwise, if the dTask can only go on the resource, its start is at least its earliest start.
+     *
+     * @param i the dTask
+     * @return {@code true} if the dTask has been placed by the filtering
+     * @throws ContradictionException if the dTask cannot be scheduled
+     */
+    private boolean filterUnplaced(int i) throws ContradictionException {
+        IntDomainVar h = dHosters[i];
+        int[] aliased = null;
+        int nbAliased = 0;
+        boolean elsewhere = false;
+        DisposableIntIterator it = h.getDomain().getIterator();
+        try {
+            while (it.hasNext()) {
+                int r = it.next();
+                if (isIn(r)) {
+                    if (aliased == null) {
+                        aliased = new int[h.getDomainSize()];
+                    }
+                    aliased[nbAliased++] = r;
+                } else {
+                    elsewhere = true;
+                }
+            }
+        } finally {
+            it.dispose();
+        }
+        if (nbAliased == 0) {
+            return false;
+        }
+        int est = resource.getEarliestStart(i);
+        if (est > dStarts[i].getSup()) {
+            for (int x = 0; x < nbAliased; x++) {
+                h.removeVal(aliased[x], this, false);
+            }
+            if (h.isInstantiated()) {
+                place(i);
+                return true;
+            }
+        } else if (!elsewhere) {
+            dStarts[i].updateInf(est, this, false);
+        }
+        return false;
     }
 
     @Override
     public void awakeOnInst(int idx) throws ContradictionException {
         if (idx < dHosters.length) {
-            toInstantiate.add(-1);
-            int nIdx = vars[idx].getVal();
-            if (isIn(nIdx)) {
-                vIns.add(idx);
-            }
+            place(idx);
         }
         this.constAwake(false);
     }
 
+    /**
+     * Register a dTask that has just been placed.
+     *
+     * @param i the dTask
+     */
+    private void place(int i) {
+        toInstantiate.add(-1);
+        if (isIn(dHosters[i].getVal())) {
+            vIns.add(i);
+        }
+    }
+
     private boolean isFull2() {
         return toInstantiate.get() == 0;
     }
@@ -19,6 +19,7 @@
 package btrplace.solver.choco.chocoUtil;
 
 import btrplace.solver.choco.ReconfigurationProblem;
+import btrplace.solver.choco.SchedulingFiltering;
 import btrplace.solver.choco.Slice;
 import btrplace.solver.choco.VMActionModel;
 import choco.cp.solver.CPSolver;
@@ -152,6 +153,7 @@ public class AliasedCumulativesBuilder {
     public List<AliasedCumulatives> getConstraints() {
         CPSolver s = rp.getSolver();
         List<AliasedCumulatives> cstrs = new ArrayList<AliasedCumulatives>();
+        boolean partialFiltering = rp.getSchedulingFiltering() == SchedulingFiltering.TIMETABLE;
 
 
         for (int i = 0; i < aliases.size(); i++) {
@@ -167,7 +169,7 @@ public class AliasedCumulativesBuilder {
                     new int[]{capa},
                     cHosters, new int[][]{cUse}, cEnds,
                     dHosters, new int[][]{dUses}, dStarts,
-                    associations));
+                    associations, partialFiltering));
 
         }
         return cstrs;
@@ -141,17 +141,52 @@ public class AliasedCumulativesFiltering {
         this.lastCendSup = env.makeInt(lastSup);
     }
 
-    public boolean propagate() throws ContradictionException {
+    /**
+     * Filter the resource.
+     *
+     * @param complete {@code true} if every d-slice is placed. Otherwise, only the rules
+     *                 that are valid for a partial placement are applied
+     * @return {@code false} if the resource is over-used
+     * @throws ContradictionException if a contradiction occurred while filtering
+     */
+    public boolean propagate(boolean complete) throws ContradictionException {
         computeProfiles();
         if (!checkInvariant()) {
             return false;
         }
-        updateCEndsSup();
+        updateCEndsSup(complete);
         updateDStartsInf();
-        updateDStartsSup();
+        if (complete) {
+            updateDStartsSup();
+        }
         return true;
     }
 
+    /**
+     * Get the earliest moment a d-slice that is not placed yet could start on the resource.
+     * The d-slice runs until the end of the schedule, so it must fit in the min profile
+     * from its start onward. The profiles must be up-to-date.
+     *
+     * @param dSlice the d-slice
+     * @return the earliest start, {@link Integer#MAX_VALUE} if the resource cannot host the d-slice
+     */
+    public int getEarliestStart(int dSlice) {
+        int st = dStarts[dSlice].getInf();
+        if (associatedToCSliceOnCurrentNode(dSlice)) {
+            return st;
+        }
+        int[] myUsage = getUsages(dUsages, dSlice);
+        for (int x = sortedMinProfile.length - 1; x >= 0; x--) {
+            if (exceedCapacity(profilesMin, sortedMinProfile[x], myUsage)) {
+                if (x == sortedMinProfile.length - 1) {
+                    return Integer.MAX_VALUE;
+                }
+                return Math.max(st, sortedMinProfile[x + 1]);
+            }
+        }
+        return st;
+    }
+
     /**
      * Translation for a relatives resources changes to an absolute free resources.
      *
@@ -396,9 +431,10 @@ public class AliasedCumulativesFiltering {
         }
     }
 
-    private void updateCEndsSup() throws ContradictionException {
+    private void updateCEndsSup(boolean complete) throws ContradictionException {
         for (int i = out.nextSetBit(0); i >= 0; i = out.nextSetBit(i + 1)) {
-            if (!cEnds[i].isInstantiated() && !associatedToDSliceOnCurrentNode(i)) {
+            if (!cEnds[i].isInstantiated() && !associatedToDSliceOnCurrentNode(i)
+                    && (complete || revAssociations[i] == NO_ASSOCIATIONS)) {
 
                 int[] myUsage = getUsages(cUsages, i);
                 int lastT = -1;
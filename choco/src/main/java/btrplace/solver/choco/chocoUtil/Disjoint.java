@@ -19,12 +19,9 @@
 package btrplace.solver.choco.chocoUtil;
 
 import choco.cp.solver.variables.integer.IntVarEvent;
-import choco.kernel.common.logging.ChocoLogging;
-import choco.kernel.common.util.iterators.DisposableIntIterator;
 import choco.kernel.common.util.tools.ArrayUtils;
 import choco.kernel.memory.IEnvironment;
 import choco.kernel.memory.IStateBitSet;
-import choco.kernel.memory.IStateInt;
 import choco.kernel.solver.ContradictionException;
 import choco.kernel.solver.constraints.integer.AbstractLargeIntSConstraint;
 import choco.kernel.solver.variables.integer.IntDomainVar;
@@ -35,7 +32,9 @@ import java.util.BitSet;
  * Enforces two sets of variables values to be disjoint
  * created sofdem - 08/09/11
  * <p/>
- * TODO: Seems buggy but hard to reproduce
+ * The values used by each group are stored into backtrackable bitsets.
+ * A value is removed from the variables of a group once, when it becomes required by the other group,
+ * so the constraint only listens to the instantiations.
  *
  * @author Sophie Demassey
  */
@@ -52,11 +51,6 @@ public class Disjoint extends AbstractLargeIntSConstraint {
      */
     private final int nbValues;
 
-    /**
-     * candidates[g][v] = number of variables in group 'g' which can be assigned to the value 'v',
-     * with g = 0 || 1 and 0 <= v < nbValues
-     */
-    private IStateInt[][] candidates;
     /**
      * required[g].get(v) iff at least one variable in the group 'g' is assigned to the value 'v',
      * with g = 0 || 1 and 0 <= v < nbValues
@@ -74,52 +68,26 @@ public class Disjoint extends AbstractLargeIntSConstraint {
         super(ArrayUtils.append(x, y));
         this.nbX = x.length;
         this.nbValues = nbValues;
-        candidates = new IStateInt[2][nbValues];
         required = new IStateBitSet[2];
         required[0] = environment.makeBitSet(nbValues);
         required[1] = environment.makeBitSet(nbValues);
-        for (int v = 0; v < nbValues; v++) {
-            candidates[0][v] = environment.makeInt(0);
-            candidates[1][v] = environment.makeInt(0);
-        }
     }
 
     @Override
     public int getFilteredEventMask(int idx) {
-        return IntVarEvent.REMVAL_MASK + IntVarEvent.INSTINT_MASK;
-    }
-
-    /**
-     * Initialise required and candidate for a given variable
-     * that belong to a given group.
-     *
-     * @param var   the variable
-     * @param group the group of the variable
-     */
-    private void initVar(IntDomainVar var, int group) {
-        if (var.isInstantiated()) {
-            required[group].set(var.getVal());
-        } else {
-            DisposableIntIterator it = var.getDomain().getIterator();
-            try {
-                while (it.hasNext()) {
-                    int val = it.next();
-                    candidates[group][val].add(1);
-                }
-            } finally {
-                it.dispose();
-            }
-        }
+        return IntVarEvent.INSTINT_MASK;
     }
 
     @Override
     public void awake() throws ContradictionException {
-        int i = 0;
-        for (; i < nbX; i++) {
-            initVar(vars[i], 0);
-        }
-        for (; i < vars.length; i++) {
-            initVar(vars[i], 1);
+        for (int i = 0; i < vars.length; i++) {
+            if (vars[i].isInstantiated()) {
+                int group = (i < nbX) ? 0 : 1;
+                if (required[1 - group].get(vars[i].getVal())) {
+                    fail();
+                }
+                required[group].set(vars[i].getVal());
+            }
         }
         propagate();
     }
@@ -127,7 +95,8 @@ public class Disjoint extends AbstractLargeIntSConstraint {
     /**
      * update the internal data and filter when a variable is newly instantiated
      * 1) fail if a variable in the other group is already instantiated to this value
-     * 2) remove the value of the domains of all the variables of the other group
+     * 2) remove the value of the domains of all the variables of the other group.
+     * A variable of the other group that becomes instantiated is handled the same way
      *
      * @param val   the new assigned value
      * @param group the group of the new instantiated variable
@@ -136,65 +105,49 @@ public class Disjoint extends AbstractLargeIntSConstraint {
      *          when some variables in both groups are instantiated to the same value
      */
     public void setRequired(int val, int group, int other) throws ContradictionException {
-
         if (required[other].get(val)) {
             //The value is used in the other group. It's a contradiction
             fail();
         }
-        if (candidates[other][val].get() > 0) {
-            //The value was possible for the other group, so we remove it from its variable
-
-            int n = 0; //The number of variables that were updated
-            int i = (other == 0) ? 0 : nbX;
-            int end = (other == 0) ? nbX : vars.length;
-            for (; i < end; i++) {
-                if (vars[i].removeVal(val, this, false)) {
-                    n++;
-                    /*if (vars[i].isInstantiated()) {
-                        setRequired(vars[i].getVal(), other, group);
-                    } */
-                }
+        if (!required[group].get(val)) {
+            required[group].set(val);
+            removeFromGroup(val, other);
+        }
+    }
+
+    /**
+     * Remove a value from the domain of the variables of a group.
+     *
+     * @param val   the value to remove
+     * @param group the group of variables
+     * @throws ContradictionException if a domain becomes empty
+     */
+    private void removeFromGroup(int val, int group) throws ContradictionException {
+        int i = (group == 0) ? 0 : nbX;
+        int end = (group == 0) ? nbX : vars.length;
+        for (; i < end; i++) {
+            if (vars[i].removeVal(val, this, false) && vars[i].isInstantiated()) {
+                //The removal is not notified to this constraint
+                setRequired(vars[i].getVal(), group, 1 - group);
             }
-            assert n == candidates[other][val].get() : n + " variables in group '" + other + "' were updated but candidate=" + candidates[other][val].get();
-            candidates[other][val].set(0);
         }
-        required[group].set(val);
     }
 
     @Override
     public void awakeOnInst(int idx) throws ContradictionException {
         int group = (idx < nbX) ? 0 : 1;
-        //ChocoLogging.getBranchingLogger().finest("awakeOnInst grp= " + group + " val=" + vars[idx].getVal());
         setRequired(vars[idx].getVal(), group, 1 - group);
-        constAwake(false);
-    }
-
-    @Override
-    public void awakeOnRemovals(int idx, DisposableIntIterator deltaDomain) throws ContradictionException {
-        //ChocoLogging.getBranchingLogger().finest("awakeOnRemovals(" + idx + ")");
-        int group = (idx < nbX) ? 0 : 1;
-        while (deltaDomain.hasNext()) {
-            int n = deltaDomain.next();
-            //ChocoLogging.getBranchingLogger().finest("Decrease candidates for value " + n +  " in group " + group);
-            candidates[group][n].add(-1);
-        }
-        constAwake(false);
     }
 
     @Override
     public void propagate() throws ContradictionException {
-        for (int v = 0; v < nbValues; v++) {
-            //Check if the value 'v' is required by a group
-            if (required[0].get(v)) {
-                //Required by group 0
-                setRequired(v, 0, 1);
-            }
-            if (required[1].get(v)) {
-                setRequired(v, 1, 0);
-            }
+        //Remove the values required by a group from the other group
+        for (int v = required[0].nextSetBit(0); v >= 0; v = required[0].nextSetBit(v + 1)) {
+            removeFromGroup(v, 1);
+        }
+        for (int v = required[1].nextSetBit(0); v >= 0; v = required[1].nextSetBit(v + 1)) {
+            removeFromGroup(v, 0);
         }
-        //prettyCandidates(0);
-        //prettyCandidates(1);
     }
 
     @Override
@@ -211,13 +164,4 @@ public class Disjoint extends AbstractLargeIntSConstraint {
         }
         return true;
     }
-
-    private void prettyCandidates(int g) {
-        StringBuilder b = new StringBuilder();
-        int x = 0;
-        for (IStateInt v : candidates[g]) {
-            b.append(" value(").append(x++).append("):").append(v.get());
-        }
-        ChocoLogging.getBranchingLogger().finest("Candidates for group " + g + ": " + b.toString());
-    }
 }
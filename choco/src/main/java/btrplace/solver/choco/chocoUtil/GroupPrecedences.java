@@ -0,0 +1,385 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.solver.choco.chocoUtil;
+
+import choco.cp.solver.variables.integer.IntVarEvent;
+import choco.kernel.common.util.iterators.DisposableIntIterator;
+import choco.kernel.common.util.tools.ArrayUtils;
+import choco.kernel.memory.IEnvironment;
+import choco.kernel.memory.IStateBitSet;
+import choco.kernel.memory.IStateInt;
+import choco.kernel.memory.IStateIntVector;
+import choco.kernel.solver.ContradictionException;
+import choco.kernel.solver.constraints.integer.AbstractLargeIntSConstraint;
+import choco.kernel.solver.variables.integer.IntDomainVar;
+
+import java.util.BitSet;
+
+/**
+ * Precedences between two groups of tasks over multiple resources.
+ * A d-task of a group can start on a resource only once every c-task of the other group
+ * that was on this resource ended. This is a single constraint equivalent to a
+ * {@link Precedences} per d-task, but the horizon of each resource is shared among the d-tasks.
+ * <p/>
+ * The c-tasks are placed on a known resource. The d-tasks are placed on a resource given by a variable.
+ * The tasks of the first group (group 0) are followed by the tasks of the second group (group 1).
+ *
+ * @author Fabien Hermenier
+ */
+public class GroupPrecedences extends AbstractLargeIntSConstraint {
+
+    private IntDomainVar[] dHosters;
+
+    private IntDomainVar[] dStarts;
+
+    private IntDomainVar[] cEnds;
+
+    private int[] cHosters;
+
+    /**
+     * The number of d-tasks in group 0.
+     */
+    private int nbD0;
+
+    /**
+     * The number of c-tasks in group 0.
+     */
+    private int nbC0;
+
+    private int nbResources;
+
+    /**
+     * cByResource[g][r] = the c-tasks of group g on resource r.
+     */
+    private int[][][] cByResource;
+
+    /**
+     * horizonLB[g][r] = the LB of the moment the c-tasks of group g leave resource r.
+     */
+    private IStateInt[][] horizonLB;
+
+    /**
+     * minStartSup[g][r] = the smallest UB of the start of the d-tasks of group g placed on resource r.
+     */
+    private IStateInt[][] minStartSup;
+
+    /**
+     * unplaced[g] = the d-tasks of group g that are not placed yet.
+     */
+    private IStateBitSet[] unplaced;
+
+    /**
+     * placedOn[g][r] = the d-tasks of group g placed on resource r.
+     */
+    private IStateIntVector[][] placedOn;
+
+    /**
+     * The resources where the horizon of a group increased since the last propagation.
+     */
+    private BitSet[] horizonChanged;
+
+    /**
+     * The resources where the start of the d-tasks of a group decreased since the last propagation.
+     */
+    private BitSet[] startChanged;
+
+    /**
+     * The d-tasks to check.
+     */
+    private BitSet toCheck;
+
+    private IEnvironment env;
+
+    /**
+     * Make a new constraint.
+     *
+     * @param env         the solver environment
+     * @param dHosters    the placement variable of each d-task, group 0 first
+     * @param dStarts     the moment each d-task starts
+     * @param nbD0        the number of d-tasks in group 0
+     * @param cHosters    the resource of each c-task, group 0 first
+     * @param cEnds       the moment each c-task ends
+     * @param nbC0        the number of c-tasks in group 0
+     * @param nbResources the number of resources
+     */
+    public GroupPrecedences(IEnvironment env,
+                            IntDomainVar[] dHosters,
+                            IntDomainVar[] dStarts,
+                            int nbD0,
+                            int[] cHosters,
+                            IntDomainVar[] cEnds,
+                            int nbC0,
+                            int nbResources) {
+        super(ArrayUtils.append(dHosters, dStarts, cEnds));
+        this.env = env;
+        this.dHosters = dHosters;
+        this.dStarts = dStarts;
+        this.nbD0 = nbD0;
+        this.cHosters = cHosters;
+        this.cEnds = cEnds;
+        this.nbC0 = nbC0;
+        this.nbResources = nbResources;
+        this.horizonChanged = new BitSet[]{new BitSet(nbResources), new BitSet(nbResources)};
+        this.startChanged = new BitSet[]{new BitSet(nbResources), new BitSet(nbResources)};
+        this.toCheck = new BitSet(dHosters.length);
+    }
+
+    private int dGroup(int i) {
+        return i < nbD0 ? 0 : 1;
+    }
+
+    private int cGroup(int j) {
+        return j < nbC0 ? 0 : 1;
+    }
+
+    @Override
+    public int getFilteredEventMask(int idx) {
+        if (idx < dHosters.length) {
+            return IntVarEvent.INSTINT_MASK;
+        } else if (idx < 2 * dHosters.length) {
+            return IntVarEvent.DECSUP_MASK + IntVarEvent.INSTINT_MASK;
+        }
+        return IntVarEvent.INCINF_MASK + IntVarEvent.INSTINT_MASK;
+    }
+
+    @Override
+    public void awake() throws ContradictionException {
+        int[][] nb = new int[2][nbResources];
+        int[][] lbs = new int[2][nbResources];
+        for (int j = 0; j < cEnds.length; j++) {
+            int g = cGroup(j);
+            int r = cHosters[j];
+            nb[g][r]++;
+            lbs[g][r] = Math.max(lbs[g][r], cEnds[j].getInf());
+        }
+        cByResource = new int[2][nbResources][];
+        horizonLB = new IStateInt[2][nbResources];
+        minStartSup = new IStateInt[2][nbResources];
+        placedOn = new IStateIntVector[2][nbResources];
+        for (int g = 0; g < 2; g++) {
+            for (int r = 0; r < nbResources; r++) {
+                cByResource[g][r] = new int[nb[g][r]];
+                horizonLB[g][r] = env.makeInt(lbs[g][r]);
+                minStartSup[g][r] = env.makeInt(Integer.MAX_VALUE);
+                placedOn[g][r] = env.makeIntVector();
+            }
+        }
+        for (int j = cEnds.length - 1; j >= 0; j--) {
+            int g = cGroup(j);
+            int r = cHosters[j];
+            cByResource[g][r][--nb[g][r]] = j;
+        }
+
+        unplaced = new IStateBitSet[]{env.makeBitSet(dHosters.length), env.makeBitSet(dHosters.length)};
+        for (int i = 0; i < dHosters.length; i++) {
+            unplaced[dGroup(i)].set(i);
+            dHosters[i].updateInf(0, this, false);
+            dHosters[i].updateSup(nbResources - 1, this, false);
+            if (dHosters[i].isInstantiated()) {
+                place(i);
+            }
+        }
+        toCheck.set(0, dHosters.length);
+        propagate();
+    }
+
+    /**
+     * Take into account a d-task that is now placed.
+     * Nothing is done if the d-task was already considered as placed.
+     *
+     * @param i the d-task
+     */
+    private void place(int i) {
+        int g = dGroup(i);
+        if (!unplaced[g].get(i)) {
+            return;
+        }
+        unplaced[g].clear(i);
+        placedOn[g][dHosters[i].getVal()].add(i);
+        updateStartSup(i);
+        toCheck.set(i);
+    }
+
+    /**
+     * Update the smallest start UB of the resource hosting a d-task.
+     *
+     * @param i the d-task, necessarily placed
+     */
+    private void updateStartSup(int i) {
+        int g = dGroup(i);
+        int r = dHosters[i].getVal();
+        int sup = dStarts[i].getSup();
+        if (sup < minStartSup[g][r].get()) {
+            minStartSup[g][r].set(sup);
+            startChanged[g].set(r);
+        }
+    }
+
+    /**
+     * Update the horizon of the resource hosting a c-task.
+     *
+     * @param j the c-task
+     */
+    private void updateHorizon(int j) {
+        int g = cGroup(j);
+        int r = cHosters[j];
+        int inf = cEnds[j].getInf();
+        if (inf > horizonLB[g][r].get()) {
+            horizonLB[g][r].set(inf);
+            horizonChanged[g].set(r);
+        }
+    }
+
+    @Override
+    public void awakeOnInst(int idx) throws ContradictionException {
+        if (idx < dHosters.length) {
+            place(idx);
+        } else if (idx < 2 * dHosters.length) {
+            onStartSup(idx - dHosters.length);
+        } else {
+            updateHorizon(idx - 2 * dHosters.length);
+        }
+        constAwake(false);
+    }
+
+    @Override
+    public void awakeOnSup(int idx) throws ContradictionException {
+        onStartSup(idx - dHosters.length);
+        constAwake(false);
+    }
+
+    @Override
+    public void awakeOnInf(int idx) throws ContradictionException {
+        updateHorizon(idx - 2 * dHosters.length);
+        constAwake(false);
+    }
+
+    private void onStartSup(int i) {
+        if (dHosters[i].isInstantiated()) {
+            updateStartSup(i);
+        } else {
+            //Some resources may be too late now
+            toCheck.set(i);
+        }
+    }
+
+    @Override
+    public void propagate() throws ContradictionException {
+        while (!toCheck.isEmpty() || !horizonChanged[0].isEmpty() || !horizonChanged[1].isEmpty()
+                || !startChanged[0].isEmpty() || !startChanged[1].isEmpty()) {
+            for (int g = 0; g < 2; g++) {
+                //The c-tasks of the other group must leave before the d-tasks of g arrive
+                BitSet changed = startChanged[g];
+                for (int r = changed.nextSetBit(0); r >= 0; r = changed.nextSetBit(r + 1)) {
+                    int sup = minStartSup[g][r].get();
+                    for (int j : cByResource[1 - g][r]) {
+                        cEnds[j].updateSup(sup, this, false);
+                    }
+                }
+                changed.clear();
+            }
+            for (int g = 0; g < 2; g++) {
+                //The d-tasks of g that are placed on a resource where the horizon of the other group increased,
+                //and the d-tasks of g that may still go on it
+                BitSet changed = horizonChanged[1 - g];
+                if (!changed.isEmpty()) {
+                    for (int r = changed.nextSetBit(0); r >= 0; r = changed.nextSetBit(r + 1)) {
+                        IStateIntVector placed = placedOn[g][r];
+                        for (int x = 0; x < placed.size(); x++) {
+                            toCheck.set(placed.get(x));
+                        }
+                    }
+                    IStateBitSet u = unplaced[g];
+                    for (int i = u.nextSetBit(0); i >= 0; i = u.nextSetBit(i + 1)) {
+                        toCheck.set(i);
+                    }
+                    changed.clear();
+                }
+            }
+            for (int i = toCheck.nextSetBit(0); i >= 0; i = toCheck.nextSetBit(i + 1)) {
+                toCheck.clear(i);
+                filter(i);
+            }
+        }
+    }
+
+    /**
+     * Filter the start and the host of a d-task with regards to the horizons of the other group.
+     * When the d-task is not placed, the resources it cannot reach on time are removed
+     * and its start is at least the earliest horizon of the remaining resources.
+     *
+     * @param i the d-task
+     * @throws ContradictionException if the d-task cannot be scheduled
+     */
+    private void filter(int i) throws ContradictionException {
+        IStateInt[] horizons = horizonLB[1 - dGroup(i)];
+        IntDomainVar h = dHosters[i];
+        IntDomainVar st = dStarts[i];
+        if (h.isInstantiated()) {
+            st.updateInf(horizons[h.getVal()].get(), this, false);
+            return;
+        }
+        int sup = st.getSup();
+        int min = Integer.MAX_VALUE;
+        int[] late = null;
+        int nbLate = 0;
+        DisposableIntIterator it = h.getDomain().getIterator();
+        try {
+            while (it.hasNext()) {
+                int r = it.next();
+                int lb = horizons[r].get();
+                if (lb > sup) {
+                    if (late == null) {
+                        late = new int[h.getDomainSize()];
+                    }
+                    late[nbLate++] = r;
+                } else if (lb < min) {
+                    min = lb;
+                }
+            }
+        } finally {
+            it.dispose();
+        }
+        for (int x = 0; x < nbLate; x++) {
+            h.removeVal(late[x], this, false);
+        }
+        if (h.isInstantiated()) {
+            place(i);
+            st.updateInf(horizons[h.getVal()].get(), this, false);
+        } else if (min != Integer.MAX_VALUE) {
+            st.updateInf(min, this, false);
+        }
+    }
+
+    @Override
+    public boolean isSatisfied(int[] tuple) {
+        int nbD = dHosters.length;
+        for (int i = 0; i < nbD; i++) {
+            int r = tuple[i];
+            int st = tuple[nbD + i];
+            int o = 1 - dGroup(i);
+            for (int j = 0; j < cEnds.length; j++) {
+                if (cGroup(j) == o && cHosters[j] == r && tuple[2 * nbD + j] > st) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -24,13 +24,19 @@ import choco.kernel.memory.IStateInt;
 import choco.kernel.memory.IStateIntVector;
 import choco.kernel.solver.ContradictionException;
 import choco.kernel.solver.variables.integer.IntDomainVar;
-import gnu.trove.TIntArrayList;
-import gnu.trove.TIntIntHashMap;
 
 import java.util.Arrays;
 import java.util.BitSet;
 
 /**
+ * The filtering of {@link TaskScheduler} on a single resource.
+ * <p/>
+ * The min and max profiles are cached, not maintained incrementally: once outdated,
+ * they are rebuilt from scratch, including a sort of their moments. A resource is
+ * outdated by any event on its slices, and after any backtrack to a world that did
+ * not compute the current profiles, so a search that backtracks often rebuilds
+ * them at almost every propagation.
+ * <p/>
  * TODO: Transpose dimension/element indexes to remove getUsage()
  *
  * @author Fabien Hermenier
@@ -51,6 +57,11 @@ public class LocalTaskScheduler {
 
     private IStateIntVector vIn;
 
+    /**
+     * in[i] = true <=> the demanding slice i is in {@link #vIn}. Rebuilt with the profiles.
+     */
+    private BitSet in;
+
     /*
      * The moment the demanding slices ends. Same order as the hosting variables.
      */
@@ -66,13 +77,22 @@ public class LocalTaskScheduler {
 
     public static final int NO_ASSOCIATIONS = -1;
 
-    private int[] sortedMinProfile;
+    private Profile profileMin;
 
-    private TIntIntHashMap[] profilesMin;
+    private Profile profileMax;
 
-    private TIntIntHashMap[] profilesMax;
+    /**
+     * The identifier of the profiles that are valid for the current world, -1 if the profiles are outdated.
+     * Restored on backtrack, so it then refers to profiles that may have been overwritten since.
+     */
+    private IStateInt validProfiles;
 
-    private int[] sortedMaxProfile;
+    /**
+     * The identifier of the profiles that are currently computed.
+     * Not backtrackable and only increasing, so a world can only reuse the profiles it computed itself:
+     * after a backtrack, the profiles are rebuilt even if the world computed them earlier.
+     */
+    private int computedProfiles = 0;
 
     /**
      * LB of the moment the last c-slice leaves.
@@ -120,18 +140,17 @@ public class LocalTaskScheduler {
         this.dStarts = dStarts;
         this.vIn = vIn;
         this.out = outs;
+        this.in = new BitSet(dStarts.length);
         revAssociations = revAssocs;
 
         //The amount of free resources at startup
 
         startupFree = new int[nbDims];
-        profilesMax = new TIntIntHashMap[nbDims];
-        profilesMin = new TIntIntHashMap[nbDims];
         for (int i = 0; i < capacities.length; i++) {
             startupFree[i] = capacities[i][me];
-            profilesMax[i] = new TIntIntHashMap();
-            profilesMin[i] = new TIntIntHashMap();
         }
+        profileMin = new Profile(nbDims);
+        profileMax = new Profile(nbDims);
 
         int lastInf = out.isEmpty() ? 0 : Integer.MAX_VALUE;
         int lastSup = 0;
@@ -152,46 +171,94 @@ public class LocalTaskScheduler {
         }
         this.lastCendInf = env.makeInt(lastInf);
         this.lastCendSup = env.makeInt(lastSup);
+        this.validProfiles = env.makeInt(-1);
     }
 
-    public boolean propagate() throws ContradictionException {
-        computeProfiles();
+    /**
+     * Indicate the profiles are outdated.
+     * This must be called when a slice arrives on the resource, or when the start
+     * or the end of one of its slices changed.
+     */
+    public void invalidate() {
+        validProfiles.set(-1);
+    }
+
+    /**
+     * Filter the resource.
+     * When some d-slices are not placed yet, the min profile only underestimates the resource usage.
+     * The filtering is then restricted to the rules that stay valid: the ends of the c-slices
+     * that are associated to a d-slice are not filtered and the starts of the d-slices are not
+     * upper-bounded.
+     *
+     * @param complete {@code true} if every d-slice is placed
+     * @return {@code false} if the resource is over-used
+     * @throws ContradictionException if a contradiction occurred while filtering
+     */
+    public boolean propagate(boolean complete) throws ContradictionException {
+        if (validProfiles.get() != computedProfiles) {
+            computeProfiles();
+        }
         if (!checkInvariant()) {
             return false;
         }
-        updateCEndsSup();
+        updateCEndsSup(complete);
         updateDStartsInf();
-        updateDStartsSup();
+        if (complete) {
+            updateDStartsSup();
+        }
         return true;
     }
 
     /**
-     * Translation for a relatives resources changes to an absolute free resources.
+     * Get the earliest moment a d-slice that is not placed yet could start on the resource.
+     * The d-slice runs until the end of the schedule, so it must fit in the min profile
+     * from its start onward, including after the last moment of the profile.
      *
-     * @param changes       the map that indicates the free CPU variation
-     * @param sortedMoments the different moments sorted in ascending order
+     * @param dSlice the d-slice
+     * @return the earliest start, {@link Integer#MAX_VALUE} if the resource cannot host the d-slice
      */
-    private static void toAbsoluteFreeResources(TIntIntHashMap changes, int[] sortedMoments) {
-        for (int i = 1; i < sortedMoments.length; i++) {
-            int t = sortedMoments[i];
-            int lastT = sortedMoments[i - 1];
-            int lastFree = changes.get(lastT);
-
-            changes.put(t, changes.get(t) + lastFree);
+    public int getEarliestStart(int dSlice) {
+        if (validProfiles.get() != computedProfiles) {
+            computeProfiles();
+        }
+        int st = Math.max(dStarts[dSlice].getInf(), early.getInf());
+        if (associatedToCSliceOnCurrentNode(dSlice)) {
+            //The d-slice takes over the resources of its c-slice
+            return st;
+        }
+        if (dStarts[dSlice].getSup() < early.getSup()) {
+            return Integer.MAX_VALUE;
         }
+        int[] myUsage = getUsages(dUsages, dSlice);
+        for (int x = profileMin.size() - 1; x >= 0; x--) {
+            if (exceedCapacity(profileMin, x, myUsage)) {
+                if (x == profileMin.size() - 1) {
+                    return Integer.MAX_VALUE;
+                }
+                return Math.max(st, profileMin.moment(x + 1));
+            }
+        }
+        return st;
     }
 
+    /**
+     * Rebuild the min and max profiles from scratch.
+     * This is a full computation, in O(n log n) with n the number of slices on the resource.
+     */
     public void computeProfiles() {
 
+        int[] init = new int[nbDims];
         for (int i = 0; i < nbDims; i++) {
-            //What is necessarily used on the resource
-            profilesMin[i].clear();
-
-            //Maximum possible usage on the resource
-            profilesMax[i].clear();
+            init[i] = capacities[i][me] - startupFree[i];
+        }
+        //What is necessarily used on the resource
+        profileMin.reset(init);
+        //Maximum possible usage on the resource
+        profileMax.reset(init);
 
-            profilesMax[i].put(0, capacities[i][me] - startupFree[i]);
-            profilesMin[i].put(0, capacities[i][me] - startupFree[i]);
+        in.clear();
+        for (int x = 0; x < vIn.size(); x++) {
+            in.set(vIn.get(x));
         }
 
         int lastInf = out.isEmpty() ? 0 : Integer.MAX_VALUE;
@@ -203,37 +270,27 @@ public class LocalTaskScheduler {
             if (t < lastInf) {
                 lastInf = t;
             }
-
-            if (associatedToDSliceOnCurrentNode(j) && increase(j, revAssociations[j])) {
+            boolean increasing = associatedToDSliceOnCurrentNode(j) && increase(j, revAssociations[j]);
+            if (increasing) {
                 if (me == DEBUG || DEBUG == -2) {
                     ChocoLogging.getBranchingLogger().finest(me + " " + cEnds[j].pretty() + " increasing");
                 }
-                for (int i = 0; i < nbDims; i++) {
-                    profilesMax[i].put(t, profilesMax[i].get(t) - cUsages[i][j]);
-                }
-
+                profileMax.add(t, cUsages, j, -1);
             } else {
                 if (me == DEBUG || DEBUG == -2) {
                     ChocoLogging.getBranchingLogger().finest(me + " " + cEnds[j].pretty() + " < or non-associated (" + (revAssociations[j] >= 0 ? dStarts[revAssociations[j]].pretty() : "no rev") + "?)");
                 }
-                for (int i = 0; i < nbDims; i++) {
-                    profilesMin[i].put(t, profilesMin[i].get(t) - cUsages[i][j]);
-                }
-
+                profileMin.add(t, cUsages, j, -1);
             }
 
             t = cEnds[j].getSup();
             if (t > lastSup) {
                 lastSup = t;
             }
-            if (associatedToDSliceOnCurrentNode(j) && increase(j, revAssociations[j])) {
-                for (int i = 0; i < nbDims; i++) {
-                    profilesMin[i].put(t, profilesMin[i].get(t) - cUsages[i][j]);
-                }
+            if (increasing) {
+                profileMin.add(t, cUsages, j, -1);
             } else {
-                for (int i = 0; i < nbDims; i++) {
-                    profilesMax[i].put(t, profilesMax[i].get(t) - cUsages[i][j]);
-                }
+                profileMax.add(t, cUsages, j, -1);
             }
         }
         if (out.isEmpty()) {
@@ -244,32 +301,17 @@ public class LocalTaskScheduler {
         lastCendInf.set(lastInf);
         lastCendSup.set(lastSup);
 
-        for (int i = 0; i < nbDims; i++) {
-            for (int x = 0; x < vIn.size(); x++) {
-                int j = vIn.get(x);
-                int t = dStarts[j].getSup();
-                profilesMin[i].put(t, profilesMin[i].get(t) + dUsages[i][j]);
-                t = dStarts[j].getInf();
-                profilesMax[i].put(t, profilesMax[i].get(t) + dUsages[i][j]);
-            }
+        for (int x = 0; x < vIn.size(); x++) {
+            int j = vIn.get(x);
+            profileMin.add(dStarts[j].getSup(), dUsages, j, 1);
+            profileMax.add(dStarts[j].getInf(), dUsages, j, 1);
         }
         //Now transforms into an absolute profile
-        sortedMinProfile = null;
-        sortedMinProfile = profilesMin[0].keys();
-        Arrays.sort(sortedMinProfile);
-
-        sortedMaxProfile = null;
-        sortedMaxProfile = profilesMax[0].keys();
-        for (int i = 0; i < nbDims; i++) {
-            profilesMax[i].keys(sortedMaxProfile);
-        }
-
-        Arrays.sort(sortedMaxProfile);
+        profileMin.build();
+        profileMax.build();
 
-        for (int i = 0; i < nbDims; i++) {
-            toAbsoluteFreeResources(profilesMin[i], sortedMinProfile);
-            toAbsoluteFreeResources(profilesMax[i], sortedMaxProfile);
-        }
+        computedProfiles++;
+        validProfiles.set(computedProfiles);
 
         if (me == DEBUG || DEBUG == -2) {
             ChocoLogging.getBranchingLogger().finest("---" + me + "--- startup=(" + Arrays.toString(startupFree) + ")"
@@ -282,12 +324,10 @@ public class LocalTaskScheduler {
             for (int i = out.nextSetBit(0); i >= 0; i = out.nextSetBit(i + 1)) {
                 ChocoLogging.getBranchingLogger().finest((cEnds[i].isInstantiated() ? "!" : "?") + " " + cEnds[i].pretty() + " " + Arrays.toString(getUsages(cUsages, i)));
             }
-            //ChocoLogging.getBranchingLogger().finest("---");
-
 
             for (int i = 0; i < nbDims; i++) {
-                ChocoLogging.getBranchingLogger().finest("profileMin dim " + i + "=" + prettyProfile(sortedMinProfile, profilesMin[i]));
-                ChocoLogging.getBranchingLogger().finest("profileMax dim " + i + "=" + prettyProfile(sortedMaxProfile, profilesMax[i]));
+                ChocoLogging.getBranchingLogger().finest("profileMin dim " + i + "=" + profileMin.pretty(i));
+                ChocoLogging.getBranchingLogger().finest("profileMax dim " + i + "=" + profileMax.pretty(i));
             }
         }
     }
@@ -302,49 +342,20 @@ public class LocalTaskScheduler {
     }
 
     private boolean associatedToDSliceOnCurrentNode(int cSlice) {
-        return revAssociations[cSlice] != NO_ASSOCIATIONS && isIn(revAssociations[cSlice]);
-    }
-
-    private boolean isIn(int idx) {
-
-        for (int x = 0; x < vIn.size(); x++) {
-            int i = vIn.get(x);
-            if (i == idx) {
-                return true;
-            }
-        }
-        return false;
+        return revAssociations[cSlice] != NO_ASSOCIATIONS && in.get(revAssociations[cSlice]);
     }
 
     private boolean associatedToCSliceOnCurrentNode(int dSlice) {
         return associations[dSlice] != NO_ASSOCIATIONS && out.get(associations[dSlice]);
     }
 
-    private String prettyProfile(int[] ascMoments, TIntIntHashMap prof) {
-        StringBuilder b = new StringBuilder();
-        for (int i = 0; i < ascMoments.length; i++) {
-            int t = ascMoments[i];
-            b.append(t);
-            b.append(":(");
-            b.append(prof.get(t));
-            b.append(",");
-            b.append(prof.get(t));
-            b.append(")");
-            if (i != ascMoments.length - 1) {
-                b.append(" ");
-            }
-        }
-        return b.toString();
-    }
-
     public boolean checkInvariant() {
-        for (int x = 0; x < sortedMinProfile.length; x++) {
-            int t = sortedMinProfile[x];
+        for (int x = 0; x < profileMin.size(); x++) {
             for (int i = 0; i < nbDims; i++) {
-                if (profilesMin[i].get(t) > capacities[i][me]) {
+                if (profileMin.get(i, x) > capacities[i][me]) {
                     if (me == DEBUG || DEBUG == -2) {
-                        ChocoLogging.getBranchingLogger().info("(" + me + ") Invalid min profile at " + t + " on dimension " + i
-                                + ": " + profilesMin[i].get(t) + " > " + capacities[i][me]);
+                        ChocoLogging.getBranchingLogger().info("(" + me + ") Invalid min profile at " + profileMin.moment(x) + " on dimension " + i
+                                + ": " + profileMin.get(i, x) + " > " + capacities[i][me]);
                     }
                     return false;
                 }
@@ -383,20 +394,20 @@ public class LocalTaskScheduler {
                 int[] myUsage = getUsages(dUsages, i);
 
                 int lastT = -1;
-                for (int x = sortedMinProfile.length - 1; x >= 0; x--) {
-                    int t = sortedMinProfile[x];
+                for (int x = profileMin.size() - 1; x >= 0; x--) {
+                    int t = profileMin.moment(x);
                     if (t <= dStarts[i].getInf()) {
                         break;
                     }
-                    int prevT = sortedMinProfile[x - 1];
                     if (t <= dStarts[i].getSup()
-                            && exceedCapacity(profilesMin, prevT, myUsage)) {
+                            && exceedCapacity(profileMin, x - 1, myUsage)) {
                         lastT = t;
                         break;
                     }
                 }
                 if (lastT != -1) {
                     dStarts[i].setInf(Math.max(lastT, early.getInf()));
+                    invalidate();
                 }
             }
         }
@@ -407,56 +418,54 @@ public class LocalTaskScheduler {
 
         int[] myCapacity = getUsages(capacities, me);
         int lastSup = -1;
-        for (int i = sortedMaxProfile.length - 1; i >= 0; i--) {
-            int t = sortedMaxProfile[i];
-            //if (profileMaxCPU.get(t) <= capacityCPU && profileMaxMem.get(t) <= capacityMem) {
-            if (!exceedCapacity(profilesMax, t, myCapacity)) {
-                lastSup = t;
+        for (int x = profileMax.size() - 1; x >= 0; x--) {
+            if (!exceedCapacity(profileMax, x, myCapacity)) {
+                lastSup = profileMax.moment(x);
             } else {
                 break;
             }
         }
-        /*if (me == DEBUG || DEBUG == -2) {
-            ChocoLogging.getBranchingLogger().finest(me + ": lastSup=" + lastSup);
-        } */
         if (lastSup != -1) {
             for (int x = 0; x < vIn.size(); x++) {
                 int i = vIn.get(x);
                 if (!dStarts[i].isInstantiated() && !associatedToCSliceOnCurrentNode(i) && dStarts[i].getSup() > lastSup) {
                     int s = Math.max(dStarts[i].getInf(), lastSup);
                     dStarts[i].setSup(Math.max(s, early.getSup()));
+                    invalidate();
                 }
             }
         }
     }
 
-    private void updateCEndsSup() throws ContradictionException {
+    private void updateCEndsSup(boolean complete) throws ContradictionException {
         for (int i = out.nextSetBit(0); i >= 0; i = out.nextSetBit(i + 1)) {
-            if (!cEnds[i].isInstantiated() && !associatedToDSliceOnCurrentNode(i)) {
+            if (!cEnds[i].isInstantiated() && !associatedToDSliceOnCurrentNode(i)
+                    && (complete || revAssociations[i] == NO_ASSOCIATIONS)) {
 
                 int[] myUsage = getUsages(cUsages, i);
                 int lastT = -1;
-                for (int x = 0; x < sortedMinProfile.length; x++) {
-                    int t = sortedMinProfile[x];
+                for (int x = 0; x < profileMin.size(); x++) {
+                    int t = profileMin.moment(x);
                     if (t >= cEnds[i].getSup()) {
                         break;
                     } else if (t >= cEnds[i].getInf() &&
-                            exceedCapacity(profilesMin, t, myUsage)) {
+                            exceedCapacity(profileMin, x, myUsage)) {
                         lastT = t;
                         break;
                     }
                 }
                 if (lastT != -1) {
                     cEnds[i].setSup(Math.min(lastT, last.getSup()));
+                    invalidate();
                 }
 
             }
         }
     }
 
-    private boolean exceedCapacity(TIntIntHashMap[] profiles, int t, int[] usage) {
+    private boolean exceedCapacity(Profile p, int x, int[] usage) {
         for (int i = 0; i < nbDims; i++) {
-            if (profiles[i].get(t) + usage[i] > capacities[i][me]) {
+            if (p.get(i, x) + usage[i] > capacities[i][me]) {
                 return true;
             }
         }
@@ -470,4 +479,156 @@ public class LocalTaskScheduler {
         }
         return u;
     }
+
+    /**
+     * A resource usage profile stored in primitive arrays.
+     * Usage variations are first stacked, then {@link #build()} sort them
+     * and turn them into absolute usages, one per distinct moment in ascending order.
+     * The arrays are reused from one computation to another.
+     */
+    private static final class Profile {
+
+        private int nbDims;
+
+        /**
+         * The stacked variations. The moment in the high bits, the variation index in the low bits.
+         */
+        private long[] keys = new long[16];
+
+        /**
+         * The usage variation of each stacked variation, for each dimension.
+         */
+        private int[][] deltas;
+
+        private int nbDeltas;
+
+        /**
+         * The distinct moments in ascending order.
+         */
+        private int[] moments = new int[16];
+
+        /**
+         * The absolute usage at each moment, for each dimension.
+         */
+        private int[][] usages;
+
+        private int size;
+
+        public Profile(int nbDims) {
+            this.nbDims = nbDims;
+            deltas = new int[nbDims][keys.length];
+            usages = new int[nbDims][moments.length];
+        }
+
+        /**
+         * Clear the profile.
+         *
+         * @param init the usage at moment 0 for each dimension
+         */
+        public void reset(int[] init) {
+            nbDeltas = 0;
+            size = 0;
+            ensureDeltas(1);
+            keys[0] = 0;
+            for (int d = 0; d < nbDims; d++) {
+                deltas[d][0] = init[d];
+            }
+            nbDeltas = 1;
+        }
+
+        /**
+         * Stack a usage variation.
+         *
+         * @param t    the moment of the variation
+         * @param use  the usage of the slices, for each dimension
+         * @param j    the slice index
+         * @param sign 1 if the slice starts at {@code t}, -1 if it ends
+         */
+        public void add(int t, int[][] use, int j, int sign) {
+            ensureDeltas(nbDeltas + 1);
+            keys[nbDeltas] = ((long) t << 32) | nbDeltas;
+            for (int d = 0; d < nbDims; d++) {
+                deltas[d][nbDeltas] = sign * use[d][j];
+            }
+            nbDeltas++;
+        }
+
+        /**
+         * Sort the stacked variations and compute the absolute usages.
+         */
+        public void build() {
+            Arrays.sort(keys, 0, nbDeltas);
+            if (moments.length < nbDeltas) {
+                int cap = Math.max(nbDeltas, moments.length * 2);
+                moments = new int[cap];
+                usages = new int[nbDims][cap];
+            }
+            size = 0;
+            for (int k = 0; k < nbDeltas; k++) {
+                int t = (int) (keys[k] >>> 32);
+                int idx = (int) keys[k];
+                if (size == 0 || moments[size - 1] != t) {
+                    moments[size] = t;
+                    for (int d = 0; d < nbDims; d++) {
+                        usages[d][size] = size == 0 ? 0 : usages[d][size - 1];
+                    }
+                    size++;
+                }
+                for (int d = 0; d < nbDims; d++) {
+                    usages[d][size - 1] += deltas[d][idx];
+                }
+            }
+        }
+
+        private void ensureDeltas(int n) {
+            if (keys.length < n) {
+                int cap = Math.max(n, keys.length * 2);
+                keys = Arrays.copyOf(keys, cap);
+                for (int d = 0; d < nbDims; d++) {
+                    deltas[d] = Arrays.copyOf(deltas[d], cap);
+                }
+            }
+        }
+
+        /**
+         * Get the number of distinct moments.
+         *
+         * @return a positive number
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Get a moment.
+         *
+         * @param x the moment index, in ascending order
+         * @return the moment
+         */
+        public int moment(int x) {
+            return moments[x];
+        }
+
+        /**
+         * Get the usage at a given moment.
+         *
+         * @param d the dimension
+         * @param x the moment index
+         * @return the absolute usage
+         */
+        public int get(int d, int x) {
+            return usages[d][x];
+        }
+
+        public String pretty(int d) {
+            StringBuilder b = new StringBuilder();
+            for (int x = 0; x < size; x++) {
+                b.append(moments[x]).append(":(").append(usages[d][x]).append(")");
+                if (x != size - 1) {
+                    b.append(" ");
+                }
+            }
+            return b.toString();
+        }
+    }
 }
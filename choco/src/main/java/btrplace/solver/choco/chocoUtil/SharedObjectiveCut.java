@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.solver.choco.chocoUtil;
+
+import choco.cp.solver.variables.integer.IntVarEvent;
+import choco.kernel.common.util.tools.ArrayUtils;
+import choco.kernel.solver.ContradictionException;
+import choco.kernel.solver.constraints.integer.AbstractLargeIntSConstraint;
+import choco.kernel.solver.variables.integer.IntDomainVar;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A cut to restrict an objective to improve a value shared
+ * by several solvers running concurrently.
+ * <p/>
+ * The shared value is read each time one of the observed variables is instantiated.
+ * Observing a few decision variables, such as the placement of the VMs, is enough
+ * to consider the value published by another solver without waiting for the next
+ * solution of this solver, while keeping the constraint cheap to wake up.
+ *
+ * @author Fabien Hermenier
+ */
+public class SharedObjectiveCut extends AbstractLargeIntSConstraint {
+
+    private AtomicReference<Integer> best;
+
+    private boolean minimize;
+
+    /**
+     * Make a new cut.
+     *
+     * @param objective the objective variable
+     * @param observed  the variables to observe. They must not include the objective variable
+     * @param best      the shared value. {@code null} while no solution has been computed
+     * @param minimize  {@code true} to restrict the objective below the shared value, {@code false} to restrict it above
+     */
+    public SharedObjectiveCut(IntDomainVar objective, IntDomainVar[] observed, AtomicReference<Integer> best, boolean minimize) {
+        super(ArrayUtils.append(new IntDomainVar[]{objective}, observed));
+        this.best = best;
+        this.minimize = minimize;
+    }
+
+    @Override
+    public int getFilteredEventMask(int idx) {
+        return IntVarEvent.INSTINT_MASK;
+    }
+
+    @Override
+    public void awakeOnInst(int idx) throws ContradictionException {
+        propagate();
+    }
+
+    @Override
+    public void propagate() throws ContradictionException {
+        Integer b = best.get();
+        if (b != null) {
+            if (minimize) {
+                vars[0].updateSup(b - 1, this, false);
+            } else {
+                vars[0].updateInf(b + 1, this, false);
+            }
+        }
+    }
+
+    /**
+     * The shared value only prunes the search space.
+     * It may be improved once a solution is computed, so the solution is not rejected.
+     *
+     * @param tuple the values
+     * @return {@code true}
+     */
+    @Override
+    public boolean isSatisfied(int[] tuple) {
+        return true;
+    }
+}
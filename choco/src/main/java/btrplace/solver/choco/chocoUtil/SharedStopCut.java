@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package btrplace.solver.choco.chocoUtil;
+
+import choco.cp.solver.variables.integer.IntVarEvent;
+import choco.kernel.solver.ContradictionException;
+import choco.kernel.solver.constraints.integer.AbstractLargeIntSConstraint;
+import choco.kernel.solver.variables.integer.IntDomainVar;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A cut to stop a solver from another thread.
+ * <p/>
+ * A choco search does not consider the interruption of its thread.
+ * Once the shared flag is raised, the cut fails each time one of
+ * the observed variables is instantiated, so the solver quickly
+ * backtracks to the root of the search tree and terminates.
+ *
+ * @author Fabien Hermenier
+ */
+public class SharedStopCut extends AbstractLargeIntSConstraint {
+
+    private AtomicBoolean stop;
+
+    /**
+     * Make a new cut.
+     *
+     * @param observed the variables to observe, typically the decision variables
+     * @param stop     the flag to raise to stop the solver
+     */
+    public SharedStopCut(IntDomainVar[] observed, AtomicBoolean stop) {
+        super(observed);
+        this.stop = stop;
+    }
+
+    @Override
+    public int getFilteredEventMask(int idx) {
+        return IntVarEvent.INSTINT_MASK;
+    }
+
+    @Override
+    public void awakeOnInst(int idx) throws ContradictionException {
+        propagate();
+    }
+
+    @Override
+    public void propagate() throws ContradictionException {
+        if (stop.get()) {
+            fail();
+        }
+    }
+
+    /**
+     * The flag only stops the search, it does not reject a solution.
+     *
+     * @param tuple the values
+     * @return {@code true}
+     */
+    @Override
+    public boolean isSatisfied(int[] tuple) {
+        return true;
+    }
+}
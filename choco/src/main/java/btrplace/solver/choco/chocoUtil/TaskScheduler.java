@@ -20,8 +20,10 @@ package btrplace.solver.choco.chocoUtil;
 
 import choco.cp.solver.variables.integer.IntVarEvent;
 import choco.kernel.common.logging.ChocoLogging;
+import choco.kernel.common.util.iterators.DisposableIntIterator;
 import choco.kernel.common.util.tools.ArrayUtils;
 import choco.kernel.memory.IEnvironment;
+import choco.kernel.memory.IStateBitSet;
 import choco.kernel.memory.IStateInt;
 import choco.kernel.memory.IStateIntVector;
 import choco.kernel.solver.ContradictionException;
@@ -67,24 +69,35 @@ public class TaskScheduler extends AbstractLargeIntSConstraint {
 
     private IStateInt toInstantiate;
 
+    /**
+     * The resources to propagate. A resource is marked once one of its slices is modified.
+     */
+    private IStateBitSet toPropagate;
+
     private IEnvironment env;
 
     private IStateIntVector[] vIns;
 
+    /**
+     * {@code true} to filter the resources and the unplaced dTasks while the dTasks are being placed.
+     */
+    private boolean partialFiltering;
+
     /**
      * Make a new constraint.
      *
-     * @param env         the solver environment
-     * @param earlyStarts a variable for each resource to indicate the earliest moment a task can arrive on the resource
-     * @param lastEnds    a variable for each resource to indicate the latest moment a task can stay on the resource
-     * @param capas       for each dimension, the capacity of each resource
-     * @param cHosters    the placement variable of each cTask
-     * @param cUsages     the resource usage of each cTask for each dimension
-     * @param cEnds       the moment each cTask ends
-     * @param dHosters    the placement variable of each dTask
-     * @param dUsages     the resource usage of each dTask for each dimension
-     * @param dStarts     the moment each dTask starts
-     * @param assocs      indicate association between cTasks and dTasks. Associated tasks cannot overlap on a same resource
+     * @param env              the solver environment
+     * @param earlyStarts      a variable for each resource to indicate the earliest moment a task can arrive on the resource
+     * @param lastEnds         a variable for each resource to indicate the latest moment a task can stay on the resource
+     * @param capas            for each dimension, the capacity of each resource
+     * @param cHosters         the placement variable of each cTask
+     * @param cUsages          the resource usage of each cTask for each dimension
+     * @param cEnds            the moment each cTask ends
+     * @param dHosters         the placement variable of each dTask
+     * @param dUsages          the resource usage of each dTask for each dimension
+     * @param dStarts          the moment each dTask starts
+     * @param assocs           indicate association between cTasks and dTasks. Associated tasks cannot overlap on a same resource
+     * @param partialFiltering {@code true} to filter each resource and the unplaced dTasks before every dTask is placed
      */
     public TaskScheduler(IEnvironment env,
                          IntDomainVar[] earlyStarts,
@@ -96,11 +109,13 @@ public class TaskScheduler extends AbstractLargeIntSConstraint {
                          IntDomainVar[] dHosters,
                          int[][] dUsages,
                          IntDomainVar[] dStarts,
-                         int[] assocs) {
+                         int[] assocs,
+                         boolean partialFiltering) {
 
         super(ArrayUtils.append(dHosters, cHosters, cEnds, dStarts, earlyStarts, lastEnds));
 
         this.env = env;
+        this.partialFiltering = partialFiltering;
         this.cHosters = cHosters;
         this.dHosters = dHosters;
         this.cEnds = cEnds;
@@ -110,10 +125,6 @@ public class TaskScheduler extends AbstractLargeIntSConstraint {
         this.cUsages = cUsages;
         this.dUsages = dUsages;
 
-        Arrays.toString(capacities);
-        Arrays.toString(cUsages);
-        Arrays.toString(dUsages);
-
         this.nbResources = capas[0].length;
         this.nbDims = capas.length;
         int nbCTasks = cUsages[0].length;
@@ -164,6 +175,10 @@ public class TaskScheduler extends AbstractLargeIntSConstraint {
     public void awake() throws ContradictionException {
 
         this.toInstantiate = env.makeInt(dHosters.length);
+        this.toPropagate = env.makeBitSet(scheds.length);
+        for (int i = 0; i < scheds.length; i++) {
+            toPropagate.set(i);
+        }
 
         //Check whether some hosting variable are already instantiated
         for (int i = 0; i < dHosters.length; i++) {
@@ -177,31 +192,183 @@ public class TaskScheduler extends AbstractLargeIntSConstraint {
 
     @Override
     public void propagate() throws ContradictionException {
-        if (isFull2()) {
-            for (int i = 0; i < scheds.length; i++) {
-                if (!scheds[i].propagate()) {
-                    fail();
+        boolean full = isFull2();
+        if (full || partialFiltering) {
+            propagateResources(full);
+        }
+        while (!full && partialFiltering && filterUnplaced()) {
+            //Some dTasks have been placed, their resources must be filtered again
+            full = isFull2();
+            propagateResources(full);
+        }
+    }
+
+    private void propagateResources(boolean full) throws ContradictionException {
+        for (int i = toPropagate.nextSetBit(0); i >= 0; i = toPropagate.nextSetBit(i + 1)) {
+            toPropagate.clear(i);
+            if (!scheds[i].propagate(full)) {
+                fail();
+            }
+        }
+    }
+
+    /**
+     * Filter the dTasks that are not placed.
+     *
+     * @return {@code true} if some dTasks have been placed by the filtering
+     * @throws ContradictionException if a dTask cannot be scheduled
+     */
+    private boolean filterUnplaced() throws ContradictionException {
+        boolean placed = false;
+        for (int i = 0; i < dHosters.length; i++) {
+            if (!dHosters[i].isInstantiated() && filterUnplaced(i)) {
+                placed = true;
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * Filter the host and the start of a dTask that is not placed.
+     * The resources that cannot host the dTask before the upper bound of its start,
+     * with regards to their min profile, are removed. The start is then at least
+     * the earliest start among the remaining resources.
+     *
+     * @param i the dTask
+     * @return {@code true} if the dTask has been placed by the filtering
+     * @throws ContradictionException if the dTask cannot be scheduled
+     */
+    private boolean filterUnplaced(int i) throws ContradictionException {
+        IntDomainVar h = dHosters[i];
+        IntDomainVar st = dStarts[i];
+        int sup = st.getSup();
+        int min = Integer.MAX_VALUE;
+        int[] late = null;
+        int nbLate = 0;
+        DisposableIntIterator it = h.getDomain().getIterator();
+        try {
+            while (it.hasNext()) {
+                int r = it.next();
+                int est = scheds[r].getEarliestStart(i);
+                if (est > sup) {
+                    if (late == null) {
+                        late = new int[h.getDomainSize()];
+                    }
+                    late[nbLate++] = r;
+                } else if (est < min) {
+                    min = est;
                 }
             }
+        } finally {
+            it.dispose();
+        }
+        for (int x = 0; x < nbLate; x++) {
+            h.removeVal(late[x], this, false);
         }
+        if (min != Integer.MAX_VALUE) {
+            st.updateInf(min, this, false);
+        }
+        if (h.isInstantiated()) {
+            place(i);
+            return true;
+        }
+        return false;
     }
 
     @Override
     public void awakeOnInst(int idx) throws ContradictionException {
         if (idx < dHosters.length) {
-            toInstantiate.add(-1);
-            int nIdx = vars[idx].getVal();
-            vIns[nIdx].add(idx);
+            place(idx);
+        } else {
+            touch(idx);
         }
         this.constAwake(false);
     }
 
+    /**
+     * Put a dTask that has just been placed on its resource.
+     *
+     * @param i the dTask
+     */
+    private void place(int i) {
+        if (toInstantiate.add(-1) == 0 && partialFiltering) {
+            //The resources filtered partially must now be filtered completely
+            for (int r = 0; r < scheds.length; r++) {
+                toPropagate.set(r);
+            }
+        }
+        int nIdx = dHosters[i].getVal();
+        vIns[nIdx].add(i);
+        scheds[nIdx].invalidate();
+        toPropagate.set(nIdx);
+    }
+
+    /**
+     * on the cEnds and dStarts variables: the profiles of the hosting resource are outdated.
+     * The propagation is still delayed until the next instantiation.
+     */
+    @Override
+    public void awakeOnInf(int idx) throws ContradictionException {
+        touch(idx);
+    }
+
+    /**
+     * on the cEnds and dStarts variables: the profiles of the hosting resource are outdated.
+     * on the earlyStarts and lastEnds variables: the resource must be checked again.
+     * The propagation is still delayed until the next instantiation.
+     */
+    @Override
+    public void awakeOnSup(int idx) throws ContradictionException {
+        touch(idx);
+    }
+
+    /**
+     * Mark the resource associated to a cEnds, a dStarts, an earlyStarts or a lastEnds variable
+     * as to propagate. For cEnds and dStarts, the profiles of the resource are also invalidated.
+     * Nothing is done for a dStarts variable if its slice is not placed yet.
+     *
+     * @param idx the variable index
+     */
+    private void touch(int idx) {
+        int cEndsIdx = dHosters.length + cHosters.length;
+        int dStartsIdx = cEndsIdx + cEnds.length;
+        int earlyIdx = dStartsIdx + dStarts.length;
+        int nIdx = -1;
+        if (idx >= cEndsIdx && idx < dStartsIdx) {
+            nIdx = cHosters[idx - cEndsIdx].getVal();
+            scheds[nIdx].invalidate();
+        } else if (idx >= dStartsIdx && idx < earlyIdx) {
+            IntDomainVar h = dHosters[idx - dStartsIdx];
+            if (h.isInstantiated()) {
+                nIdx = h.getVal();
+                scheds[nIdx].invalidate();
+            }
+        } else if (idx >= earlyIdx) {
+            nIdx = (idx - earlyIdx) % scheds.length;
+        }
+        if (nIdx >= 0) {
+            toPropagate.set(nIdx);
+        }
+    }
+
     private boolean isFull2() {
         return toInstantiate.get() == 0;
     }
 
+    /**
+     * The cEnds and dStarts variables are listened on both bounds to invalidate the profiles.
+     * The filtering only reads the upper bounds of the earlyStarts and lastEnds variables,
+     * so they are listened on their upper bound to propagate the resource again.
+     */
     @Override
     public int getFilteredEventMask(int idx) {
+        int cEndsIdx = dHosters.length + cHosters.length;
+        int earlyIdx = cEndsIdx + cEnds.length + dStarts.length;
+        if (idx >= cEndsIdx && idx < earlyIdx) {
+            return IntVarEvent.INCINF_MASK + IntVarEvent.DECSUP_MASK + IntVarEvent.INSTINT_MASK;
+        } else if (idx >= earlyIdx) {
+            return IntVarEvent.DECSUP_MASK + IntVarEvent.INSTINT_MASK;
+        }
         return IntVarEvent.INSTINT_MASK;
     }
 
@@ -0,0 +1,583 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.solver.choco.chocoUtil;
+
+import choco.cp.solver.variables.integer.IntVarEvent;
+import choco.kernel.common.logging.ChocoLogging;
+import choco.kernel.common.util.iterators.DisposableIntIterator;
+import choco.kernel.common.util.tools.ArrayUtils;
+import choco.kernel.memory.IEnvironment;
+import choco.kernel.memory.IStateBitSet;
+import choco.kernel.memory.IStateBool;
+import choco.kernel.memory.IStateInt;
+import choco.kernel.solver.ContradictionException;
+import choco.kernel.solver.constraints.integer.AbstractLargeIntSConstraint;
+import choco.kernel.solver.variables.integer.IntDomainVar;
+
+import java.util.*;
+
+/**
+ * A multi-dimensional version of {@link LightBinPacking}.
+ * Items are packed into bins with regards to several dimensions at once,
+ * each dimension having its own item sizes and bin loads.
+ * <p/>
+ * The constraint maintains for each dimension the load filtering of {@link LightBinPacking},
+ * but the candidate items of each bin are shared among the dimensions.
+ * In addition, once the remaining space of a bin decreases in a dimension,
+ * the bin is removed from the candidate bins of the items that do not fit in this dimension.
+ * <p/>
+ * The internal data are only updated when the removal events are received,
+ * including the removals made by the constraint itself.
+ *
+ * @author Fabien Hermenier
+ */
+public class VectorPacking extends AbstractLargeIntSConstraint {
+
+    /**
+     * The solver environment.
+     */
+    private IEnvironment env;
+
+    /**
+     * The candidate items of each bin.
+     */
+    private IStateBitSet[] candidates;
+
+    /**
+     * The number of bins.
+     */
+    private final int nbBins;
+
+    /**
+     * The number of dimensions.
+     */
+    private final int nbDims;
+
+    /**
+     * The bin assigned to each item.
+     */
+    private final IntDomainVar[] bins;
+
+    /**
+     * The constant size of each item for each dimension.
+     */
+    private final int[][] iSizes;
+
+    private IntDomainVar[][] sizes;
+
+    /**
+     * The sum of the item sizes for each dimension.
+     */
+    private long[] sumISizes;
+
+    /**
+     * The load of each bin for each dimension.
+     */
+    private final IntDomainVar[][] loads;
+
+    /**
+     * The total size of the required + candidate items for each dimension and each bin.
+     */
+    private IStateInt[][] bTLoads;
+
+    /**
+     * The total size of the required items for each dimension and each bin.
+     */
+    private IStateInt[][] bRLoads;
+
+    /**
+     * The sum of the bin load LBs for each dimension.
+     */
+    private IStateInt[] sumLoadInf;
+
+    /**
+     * The sum of the bin load UBs for each dimension.
+     */
+    private IStateInt[] sumLoadSup;
+
+    /**
+     * Has some bin load variable changed since the last propagation, for each dimension.
+     */
+    private IStateBool[] loadsHaveChanged;
+
+    /**
+     * The bins having candidate items.
+     */
+    private IStateBitSet availableBins;
+
+    /**
+     * The bins where the remaining space decreased since the last pruning of the candidate items.
+     * The remaining space can only increase while backtracking so this set is not restored.
+     */
+    private BitSet toCheck;
+
+    /**
+     * Make a new constraint.
+     *
+     * @param environment the solver environment
+     * @param loads       for each dimension, array of nbBins variables, each figuring the total size of the items assigned to it, usually initialized to [0, capacity]
+     * @param sizes       for each dimension, array of nbItems variables, each figuring the item size. Only the LB will be considered!
+     * @param bins        array of nbItems variables, each figuring the possible bins an item can be assigned to, usually initialized to [0, nbBins-1]
+     */
+    public VectorPacking(IEnvironment environment, IntDomainVar[][] loads, IntDomainVar[][] sizes, IntDomainVar[] bins) {
+        super(ArrayUtils.append(bins, ArrayUtils.flatten(loads)));
+        this.env = environment;
+        this.loads = loads;
+        this.nbDims = loads.length;
+        this.nbBins = nbDims == 0 ? 0 : loads[0].length;
+        this.bins = bins;
+        this.sizes = sizes;
+        this.iSizes = new int[nbDims][bins.length];
+        this.bTLoads = new IStateInt[nbDims][nbBins];
+        this.bRLoads = new IStateInt[nbDims][nbBins];
+        this.sumISizes = new long[nbDims];
+        this.sumLoadInf = new IStateInt[nbDims];
+        this.sumLoadSup = new IStateInt[nbDims];
+        this.loadsHaveChanged = new IStateBool[nbDims];
+        this.toCheck = new BitSet(nbBins);
+    }
+
+    /**
+     * Get the remaining space of a bin in a given dimension.
+     *
+     * @param d   the dimension
+     * @param bin the bin
+     * @return the space left by the required items
+     */
+    public final int getRemainingSpace(int d, int bin) {
+        return loads[d][bin].getSup() - bRLoads[d][bin].get();
+    }
+
+    private void readSizes() {
+        for (int d = 0; d < nbDims; d++) {
+            long sum = 0;
+            for (int i = 0; i < bins.length; i++) {
+                iSizes[d][i] = sizes[d][i].getInf();
+                sum += iSizes[d][i];
+            }
+            sumISizes[d] = sum;
+        }
+    }
+
+    @Override
+    public boolean isConsistent() {
+        int[][] l = new int[nbDims][nbBins];
+        for (int i = 0; i < bins.length; i++) {
+            if (bins[i].isInstantiated()) {
+                int v = bins[i].getVal();
+                for (int d = 0; d < nbDims; d++) {
+                    l[d][v] += iSizes[d][i];
+                    if (l[d][v] > loads[d][v].getSup()) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    //****************************************************************//
+    //********* Events ***********************************************//
+    //****************************************************************//
+
+    @Override
+    public int getFilteredEventMask(int idx) {
+        if (idx < bins.length) {
+            return IntVarEvent.REMVAL_MASK;
+        }
+        return IntVarEvent.BOUNDS_MASK;
+    }
+
+    @Override
+    public boolean isSatisfied(int[] tuple) {
+        int[][] l = new int[nbDims][nbBins];
+        for (int i = 0; i < bins.length; i++) {
+            final int b = tuple[i];
+            for (int d = 0; d < nbDims; d++) {
+                l[d][b] += iSizes[d][i];
+            }
+        }
+        for (int d = 0; d < nbDims; d++) {
+            for (int b = 0; b < nbBins; b++) {
+                int x = tuple[bins.length + d * nbBins + b];
+                if (x != l[d][b]) {
+                    ChocoLogging.getBranchingLogger().warning("Bad load of " + b + " in dimension " + d + " = " + x + " expected =" + l[d][b]);
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * initialize the internal data: availableBins, candidates, binRequiredLoads, binTotalLoads, sumLoadInf, sumLoadSup
+     * shrink the item-to-bins assignment variables: 0 <= bins[i] <= nbBins
+     * shrink the bin load variables: binRequiredLoad <= binLoad <= binTotalLoad
+     */
+    @Override
+    public void awake() throws ContradictionException {
+        readSizes();
+        availableBins = env.makeBitSet(nbBins);
+        int[][] rLoads = new int[nbDims][nbBins];
+        int[][] cLoads = new int[nbDims][nbBins];
+
+        candidates = new IStateBitSet[nbBins];
+        for (int b = 0; b < nbBins; b++) {
+            candidates[b] = env.makeBitSet(bins.length);
+        }
+        for (int i = 0; i < bins.length; i++) {
+            bins[i].updateInf(0, this, false);
+            bins[i].updateSup(nbBins - 1, this, false);
+            if (bins[i].isInstantiated()) {
+                int b = bins[i].getVal();
+                for (int d = 0; d < nbDims; d++) {
+                    rLoads[d][b] += iSizes[d][i];
+                }
+            } else {
+                DisposableIntIterator it = bins[i].getDomain().getIterator();
+                try {
+                    while (it.hasNext()) {
+                        int b = it.next();
+                        candidates[b].set(i);
+                        for (int d = 0; d < nbDims; d++) {
+                            cLoads[d][b] += iSizes[d][i];
+                        }
+                    }
+                } finally {
+                    it.dispose();
+                }
+            }
+        }
+
+        for (int b = 0; b < nbBins; b++) {
+            if (candidates[b].nextSetBit(0) >= 0) {
+                availableBins.set(b);
+            }
+        }
+        for (int d = 0; d < nbDims; d++) {
+            int slb = 0;
+            int slu = 0;
+            for (int b = 0; b < nbBins; b++) {
+                bRLoads[d][b] = env.makeInt(rLoads[d][b]);
+                bTLoads[d][b] = env.makeInt(rLoads[d][b] + cLoads[d][b]);
+                loads[d][b].updateInf(rLoads[d][b], this, false);
+                loads[d][b].updateSup(rLoads[d][b] + cLoads[d][b], this, false);
+                slb += loads[d][b].getInf();
+                slu += loads[d][b].getSup();
+            }
+            sumLoadInf[d] = env.makeInt(slb);
+            sumLoadSup[d] = env.makeInt(slu);
+            loadsHaveChanged[d] = env.makeBool(false);
+        }
+        toCheck.set(0, nbBins);
+        assert checkLoadConsistency();
+        propagate();
+    }
+
+    /**
+     * Propagate for each dimension the rules of {@link LightBinPacking#propagate()}, then
+     * remove from the bins having less space the candidate items that do not fit anymore.
+     */
+    @Override
+    public void propagate() throws ContradictionException {
+        for (int d = 0; d < nbDims; d++) {
+            recomputeLoadSums(d);
+        }
+        boolean noFixPoint = true;
+        while (noFixPoint) {
+            for (int d = 0; d < nbDims; d++) {
+                if (sumISizes[d] > sumLoadSup[d].get() || sumISizes[d] < sumLoadInf[d].get()) {
+                    fail();
+                }
+            }
+            noFixPoint = false;
+            for (int b = availableBins.nextSetBit(0); b >= 0; b = availableBins.nextSetBit(b + 1)) {
+                for (int d = 0; d < nbDims; d++) {
+                    noFixPoint |= filterLoadInf(d, b, Math.max(bRLoads[d][b].get(), (int) sumISizes[d] - sumLoadSup[d].get() + loads[d][b].getSup()));
+                    noFixPoint |= filterLoadSup(d, b, Math.min(bTLoads[d][b].get(), (int) sumISizes[d] - sumLoadInf[d].get() + loads[d][b].getInf()));
+                }
+            }
+        }
+        //The internal data will be updated when the removals are notified back
+        boolean pruned = pruneCandidates();
+        assert pruned || checkLoadConsistency();
+    }
+
+    /**
+     * For each bin where the remaining space decreased, remove the candidate items that are
+     * too big in at least one dimension. Only the candidate items of the bin are browsed.
+     * The removals are notified back to the constraint that updates its internal data then.
+     *
+     * @return {@code true} if at least one item was removed from a bin
+     * @throws ContradictionException if an item cannot be placed anymore
+     */
+    private boolean pruneCandidates() throws ContradictionException {
+        boolean pruned = false;
+        int[] remaining = new int[nbDims];
+        for (int b = toCheck.nextSetBit(0); b >= 0; b = toCheck.nextSetBit(b + 1)) {
+            toCheck.clear(b);
+            for (int d = 0; d < nbDims; d++) {
+                remaining[d] = getRemainingSpace(d, b);
+            }
+            IStateBitSet cands = candidates[b];
+            for (int i = cands.nextSetBit(0); i >= 0; i = cands.nextSetBit(i + 1)) {
+                if (bins[i].canBeInstantiatedTo(b) && !fit(i, remaining)) {
+                    bins[i].removeVal(b, this, true);
+                    pruned = true;
+                }
+            }
+        }
+        return pruned;
+    }
+
+    /**
+     * Check if an item fits in a given space.
+     *
+     * @param i     the item
+     * @param space the available space in each dimension
+     * @return {@code true} iff the item is not bigger than the space in every dimension
+     */
+    private boolean fit(int i, int[] space) {
+        for (int d = 0; d < nbDims; d++) {
+            if (iSizes[d][i] > space[d]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * recompute the sum of the min/max loads only if at least one variable bound has been updated outside the constraint
+     */
+    private void recomputeLoadSums(int d) {
+        if (!loadsHaveChanged[d].get()) {
+            return;
+        }
+        loadsHaveChanged[d].set(false);
+        int sli = 0;
+        int sls = 0;
+        for (int b = 0; b < nbBins; b++) {
+            sli += loads[d][b].getInf();
+            sls += loads[d][b].getSup();
+        }
+        this.sumLoadInf[d].set(sli);
+        this.sumLoadSup[d].set(sls);
+    }
+
+    /**
+     * on loads variables: delay propagation
+     */
+    @Override
+    public void awakeOnInf(int varIdx) throws ContradictionException {
+        loadsHaveChanged[(varIdx - bins.length) / nbBins].set(true);
+    }
+
+    /**
+     * on loads variables: delay propagation.
+     * The remaining space of the bin decreased, so its candidate items must be checked.
+     */
+    @Override
+    public void awakeOnSup(int varIdx) throws ContradictionException {
+        loadsHaveChanged[(varIdx - bins.length) / nbBins].set(true);
+        toCheck.set((varIdx - bins.length) % nbBins);
+        this.constAwake(false);
+    }
+
+    /**
+     * on bins variables: propagate the removal of item-to-bins assignments.
+     * 1) update the candidate and check to decrease the load UB of each removed bins: binLoad <= binTotalLoad
+     * 2) if item is assigned: update the required and check to increase the load LB of the bin: binLoad >= binRequiredLoad
+     *
+     * @throws ContradictionException on the load variables
+     */
+    @Override
+    public void awakeOnRemovals(int iIdx, DisposableIntIterator deltaDomain) throws ContradictionException {
+        try {
+            while (deltaDomain.hasNext()) {
+                removeItem(iIdx, deltaDomain.next());
+            }
+        } finally {
+            deltaDomain.dispose();
+        }
+        if (vars[iIdx].getInf() == vars[iIdx].getSup()) {
+            assignItem(iIdx, vars[iIdx].getVal());
+        }
+        this.constAwake(false);
+    }
+
+    //****************************************************************//
+    //********* VARIABLE FILTERING ***********************************//
+    //****************************************************************//
+
+    /**
+     * synchronize the internal data when an item is assigned to a bin:
+     * remove the item from the candidate list of the bin and balance its sizes from the candidate to the required loads of the bin
+     * check to update the LBs of the loads of the bin
+     *
+     * @param item item index
+     * @param bin  bin index
+     * @throws ContradictionException on the loads of the bin
+     */
+    private void assignItem(int item, int bin) throws ContradictionException {
+        for (int d = 0; d < nbDims; d++) {
+            int r = bRLoads[d][bin].add(iSizes[d][item]);
+            filterLoadInf(d, bin, r);
+        }
+        candidates[bin].clear(item);
+        if (candidates[bin].nextSetBit(0) < 0) {
+            availableBins.clear(bin);
+        }
+        toCheck.set(bin);
+    }
+
+    /**
+     * synchronize the internal data when an item is removed from a bin:
+     * remove the item from the candidate list of the bin and reduce the candidate loads of the bin
+     * check to update the UBs of the loads of the bin
+     *
+     * @param item item index
+     * @param bin  bin index
+     * @throws ContradictionException on the loads of the bin
+     */
+    private void removeItem(int item, int bin) throws ContradictionException {
+        candidates[bin].clear(item);
+        if (candidates[bin].nextSetBit(0) < 0) {
+            availableBins.clear(bin);
+        }
+        for (int d = 0; d < nbDims; d++) {
+            int r = bTLoads[d][bin].add(-1 * iSizes[d][item]);
+            filterLoadSup(d, bin, r);
+        }
+    }
+
+    /**
+     * increase the LB of a bin load and the sum of the bin load LBs
+     *
+     * @param d          the dimension
+     * @param bin        bin index
+     * @param newLoadInf new LB of the bin load
+     * @return {@code true} if LB is increased.
+     * @throws ContradictionException on the load variable
+     */
+    private boolean filterLoadInf(int d, int bin, int newLoadInf) throws ContradictionException {
+        int inc = newLoadInf - loads[d][bin].getInf();
+        if (inc > 0) {
+            loads[d][bin].updateInf(newLoadInf, this, false);
+            int r = sumLoadInf[d].add(inc);
+            if (sumISizes[d] < r) {
+                fail();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * decrease the UB of a bin load and the sum of the bin load UBs
+     *
+     * @param d          the dimension
+     * @param bin        bin index
+     * @param newLoadSup new UB of the bin load
+     * @return {@code true} if UB is decreased.
+     * @throws ContradictionException on the load variable
+     */
+    private boolean filterLoadSup(int d, int bin, int newLoadSup) throws ContradictionException {
+        int dec = newLoadSup - loads[d][bin].getSup();
+        if (dec < 0) {
+            loads[d][bin].updateSup(newLoadSup, this, false);
+            int r = sumLoadSup[d].add(dec);
+            if (sumISizes[d] > r) {
+                fail();
+            }
+            toCheck.set(bin);
+            return true;
+        }
+        return false;
+    }
+
+    //****************************************************************//
+    //********* Checkers *********************************************//
+    //****************************************************************//
+
+    /**
+     * Check the consistency of the required and candidate loads with regards to the assignment variables:
+     * for each dimension and each bin: sumAssignedItemSizes == binRequiredLoad, sumAllPossibleItemSizes == binTotalLoad
+     * rule 3, for each dimension and each bin: binRequiredLoad <= binLoad <= binTotalLoad
+     *
+     * @return {@code false} if not consistent.
+     */
+    private boolean checkLoadConsistency() {
+        boolean check = true;
+        int[][] rs = new int[nbDims][nbBins];
+        int[][] cs = new int[nbDims][nbBins];
+        for (int i = 0; i < bins.length; i++) {
+            if (bins[i].isInstantiated()) {
+                for (int d = 0; d < nbDims; d++) {
+                    rs[d][bins[i].getVal()] += iSizes[d][i];
+                }
+            } else {
+                DisposableIntIterator it = bins[i].getDomain().getIterator();
+                try {
+                    while (it.hasNext()) {
+                        int b = it.next();
+                        for (int d = 0; d < nbDims; d++) {
+                            cs[d][b] += iSizes[d][i];
+                        }
+                    }
+                } finally {
+                    it.dispose();
+                }
+            }
+        }
+        for (int d = 0; d < nbDims; d++) {
+            int sli = 0;
+            int sls = 0;
+            for (int b = 0; b < nbBins; b++) {
+                if (rs[d][b] != bRLoads[d][b].get()) {
+                    ChocoLogging.getBranchingLogger().warning(loads[d][b].pretty() + " required=" + bRLoads[d][b].get() + " expected=" + rs[d][b]);
+                    check = false;
+                }
+                if (rs[d][b] + cs[d][b] != bTLoads[d][b].get()) {
+                    ChocoLogging.getBranchingLogger().warning(loads[d][b].pretty() + " total=" + bTLoads[d][b].get() + " expected=" + (rs[d][b] + cs[d][b]));
+                    check = false;
+                }
+                if (loads[d][b].getInf() < rs[d][b]) {
+                    ChocoLogging.getBranchingLogger().warning(loads[d][b].pretty() + " LB expected >=" + rs[d][b]);
+                    check = false;
+                }
+                if (loads[d][b].getSup() > rs[d][b] + cs[d][b]) {
+                    ChocoLogging.getBranchingLogger().warning(loads[d][b].pretty() + " UB expected <=" + (rs[d][b] + cs[d][b]));
+                    check = false;
+                }
+                sli += loads[d][b].getInf();
+                sls += loads[d][b].getSup();
+            }
+            if (sumLoadInf[d].get() != sli) {
+                ChocoLogging.getBranchingLogger().warning("Sum Load LB of dimension " + d + " = " + sumLoadInf[d].get() + " expected =" + sli);
+                check = false;
+            }
+            if (sumLoadSup[d].get() != sls) {
+                ChocoLogging.getBranchingLogger().warning("Sum Load UB of dimension " + d + " = " + sumLoadSup[d].get() + " expected =" + sls);
+                check = false;
+            }
+        }
+        ChocoLogging.flushLogs();
+        return check;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.solver.choco.chocoUtil;
+
+import btrplace.solver.choco.ActionModelUtils;
+import btrplace.solver.choco.ReconfigurationProblem;
+import btrplace.solver.choco.SliceUtils;
+import choco.kernel.solver.variables.integer.IntDomainVar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builder to create a unique {@link VectorPacking} constraint
+ * that place the VMs that will be running on the nodes with regards
+ * to every packing dimension at once.
+ * <p/>
+ * The items are the d-slices of the VMs, in the order of the VMs in the problem.
+ *
+ * @author Fabien Hermenier
+ */
+public class VectorPackingBuilder {
+
+    private ReconfigurationProblem rp;
+
+    private IntDomainVar[] hosters;
+
+    private List<IntDomainVar[]> loads;
+
+    private List<IntDomainVar[]> sizes;
+
+    /**
+     * Make a new builder.
+     *
+     * @param rp the associated problem
+     */
+    public VectorPackingBuilder(ReconfigurationProblem rp) {
+        this.rp = rp;
+        hosters = SliceUtils.extractHosters(ActionModelUtils.getDSlices(rp.getVMActions()));
+        loads = new ArrayList<IntDomainVar[]>();
+        sizes = new ArrayList<IntDomainVar[]>();
+    }
+
+    /**
+     * Get the assignment variable of each of the d-slices.
+     *
+     * @return an array of variables, one per VM having a d-slice
+     */
+    public IntDomainVar[] getHosters() {
+        return hosters;
+    }
+
+    /**
+     * Add a dimension.
+     *
+     * @param l the load of each node. One variable per node
+     * @param s the size of each d-slice, in the order of {@link #getHosters()}
+     */
+    public void add(IntDomainVar[] l, IntDomainVar[] s) {
+        if (s.length != hosters.length) {
+            throw new IllegalArgumentException("Expected " + hosters.length + " sizes. Got " + s.length);
+        }
+        loads.add(l);
+        sizes.add(s);
+    }
+
+    /**
+     * Build the constraint.
+     *
+     * @return the constraint
+     */
+    public VectorPacking build() {
+        return new VectorPacking(rp.getSolver().getEnvironment(),
+                loads.toArray(new IntDomainVar[loads.size()][]),
+                sizes.toArray(new IntDomainVar[sizes.size()][]),
+                hosters);
+    }
+}
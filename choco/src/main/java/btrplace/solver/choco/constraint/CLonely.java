@@ -26,9 +26,10 @@ import btrplace.solver.SolverException;
 import btrplace.solver.choco.ChocoSatConstraint;
 import btrplace.solver.choco.ChocoSatConstraintBuilder;
 import btrplace.solver.choco.ReconfigurationProblem;
+import btrplace.solver.choco.Slice;
 import btrplace.solver.choco.VMActionModel;
 import btrplace.solver.choco.chocoUtil.Disjoint;
-import btrplace.solver.choco.chocoUtil.Precedences;
+import btrplace.solver.choco.chocoUtil.GroupPrecedences;
 import choco.cp.solver.CPSolver;
 import choco.kernel.solver.variables.integer.IntDomainVar;
 import gnu.trove.TIntArrayList;
@@ -58,16 +59,18 @@ public class CLonely implements ChocoSatConstraint {
         //Remove non future-running VMs
         List<IntDomainVar> myHosts = new ArrayList<IntDomainVar>();
         List<IntDomainVar> otherHosts = new ArrayList<IntDomainVar>();
+        List<IntDomainVar> myStarts = new ArrayList<IntDomainVar>();
+        List<IntDomainVar> otherStarts = new ArrayList<IntDomainVar>();
         Collection<UUID> vms = new HashSet<UUID>();
-        Set<UUID> otherVMs = new HashSet<UUID>();
         for (UUID vm : rp.getFutureRunningVMs()) {
-            IntDomainVar host = rp.getVMAction(vm).getDSlice().getHoster();
+            Slice d = rp.getVMAction(vm).getDSlice();
             if (cstr.getInvolvedVMs().contains(vm)) {
-                myHosts.add(host);
+                myHosts.add(d.getHoster());
+                myStarts.add(d.getStart());
                 vms.add(vm);
             } else {
-                otherHosts.add(host);
-                otherVMs.add(vm);
+                otherHosts.add(d.getHoster());
+                otherStarts.add(d.getStart());
             }
         }
         //Link the assignment variables with the set
@@ -77,41 +80,40 @@ public class CLonely implements ChocoSatConstraint {
                 rp.getNodes().length));
 
         if (cstr.isContinuous()) {
-            //Get the position of all the others c-slices and their associated end moment
+            //A single scheduling constraint between the involved VMs (group 0) and the others (group 1):
+            //a VM can arrive on a node once the VMs of the other group left it
+            List<IntDomainVar> hosts = new ArrayList<IntDomainVar>(myHosts);
+            hosts.addAll(otherHosts);
+            List<IntDomainVar> starts = new ArrayList<IntDomainVar>(myStarts);
+            starts.addAll(otherStarts);
+
+            //Get the position of all the c-slices and their associated end moment
             TIntArrayList otherPos = new TIntArrayList();
             TIntArrayList minePos = new TIntArrayList();
             List<IntDomainVar> otherEnds = new ArrayList<IntDomainVar>();
             List<IntDomainVar> mineEnds = new ArrayList<IntDomainVar>();
             Mapping map = rp.getSourceModel().getMapping();
             for (UUID vm : map.getRunningVMs()) {
+                VMActionModel a = rp.getVMAction(vm);
                 if (!vms.contains(vm)) {
                     otherPos.add(rp.getNode(map.getVMLocation(vm)));
-                    VMActionModel a = rp.getVMAction(vm);
                     otherEnds.add(a.getCSlice().getEnd());
                 } else {
                     minePos.add(rp.getNode(map.getVMLocation(vm)));
-                    VMActionModel a = rp.getVMAction(vm);
                     mineEnds.add(a.getCSlice().getEnd());
                 }
             }
-            for (UUID vm : vms) {
-                VMActionModel a = rp.getVMAction(vm);
-                Precedences prec = new Precedences(s.getEnvironment(), a.getDSlice().getHoster(),
-                        a.getDSlice().getStart(),
-                        otherPos.toNativeArray(),
-                        otherEnds.toArray(new IntDomainVar[otherEnds.size()]));
-                s.post(prec);
-            }
-
-            //TODO: The following reveals a model problem. Too many constraints!!
-            for (UUID vm : otherVMs) {
-                VMActionModel a = rp.getVMAction(vm);
-                Precedences prec = new Precedences(s.getEnvironment(), a.getDSlice().getHoster(),
-                        a.getDSlice().getStart(),
-                        minePos.toNativeArray(),
-                        mineEnds.toArray(new IntDomainVar[mineEnds.size()]));
-                s.post(prec);
-            }
+            int nbMine = mineEnds.size();
+            minePos.add(otherPos.toNativeArray());
+            mineEnds.addAll(otherEnds);
+            s.post(new GroupPrecedences(s.getEnvironment(),
+                    hosts.toArray(new IntDomainVar[hosts.size()]),
+                    starts.toArray(new IntDomainVar[starts.size()]),
+                    myHosts.size(),
+                    minePos.toNativeArray(),
+                    mineEnds.toArray(new IntDomainVar[mineEnds.size()]),
+                    nbMine,
+                    rp.getNodes().length));
         }
         return true;
     }
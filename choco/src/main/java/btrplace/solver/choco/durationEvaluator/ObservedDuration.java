@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.solver.choco.durationEvaluator;
+
+import btrplace.solver.choco.DurationEvaluator;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Evaluate an action duration from the durations observed
+ * while executing the action on the element.
+ * The estimation is the average between the previous estimation
+ * and the last observation, so it follows the recent behavior of the element.
+ * Another evaluator is used for the elements without observations.
+ *
+ * @author Fabien Hermenier
+ */
+public class ObservedDuration implements DurationEvaluator {
+
+    private DurationEvaluator fallback;
+
+    private Map<UUID, Integer> observed;
+
+    /**
+     * Make a new evaluator.
+     *
+     * @param ev the evaluator to use for the elements without observations
+     */
+    public ObservedDuration(DurationEvaluator ev) {
+        this.fallback = ev;
+        this.observed = new ConcurrentHashMap<UUID, Integer>();
+    }
+
+    /**
+     * Get the evaluator used for the elements without observations.
+     *
+     * @return the evaluator
+     */
+    public DurationEvaluator getFallback() {
+        return fallback;
+    }
+
+    /**
+     * Indicate the duration of an action on an element.
+     *
+     * @param e the element
+     * @param d the observed duration. Must be strictly positive
+     */
+    public synchronized void observe(UUID e, int d) {
+        Integer prev = observed.get(e);
+        observed.put(e, prev == null ? d : (prev + d + 1) / 2);
+    }
+
+    @Override
+    public int evaluate(UUID e) {
+        Integer d = observed.get(e);
+        return d == null ? fallback.evaluate(e) : d;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder("observed(").append(observed.size()).append(" element(s)), otherwise ").append(fallback).toString();
+    }
+}
@@ -102,15 +102,17 @@ public class MinMTTR implements ReconfigurationObjective {
             }
         }
         Map<IntDomainVar, UUID> pla = VMPlacementUtils.makePlacementMap(rp);
+        //The placement heuristics share a generator that depends on the seed of the problem
+        Random rnd = new Random(rp.getRandomSeed());
 
-        s.addGoal(new AssignVar(new MovingVMs(rp, map, vmsToExclude), new RandomVMPlacement(rp, pla, true)));
+        s.addGoal(new AssignVar(new MovingVMs(rp, map, vmsToExclude), new RandomVMPlacement(rp, pla, null, true, rnd)));
 
         HostingVariableSelector selectForBads = new HostingVariableSelector(rp, ActionModelUtils.getDSlices(badActions));
-        s.addGoal(new AssignVar(selectForBads, new RandomVMPlacement(rp, pla, true)));
+        s.addGoal(new AssignVar(selectForBads, new RandomVMPlacement(rp, pla, null, true, rnd)));
 
 
         HostingVariableSelector selectForGoods = new HostingVariableSelector(rp, ActionModelUtils.getDSlices(goodActions));
-        s.addGoal(new AssignVar(selectForGoods, new RandomVMPlacement(rp, pla, true)));
+        s.addGoal(new AssignVar(selectForGoods, new RandomVMPlacement(rp, pla, null, true, rnd)));
 
         //VMs to run
         Set<UUID> vmsToRun = new HashSet<UUID>(map.getReadyVMs());
@@ -124,7 +126,7 @@ public class MinMTTR implements ReconfigurationObjective {
         HostingVariableSelector selectForRuns = new HostingVariableSelector(rp, ActionModelUtils.getDSlices(runActions));
 
 
-        s.addGoal(new AssignVar(selectForRuns, new RandomVMPlacement(rp, pla, true)));
+        s.addGoal(new AssignVar(selectForRuns, new RandomVMPlacement(rp, pla, null, true, rnd)));
 
         ///SCHEDULING PROBLEM
         List<ActionModel> actions = new ArrayList<ActionModel>();
@@ -19,6 +19,7 @@
 package btrplace.solver.choco.objective.minMTTR;
 
 
+import btrplace.model.Mapping;
 import btrplace.solver.choco.ReconfigurationProblem;
 import choco.kernel.common.util.iterators.DisposableIntIterator;
 import choco.kernel.solver.search.ValSelector;
@@ -33,7 +34,8 @@ import java.util.UUID;
 /**
  * A heuristic to place a VM on a server picked up randomly.
  * It is possible to force the VMs to stay on its current node
- * if it is possible.
+ * if it is possible. When the problem provides a placement hint,
+ * the suggested node is tried first.
  *
  * @author Fabien Hermenier
  */
@@ -62,6 +64,7 @@ public class RandomVMPlacement implements ValSelector<IntDomainVar> {
 
     /**
      * Make a new heuristic.
+     * The random generator is initialised with the seed of the problem.
      *
      * @param rp          the problem to rely on
      * @param pVarMapping a map to indicate the VM associated to each of the placement variable
@@ -69,9 +72,22 @@ public class RandomVMPlacement implements ValSelector<IntDomainVar> {
      * @param stayFirst   {@code true} to force an already VM to stay on its current node if possible
      */
     public RandomVMPlacement(ReconfigurationProblem rp, Map<IntDomainVar, UUID> pVarMapping, TIntHashSet[] ranks, boolean stayFirst) {
+        this(rp, pVarMapping, ranks, stayFirst, new Random(rp.getRandomSeed()));
+    }
+
+    /**
+     * Make a new heuristic.
+     *
+     * @param rp          the problem to rely on
+     * @param pVarMapping a map to indicate the VM associated to each of the placement variable
+     * @param ranks       a list of favorites servers. Servers in rank i will be favored wrt. servers in rank i + 1. {@code null} for no ranks
+     * @param stayFirst   {@code true} to force an already VM to stay on its current node if possible
+     * @param rnd         the random generator to use
+     */
+    public RandomVMPlacement(ReconfigurationProblem rp, Map<IntDomainVar, UUID> pVarMapping, TIntHashSet[] ranks, boolean stayFirst, Random rnd) {
         stay = stayFirst;
         this.rp = rp;
-        rnd = new Random();
+        this.rnd = rnd;
         vmPlacement = pVarMapping;
         this.ranks = ranks;
     }
@@ -132,6 +148,17 @@ public class RandomVMPlacement implements ValSelector<IntDomainVar> {
 
     @Override
     public int getBestVal(IntDomainVar x) {
+        Mapping hint = rp.getPlacementHint();
+        if (hint != null) {
+            UUID vm = vmPlacement.get(x);
+            UUID n = vm == null ? null : hint.getVMLocation(vm);
+            if (n != null) {
+                int idx = rp.getNode(n);
+                if (idx >= 0 && x.canBeInstantiatedTo(idx)) {
+                    return idx;
+                }
+            }
+        }
         if (stay) {
             UUID vm = vmPlacement.get(x);
             if (VMPlacementUtils.canStay(rp, vm)) {
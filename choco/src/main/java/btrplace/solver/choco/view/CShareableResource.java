@@ -25,7 +25,6 @@ import btrplace.plan.ReconfigurationPlan;
 import btrplace.plan.event.Allocate;
 import btrplace.solver.SolverException;
 import btrplace.solver.choco.*;
-import btrplace.solver.choco.chocoUtil.LightBinPacking;
 import choco.Choco;
 import choco.cp.solver.CPSolver;
 import choco.kernel.solver.ContradictionException;
@@ -81,7 +80,6 @@ public class CShareableResource implements ChocoModelView {
         //Bin packing for the node vmAllocation
         CPSolver s = rp.getSolver();
         List<IntDomainVar> notNullUsage = new ArrayList<IntDomainVar>();
-        List<IntDomainVar> hosters = new ArrayList<IntDomainVar>();
 
         vmAllocation = new IntDomainVar[rp.getVMs().length];
         for (int i = 0; i < vmAllocation.length; i++) {
@@ -95,12 +93,11 @@ public class CShareableResource implements ChocoModelView {
                 //non-updated value.
                 vmAllocation[i] = s.createBoundIntVar("vmAllocation('" + rc.getIdentifier() + "', '" + vmId + "')", -1, Choco.MAX_UPPER_BOUND);
                 notNullUsage.add(vmAllocation[i]);
-                hosters.add(slice.getHoster());
             }
 
         }
-        //We create a BP with only the VMs requiring a not null amount of resources
-        s.post(new LightBinPacking(s.getEnvironment(), virtRcUsage, notNullUsage.toArray(new IntDomainVar[notNullUsage.size()]), hosters.toArray(new IntDomainVar[hosters.size()])));
+        //A packing dimension with only the VMs requiring a not null amount of resources
+        rp.getVectorPackingBuilder().add(virtRcUsage, notNullUsage.toArray(new IntDomainVar[notNullUsage.size()]));
 
     }
 
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.solver.choco;
+
+import btrplace.model.*;
+import btrplace.model.constraint.Fence;
+import btrplace.model.constraint.Offline;
+import btrplace.model.view.ShareableResource;
+import btrplace.plan.ReconfigurationPlan;
+import btrplace.solver.SolverException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+
+/**
+ * Unit tests for {@link DecomposingReconfigurationAlgorithm}.
+ *
+ * @author Fabien Hermenier
+ */
+public class DecomposingReconfigurationAlgorithmTest {
+
+    private static Set<UUID> set(UUID... ids) {
+        return new HashSet<UUID>(Arrays.asList(ids));
+    }
+
+    @Test
+    public void testGetsAndSets() {
+        ChocoReconfigurationAlgorithm cra = new DefaultChocoReconfigurationAlgorithm();
+        DecomposingReconfigurationAlgorithm d = new DecomposingReconfigurationAlgorithm(cra);
+        Assert.assertEquals(d.getParameters(), cra);
+        Assert.assertTrue(d.getPartitions().isEmpty());
+        Assert.assertEquals(d.getParallelism(), Runtime.getRuntime().availableProcessors());
+        d.setParallelism(3);
+        Assert.assertEquals(d.getParallelism(), 3);
+        List<Set<UUID>> parts = Collections.singletonList(set(UUID.randomUUID()));
+        d.setPartitions(parts);
+        Assert.assertEquals(d.getPartitions(), parts);
+    }
+
+    @Test
+    public void testDetectedPartitions() {
+        UUID n1 = UUID.randomUUID();
+        UUID n2 = UUID.randomUUID();
+        UUID n3 = UUID.randomUUID();
+        UUID n4 = UUID.randomUUID();
+        UUID n5 = UUID.randomUUID();
+        UUID vm1 = UUID.randomUUID();
+        UUID vm2 = UUID.randomUUID();
+        UUID vm3 = UUID.randomUUID();
+        Mapping map = new MappingBuilder().on(n1, n2, n3, n4, n5).run(n1, vm1).run(n3, vm2, vm3).build();
+        Model mo = new DefaultModel(map);
+        DecomposingReconfigurationAlgorithm d = new DecomposingReconfigurationAlgorithm(new DefaultChocoReconfigurationAlgorithm());
+
+        List<SatConstraint> cstrs = new ArrayList<SatConstraint>();
+        cstrs.add(new Fence(set(vm1), set(n1, n2)));
+        cstrs.add(new Fence(set(vm2, vm3), set(n3, n4)));
+        List<Set<UUID>> parts = d.computePartitions(mo, cstrs);
+        Assert.assertEquals(parts.size(), 3);
+        Assert.assertTrue(parts.contains(set(n1, n2)));
+        Assert.assertTrue(parts.contains(set(n3, n4)));
+        Assert.assertTrue(parts.contains(set(n5)));
+
+        //A constraint over the two groups merges them
+        cstrs.add(new Offline(set(n2, n4)));
+        parts = d.computePartitions(mo, cstrs);
+        Assert.assertEquals(parts.size(), 2);
+        Assert.assertTrue(parts.contains(set(n1, n2, n3, n4)));
+
+        //An unconfined VM prevents the decomposition
+        cstrs.clear();
+        cstrs.add(new Fence(set(vm1), set(n1, n2)));
+        parts = d.computePartitions(mo, cstrs);
+        Assert.assertEquals(parts.size(), 1);
+        Assert.assertEquals(parts.get(0), map.getAllNodes());
+    }
+
+    @Test
+    public void testGivenPartitions() {
+        UUID n1 = UUID.randomUUID();
+        UUID n2 = UUID.randomUUID();
+        UUID n3 = UUID.randomUUID();
+        UUID vm1 = UUID.randomUUID();
+        UUID vm2 = UUID.randomUUID();
+        Mapping map = new MappingBuilder().on(n1, n2, n3).run(n1, vm1).run(n3, vm2).build();
+        Model mo = new DefaultModel(map);
+        DecomposingReconfigurationAlgorithm d = new DecomposingReconfigurationAlgorithm(new DefaultChocoReconfigurationAlgorithm());
+        d.setPartitions(Arrays.asList(set(n1, n2), set(n3)));
+        List<Set<UUID>> parts = d.computePartitions(mo, Collections.<SatConstraint>emptyList());
+        Assert.assertEquals(parts.size(), 2);
+        Assert.assertTrue(parts.contains(set(n1, n2)));
+        Assert.assertTrue(parts.contains(set(n3)));
+    }
+
+    @Test
+    public void testSolve() throws SolverException {
+        UUID n1 = UUID.randomUUID();
+        UUID n2 = UUID.randomUUID();
+        UUID n3 = UUID.randomUUID();
+        UUID n4 = UUID.randomUUID();
+        UUID vm1 = UUID.randomUUID();
+        UUID vm2 = UUID.randomUUID();
+        UUID vm3 = UUID.randomUUID();
+        Mapping map = new MappingBuilder().on(n1, n2, n3, n4).run(n1, vm1).run(n3, vm2, vm3).build();
+        Model mo = new DefaultModel(map);
+
+        List<SatConstraint> cstrs = new ArrayList<SatConstraint>();
+        cstrs.add(new Fence(set(vm1), set(n1, n2)));
+        cstrs.add(new Fence(set(vm2, vm3), set(n3, n4)));
+        cstrs.add(new Offline(set(n1)));
+        cstrs.add(new Offline(set(n3)));
+
+        DecomposingReconfigurationAlgorithm d = new DecomposingReconfigurationAlgorithm(new DefaultChocoReconfigurationAlgorithm());
+        d.setParallelism(2);
+        Assert.assertEquals(d.computePartitions(mo, cstrs).size(), 2);
+        ReconfigurationPlan p = d.solve(mo, cstrs);
+        Assert.assertNotNull(p);
+        Assert.assertEquals(p.getOrigin(), mo);
+        Model res = p.getResult();
+        Assert.assertNotNull(res);
+        for (SatConstraint c : cstrs) {
+            Assert.assertEquals(c.isSatisfied(res), SatConstraint.Sat.SATISFIED, c.toString());
+        }
+        Assert.assertEquals(res.getMapping().getVMLocation(vm1), n2);
+        Assert.assertEquals(res.getMapping().getRunningVMs(n4), set(vm2, vm3));
+    }
+
+    @Test
+    public void testSubModel() {
+        UUID n1 = UUID.randomUUID();
+        UUID n2 = UUID.randomUUID();
+        UUID vm1 = UUID.randomUUID();
+        UUID vm2 = UUID.randomUUID();
+        Mapping map = new MappingBuilder().on(n1, n2).run(n1, vm1).run(n2, vm2).build();
+        Model mo = new DefaultModel(map);
+        ShareableResource rc = new ShareableResource("cpu", 5);
+        rc.set(n1, 4).set(n2, 6).set(vm1, 2).set(vm2, 3);
+        mo.attach(rc);
+        mo.getAttributes().put(vm1, "foo", true);
+        mo.getAttributes().put(vm1, "bar", 1.5);
+        mo.getAttributes().put(n1, "baz", 7);
+        mo.getAttributes().put(vm2, "foo", false);
+        mo.getAttributes().put(n2, "template", "small");
+
+        Model sub = DecomposingReconfigurationAlgorithm.subModel(mo, MappingUtils.subMapping(map, set(n1), set(vm1)));
+        ShareableResource subRc = (ShareableResource) sub.getView(rc.getIdentifier());
+        Assert.assertEquals(subRc.getDefined(), set(n1, vm1));
+        Assert.assertEquals(subRc.get(n1), 4);
+        Assert.assertEquals(subRc.get(vm1), 2);
+        Assert.assertEquals(subRc.getDefaultValue(), 5);
+        Attributes attrs = sub.getAttributes();
+        Assert.assertEquals(attrs.getElements(), set(n1, vm1));
+        Assert.assertTrue(attrs.getBoolean(vm1, "foo"));
+        Assert.assertEquals(attrs.getDouble(vm1, "bar"), 1.5);
+        Assert.assertEquals(attrs.getLong(n1, "baz").longValue(), 7);
+
+        //The original model is left untouched
+        subRc.set(n1, 10);
+        Assert.assertEquals(rc.get(n1), 4);
+        Assert.assertEquals(rc.getDefined().size(), 4);
+    }
+}
@@ -20,7 +20,14 @@ package btrplace.solver.choco;
 
 import btrplace.model.*;
 import btrplace.model.constraint.Fence;
+import btrplace.model.constraint.Offline;
+import btrplace.model.constraint.Overbook;
+import btrplace.model.constraint.Preserve;
+import btrplace.model.constraint.Running;
+import btrplace.model.view.ShareableResource;
+import btrplace.plan.Action;
 import btrplace.plan.ReconfigurationPlan;
+import btrplace.plan.ReconfigurationPlanListener;
 import btrplace.solver.SolverException;
 import choco.cp.solver.CPSolver;
 import choco.cp.solver.constraints.global.AtMostNValue;
@@ -31,6 +38,8 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Unit tests for {@link DefaultChocoReconfigurationAlgorithm}.
@@ -76,6 +85,60 @@ public class DefaultChocoReconfigurationAlgorithmTest {
         };
         cra.setObjective(obj);
         Assert.assertEquals(cra.getObjective(), obj);
+
+        Assert.assertNull(cra.getExecutorService());
+        ExecutorService exe = Executors.newSingleThreadExecutor();
+        cra.setExecutorService(exe);
+        Assert.assertEquals(cra.getExecutorService(), exe);
+        exe.shutdown();
+
+        Assert.assertEquals(cra.getPortfolioSize(), 1);
+        cra.setPortfolioSize(4);
+        Assert.assertEquals(cra.getPortfolioSize(), 4);
+
+        Assert.assertEquals(cra.getSchedulingFiltering(), SchedulingFiltering.BASIC);
+        cra.setSchedulingFiltering(SchedulingFiltering.TIMETABLE);
+        Assert.assertEquals(cra.getSchedulingFiltering(), SchedulingFiltering.TIMETABLE);
+    }
+
+    /**
+     * The timetable filtering only removes values that cannot lead to a solution.
+     * It prunes the hosts of the VMs, so the random placement heuristic may pick
+     * other nodes: both resolutions must succeed and satisfy the constraints.
+     */
+    @Test
+    public void testTimetableSchedulingFiltering() throws SolverException {
+        UUID n1 = UUID.randomUUID();
+        UUID n2 = UUID.randomUUID();
+        UUID n3 = UUID.randomUUID();
+        UUID vm1 = UUID.randomUUID();
+        UUID vm2 = UUID.randomUUID();
+        UUID vm3 = UUID.randomUUID();
+        UUID vm4 = UUID.randomUUID();
+        UUID vm5 = UUID.randomUUID();
+        Mapping map = new MappingBuilder().on(n1, n2, n3).run(n1, vm1, vm2).run(n2, vm3, vm4).run(n3, vm5).build();
+        ShareableResource rc = new ShareableResource("cpu", 2);
+        rc.set(n1, 4);
+        rc.set(n2, 4);
+        rc.set(n3, 6);
+        Model mo = new DefaultModel(map);
+        mo.attach(rc);
+        List<SatConstraint> cstrs = new ArrayList<SatConstraint>();
+        cstrs.add(new Offline(Collections.singleton(n1)));
+        cstrs.add(new Overbook(map.getAllNodes(), "cpu", 1));
+        cstrs.add(new Preserve(map.getAllVMs(), "cpu", 2));
+
+        ChocoReconfigurationAlgorithm cra = new DefaultChocoReconfigurationAlgorithm();
+        ReconfigurationPlan basic = cra.solve(mo, cstrs);
+        Assert.assertNotNull(basic);
+
+        cra.setSchedulingFiltering(SchedulingFiltering.TIMETABLE);
+        ReconfigurationPlan timetable = cra.solve(mo, cstrs);
+        Assert.assertNotNull(timetable);
+        for (SatConstraint c : cstrs) {
+            Assert.assertEquals(c.isSatisfied(basic.getResult()), SatConstraint.Sat.SATISFIED);
+            Assert.assertEquals(c.isSatisfied(timetable.getResult()), SatConstraint.Sat.SATISFIED);
+        }
     }
 
     @Test
@@ -171,4 +234,365 @@ public class DefaultChocoReconfigurationAlgorithmTest {
         SolvingStatistics st = cra.getSolvingStatistics();
         Assert.assertEquals(st.getNbManagedVMs(), 2); //vm2, vm3.
     }
+
+    /**
+     * Solve the same problem in repair mode sequentially then with an executor.
+     * The number of constraints exceeds the size of a batch so that
+     * the preparation is really split.
+     */
+    @Test
+    public void testParallelPreparation() throws SolverException {
+        MappingBuilder mb = new MappingBuilder();
+        List<UUID> nodes = new ArrayList<UUID>();
+        List<SatConstraint> cstrs = new ArrayList<SatConstraint>();
+        for (int i = 0; i < 3 * DefaultChocoReconfigurationAlgorithm.BATCH_SIZE; i++) {
+            UUID n = UUID.randomUUID();
+            UUID vm = UUID.randomUUID();
+            nodes.add(n);
+            mb.on(n).run(n, vm);
+        }
+        Mapping map = mb.build();
+        //Every VM is fenced on its host but the first one, which is misplaced
+        for (int i = 0; i < nodes.size(); i++) {
+            UUID n = nodes.get(i);
+            UUID vm = map.getRunningVMs(n).iterator().next();
+            UUID dst = i == 0 ? nodes.get(1) : n;
+            cstrs.add(new Fence(Collections.singleton(vm), Collections.singleton(dst)));
+        }
+        Model mo = new DefaultModel(map);
+
+        ChocoReconfigurationAlgorithm cra = new DefaultChocoReconfigurationAlgorithm();
+        cra.repair(true);
+        ReconfigurationPlan p1 = cra.solve(mo, cstrs);
+        Assert.assertNotNull(p1);
+        int nbManaged = cra.getSolvingStatistics().getNbManagedVMs();
+
+        ExecutorService exe = Executors.newFixedThreadPool(4);
+        try {
+            cra.setExecutorService(exe);
+            ReconfigurationPlan p2 = cra.solve(mo, cstrs);
+            Assert.assertNotNull(p2);
+            Assert.assertEquals(cra.getSolvingStatistics().getNbManagedVMs(), nbManaged);
+        } finally {
+            exe.shutdown();
+        }
+    }
+
+    /**
+     * Prepare a problem in parallel from the result of a previous plan.
+     * The batches read the same copy-on-write model concurrently, including
+     * its views that are copied on the first access.
+     */
+    @Test(dependsOnMethods = {"testParallelPreparation"})
+    public void testParallelPreparationFromResult() throws SolverException {
+        MappingBuilder mb = new MappingBuilder();
+        List<UUID> nodes = new ArrayList<UUID>();
+        List<UUID> vms = new ArrayList<UUID>();
+        ShareableResource rc = new ShareableResource("cpu", 1);
+        for (int i = 0; i < 3 * DefaultChocoReconfigurationAlgorithm.BATCH_SIZE; i++) {
+            UUID n = UUID.randomUUID();
+            UUID vm = UUID.randomUUID();
+            nodes.add(n);
+            vms.add(vm);
+            mb.on(n).run(n, vm);
+            rc.set(n, 4);
+        }
+        Model mo = new DefaultModel(mb.build());
+        mo.attach(rc);
+
+        List<SatConstraint> cstrs = new ArrayList<SatConstraint>();
+        cstrs.add(new Fence(Collections.singleton(vms.get(0)), Collections.singleton(nodes.get(1))));
+        ChocoReconfigurationAlgorithm cra = new DefaultChocoReconfigurationAlgorithm();
+        ReconfigurationPlan p1 = cra.solve(mo, cstrs);
+        Assert.assertNotNull(p1);
+
+        //The constraints read the view of the result from every batch
+        Model res = p1.getResult();
+        cstrs.clear();
+        for (UUID vm : vms) {
+            cstrs.add(new Preserve(Collections.singleton(vm), "cpu", 1));
+        }
+        cstrs.add(new Fence(Collections.singleton(vms.get(0)), Collections.singleton(nodes.get(1))));
+        cra.repair(true);
+        ExecutorService exe = Executors.newFixedThreadPool(4);
+        try {
+            cra.setExecutorService(exe);
+            ReconfigurationPlan p2 = cra.solve(res, cstrs);
+            Assert.assertNotNull(p2);
+            Model res2 = p2.getResult();
+            for (SatConstraint c : cstrs) {
+                Assert.assertEquals(c.isSatisfied(res2), SatConstraint.Sat.SATISFIED);
+            }
+        } finally {
+            exe.shutdown();
+        }
+    }
+
+    /**
+     * Pack the VMs on a minimum number of nodes using several concurrent attempts.
+     */
+    @Test
+    public void testPortfolio() throws SolverException {
+        Mapping map = new DefaultMapping();
+        for (int i = 0; i < 10; i++) {
+            UUID n = UUID.randomUUID();
+            UUID vm = UUID.randomUUID();
+            map.addOnlineNode(n);
+            map.addRunningVM(vm, n);
+        }
+        Model mo = new DefaultModel(map);
+        ChocoReconfigurationAlgorithm cra = new DefaultChocoReconfigurationAlgorithm();
+        cra.setPortfolioSize(3);
+        cra.setObjective(new ReconfigurationObjective() {
+            @Override
+            public void inject(ReconfigurationProblem rp) throws SolverException {
+                Mapping map = rp.getSourceModel().getMapping();
+                CPSolver s = rp.getSolver();
+                IntDomainVar nbNodes = s.createBoundIntVar("nbNodes", 1, map.getOnlineNodes().size());
+                IntDomainVar[] hosters = SliceUtils.extractHosters(ActionModelUtils.getDSlices(rp.getVMActions()));
+                s.post(new AtMostNValue(hosters, nbNodes));
+                s.setObjective(nbNodes);
+                s.getConfiguration().putEnum(Configuration.RESOLUTION_POLICY, ResolutionPolicy.MINIMIZE);
+            }
+
+            @Override
+            public Set<UUID> getMisPlacedVMs(Model m) {
+                return Collections.emptySet();
+            }
+        });
+
+        //First plan
+        cra.doOptimize(false);
+        ReconfigurationPlan p = cra.solve(mo, Collections.<SatConstraint>emptyList());
+        Assert.assertNotNull(p);
+        Assert.assertNotNull(p.getResult());
+
+        //Best plan
+        cra.doOptimize(true);
+        p = cra.solve(mo, Collections.<SatConstraint>emptyList());
+        Assert.assertNotNull(p);
+        Mapping res = p.getResult().getMapping();
+        Assert.assertEquals(MappingUtils.usedNodes(res, EnumSet.of(MappingUtils.State.Runnings)).size(), 1);
+        Assert.assertFalse(cra.getSolvingStatistics().getSolutions().isEmpty());
+    }
+
+    /**
+     * Without optimisation, the portfolio must return the plan of an attempt
+     * that computed one, even if another attempt terminated first without plan.
+     */
+    @Test
+    public void testPortfolioSkipsAttemptsWithoutPlan() throws SolverException {
+        Mapping map = new DefaultMapping();
+        for (int i = 0; i < 5; i++) {
+            UUID n = UUID.randomUUID();
+            map.addOnlineNode(n);
+            map.addRunningVM(UUID.randomUUID(), n);
+        }
+        Model mo = new DefaultModel(map);
+        ChocoReconfigurationAlgorithm cra = new DefaultChocoReconfigurationAlgorithm();
+        cra.setPortfolioSize(3);
+        Assert.assertNull(cra.getRandomSeed());
+        cra.setRandomSeed(10);
+        Assert.assertEquals(cra.getRandomSeed(), Long.valueOf(10));
+        cra.setObjective(new ReconfigurationObjective() {
+            @Override
+            public void inject(ReconfigurationProblem rp) throws SolverException {
+                //The attempt using the first seed has no solution
+                if (rp.getRandomSeed() == 10) {
+                    rp.getSolver().post(rp.getSolver().lt(rp.getEnd(), 0));
+                }
+            }
+
+            @Override
+            public Set<UUID> getMisPlacedVMs(Model m) {
+                return Collections.emptySet();
+            }
+        });
+        for (int i = 0; i < 5; i++) {
+            Assert.assertNotNull(cra.solve(mo, Collections.<SatConstraint>emptyList()));
+        }
+    }
+
+    /**
+     * The random heuristics must compute the same plan for a same seed.
+     */
+    @Test
+    public void testRandomSeed() throws SolverException {
+        MappingBuilder mb = new MappingBuilder();
+        List<UUID> nodes = new ArrayList<UUID>();
+        for (int i = 0; i < 10; i++) {
+            UUID n = UUID.randomUUID();
+            nodes.add(n);
+            mb.on(n);
+        }
+        UUID vm = UUID.randomUUID();
+        mb.run(nodes.get(0), vm);
+        Model mo = new DefaultModel(mb.build());
+        List<SatConstraint> cstrs = new ArrayList<SatConstraint>();
+        cstrs.add(new Offline(Collections.singleton(nodes.get(0))));
+        ChocoReconfigurationAlgorithm cra = new DefaultChocoReconfigurationAlgorithm();
+        Set<UUID> hosts = new HashSet<UUID>();
+        for (long seed = 0; seed < 5; seed++) {
+            cra.setRandomSeed(seed);
+            ReconfigurationPlan p1 = cra.solve(mo, cstrs);
+            ReconfigurationPlan p2 = cra.solve(mo, cstrs);
+            Assert.assertEquals(p1.getResult().getMapping(), p2.getResult().getMapping());
+            hosts.add(p1.getResult().getMapping().getVMLocation(vm));
+        }
+        //The seeds lead to various placements
+        Assert.assertTrue(hosts.size() > 1);
+    }
+
+    /**
+     * Re-solve a problem that changed by a single VM using the previous plan as a hint.
+     * Only the new VM must be manageable.
+     */
+    @Test
+    public void testWarmStart() throws SolverException {
+        UUID n1 = UUID.randomUUID();
+        UUID n2 = UUID.randomUUID();
+        UUID n3 = UUID.randomUUID();
+        UUID vm1 = UUID.randomUUID();
+        UUID vm2 = UUID.randomUUID();
+        UUID vm3 = UUID.randomUUID();
+        UUID vm4 = UUID.randomUUID();
+        Mapping map = new MappingBuilder().on(n1, n2, n3).run(n1, vm1, vm2).run(n2, vm3).ready(vm4).build();
+        Model mo = new DefaultModel(map);
+        List<SatConstraint> cstrs = new ArrayList<SatConstraint>();
+        cstrs.add(new Offline(Collections.singleton(n1)));
+
+        ChocoReconfigurationAlgorithm cra = new DefaultChocoReconfigurationAlgorithm();
+        ReconfigurationPlan p1 = cra.solve(mo, cstrs);
+        Assert.assertNotNull(p1);
+
+        //Without any previous plan, this is a regular resolution
+        Assert.assertNotNull(cra.solve(mo, cstrs, null));
+
+        //The previous plan was applied, then vm4 must be started
+        Model mo2 = p1.getResult();
+        cstrs.add(new Running(Collections.singleton(vm4)));
+        ReconfigurationPlan p2 = cra.solve(mo2, cstrs, p1);
+        Assert.assertNotNull(p2);
+        Assert.assertEquals(cra.getSolvingStatistics().getNbManagedVMs(), 1);
+        Model res = p2.getResult();
+        Assert.assertTrue(res.getMapping().getRunningVMs().contains(vm4));
+        for (SatConstraint c : cstrs) {
+            Assert.assertEquals(c.isSatisfied(res), SatConstraint.Sat.SATISFIED);
+        }
+    }
+
+    /**
+     * The previous optimum must not bound the objective of the new problem
+     * as it may be lower than the new optimum.
+     */
+    @Test
+    public void testWarmStartWithWorseOptimum() throws SolverException {
+        UUID n1 = UUID.randomUUID();
+        UUID n2 = UUID.randomUUID();
+        UUID vm1 = UUID.randomUUID();
+        UUID vm2 = UUID.randomUUID();
+        UUID vm3 = UUID.randomUUID();
+        Mapping map = new MappingBuilder().on(n1, n2).run(n1, vm1).run(n2, vm2).ready(vm3).build();
+        Model mo = new DefaultModel(map);
+        ChocoReconfigurationAlgorithm cra = new DefaultChocoReconfigurationAlgorithm();
+        cra.setObjective(new ReconfigurationObjective() {
+            @Override
+            public void inject(ReconfigurationProblem rp) throws SolverException {
+                CPSolver s = rp.getSolver();
+                s.setObjective(rp.getEnd());
+                s.getConfiguration().putEnum(Configuration.RESOLUTION_POLICY, ResolutionPolicy.MINIMIZE);
+            }
+
+            @Override
+            public Set<UUID> getMisPlacedVMs(Model m) {
+                return Collections.emptySet();
+            }
+        });
+        cra.doOptimize(true);
+
+        //Nothing to do, the optimum is 0
+        List<SatConstraint> cstrs = new ArrayList<SatConstraint>();
+        ReconfigurationPlan p1 = cra.solve(mo, cstrs);
+        Assert.assertNotNull(p1);
+        Assert.assertEquals(p1.getDuration(), 0);
+
+        //vm3 must now be booted so the optimum is greater
+        cstrs.add(new Running(Collections.singleton(vm3)));
+        ReconfigurationPlan p2 = cra.solve(p1.getResult(), cstrs, p1);
+        Assert.assertNotNull(p2);
+        Assert.assertTrue(p2.getDuration() > 0);
+        Assert.assertTrue(p2.getResult().getMapping().getRunningVMs().contains(vm3));
+        //The warm start succeeded, the problem was not solved from scratch
+        Assert.assertEquals(cra.getSolvingStatistics().getNbManagedVMs(), 1);
+    }
+
+    @Test
+    public void testPlanListener() throws SolverException {
+        UUID n1 = UUID.randomUUID();
+        UUID n2 = UUID.randomUUID();
+        UUID n3 = UUID.randomUUID();
+        UUID vm1 = UUID.randomUUID();
+        UUID vm2 = UUID.randomUUID();
+        UUID vm3 = UUID.randomUUID();
+        Mapping map = new MappingBuilder().on(n1, n2).off(n3).run(n1, vm1, vm2).ready(vm3).build();
+        Model mo = new DefaultModel(map);
+        List<SatConstraint> cstrs = new ArrayList<SatConstraint>();
+        cstrs.add(new Offline(Collections.singleton(n1)));
+        cstrs.add(new Running(Collections.singleton(vm3)));
+
+        final List<Action> notified = new ArrayList<Action>();
+        final int[] calls = new int[2];
+        ChocoReconfigurationAlgorithm cra = new DefaultChocoReconfigurationAlgorithm();
+        cra.setPlanListener(new ReconfigurationPlanListener() {
+            @Override
+            public void beginPlan(Model origin) {
+                calls[0]++;
+            }
+
+            @Override
+            public void onAction(Action a) {
+                //Notified while the plan is extracted, before its end
+                Assert.assertEquals(calls[0], calls[1] + 1);
+                if (!notified.isEmpty()) {
+                    Assert.assertTrue(notified.get(notified.size() - 1).getStart() <= a.getStart());
+                }
+                notified.add(a);
+            }
+
+            @Override
+            public void endPlan() {
+                calls[1]++;
+            }
+        });
+        ReconfigurationPlan p = cra.solve(mo, cstrs);
+        Assert.assertNotNull(p);
+        Assert.assertEquals(calls[0], 1);
+        Assert.assertEquals(calls[1], 1);
+        //The actions are notified in the order of the plan
+        List<Action> ordered = new ArrayList<Action>();
+        for (Action a : p) {
+            ordered.add(a);
+        }
+        Assert.assertEquals(notified, ordered);
+
+        //With a portfolio, only the retained plan is notified
+        notified.clear();
+        cra.setPortfolioSize(3);
+        p = cra.solve(mo, cstrs);
+        Assert.assertNotNull(p);
+        Assert.assertEquals(calls[0], 2);
+        Assert.assertEquals(calls[1], 2);
+        Assert.assertEquals(notified.size(), p.getSize());
+        Assert.assertEquals(new HashSet<Action>(notified), p.getActions());
+
+        //Same when optimising
+        notified.clear();
+        cra.doOptimize(true);
+        p = cra.solve(mo, cstrs);
+        Assert.assertNotNull(p);
+        Assert.assertEquals(calls[0], 3);
+        Assert.assertEquals(calls[1], 3);
+        Assert.assertEquals(notified.size(), p.getSize());
+        Assert.assertEquals(new HashSet<Action>(notified), p.getActions());
+    }
 }
@@ -118,6 +118,9 @@ public class DefaultReconfigurationProblemTest {
         Assert.assertEquals(dEval, rp.getDurationEvaluators());
         Assert.assertNotNull(rp.getViewMapper());
         Assert.assertNull(rp.getObjectiveAlterer());
+        Assert.assertNull(rp.getPlacementHint());
+        rp.setPlacementHint(m.getMapping());
+        Assert.assertEquals(rp.getPlacementHint(), m.getMapping());
         Assert.assertEquals(rp.getFutureReadyVMs(), toWait);
         Assert.assertEquals(rp.getFutureRunningVMs(), toRun);
         Assert.assertEquals(rp.getFutureSleepingVMs(), Collections.singleton(vm3));
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.solver.choco;
+
+import btrplace.model.DefaultMapping;
+import btrplace.model.DefaultModel;
+import btrplace.model.Mapping;
+import btrplace.solver.SolverException;
+import choco.kernel.solver.Configuration;
+import choco.kernel.solver.ContradictionException;
+import choco.kernel.solver.ResolutionPolicy;
+import choco.kernel.solver.variables.integer.IntDomainVar;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit tests for {@link SharedBoundAlterer}.
+ *
+ * @author Fabien Hermenier
+ */
+public class SharedBoundAltererTest {
+
+    private static ReconfigurationProblem makeProblem(ResolutionPolicy p) throws SolverException {
+        return makeProblem(new DefaultMapping(), p);
+    }
+
+    private static ReconfigurationProblem makeProblem(Mapping map, ResolutionPolicy p) throws SolverException {
+        ReconfigurationProblem rp = new DefaultReconfigurationProblemBuilder(new DefaultModel(map)).build();
+        IntDomainVar obj = rp.getSolver().createBoundIntVar("obj", 10, 1000);
+        rp.getSolver().setObjective(obj);
+        rp.getSolver().getConfiguration().putEnum(Configuration.RESOLUTION_POLICY, p);
+        return rp;
+    }
+
+    @Test
+    public void testMinimization() throws SolverException {
+        AtomicReference<Integer> best = new AtomicReference<Integer>();
+        SharedBoundAlterer a1 = new SharedBoundAlterer(makeProblem(ResolutionPolicy.MINIMIZE), best, null);
+        SharedBoundAlterer a2 = new SharedBoundAlterer(makeProblem(ResolutionPolicy.MINIMIZE), best, null);
+        Assert.assertNull(a1.getBestValue());
+        Assert.assertEquals(a1.tryNewValue(50), 49);
+        Assert.assertEquals(a2.getBestValue(), Integer.valueOf(50));
+        //a2 is worse, so its bound is deduced from a1
+        Assert.assertEquals(a2.tryNewValue(80), 49);
+        Assert.assertEquals(a2.tryNewValue(30), 29);
+        Assert.assertEquals(a1.getBestValue(), Integer.valueOf(30));
+    }
+
+    @Test
+    public void testMaximization() throws SolverException {
+        AtomicReference<Integer> best = new AtomicReference<Integer>();
+        SharedBoundAlterer a1 = new SharedBoundAlterer(makeProblem(ResolutionPolicy.MAXIMIZE), best, null);
+        SharedBoundAlterer a2 = new SharedBoundAlterer(makeProblem(ResolutionPolicy.MAXIMIZE), best, null);
+        Assert.assertEquals(a1.tryNewValue(50), 51);
+        Assert.assertEquals(a2.tryNewValue(20), 51);
+        Assert.assertEquals(a2.getBestValue(), Integer.valueOf(50));
+    }
+
+    @Test
+    public void testWrapping() throws SolverException {
+        AtomicReference<Integer> best = new AtomicReference<Integer>();
+        ReconfigurationProblem rp = makeProblem(ResolutionPolicy.MINIMIZE);
+        ObjectiveAlterer half = new ObjectiveAlterer(rp) {
+            @Override
+            public int tryNewValue(int currentValue) {
+                return currentValue / 2;
+            }
+        };
+        SharedBoundAlterer a1 = new SharedBoundAlterer(rp, best, half);
+        SharedBoundAlterer a2 = new SharedBoundAlterer(makeProblem(ResolutionPolicy.MINIMIZE), best, null);
+        Assert.assertEquals(a1.tryNewValue(100), 50);
+        Assert.assertEquals(a2.tryNewValue(40), 39);
+        //The shared value is more restrictive than the wrapped alterer
+        Assert.assertEquals(a1.tryNewValue(90), 39);
+    }
+
+    /**
+     * The cut must consider a value published by another problem
+     * as soon as a VM is placed.
+     */
+    @Test
+    public void testCut() throws SolverException, ContradictionException {
+        UUID n1 = UUID.randomUUID();
+        UUID n2 = UUID.randomUUID();
+        UUID vm = UUID.randomUUID();
+        Mapping map = new DefaultMapping();
+        map.addOnlineNode(n1);
+        map.addOnlineNode(n2);
+        map.addRunningVM(vm, n1);
+        AtomicReference<Integer> best = new AtomicReference<Integer>();
+        ReconfigurationProblem rp = makeProblem(map, ResolutionPolicy.MINIMIZE);
+        IntDomainVar x = rp.getSolver().createBoundIntVar("x", 0, 5);
+        SharedBoundAlterer a1 = new SharedBoundAlterer(rp, best, null);
+        SharedBoundAlterer a2 = new SharedBoundAlterer(makeProblem(ResolutionPolicy.MINIMIZE), best, null);
+        rp.getSolver().post(a1.makeCut());
+        rp.getSolver().propagate();
+        IntDomainVar obj = (IntDomainVar) rp.getSolver().getObjective();
+        Assert.assertEquals(obj.getSup(), 1000);
+        a2.tryNewValue(50);
+        //Only the placement variables are observed
+        x.setVal(3);
+        rp.getSolver().propagate();
+        Assert.assertEquals(obj.getSup(), 1000);
+        rp.getVMAction(vm).getDSlice().getHoster().setVal(rp.getNode(n2));
+        rp.getSolver().propagate();
+        Assert.assertEquals(obj.getSup(), 49);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.solver.choco.chocoUtil;
+
+import choco.cp.solver.CPSolver;
+import choco.kernel.solver.ContradictionException;
+import choco.kernel.solver.variables.integer.IntDomainVar;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+/**
+ * Unit tests for {@link Disjoint}.
+ *
+ * @author Fabien Hermenier
+ */
+public class DisjointTest {
+
+    /**
+     * A value used by a group is removed from the other group.
+     * A variable instantiated by such a removal is handled the same way.
+     */
+    @Test
+    public void testRemoval() throws ContradictionException {
+        CPSolver s = new CPSolver();
+        IntDomainVar x1 = s.createEnumIntVar("x1", 0, 1);
+        IntDomainVar x2 = s.createEnumIntVar("x2", 0, 2);
+        IntDomainVar y1 = s.createEnumIntVar("y1", 0, 2);
+        IntDomainVar y2 = s.createEnumIntVar("y2", 0, 2);
+        s.post(new Disjoint(s.getEnvironment(), new IntDomainVar[]{x1, x2}, new IntDomainVar[]{y1, y2}, 3));
+        s.propagate();
+        y1.setVal(0);
+        s.propagate();
+        Assert.assertFalse(x2.canBeInstantiatedTo(0));
+        //x1 is instantiated to 1 by the removal, so 1 is now removed from the second group
+        Assert.assertTrue(x1.isInstantiated());
+        Assert.assertEquals(x1.getVal(), 1);
+        Assert.assertFalse(y2.canBeInstantiatedTo(1));
+        Assert.assertEquals(y2.getDomainSize(), 2);
+    }
+
+    /**
+     * Compare the number of solutions with a brute-force enumeration over random instances.
+     */
+    @Test
+    public void testAgainstEnumeration() {
+        Random rnd = new Random(0);
+        for (int n = 0; n < 50; n++) {
+            int nbValues = 1 + rnd.nextInt(4);
+            int nbX = 1 + rnd.nextInt(3);
+            int nbY = 1 + rnd.nextInt(3);
+            CPSolver s = new CPSolver();
+            IntDomainVar[] x = new IntDomainVar[nbX];
+            IntDomainVar[] y = new IntDomainVar[nbY];
+            for (int i = 0; i < nbX; i++) {
+                x[i] = s.createEnumIntVar("x" + i, 0, nbValues - 1);
+            }
+            for (int i = 0; i < nbY; i++) {
+                y[i] = s.createEnumIntVar("y" + i, 0, nbValues - 1);
+            }
+            s.post(new Disjoint(s.getEnvironment(), x, y, nbValues));
+            s.solveAll();
+
+            int expected = 0;
+            int nbCombinations = (int) Math.pow(nbValues, nbX + nbY);
+            for (int k = 0; k < nbCombinations; k++) {
+                int v = k;
+                boolean[] used = new boolean[nbValues];
+                for (int i = 0; i < nbX; i++) {
+                    used[v % nbValues] = true;
+                    v /= nbValues;
+                }
+                boolean ok = true;
+                for (int i = 0; i < nbY; i++) {
+                    if (used[v % nbValues]) {
+                        ok = false;
+                    }
+                    v /= nbValues;
+                }
+                if (ok) {
+                    expected++;
+                }
+            }
+            Assert.assertEquals(s.getNbSolutions(), expected, "instance " + n);
+        }
+    }
+}
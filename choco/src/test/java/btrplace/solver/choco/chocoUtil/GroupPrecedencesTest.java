@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.solver.choco.chocoUtil;
+
+import choco.cp.solver.CPSolver;
+import choco.kernel.solver.variables.integer.IntDomainVar;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+/**
+ * Unit tests for {@link GroupPrecedences}.
+ *
+ * @author Fabien Hermenier
+ */
+public class GroupPrecedencesTest {
+
+    private IntDomainVar[] makeEnds(CPSolver s) {
+        return new IntDomainVar[]{
+                s.makeConstantIntVar(1),
+                s.makeConstantIntVar(3),
+                s.makeConstantIntVar(2),
+                s.makeConstantIntVar(4),
+                s.makeConstantIntVar(5)};
+    }
+
+    /**
+     * Same as {@link PrecedencesTest#dummyTest()}, for each group.
+     */
+    @Test
+    public void testWithInstantiatedEnds() {
+        int[] others = {0, 0, 1, 1, 2};
+        for (int g = 0; g < 2; g++) {
+            CPSolver s = new CPSolver();
+            IntDomainVar host = s.createEnumIntVar("host", 0, 2);
+            IntDomainVar start = s.createBoundIntVar("start", 0, 5);
+            /*
+               If host == 0, start = 3,4,5
+               If host == 1, start = 4,5
+               If host == 2, start = 5
+               => 6 solutions
+             */
+            s.post(new GroupPrecedences(s.getEnvironment(),
+                    new IntDomainVar[]{host}, new IntDomainVar[]{start}, g == 0 ? 1 : 0,
+                    others, makeEnds(s), g == 0 ? 0 : others.length, 3));
+            Boolean ret = s.solveAll();
+            Assert.assertEquals(ret, Boolean.TRUE);
+            Assert.assertEquals(s.getNbSolutions(), 6);
+        }
+    }
+
+    /**
+     * The tasks of a same group do not interfere.
+     */
+    @Test
+    public void testSameGroup() {
+        CPSolver s = new CPSolver();
+        IntDomainVar host = s.createEnumIntVar("host", 0, 0);
+        IntDomainVar start = s.createBoundIntVar("start", 0, 5);
+        s.post(new GroupPrecedences(s.getEnvironment(),
+                new IntDomainVar[]{host}, new IntDomainVar[]{start}, 1,
+                new int[]{0, 0, 1, 1, 2}, makeEnds(s), 5, 3));
+        Boolean ret = s.solveAll();
+        Assert.assertEquals(ret, Boolean.TRUE);
+        Assert.assertEquals(s.getNbSolutions(), 6);
+    }
+
+    /**
+     * A placed task bounds the end of the tasks of the other group on its resource.
+     */
+    @Test
+    public void testEndsUpperBound() {
+        CPSolver s = new CPSolver();
+        IntDomainVar host = s.createEnumIntVar("host", 0, 0);
+        IntDomainVar start = s.createBoundIntVar("start", 0, 3);
+        IntDomainVar end = s.createBoundIntVar("end", 0, 5);
+        //end <= start => 1 + 2 + 3 + 4 solutions
+        s.post(new GroupPrecedences(s.getEnvironment(),
+                new IntDomainVar[]{host}, new IntDomainVar[]{start}, 0,
+                new int[]{0}, new IntDomainVar[]{end}, 1, 1));
+        Boolean ret = s.solveAll();
+        Assert.assertEquals(ret, Boolean.TRUE);
+        Assert.assertEquals(s.getNbSolutions(), 10);
+    }
+
+    /**
+     * Compare the number of solutions with a brute-force enumeration over random instances
+     * where the ends of the c-tasks are not instantiated.
+     */
+    @Test
+    public void testAgainstEnumeration() {
+        Random rnd = new Random(0);
+        int h = 3;
+        for (int x = 0; x < 50; x++) {
+            int nbResources = 1 + rnd.nextInt(2);
+            int nbD = 1 + rnd.nextInt(3);
+            int nbD0 = rnd.nextInt(nbD + 1);
+            int nbC = 1 + rnd.nextInt(3);
+            int nbC0 = rnd.nextInt(nbC + 1);
+            int[] cHosters = new int[nbC];
+            for (int j = 0; j < nbC; j++) {
+                cHosters[j] = rnd.nextInt(nbResources);
+            }
+
+            CPSolver s = new CPSolver();
+            IntDomainVar[] hosts = new IntDomainVar[nbD];
+            IntDomainVar[] starts = new IntDomainVar[nbD];
+            for (int i = 0; i < nbD; i++) {
+                hosts[i] = s.createEnumIntVar("host" + i, 0, nbResources - 1);
+                starts[i] = s.createBoundIntVar("start" + i, 0, h);
+            }
+            IntDomainVar[] ends = new IntDomainVar[nbC];
+            for (int j = 0; j < nbC; j++) {
+                ends[j] = s.createBoundIntVar("end" + j, 0, h);
+            }
+            s.post(new GroupPrecedences(s.getEnvironment(), hosts, starts, nbD0, cHosters, ends, nbC0, nbResources));
+            s.solveAll();
+
+            //Each d-task starts once the c-tasks of the other group on its resource ended
+            int expected = 0;
+            int nbCombinations = (int) Math.pow(h + 1, nbC) * (int) Math.pow(nbResources * (h + 1), nbD);
+            for (int k = 0; k < nbCombinations; k++) {
+                int v = k;
+                int[] e = new int[nbC];
+                for (int j = 0; j < nbC; j++) {
+                    e[j] = v % (h + 1);
+                    v /= h + 1;
+                }
+                boolean ok = true;
+                for (int i = 0; i < nbD; i++) {
+                    int st = v % (h + 1);
+                    v /= h + 1;
+                    int r = v % nbResources;
+                    v /= nbResources;
+                    for (int j = 0; j < nbC; j++) {
+                        if ((i < nbD0) != (j < nbC0) && cHosters[j] == r && e[j] > st) {
+                            ok = false;
+                        }
+                    }
+                }
+                if (ok) {
+                    expected++;
+                }
+            }
+            Assert.assertEquals(s.getNbSolutions(), expected, "instance " + x);
+        }
+    }
+}
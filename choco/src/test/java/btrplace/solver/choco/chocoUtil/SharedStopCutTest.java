@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package btrplace.solver.choco.chocoUtil;
+
+import choco.cp.solver.CPSolver;
+import choco.kernel.solver.ContradictionException;
+import choco.kernel.solver.variables.integer.IntDomainVar;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Unit tests for {@link SharedStopCut}.
+ *
+ * @author Fabien Hermenier
+ */
+public class SharedStopCutTest {
+
+    /**
+     * The cut does not remove any solution while the flag is not raised.
+     */
+    @Test
+    public void testNotRaised() {
+        CPSolver s = new CPSolver();
+        IntDomainVar x = s.createEnumIntVar("x", 0, 3);
+        IntDomainVar y = s.createEnumIntVar("y", 0, 3);
+        s.post(new SharedStopCut(new IntDomainVar[]{x, y}, new AtomicBoolean(false)));
+        s.solveAll();
+        Assert.assertEquals(s.getNbSolutions(), 16);
+    }
+
+    /**
+     * Once the flag is raised, the next instantiation fails.
+     */
+    @Test
+    public void testRaised() throws ContradictionException {
+        CPSolver s = new CPSolver();
+        IntDomainVar x = s.createEnumIntVar("x", 0, 3);
+        IntDomainVar y = s.createEnumIntVar("y", 0, 3);
+        AtomicBoolean stop = new AtomicBoolean(false);
+        s.post(new SharedStopCut(new IntDomainVar[]{x, y}, stop));
+        s.propagate();
+        stop.set(true);
+        x.setVal(1);
+        try {
+            s.propagate();
+            Assert.fail();
+        } catch (ContradictionException ex) {
+        }
+
+        //A search started after the flag was raised terminates without solution
+        s = new CPSolver();
+        x = s.createEnumIntVar("x", 0, 3);
+        s.post(new SharedStopCut(new IntDomainVar[]{x}, stop));
+        Assert.assertEquals(s.solve(), Boolean.FALSE);
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.solver.choco.chocoUtil;
+
+import choco.cp.solver.CPSolver;
+import choco.kernel.solver.Configuration;
+import choco.kernel.solver.ContradictionException;
+import choco.kernel.solver.variables.integer.IntDomainVar;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link TaskScheduler}.
+ * The constraint only keeps the schedules where the dTasks start as soon as possible
+ * so its solutions are checked one by one and its feasibility is compared with
+ * the one of a brute-force enumeration.
+ *
+ * @author Fabien Hermenier
+ */
+public class TaskSchedulerTest {
+
+    /**
+     * The horizon of the schedules.
+     */
+    private static final int H = 3;
+
+    private int nbResources;
+
+    private int[][] capas;
+
+    private int[] cHosts;
+
+    private int[][] cUses;
+
+    private int[][] dUses;
+
+    /**
+     * Generate a random instance with no associations.
+     *
+     * @param rnd the random generator to use
+     */
+    private void makeInstance(Random rnd) {
+        nbResources = 1 + rnd.nextInt(2);
+        int nbDims = 1 + rnd.nextInt(2);
+        int nbCTasks = 1 + rnd.nextInt(2);
+        int nbDTasks = 1 + rnd.nextInt(2);
+        capas = new int[nbDims][nbResources];
+        cUses = new int[nbDims][nbCTasks];
+        dUses = new int[nbDims][nbDTasks];
+        cHosts = new int[nbCTasks];
+        for (int i = 0; i < nbCTasks; i++) {
+            cHosts[i] = rnd.nextInt(nbResources);
+        }
+        for (int d = 0; d < nbDims; d++) {
+            for (int r = 0; r < nbResources; r++) {
+                capas[d][r] = 2 + rnd.nextInt(3);
+            }
+            for (int i = 0; i < nbCTasks; i++) {
+                cUses[d][i] = rnd.nextInt(4);
+            }
+            for (int i = 0; i < nbDTasks; i++) {
+                dUses[d][i] = rnd.nextInt(4);
+            }
+        }
+    }
+
+    /**
+     * Solve the current instance using the constraint and check every solution.
+     *
+     * @param partialFiltering {@code true} to filter the resources and the unplaced dTasks before every dTask is placed
+     * @return the number of solutions
+     */
+    private int solveWithConstraint(boolean partialFiltering) {
+        CPSolver s = new CPSolver();
+        IntDomainVar[] earlyStarts = new IntDomainVar[nbResources];
+        IntDomainVar[] lastEnds = new IntDomainVar[nbResources];
+        for (int r = 0; r < nbResources; r++) {
+            earlyStarts[r] = s.makeConstantIntVar(0);
+            lastEnds[r] = s.makeConstantIntVar(H);
+        }
+        IntDomainVar[] cHosters = new IntDomainVar[cHosts.length];
+        IntDomainVar[] cEnds = new IntDomainVar[cHosts.length];
+        for (int i = 0; i < cHosts.length; i++) {
+            cHosters[i] = s.makeConstantIntVar(cHosts[i]);
+            cEnds[i] = s.createBoundIntVar("cEnd" + i, 0, H);
+        }
+        IntDomainVar[] dHosters = new IntDomainVar[dUses[0].length];
+        IntDomainVar[] dStarts = new IntDomainVar[dUses[0].length];
+        int[] assocs = new int[dHosters.length];
+        Arrays.fill(assocs, LocalTaskScheduler.NO_ASSOCIATIONS);
+        for (int i = 0; i < dHosters.length; i++) {
+            dHosters[i] = s.createEnumIntVar("dHost" + i, 0, nbResources - 1);
+            dStarts[i] = s.createBoundIntVar("dStart" + i, 0, H);
+        }
+        s.post(new TaskScheduler(s.getEnvironment(), earlyStarts, lastEnds, capas,
+                cHosters, cUses, cEnds, dHosters, dUses, dStarts, assocs, partialFiltering));
+        s.getConfiguration().putFalse(Configuration.STOP_AT_FIRST_SOLUTION);
+        int nb = 0;
+        if (s.solve() == Boolean.TRUE) {
+            do {
+                nb++;
+                Assert.assertTrue(isValid(values(cEnds), values(dHosters), values(dStarts)), "invalid solution: "
+                        + Arrays.toString(cEnds) + " " + Arrays.toString(dHosters) + " " + Arrays.toString(dStarts));
+            } while (s.nextSolution() == Boolean.TRUE);
+        }
+        return nb;
+    }
+
+    private static int[] values(IntDomainVar[] vars) {
+        int[] vals = new int[vars.length];
+        for (int i = 0; i < vars.length; i++) {
+            vals[i] = vars[i].getVal();
+        }
+        return vals;
+    }
+
+    /**
+     * Count the solutions of the current instance by enumerating every assignment.
+     *
+     * @return the number of solutions
+     */
+    private int countByEnumeration() {
+        int nbC = cHosts.length;
+        int nbD = dUses[0].length;
+        int[] cEnds = new int[nbC];
+        int[] dHosts = new int[nbD];
+        int[] dStarts = new int[nbD];
+        int nb = 0;
+        int nbCombinations = (int) Math.pow(H + 1, nbC) * (int) Math.pow(nbResources * (H + 1), nbD);
+        for (int k = 0; k < nbCombinations; k++) {
+            int x = k;
+            for (int i = 0; i < nbC; i++) {
+                cEnds[i] = x % (H + 1);
+                x /= H + 1;
+            }
+            for (int i = 0; i < nbD; i++) {
+                dStarts[i] = x % (H + 1);
+                x /= H + 1;
+                dHosts[i] = x % nbResources;
+                x /= nbResources;
+            }
+            if (isValid(cEnds, dHosts, dStarts)) {
+                nb++;
+            }
+        }
+        return nb;
+    }
+
+    /**
+     * Check that no resource is overloaded at any moment.
+     * A cTask uses its resource until it ends, a dTask from its start.
+     */
+    private boolean isValid(int[] cEnds, int[] dHosts, int[] dStarts) {
+        for (int d = 0; d < capas.length; d++) {
+            for (int r = 0; r < nbResources; r++) {
+                for (int t = 0; t <= H; t++) {
+                    int use = 0;
+                    for (int i = 0; i < cEnds.length; i++) {
+                        if (cHosts[i] == r && t < cEnds[i]) {
+                            use += cUses[d][i];
+                        }
+                    }
+                    for (int i = 0; i < dHosts.length; i++) {
+                        if (dHosts[i] == r && t >= dStarts[i]) {
+                            use += dUses[d][i];
+                        }
+                    }
+                    if (use > capas[d][r]) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check the solutions with both filtering levels over random instances.
+     * An instance must be feasible iff a brute-force enumeration finds a valid schedule.
+     */
+    @Test
+    public void testSolutionsAgainstEnumeration() {
+        Random rnd = new Random(0);
+        for (int x = 0; x < 100; x++) {
+            makeInstance(rnd);
+            boolean feasible = countByEnumeration() > 0;
+            Assert.assertEquals(solveWithConstraint(false) > 0, feasible, "basic filtering, instance " + x);
+            Assert.assertEquals(solveWithConstraint(true) > 0, feasible, "timetable filtering, instance " + x);
+        }
+    }
+
+    /**
+     * Reduce the last end of a resource once every dTask is placed.
+     * The resource must be checked again even if the next event concerns another resource.
+     */
+    @Test
+    public void testLastEndSupDecrease() throws ContradictionException {
+        CPSolver s = new CPSolver();
+        IntDomainVar[] earlyStarts = {s.makeConstantIntVar(0), s.makeConstantIntVar(0)};
+        IntDomainVar[] lastEnds = {s.createBoundIntVar("last0", 0, H), s.makeConstantIntVar(H)};
+        IntDomainVar[] cEnds = {s.createBoundIntVar("cEnd0", 2, H)};
+        IntDomainVar[] dHosters = {s.createEnumIntVar("dHost0", 0, 1)};
+        IntDomainVar[] dStarts = {s.createBoundIntVar("dStart0", 0, H)};
+        s.post(new TaskScheduler(s.getEnvironment(), earlyStarts, lastEnds, new int[][]{{2, 2}},
+                new IntDomainVar[]{s.makeConstantIntVar(0)}, new int[][]{{1}}, cEnds,
+                dHosters, new int[][]{{1}}, dStarts, new int[]{LocalTaskScheduler.NO_ASSOCIATIONS}, false));
+        s.propagate();
+        dHosters[0].setVal(1);
+        s.propagate();
+        lastEnds[0].setSup(1);
+        s.propagate();
+        dStarts[0].setVal(0);
+        try {
+            s.propagate();
+            Assert.fail("The cTask ends after the last end of its resource");
+        } catch (ContradictionException e) {
+            //Expected
+        }
+    }
+
+    /**
+     * Place a dTask on a resource that is full until a cTask ends,
+     * while another dTask is not placed yet.
+     *
+     * @param partialFiltering {@code true} to filter the resources and the unplaced dTasks
+     * @return the start of the placed dTask
+     */
+    private static IntDomainVar placeOnFullResource(boolean partialFiltering) throws ContradictionException {
+        CPSolver s = new CPSolver();
+        IntDomainVar[] earlyStarts = {s.makeConstantIntVar(0), s.makeConstantIntVar(0)};
+        IntDomainVar[] lastEnds = {s.makeConstantIntVar(H), s.makeConstantIntVar(H)};
+        IntDomainVar[] cEnds = {s.createBoundIntVar("cEnd0", 2, 2)};
+        IntDomainVar[] dHosters = {s.createEnumIntVar("dHost0", 0, 1), s.createEnumIntVar("dHost1", 0, 1)};
+        IntDomainVar[] dStarts = {s.createBoundIntVar("dStart0", 0, H), s.createBoundIntVar("dStart1", 0, H)};
+        int[] assocs = {LocalTaskScheduler.NO_ASSOCIATIONS, LocalTaskScheduler.NO_ASSOCIATIONS};
+        s.post(new TaskScheduler(s.getEnvironment(), earlyStarts, lastEnds, new int[][]{{2, 2}},
+                new IntDomainVar[]{s.makeConstantIntVar(0)}, new int[][]{{2}}, cEnds,
+                dHosters, new int[][]{{1, 1}}, dStarts, assocs, partialFiltering));
+        s.propagate();
+        dHosters[0].setVal(0);
+        s.propagate();
+        return dStarts[0];
+    }
+
+    /**
+     * The timetable filtering delays a placed dTask until its resource has enough free space,
+     * while the basic filtering waits for every dTask to be placed.
+     */
+    @Test
+    public void testTimetablePrunesBeforeFullPlacement() throws ContradictionException {
+        Assert.assertEquals(placeOnFullResource(false).getInf(), 0);
+        Assert.assertEquals(placeOnFullResource(true).getInf(), 2);
+    }
+
+    /**
+     * Two dTasks that are not placed yet. Resource 0 is full until a cTask ends at 2,
+     * resource 1 is free but too small for the second dTask.
+     *
+     * @param partialFiltering {@code true} to filter the resources and the unplaced dTasks
+     * @return the hosting variables then the start variables of the dTasks
+     */
+    private static IntDomainVar[] unplacedOnFullResource(boolean partialFiltering) throws ContradictionException {
+        CPSolver s = new CPSolver();
+        IntDomainVar[] earlyStarts = {s.makeConstantIntVar(0), s.makeConstantIntVar(0)};
+        IntDomainVar[] lastEnds = {s.makeConstantIntVar(H), s.makeConstantIntVar(H)};
+        IntDomainVar[] cEnds = {s.createBoundIntVar("cEnd0", 2, 2)};
+        IntDomainVar[] dHosters = {s.createEnumIntVar("dHost0", 0, 1), s.createEnumIntVar("dHost1", 0, 1)};
+        IntDomainVar[] dStarts = {s.createBoundIntVar("dStart0", 0, 1), s.createBoundIntVar("dStart1", 0, H)};
+        int[] assocs = {LocalTaskScheduler.NO_ASSOCIATIONS, LocalTaskScheduler.NO_ASSOCIATIONS};
+        s.post(new TaskScheduler(s.getEnvironment(), earlyStarts, lastEnds, new int[][]{{2, 1}},
+                new IntDomainVar[]{s.makeConstantIntVar(0)}, new int[][]{{2}}, cEnds,
+                dHosters, new int[][]{{1, 2}}, dStarts, assocs, partialFiltering));
+        s.propagate();
+        return new IntDomainVar[]{dHosters[0], dHosters[1], dStarts[0], dStarts[1]};
+    }
+
+    /**
+     * The timetable filtering removes the resources an unplaced dTask cannot reach on time
+     * and delays its start to the earliest start among its remaining resources.
+     * The basic filtering does nothing until every dTask is placed.
+     */
+    @Test
+    public void testTimetableFiltersUnplacedDTasks() throws ContradictionException {
+        IntDomainVar[] basic = unplacedOnFullResource(false);
+        Assert.assertEquals(basic[0].getDomainSize(), 2);
+        Assert.assertEquals(basic[1].getDomainSize(), 2);
+        Assert.assertEquals(basic[3].getInf(), 0);
+
+        IntDomainVar[] tt = unplacedOnFullResource(true);
+        //dTask 0 must start before 1: resource 0 is full until 2
+        Assert.assertTrue(tt[0].isInstantiated());
+        Assert.assertEquals(tt[0].getVal(), 1);
+        //dTask 1 does not fit on resource 1, resource 0 is free from 2
+        Assert.assertTrue(tt[1].isInstantiated());
+        Assert.assertEquals(tt[1].getVal(), 0);
+        Assert.assertEquals(tt[3].getInf(), 2);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.solver.choco.chocoUtil;
+
+import choco.cp.solver.CPSolver;
+import choco.cp.solver.search.BranchingFactory;
+import choco.kernel.solver.Configuration;
+import choco.kernel.solver.variables.integer.IntDomainVar;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+/**
+ * Unit tests for {@link VectorPacking}.
+ *
+ * @author Fabien Hermenier
+ */
+public class VectorPackingTest {
+
+    private CPSolver s;
+
+    private IntDomainVar[] bins;
+
+    private void modelPack(int nBins, int[] capas, int[][] heights) {
+        modelPack(nBins, capas, heights, true);
+    }
+
+    /**
+     * Model a packing problem.
+     *
+     * @param nBins   the number of bins
+     * @param capas   the capacity of the bins for each dimension
+     * @param heights the size of the items for each dimension
+     * @param vector  {@code true} to use a {@link VectorPacking}, {@code false} to use a {@link LightBinPacking} per dimension
+     */
+    private void modelPack(int nBins, int[] capas, int[][] heights, boolean vector) {
+        s = new CPSolver();
+        int nItems = heights[0].length;
+        IntDomainVar[][] loads = new IntDomainVar[capas.length][nBins];
+        IntDomainVar[][] sizes = new IntDomainVar[capas.length][nItems];
+        bins = new IntDomainVar[nItems];
+        for (int d = 0; d < capas.length; d++) {
+            for (int b = 0; b < nBins; b++) {
+                loads[d][b] = s.createBoundIntVar("l" + d + "." + b, 0, capas[d]);
+            }
+            for (int i = 0; i < nItems; i++) {
+                sizes[d][i] = s.createIntegerConstant("s" + d + "." + i, heights[d][i]);
+            }
+        }
+        for (int i = 0; i < nItems; i++) {
+            bins[i] = s.createEnumIntVar("b" + i, 0, nBins - 1);
+        }
+        if (vector) {
+            s.post(new VectorPacking(s.getEnvironment(), loads, sizes, bins));
+        } else {
+            for (int d = 0; d < capas.length; d++) {
+                s.post(new LightBinPacking(s.getEnvironment(), loads[d], sizes[d], bins));
+            }
+        }
+        s.addGoal(BranchingFactory.minDomMinVal(s, bins));
+        s.getConfiguration().putFalse(Configuration.STOP_AT_FIRST_SOLUTION);
+        s.generateSearchStrategy();
+    }
+
+    @Test
+    public void testSolutionCount() {
+        //The 3 items cannot be on a same bin (1st dimension).
+        //The 2 last items cannot be on a same bin (2nd dimension).
+        //27 assignments - 9 where the 2 last items are together.
+        modelPack(3, new int[]{4, 4}, new int[][]{{2, 2, 2}, {1, 3, 3}});
+        s.launch();
+        Assert.assertTrue(s.isFeasible());
+        Assert.assertEquals(s.getNbSolutions(), 18);
+    }
+
+    @Test
+    public void testUnfeasibleDueToOneDimension() {
+        //Fine on the first dimension, each item needs a whole bin in the second one
+        modelPack(2, new int[]{10, 3}, new int[][]{{1, 1, 1}, {2, 2, 2}});
+        s.launch();
+        Assert.assertFalse(s.isFeasible());
+    }
+
+    /**
+     * Check the constraint computes the same solutions than one
+     * {@link LightBinPacking} per dimension.
+     */
+    @Test
+    public void testSameSolutionsThanLightBinPacking() {
+        Random rnd = new Random(0);
+        for (int x = 0; x < 50; x++) {
+            int nBins = 2 + rnd.nextInt(3);
+            int nItems = 2 + rnd.nextInt(5);
+            int[] capas = {2 + rnd.nextInt(6), 2 + rnd.nextInt(6)};
+            int[][] heights = new int[capas.length][nItems];
+            for (int d = 0; d < capas.length; d++) {
+                for (int i = 0; i < nItems; i++) {
+                    heights[d][i] = rnd.nextInt(4);
+                }
+            }
+            modelPack(nBins, capas, heights, false);
+            s.launch();
+            int expected = s.getNbSolutions();
+            modelPack(nBins, capas, heights, true);
+            s.launch();
+            Assert.assertEquals(s.getNbSolutions(), expected);
+        }
+    }
+}
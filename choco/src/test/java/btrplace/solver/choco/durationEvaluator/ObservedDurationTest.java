@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.solver.choco.durationEvaluator;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.UUID;
+
+/**
+ * Unit tests for {@link ObservedDuration}.
+ *
+ * @author Fabien Hermenier
+ */
+public class ObservedDurationTest {
+
+    @Test
+    public void testObservations() {
+        UUID e1 = UUID.randomUUID();
+        UUID e2 = UUID.randomUUID();
+        ObservedDuration od = new ObservedDuration(new ConstantDuration(5));
+        Assert.assertEquals(od.evaluate(e1), 5);
+        od.observe(e1, 10);
+        Assert.assertEquals(od.evaluate(e1), 10);
+        od.observe(e1, 4);
+        Assert.assertEquals(od.evaluate(e1), 7);
+        Assert.assertEquals(od.evaluate(e2), 5);
+        Assert.assertNotNull(od.toString());
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.executor;
+
+import btrplace.plan.Action;
+
+/**
+ * A driver performs the actions on the infrastructure.
+ * The drivers are called concurrently by the workers of a {@link PlanExecutor}
+ * so they must be thread-safe.
+ *
+ * @author Fabien Hermenier
+ */
+public interface ActionDriver {
+
+    /**
+     * Perform an action and wait for its termination.
+     *
+     * @param a the action to perform
+     * @return {@code true} iff the action succeeded
+     * @throws Exception if an error occurred while performing the action. The action is then considered as failed
+     */
+    boolean execute(Action a) throws Exception;
+}
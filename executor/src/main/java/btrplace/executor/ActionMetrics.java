@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.executor;
+
+/**
+ * Metrics about the executions of a type of action.
+ * The duration of an action is the time the driver needed to perform it.
+ * Its latency is the time between the moment the action was ready to be
+ * executed and its termination, so it includes the time waiting for a worker
+ * or for the concurrency limits.
+ * All the times are expressed in milliseconds.
+ *
+ * @author Fabien Hermenier
+ */
+public class ActionMetrics {
+
+    private int count = 0;
+
+    private int failures = 0;
+
+    private long totalDuration = 0;
+
+    private long minDuration = Long.MAX_VALUE;
+
+    private long maxDuration = 0;
+
+    private long totalLatency = 0;
+
+    private long maxLatency = 0;
+
+    /**
+     * Record the execution of an action.
+     *
+     * @param success  {@code true} iff the action succeeded
+     * @param duration the action duration
+     * @param latency  the action latency
+     */
+    void record(boolean success, long duration, long latency) {
+        count++;
+        if (!success) {
+            failures++;
+        }
+        totalDuration += duration;
+        minDuration = Math.min(minDuration, duration);
+        maxDuration = Math.max(maxDuration, duration);
+        totalLatency += latency;
+        maxLatency = Math.max(maxLatency, latency);
+    }
+
+    /**
+     * Get the number of executed actions, including the failed ones.
+     *
+     * @return a positive integer
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the number of actions that failed.
+     *
+     * @return a positive integer
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * Get the average duration of the actions.
+     *
+     * @return a positive number. {@code 0} if no action was executed
+     */
+    public double getMeanDuration() {
+        return count == 0 ? 0 : (double) totalDuration / count;
+    }
+
+    /**
+     * Get the duration of the shortest action.
+     *
+     * @return a positive number. {@code 0} if no action was executed
+     */
+    public long getMinDuration() {
+        return count == 0 ? 0 : minDuration;
+    }
+
+    /**
+     * Get the duration of the longest action.
+     *
+     * @return a positive number
+     */
+    public long getMaxDuration() {
+        return maxDuration;
+    }
+
+    /**
+     * Get the average latency of the actions.
+     *
+     * @return a positive number. {@code 0} if no action was executed
+     */
+    public double getMeanLatency() {
+        return count == 0 ? 0 : (double) totalLatency / count;
+    }
+
+    /**
+     * Get the highest latency.
+     *
+     * @return a positive number
+     */
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder("count=").append(count)
+                .append(", failures=").append(failures)
+                .append(", duration(min/mean/max)=").append(getMinDuration()).append('/').append(getMeanDuration()).append('/').append(maxDuration)
+                .append(", latency(mean/max)=").append(getMeanLatency()).append('/').append(maxLatency).toString();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.executor;
+
+import btrplace.plan.Action;
+import btrplace.plan.NodeEvent;
+import btrplace.plan.VMEvent;
+import btrplace.solver.choco.DurationEvaluator;
+import btrplace.solver.choco.DurationEvaluators;
+import btrplace.solver.choco.durationEvaluator.ObservedDuration;
+
+import java.util.UUID;
+
+/**
+ * A listener that reports the duration of the executed actions
+ * to the {@link DurationEvaluators} used by the solver, so the next plans
+ * rely on the observed durations.
+ * <p/>
+ * The first time an action type is observed, its evaluator is wrapped into an {@link ObservedDuration}.
+ * The durations are converted into the time unit of the plans. Only the successful actions are considered.
+ *
+ * @author Fabien Hermenier
+ */
+public class DurationFeedback implements ExecutionListener {
+
+    private DurationEvaluators evaluators;
+
+    private long msPerUnit;
+
+    /**
+     * Make a new listener.
+     *
+     * @param evs the evaluators to update
+     * @param ms  the number of milliseconds that represents one unit of time in the plans
+     */
+    public DurationFeedback(DurationEvaluators evs, long ms) {
+        this.evaluators = evs;
+        this.msPerUnit = ms;
+    }
+
+    @Override
+    public void onStart(Action a) {
+    }
+
+    @Override
+    public void onEnd(Action a, boolean success, long duration) {
+        UUID e;
+        if (a instanceof VMEvent) {
+            e = ((VMEvent) a).getVM();
+        } else if (a instanceof NodeEvent) {
+            e = ((NodeEvent) a).getNode();
+        } else {
+            return;
+        }
+        if (!success) {
+            return;
+        }
+        synchronized (evaluators) {
+            DurationEvaluator ev = evaluators.getEvaluator(a.getClass());
+            if (ev == null) {
+                return;
+            }
+            ObservedDuration od;
+            if (ev instanceof ObservedDuration) {
+                od = (ObservedDuration) ev;
+            } else {
+                od = new ObservedDuration(ev);
+                evaluators.register(a.getClass(), od);
+            }
+            od.observe(e, (int) Math.max(1, Math.round((double) duration / msPerUnit)));
+        }
+    }
+}
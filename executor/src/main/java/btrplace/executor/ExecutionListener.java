@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.executor;
+
+import btrplace.plan.Action;
+
+/**
+ * A listener to be notified by a {@link PlanExecutor} about the execution of the actions.
+ * The notifications are performed by the thread that called
+ * {@link PlanExecutor#execute(btrplace.plan.ReconfigurationPlan)}.
+ *
+ * @author Fabien Hermenier
+ */
+public interface ExecutionListener {
+
+    /**
+     * Notify an action has been dispatched to a worker.
+     *
+     * @param a the action
+     */
+    void onStart(Action a);
+
+    /**
+     * Notify an action has terminated.
+     *
+     * @param a        the action
+     * @param success  {@code true} iff the action succeeded
+     * @param duration the duration of the action, in milliseconds
+     */
+    void onEnd(Action a, boolean success, long duration);
+}
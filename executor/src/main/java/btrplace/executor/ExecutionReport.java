@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.executor;
+
+import btrplace.plan.Action;
+import btrplace.plan.ReconfigurationPlan;
+
+import java.util.*;
+
+/**
+ * The report of the execution of a reconfiguration plan.
+ * The execution stops dispatching actions at the first failure,
+ * so the report distinguishes the actions that succeeded, failed, or
+ * that were not executed.
+ *
+ * @author Fabien Hermenier
+ */
+public class ExecutionReport {
+
+    private ReconfigurationPlan plan;
+
+    private List<Action> succeeded;
+
+    private Map<Action, Throwable> failed;
+
+    private Map<Class<? extends Action>, ActionMetrics> metrics;
+
+    private long duration;
+
+    /**
+     * Make a new report.
+     *
+     * @param p the executed plan
+     */
+    ExecutionReport(ReconfigurationPlan p) {
+        this.plan = p;
+        succeeded = new ArrayList<Action>(p.getSize());
+        failed = new LinkedHashMap<Action, Throwable>();
+        metrics = new HashMap<Class<? extends Action>, ActionMetrics>();
+    }
+
+    /**
+     * Record the termination of an action.
+     *
+     * @param a        the action
+     * @param success  {@code true} iff the action succeeded
+     * @param err      the error that made the action fail, if any
+     * @param duration the action duration in milliseconds
+     * @param latency  the action latency in milliseconds
+     */
+    void record(Action a, boolean success, Throwable err, long duration, long latency) {
+        if (success) {
+            succeeded.add(a);
+        } else {
+            failed.put(a, err);
+        }
+        ActionMetrics m = metrics.get(a.getClass());
+        if (m == null) {
+            m = new ActionMetrics();
+            metrics.put(a.getClass(), m);
+        }
+        m.record(success, duration, latency);
+    }
+
+    /**
+     * Set the duration of the whole execution.
+     *
+     * @param d the duration in milliseconds
+     */
+    void setDuration(long d) {
+        this.duration = d;
+    }
+
+    /**
+     * Get the executed plan.
+     *
+     * @return the plan
+     */
+    public ReconfigurationPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Check if all the actions succeeded.
+     *
+     * @return {@code true} iff every action of the plan succeeded
+     */
+    public boolean isSuccessful() {
+        return succeeded.size() == plan.getSize();
+    }
+
+    /**
+     * Get the actions that succeeded.
+     *
+     * @return the actions, in their termination order
+     */
+    public List<Action> getSucceededActions() {
+        return Collections.unmodifiableList(succeeded);
+    }
+
+    /**
+     * Get the actions that failed.
+     *
+     * @return the actions, in their termination order
+     */
+    public Set<Action> getFailedActions() {
+        return Collections.unmodifiableSet(failed.keySet());
+    }
+
+    /**
+     * Get the error that made an action fail.
+     *
+     * @param a the failed action
+     * @return the error if the driver signaled one, {@code null} otherwise
+     */
+    public Throwable getError(Action a) {
+        return failed.get(a);
+    }
+
+    /**
+     * Get the actions that were not executed due to a failure.
+     *
+     * @return the actions, in the plan ordering
+     */
+    public List<Action> getSkippedActions() {
+        List<Action> l = new ArrayList<Action>();
+        Set<Action> done = new HashSet<Action>(succeeded);
+        for (Action a : plan) {
+            if (!done.contains(a) && !failed.containsKey(a)) {
+                l.add(a);
+            }
+        }
+        return l;
+    }
+
+    /**
+     * Get the duration of the execution.
+     *
+     * @return the duration in milliseconds
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * Get the metrics for each type of executed action.
+     *
+     * @return a map indexed by the action classes
+     */
+    public Map<Class<? extends Action>, ActionMetrics> getMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * Get the metrics for a type of action.
+     *
+     * @param cl the action class
+     * @return the metrics, {@code null} if no action of this type was executed
+     */
+    public ActionMetrics getMetrics(Class<? extends Action> cl) {
+        return metrics.get(cl);
+    }
+
+    /**
+     * Get the number of actions of a given type that were executed per second.
+     *
+     * @param cl the action class
+     * @return a positive number
+     */
+    public double getThroughput(Class<? extends Action> cl) {
+        ActionMetrics m = metrics.get(cl);
+        if (m == null || duration == 0) {
+            return 0;
+        }
+        return m.getCount() * 1000d / duration;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        b.append(succeeded.size()).append(" succeeded, ").append(failed.size()).append(" failed, ")
+                .append(plan.getSize() - succeeded.size() - failed.size()).append(" skipped in ").append(duration).append(" ms\n");
+        for (Map.Entry<Class<? extends Action>, ActionMetrics> e : metrics.entrySet()) {
+            b.append(e.getKey().getSimpleName()).append(": ").append(e.getValue()).append('\n');
+        }
+        return b.toString();
+    }
+}
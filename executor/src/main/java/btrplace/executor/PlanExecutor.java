@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.executor;
+
+import btrplace.plan.Action;
+import btrplace.plan.DependencyGraph;
+import btrplace.plan.ReconfigurationPlan;
+import btrplace.plan.event.MigrateVM;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Execute a reconfiguration plan on a pool of workers.
+ * <p/>
+ * The actions are dispatched as soon as the actions they depend on are terminated,
+ * according to the {@link DependencyGraph} of the plan, and once every action that ends
+ * at or before their start moment in the plan is terminated. This time frontier honors
+ * the orderings that do not come from a shared VM or node, for example the ones
+ * stated by a constraint over several nodes. Among the ready actions,
+ * the ones that start first in the plan are dispatched first.
+ * The number of migrations that are performed concurrently can be limited per node, for the
+ * source and the destination nodes, and per network link, between the source and the destination nodes.
+ * <p/>
+ * At the first failure, no more actions are dispatched and the execution terminates
+ * once the running actions are terminated.
+ *
+ * @author Fabien Hermenier
+ */
+public class PlanExecutor {
+
+    private static Comparator<Action> startFirstComparator = new Comparator<Action>() {
+        @Override
+        public int compare(Action a1, Action a2) {
+            return a1.getStart() - a2.getStart();
+        }
+    };
+
+    private ActionDriver driver;
+
+    private int nbWorkers;
+
+    private int maxMigrationsPerNode = Integer.MAX_VALUE;
+
+    private int maxMigrationsPerLink = Integer.MAX_VALUE;
+
+    private List<ExecutionListener> listeners;
+
+    /**
+     * Make a new executor.
+     *
+     * @param d  the driver to perform the actions
+     * @param nb the number of workers, so the maximum number of actions executed concurrently
+     */
+    public PlanExecutor(ActionDriver d, int nb) {
+        if (nb < 1) {
+            throw new IllegalArgumentException("At least one worker is required");
+        }
+        this.driver = d;
+        this.nbWorkers = nb;
+        this.listeners = new ArrayList<ExecutionListener>();
+    }
+
+    /**
+     * Get the number of workers.
+     *
+     * @return a positive integer
+     */
+    public int getNbWorkers() {
+        return nbWorkers;
+    }
+
+    /**
+     * Limit the number of migrations that involve a node concurrently,
+     * as a source or as a destination.
+     *
+     * @param n a strictly positive number
+     */
+    public void setMaxMigrationsPerNode(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("The limit must be strictly positive");
+        }
+        maxMigrationsPerNode = n;
+    }
+
+    /**
+     * Get the maximum number of migrations that involve a node concurrently.
+     *
+     * @return a strictly positive number. {@link Integer#MAX_VALUE} if there is no limit
+     */
+    public int getMaxMigrationsPerNode() {
+        return maxMigrationsPerNode;
+    }
+
+    /**
+     * Limit the number of migrations that are performed concurrently
+     * between two nodes, whatever the direction.
+     *
+     * @param n a strictly positive number
+     */
+    public void setMaxMigrationsPerLink(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("The limit must be strictly positive");
+        }
+        maxMigrationsPerLink = n;
+    }
+
+    /**
+     * Get the maximum number of migrations that are performed concurrently between two nodes.
+     *
+     * @return a strictly positive number. {@link Integer#MAX_VALUE} if there is no limit
+     */
+    public int getMaxMigrationsPerLink() {
+        return maxMigrationsPerLink;
+    }
+
+    /**
+     * Add a listener.
+     *
+     * @param l the listener to add
+     */
+    public void addListener(ExecutionListener l) {
+        listeners.add(l);
+    }
+
+    /**
+     * Remove a listener.
+     *
+     * @param l the listener to remove
+     * @return {@code true} iff the listener was registered
+     */
+    public boolean removeListener(ExecutionListener l) {
+        return listeners.remove(l);
+    }
+
+    /**
+     * Execute a plan.
+     *
+     * @param p the plan to execute
+     * @return the execution report
+     * @throws InterruptedException if the thread was interrupted while waiting for the workers.
+     *                              The running actions are then interrupted
+     */
+    public ExecutionReport execute(ReconfigurationPlan p) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(nbWorkers);
+        try {
+            return execute(p, pool);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Get the moment from which an action that is not terminated delays the other actions.
+     * An action delays the actions that start at or after its end moment. An action without duration
+     * only delays the actions that start after it, so it does not delay the actions that start with it.
+     *
+     * @param a the action
+     * @return the moment
+     */
+    private static int frontier(Action a) {
+        return a.getStart() < a.getEnd() ? a.getEnd() : a.getEnd() + 1;
+    }
+
+    private static void add(TreeMap<Integer, Integer> m, int k, int v) {
+        int c = m.containsKey(k) ? m.get(k) + v : v;
+        if (c == 0) {
+            m.remove(k);
+        } else {
+            m.put(k, c);
+        }
+    }
+
+    private ExecutionReport execute(ReconfigurationPlan p, ExecutorService pool) throws InterruptedException {
+        DependencyGraph.Progress progress = p.getDependencyGraph().newProgress();
+        //The number of actions not terminated, by frontier
+        TreeMap<Integer, Integer> unterminated = new TreeMap<Integer, Integer>();
+        for (Action a : p) {
+            add(unterminated, frontier(a), 1);
+        }
+        CompletionService<Outcome> workers = new ExecutorCompletionService<Outcome>(pool);
+        ExecutionReport report = new ExecutionReport(p);
+        Map<UUID, Integer> perNode = new HashMap<UUID, Integer>();
+        Map<List<UUID>, Integer> perLink = new HashMap<List<UUID>, Integer>();
+        Map<Action, Long> readySince = new HashMap<Action, Long>();
+
+        long st = System.currentTimeMillis();
+        List<Action> ready = new ArrayList<Action>(progress.getInitialActions());
+        for (Action a : ready) {
+            readySince.put(a, st);
+        }
+        int running = 0;
+        boolean failure = false;
+        while (true) {
+            if (!failure) {
+                Collections.sort(ready, startFirstComparator);
+                for (Iterator<Action> ite = ready.iterator(); ite.hasNext() && running < nbWorkers; ) {
+                    Action a = ite.next();
+                    if (!unterminated.isEmpty() && unterminated.firstKey() <= a.getStart()) {
+                        //An earlier action is not terminated, neither for the next ready actions
+                        break;
+                    }
+                    if (acquire(a, perNode, perLink)) {
+                        ite.remove();
+                        for (ExecutionListener l : listeners) {
+                            l.onStart(a);
+                        }
+                        workers.submit(new Worker(a));
+                        running++;
+                    }
+                }
+            }
+            if (running == 0) {
+                break;
+            }
+            Outcome o;
+            try {
+                o = workers.take().get();
+            } catch (ExecutionException e) {
+                //Workers catch every exception
+                throw new IllegalStateException(e.getCause());
+            }
+            running--;
+            release(o.action, perNode, perLink);
+            long now = System.currentTimeMillis();
+            report.record(o.action, o.success, o.error, o.duration, now - readySince.remove(o.action));
+            for (ExecutionListener l : listeners) {
+                l.onEnd(o.action, o.success, o.duration);
+            }
+            if (o.success) {
+                add(unterminated, frontier(o.action), -1);
+                for (Action a : progress.terminate(o.action)) {
+                    ready.add(a);
+                    readySince.put(a, now);
+                }
+            } else {
+                failure = true;
+            }
+        }
+        report.setDuration(System.currentTimeMillis() - st);
+        return report;
+    }
+
+    private static List<UUID> link(MigrateVM m) {
+        UUID src = m.getSourceNode();
+        UUID dst = m.getDestinationNode();
+        return src.compareTo(dst) < 0 ? Arrays.asList(src, dst) : Arrays.asList(dst, src);
+    }
+
+    /**
+     * Reserve the capacities for an action, if possible.
+     *
+     * @return {@code true} iff the action can be executed
+     */
+    private boolean acquire(Action a, Map<UUID, Integer> perNode, Map<List<UUID>, Integer> perLink) {
+        if (!(a instanceof MigrateVM)) {
+            return true;
+        }
+        MigrateVM m = (MigrateVM) a;
+        List<UUID> l = link(m);
+        if (count(perNode, m.getSourceNode()) >= maxMigrationsPerNode
+                || count(perNode, m.getDestinationNode()) >= maxMigrationsPerNode
+                || count(perLink, l) >= maxMigrationsPerLink) {
+            return false;
+        }
+        perNode.put(m.getSourceNode(), count(perNode, m.getSourceNode()) + 1);
+        perNode.put(m.getDestinationNode(), count(perNode, m.getDestinationNode()) + 1);
+        perLink.put(l, count(perLink, l) + 1);
+        return true;
+    }
+
+    private void release(Action a, Map<UUID, Integer> perNode, Map<List<UUID>, Integer> perLink) {
+        if (a instanceof MigrateVM) {
+            MigrateVM m = (MigrateVM) a;
+            perNode.put(m.getSourceNode(), count(perNode, m.getSourceNode()) - 1);
+            perNode.put(m.getDestinationNode(), count(perNode, m.getDestinationNode()) - 1);
+            List<UUID> l = link(m);
+            perLink.put(l, count(perLink, l) - 1);
+        }
+    }
+
+    private static <K> int count(Map<K, Integer> m, K k) {
+        Integer c = m.get(k);
+        return c == null ? 0 : c;
+    }
+
+    /**
+     * The result of an action executed by a worker.
+     */
+    private static class Outcome {
+
+        private Action action;
+
+        private boolean success;
+
+        private Throwable error;
+
+        private long duration;
+
+        public Outcome(Action a, boolean ok, Throwable err, long d) {
+            this.action = a;
+            this.success = ok;
+            this.error = err;
+            this.duration = d;
+        }
+    }
+
+    /**
+     * Execute an action using the driver.
+     */
+    private class Worker implements Callable<Outcome> {
+
+        private Action action;
+
+        public Worker(Action a) {
+            this.action = a;
+        }
+
+        @Override
+        public Outcome call() {
+            long st = System.currentTimeMillis();
+            boolean ok = false;
+            Throwable err = null;
+            try {
+                ok = driver.execute(action);
+            } catch (Exception e) {
+                err = e;
+            }
+            return new Outcome(action, ok, err, System.currentTimeMillis() - st);
+        }
+    }
+}
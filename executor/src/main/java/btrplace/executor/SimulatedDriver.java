@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.executor;
+
+import btrplace.plan.Action;
+
+/**
+ * A driver that simulates the actions locally.
+ * Each action lasts its theoretical duration, scaled to a number of milliseconds
+ * per time unit, and succeeds. This allows to test an execution offline.
+ *
+ * @author Fabien Hermenier
+ */
+public class SimulatedDriver implements ActionDriver {
+
+    private long msPerUnit;
+
+    /**
+     * Make a new driver.
+     *
+     * @param ms the number of milliseconds that represents one unit of time in the plans
+     */
+    public SimulatedDriver(long ms) {
+        this.msPerUnit = ms;
+    }
+
+    /**
+     * Get the number of milliseconds that represents one unit of time in the plans.
+     *
+     * @return a positive number
+     */
+    public long getTimeUnit() {
+        return msPerUnit;
+    }
+
+    @Override
+    public boolean execute(Action a) throws InterruptedException {
+        long d = (a.getEnd() - a.getStart()) * msPerUnit;
+        if (d > 0) {
+            Thread.sleep(d);
+        }
+        return true;
+    }
+}
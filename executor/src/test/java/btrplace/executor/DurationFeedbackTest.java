@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.executor;
+
+import btrplace.model.DefaultMapping;
+import btrplace.model.DefaultModel;
+import btrplace.model.Mapping;
+import btrplace.plan.DefaultReconfigurationPlan;
+import btrplace.plan.ReconfigurationPlan;
+import btrplace.plan.event.BootNode;
+import btrplace.plan.event.MigrateVM;
+import btrplace.plan.event.ShutdownVM;
+import btrplace.solver.choco.DurationEvaluators;
+import btrplace.solver.choco.durationEvaluator.ObservedDuration;
+import btrplace.test.PremadeElements;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for {@link DurationFeedback}.
+ *
+ * @author Fabien Hermenier
+ */
+public class DurationFeedbackTest implements PremadeElements {
+
+    @Test
+    public void testFeedback() throws Exception {
+        DurationEvaluators evs = new DurationEvaluators();
+        evs.unregister(ShutdownVM.class);
+        DurationFeedback fb = new DurationFeedback(evs, 10);
+        fb.onEnd(new MigrateVM(vm1, n1, n2, 0, 1), true, 52);
+        Assert.assertTrue(evs.getEvaluator(MigrateVM.class) instanceof ObservedDuration);
+        Assert.assertEquals(evs.evaluate(MigrateVM.class, vm1), 5);
+        Assert.assertEquals(evs.evaluate(MigrateVM.class, vm2), 1);
+
+        fb.onEnd(new BootNode(n1, 0, 1), true, 3);
+        Assert.assertEquals(evs.evaluate(BootNode.class, n1), 1);
+
+        //Failures are ignored
+        fb.onEnd(new MigrateVM(vm2, n1, n2, 0, 1), false, 500);
+        Assert.assertEquals(evs.evaluate(MigrateVM.class, vm2), 1);
+
+        //No evaluator, nothing to update
+        fb.onEnd(new ShutdownVM(vm3, n1, 0, 1), true, 100);
+        Assert.assertFalse(evs.isRegistered(ShutdownVM.class));
+    }
+
+    @Test
+    public void testWithSimulatedExecution() throws InterruptedException {
+        DurationEvaluators evs = new DurationEvaluators();
+        PlanExecutor exec = new PlanExecutor(new SimulatedDriver(20), 2);
+        exec.addListener(new DurationFeedback(evs, 10));
+        Mapping map = new DefaultMapping();
+        map.addOnlineNode(n1);
+        map.addOnlineNode(n2);
+        map.addRunningVM(vm1, n1);
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(new DefaultModel(map));
+        p.add(new MigrateVM(vm1, n1, n2, 0, 1));
+        Assert.assertTrue(exec.execute(p).isSuccessful());
+        //The simulated migration lasted 20 ms, so 2 units of time
+        Assert.assertTrue(evs.getEvaluator(MigrateVM.class).evaluate(vm1) >= 2);
+    }
+}
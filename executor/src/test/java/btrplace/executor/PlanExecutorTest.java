@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.executor;
+
+import btrplace.model.DefaultMapping;
+import btrplace.model.DefaultModel;
+import btrplace.model.Mapping;
+import btrplace.model.Model;
+import btrplace.plan.Action;
+import btrplace.plan.DefaultReconfigurationPlan;
+import btrplace.plan.ReconfigurationPlan;
+import btrplace.plan.event.BootNode;
+import btrplace.plan.event.MigrateVM;
+import btrplace.plan.event.ShutdownNode;
+import btrplace.test.PremadeElements;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for {@link PlanExecutor}.
+ *
+ * @author Fabien Hermenier
+ */
+public class PlanExecutorTest implements PremadeElements {
+
+    /**
+     * Boot n3, then migrate 3 VMs from n1 to n3 and 1 VM from n2 to n3, then shutdown n1.
+     */
+    private static ReconfigurationPlan makePlan() {
+        Mapping map = new DefaultMapping();
+        map.addOnlineNode(n1);
+        map.addOnlineNode(n2);
+        map.addOfflineNode(n3);
+        map.addRunningVM(vm1, n1);
+        map.addRunningVM(vm2, n1);
+        map.addRunningVM(vm3, n1);
+        map.addRunningVM(vm4, n2);
+        Model mo = new DefaultModel(map);
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(mo);
+        p.add(new BootNode(n3, 0, 2));
+        p.add(new MigrateVM(vm1, n1, n3, 2, 4));
+        p.add(new MigrateVM(vm2, n1, n3, 2, 4));
+        p.add(new MigrateVM(vm3, n1, n3, 2, 4));
+        p.add(new MigrateVM(vm4, n2, n3, 2, 4));
+        p.add(new ShutdownNode(n1, 4, 5));
+        return p;
+    }
+
+    /**
+     * A driver that checks the dependencies are terminated and counts the migrations.
+     */
+    private static class CheckingDriver extends SimulatedDriver {
+
+        private ReconfigurationPlan plan;
+
+        private Set<Action> terminated = Collections.newSetFromMap(new ConcurrentHashMap<Action, Boolean>());
+
+        private Map<UUID, AtomicInteger> perNode = new ConcurrentHashMap<UUID, AtomicInteger>();
+
+        private AtomicInteger maxPerNode = new AtomicInteger(0);
+
+        private AtomicInteger running = new AtomicInteger(0);
+
+        private AtomicInteger maxRunning = new AtomicInteger(0);
+
+        private volatile boolean consistent = true;
+
+        public CheckingDriver(ReconfigurationPlan p) {
+            super(5);
+            this.plan = p;
+            for (UUID n : p.getOrigin().getMapping().getAllNodes()) {
+                perNode.put(n, new AtomicInteger(0));
+            }
+        }
+
+        private static void max(AtomicInteger m, int v) {
+            int cur = m.get();
+            while (v > cur && !m.compareAndSet(cur, v)) {
+                cur = m.get();
+            }
+        }
+
+        @Override
+        public boolean execute(Action a) throws InterruptedException {
+            if (!terminated.containsAll(plan.getDependencyGraph().getDependencies(a))) {
+                consistent = false;
+            }
+            max(maxRunning, running.incrementAndGet());
+            if (a instanceof MigrateVM) {
+                max(maxPerNode, perNode.get(((MigrateVM) a).getSourceNode()).incrementAndGet());
+                max(maxPerNode, perNode.get(((MigrateVM) a).getDestinationNode()).incrementAndGet());
+            }
+            boolean ret = super.execute(a);
+            if (a instanceof MigrateVM) {
+                perNode.get(((MigrateVM) a).getSourceNode()).decrementAndGet();
+                perNode.get(((MigrateVM) a).getDestinationNode()).decrementAndGet();
+            }
+            running.decrementAndGet();
+            terminated.add(a);
+            return ret;
+        }
+    }
+
+    @Test
+    public void testExecution() throws InterruptedException {
+        ReconfigurationPlan p = makePlan();
+        CheckingDriver d = new CheckingDriver(p);
+        PlanExecutor exec = new PlanExecutor(d, 4);
+        final List<Action> started = new ArrayList<Action>();
+        final List<Action> ended = new ArrayList<Action>();
+        exec.addListener(new ExecutionListener() {
+            @Override
+            public void onStart(Action a) {
+                started.add(a);
+            }
+
+            @Override
+            public void onEnd(Action a, boolean success, long duration) {
+                Assert.assertTrue(success);
+                ended.add(a);
+            }
+        });
+        ExecutionReport r = exec.execute(p);
+        Assert.assertTrue(r.isSuccessful(), r.toString());
+        Assert.assertTrue(d.consistent);
+        Assert.assertTrue(d.maxRunning.get() <= 4);
+        Assert.assertEquals(started.size(), p.getSize());
+        Assert.assertEquals(new HashSet<Action>(ended), p.getActions());
+        Assert.assertEquals(r.getSucceededActions().size(), p.getSize());
+        Assert.assertTrue(r.getSkippedActions().isEmpty());
+        Assert.assertTrue(r.getFailedActions().isEmpty());
+
+        ActionMetrics m = r.getMetrics(MigrateVM.class);
+        Assert.assertEquals(m.getCount(), 4);
+        Assert.assertEquals(m.getFailures(), 0);
+        Assert.assertTrue(m.getMinDuration() >= 10);
+        Assert.assertTrue(m.getMeanLatency() >= m.getMeanDuration());
+        Assert.assertTrue(r.getThroughput(MigrateVM.class) > 0);
+        Assert.assertNull(r.getMetrics(BootVMStub.class));
+    }
+
+    @Test
+    public void testLimitedMigrations() throws InterruptedException {
+        ReconfigurationPlan p = makePlan();
+        CheckingDriver d = new CheckingDriver(p);
+        PlanExecutor exec = new PlanExecutor(d, 4);
+        exec.setMaxMigrationsPerNode(2);
+        Assert.assertEquals(exec.getMaxMigrationsPerNode(), 2);
+        ExecutionReport r = exec.execute(p);
+        Assert.assertTrue(r.isSuccessful());
+        Assert.assertTrue(d.consistent);
+        Assert.assertEquals(d.maxPerNode.get(), 2);
+
+        d = new CheckingDriver(p);
+        exec = new PlanExecutor(d, 4);
+        exec.setMaxMigrationsPerLink(1);
+        r = exec.execute(p);
+        Assert.assertTrue(r.isSuccessful());
+        //One migration on n1-n3 and one on n2-n3
+        Assert.assertEquals(d.maxPerNode.get(), 2);
+    }
+
+    @Test
+    public void testFailure() throws InterruptedException {
+        ReconfigurationPlan p = makePlan();
+        PlanExecutor exec = new PlanExecutor(new ActionDriver() {
+            @Override
+            public boolean execute(Action a) throws Exception {
+                if (a instanceof BootNode) {
+                    throw new Exception("Unable to boot");
+                }
+                return true;
+            }
+        }, 2);
+        ExecutionReport r = exec.execute(p);
+        Assert.assertFalse(r.isSuccessful());
+        Assert.assertEquals(r.getFailedActions().size(), 1);
+        Action boot = r.getFailedActions().iterator().next();
+        Assert.assertTrue(boot instanceof BootNode);
+        Assert.assertEquals(r.getError(boot).getMessage(), "Unable to boot");
+        //The migrations depend on the boot, so they are skipped
+        Assert.assertEquals(r.getSkippedActions().size(), 5);
+        Assert.assertEquals(r.getMetrics(BootNode.class).getFailures(), 1);
+    }
+
+    /**
+     * Two actions on disjoint nodes, ordered in time only,
+     * for example by a constraint that limits the number of online nodes.
+     */
+    @Test
+    public void testTimeOrdering() throws InterruptedException {
+        Mapping map = new DefaultMapping();
+        map.addOfflineNode(n1);
+        map.addOnlineNode(n2);
+        map.addOnlineNode(n3);
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(new DefaultModel(map));
+        final Action shutdown = new ShutdownNode(n2, 0, 3);
+        final Action boot = new BootNode(n1, 3, 5);
+        //Starts with the shutdown, so it is not delayed
+        final Action instant = new ShutdownNode(n3, 0, 0);
+        p.add(boot);
+        p.add(shutdown);
+        p.add(instant);
+        Assert.assertTrue(p.getDependencyGraph().getDependencies(boot).isEmpty());
+
+        final Set<Action> terminated = Collections.newSetFromMap(new ConcurrentHashMap<Action, Boolean>());
+        final AtomicInteger violations = new AtomicInteger(0);
+        PlanExecutor exec = new PlanExecutor(new SimulatedDriver(10) {
+            @Override
+            public boolean execute(Action a) throws InterruptedException {
+                if (a == boot && !terminated.contains(shutdown)) {
+                    violations.incrementAndGet();
+                }
+                boolean ret = super.execute(a);
+                terminated.add(a);
+                return ret;
+            }
+        }, 3);
+        ExecutionReport r = exec.execute(p);
+        Assert.assertTrue(r.isSuccessful());
+        Assert.assertEquals(violations.get(), 0);
+    }
+
+    @Test(expectedExceptions = {IllegalArgumentException.class})
+    public void testBadLimit() {
+        new PlanExecutor(new SimulatedDriver(1), 2).setMaxMigrationsPerNode(0);
+    }
+
+    /**
+     * An action type that is never executed.
+     */
+    private abstract static class BootVMStub extends Action {
+        BootVMStub() {
+            super(0, 0);
+        }
+    }
+}
@@ -0,0 +1,711 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.json;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+/**
+ * A pull parser that reads a JSON document token per token.
+ * Contrary to {@link JSONUtils#readObject(java.io.Reader)}, no intermediate
+ * tree is built so the converters can create the btrplace objects
+ * while reading the stream.
+ * <p/>
+ * Small sub-documents can still be extracted as a {@link JSONObject}
+ * using {@link #nextValue()} to rely on the existing converters.
+ *
+ * @author Fabien Hermenier
+ */
+public class JSONStreamReader implements Closeable {
+
+    /**
+     * The possible tokens.
+     */
+    public static enum Token {
+        /**
+         * The opening of an object.
+         */
+        BEGIN_OBJECT,
+        /**
+         * The end of an object.
+         */
+        END_OBJECT,
+        /**
+         * The opening of an array.
+         */
+        BEGIN_ARRAY,
+        /**
+         * The end of an array.
+         */
+        END_ARRAY,
+        /**
+         * The name of an object property.
+         */
+        NAME,
+        /**
+         * A string value.
+         */
+        STRING,
+        /**
+         * A number value.
+         */
+        NUMBER,
+        /**
+         * A boolean value.
+         */
+        BOOLEAN,
+        /**
+         * The null value.
+         */
+        NULL,
+        /**
+         * The end of the document.
+         */
+        END_DOCUMENT
+    }
+
+    private static final int EMPTY_DOCUMENT = 0;
+
+    private static final int NONEMPTY_DOCUMENT = 1;
+
+    private static final int EMPTY_ARRAY = 2;
+
+    private static final int NONEMPTY_ARRAY = 3;
+
+    private static final int EMPTY_OBJECT = 4;
+
+    private static final int DANGLING_NAME = 5;
+
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private Reader in;
+
+    private char[] buf = new char[8192];
+
+    private int pos = 0;
+
+    private int limit = 0;
+
+    private long offset = 0;
+
+    /**
+     * The UTF-8 size of the characters in the buffer before {@link #counted}, plus {@link #offset} ones.
+     */
+    private long bytes = 0;
+
+    private int counted = 0;
+
+    private int[] stack = new int[32];
+
+    private int depth = 0;
+
+    private Token peeked = null;
+
+    private StringBuilder value = new StringBuilder();
+
+    /**
+     * Make a new reader.
+     *
+     * @param in the stream to read
+     */
+    public JSONStreamReader(Reader in) {
+        this.in = in;
+        stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Make a new reader on top of UTF-8 encoded bytes.
+     *
+     * @param in the stream to read
+     */
+    public JSONStreamReader(InputStream in) {
+        this(new InputStreamReader(in, Charset.forName("UTF-8")));
+    }
+
+    /**
+     * Get the type of the next token without consuming it.
+     *
+     * @return the next token
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the document is malformed
+     */
+    public Token peek() throws IOException, JSONConverterException {
+        if (peeked != null) {
+            return peeked;
+        }
+        int c;
+        switch (stack[depth - 1]) {
+            case EMPTY_ARRAY:
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    peeked = Token.END_ARRAY;
+                    return peeked;
+                } else if (c == -1) {
+                    throw syntaxError("Unterminated array");
+                }
+                pos--;
+                break;
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    peeked = Token.END_ARRAY;
+                    return peeked;
+                } else if (c != ',') {
+                    throw syntaxError("',' or ']' expected");
+                }
+                break;
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    peeked = Token.END_OBJECT;
+                    return peeked;
+                }
+                if (stack[depth - 1] == NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw syntaxError("',' or '}' expected");
+                    }
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Property name expected");
+                }
+                stack[depth - 1] = DANGLING_NAME;
+                readString();
+                peeked = Token.NAME;
+                return peeked;
+            case DANGLING_NAME:
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("':' expected");
+                }
+                break;
+            case EMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                break;
+            default: //NONEMPTY_DOCUMENT
+                if (nextNonWhitespace() != -1) {
+                    throw syntaxError("End of document expected");
+                }
+                peeked = Token.END_DOCUMENT;
+                return peeked;
+        }
+
+        c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                peeked = Token.BEGIN_OBJECT;
+                break;
+            case '[':
+                peeked = Token.BEGIN_ARRAY;
+                break;
+            case '"':
+                readString();
+                peeked = Token.STRING;
+                break;
+            case 't':
+                readLiteral("true");
+                peeked = Token.BOOLEAN;
+                break;
+            case 'f':
+                readLiteral("false");
+                peeked = Token.BOOLEAN;
+                break;
+            case 'n':
+                readLiteral("null");
+                peeked = Token.NULL;
+                break;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    pos--;
+                    readNumber();
+                    peeked = Token.NUMBER;
+                } else {
+                    throw syntaxError("Value expected");
+                }
+        }
+        return peeked;
+    }
+
+    /**
+     * Check if the current object or array has another element.
+     *
+     * @return {@code true} iff there is another element
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the document is malformed
+     */
+    public boolean hasNext() throws IOException, JSONConverterException {
+        Token t = peek();
+        return t != Token.END_OBJECT && t != Token.END_ARRAY && t != Token.END_DOCUMENT;
+    }
+
+    /**
+     * Consume the opening of an object.
+     *
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the next token is not the opening of an object
+     */
+    public void beginObject() throws IOException, JSONConverterException {
+        consume(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    /**
+     * Consume the end of an object.
+     *
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the next token is not the end of an object
+     */
+    public void endObject() throws IOException, JSONConverterException {
+        consume(Token.END_OBJECT);
+        depth--;
+    }
+
+    /**
+     * Consume the opening of an array.
+     *
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the next token is not the opening of an array
+     */
+    public void beginArray() throws IOException, JSONConverterException {
+        consume(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    /**
+     * Consume the end of an array.
+     *
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the next token is not the end of an array
+     */
+    public void endArray() throws IOException, JSONConverterException {
+        consume(Token.END_ARRAY);
+        depth--;
+    }
+
+    /**
+     * Consume the name of the next object property.
+     *
+     * @return the property name
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the next token is not a property name
+     */
+    public String nextName() throws IOException, JSONConverterException {
+        consume(Token.NAME);
+        return value.toString();
+    }
+
+    /**
+     * Consume a string.
+     *
+     * @return the string
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the next token is not a string
+     */
+    public String nextString() throws IOException, JSONConverterException {
+        consume(Token.STRING);
+        return value.toString();
+    }
+
+    /**
+     * Consume a string denoting a UUID.
+     *
+     * @return the UUID
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the next token is not a UUID
+     */
+    public UUID nextUUID() throws IOException, JSONConverterException {
+        String s = nextString();
+        try {
+            return JSONUtils.parseUUID(s);
+        } catch (IllegalArgumentException ex) {
+            throw syntaxError("Unable to read a UUID from string '" + s + "'");
+        }
+    }
+
+    /**
+     * Consume a natural number.
+     *
+     * @return the number
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the next token is not a natural number
+     */
+    public long nextLong() throws IOException, JSONConverterException {
+        consume(Token.NUMBER);
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException ex) {
+            throw syntaxError("Natural number expected but was '" + value + "'");
+        }
+    }
+
+    /**
+     * Consume a number.
+     *
+     * @return the number
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the next token is not a number
+     */
+    public double nextDouble() throws IOException, JSONConverterException {
+        consume(Token.NUMBER);
+        return Double.parseDouble(value.toString());
+    }
+
+    /**
+     * Consume a boolean.
+     *
+     * @return the boolean
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the next token is not a boolean
+     */
+    public boolean nextBoolean() throws IOException, JSONConverterException {
+        consume(Token.BOOLEAN);
+        return value.charAt(0) == 't';
+    }
+
+    /**
+     * Consume the null value.
+     *
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the next token is not null
+     */
+    public void nextNull() throws IOException, JSONConverterException {
+        consume(Token.NULL);
+    }
+
+    /**
+     * Consume the next value and all its content.
+     *
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the document is malformed
+     */
+    public void skipValue() throws IOException, JSONConverterException {
+        int d = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    d++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    d++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    d--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    d--;
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("Value expected");
+                default:
+                    peeked = null;
+            }
+        } while (d > 0);
+    }
+
+    /**
+     * Consume the next value and return it as a tree.
+     * Numbers are returned as {@link Integer}, {@link Long} or {@link Double}
+     * depending on their magnitude and their format.
+     *
+     * @return a {@link JSONObject}, a {@link JSONArray}, a {@link String}, a {@link Number},
+     *         a {@link Boolean} or {@code null}
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the document is malformed
+     */
+    public Object nextValue() throws IOException, JSONConverterException {
+        switch (peek()) {
+            case BEGIN_OBJECT:
+                JSONObject o = new JSONObject();
+                beginObject();
+                while (hasNext()) {
+                    String k = nextName();
+                    o.put(k, nextValue());
+                }
+                endObject();
+                return o;
+            case BEGIN_ARRAY:
+                JSONArray a = new JSONArray();
+                beginArray();
+                while (hasNext()) {
+                    a.add(nextValue());
+                }
+                endArray();
+                return a;
+            case STRING:
+                return nextString();
+            case BOOLEAN:
+                return nextBoolean();
+            case NULL:
+                nextNull();
+                return null;
+            case NUMBER:
+                consume(Token.NUMBER);
+                return toNumber(value.toString());
+            default:
+                throw syntaxError("Value expected");
+        }
+    }
+
+    /**
+     * Consume the next value that must be an object.
+     *
+     * @return the object
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the next value is not an object
+     */
+    public JSONObject nextObject() throws IOException, JSONConverterException {
+        if (peek() != Token.BEGIN_OBJECT) {
+            throw syntaxError("Object expected");
+        }
+        return (JSONObject) nextValue();
+    }
+
+    /**
+     * Check the whole document has been read.
+     *
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if there is remaining content
+     */
+    public void endDocument() throws IOException, JSONConverterException {
+        consume(Token.END_DOCUMENT);
+    }
+
+    /**
+     * Get the position of the reader in the stream.
+     * Once {@link #peek()} returned {@link Token#BEGIN_OBJECT} or {@link Token#BEGIN_ARRAY},
+     * the opening character is at the position just before.
+     *
+     * @return the number of characters read so far
+     */
+    public long getPosition() {
+        return offset + pos;
+    }
+
+    /**
+     * Get the position of the reader in the stream, in bytes.
+     * The position is the size of the characters read so far once encoded in UTF-8,
+     * so it denotes a byte offset in the underlying document when this one is UTF-8 encoded.
+     * The same convention as {@link #getPosition()} applies.
+     *
+     * @return the number of bytes read so far
+     */
+    public long getBytePosition() {
+        countBytes(pos);
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Add the UTF-8 size of the buffered characters up to a given position.
+     *
+     * @param to the position in the buffer
+     */
+    private void countBytes(int to) {
+        for (; counted < to; counted++) {
+            char c = buf[counted];
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800 || (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)) {
+                //A surrogate pair is encoded using 4 bytes
+                bytes += 2;
+            } else {
+                bytes += 3;
+            }
+        }
+    }
+
+    private static Number toNumber(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '.' || c == 'e' || c == 'E') {
+                return Double.valueOf(s);
+            }
+        }
+        long l = Long.parseLong(s);
+        if (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) {
+            return (int) l;
+        }
+        return l;
+    }
+
+    private void consume(Token expected) throws IOException, JSONConverterException {
+        Token t = peek();
+        if (t != expected) {
+            throw syntaxError(expected + " expected but was " + t);
+        }
+        peeked = null;
+    }
+
+    private void push(int st) {
+        if (depth == stack.length) {
+            int[] bigger = new int[depth * 2];
+            System.arraycopy(stack, 0, bigger, 0, depth);
+            stack = bigger;
+        }
+        stack[depth++] = st;
+    }
+
+    private boolean fill() throws IOException {
+        countBytes(limit);
+        counted = 0;
+        offset += limit;
+        pos = 0;
+        limit = 0;
+        int nb = in.read(buf, 0, buf.length);
+        if (nb <= 0) {
+            return false;
+        }
+        limit = nb;
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buf[pos++];
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            char c = buf[pos++];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+    }
+
+    private void readString() throws IOException, JSONConverterException {
+        value.setLength(0);
+        while (true) {
+            //Copy the unescaped chunks at once
+            int start = pos;
+            while (pos < limit) {
+                char c = buf[pos];
+                if (c == '"' || c == '\\') {
+                    break;
+                }
+                pos++;
+            }
+            value.append(buf, start, pos - start);
+            int c = read();
+            if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                readEscape();
+            } else if (c == -1) {
+                throw syntaxError("Unterminated string");
+            } else {
+                //The buffer was exhausted
+                pos--;
+            }
+        }
+    }
+
+    private void readEscape() throws IOException, JSONConverterException {
+        int c = read();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                value.append((char) c);
+                break;
+            case 'b':
+                value.append('\b');
+                break;
+            case 'f':
+                value.append('\f');
+                break;
+            case 'n':
+                value.append('\n');
+                break;
+            case 'r':
+                value.append('\r');
+                break;
+            case 't':
+                value.append('\t');
+                break;
+            case 'u':
+                int u = 0;
+                for (int i = 0; i < 4; i++) {
+                    int d = Character.digit(read(), 16);
+                    if (d < 0) {
+                        throw syntaxError("Malformed unicode escape sequence");
+                    }
+                    u = u * 16 + d;
+                }
+                value.append((char) u);
+                break;
+            default:
+                throw syntaxError("Malformed escape sequence");
+        }
+    }
+
+    private void readLiteral(String lit) throws IOException, JSONConverterException {
+        for (int i = 1; i < lit.length(); i++) {
+            if (read() != lit.charAt(i)) {
+                throw syntaxError("'" + lit + "' expected");
+            }
+        }
+        value.setLength(0);
+        value.append(lit);
+    }
+
+    private void readNumber() throws IOException, JSONConverterException {
+        value.setLength(0);
+        while (true) {
+            if (pos == limit && !fill()) {
+                break;
+            }
+            char c = buf[pos];
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                value.append(c);
+                pos++;
+            } else {
+                break;
+            }
+        }
+        try {
+            Double.parseDouble(value.toString());
+        } catch (NumberFormatException ex) {
+            throw syntaxError("Malformed number '" + value + "'");
+        }
+    }
+
+    private JSONConverterException syntaxError(String msg) {
+        return new JSONConverterException(msg + " at offset " + (offset + pos));
+    }
+}
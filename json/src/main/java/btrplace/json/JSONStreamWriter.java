@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.json;
+
+import net.minidev.json.JSONValue;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Write a JSON document token per token without
+ * building an intermediate tree.
+ * The writer is not buffered so it is preferable to
+ * provide a {@link java.io.BufferedWriter}.
+ *
+ * @author Fabien Hermenier
+ */
+public class JSONStreamWriter implements Closeable, Flushable {
+
+    private Writer out;
+
+    /**
+     * For each opened object or array, indicates if it already contains an element.
+     */
+    private boolean[] nonEmpty = new boolean[32];
+
+    private int depth = 0;
+
+    private boolean afterName = false;
+
+    /**
+     * Make a new writer.
+     *
+     * @param out the stream to write to
+     */
+    public JSONStreamWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Open an object.
+     *
+     * @return the current writer
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONStreamWriter beginObject() throws IOException {
+        beforeValue();
+        push();
+        out.write('{');
+        return this;
+    }
+
+    /**
+     * Close the current object.
+     *
+     * @return the current writer
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONStreamWriter endObject() throws IOException {
+        depth--;
+        out.write('}');
+        return this;
+    }
+
+    /**
+     * Open an array.
+     *
+     * @return the current writer
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONStreamWriter beginArray() throws IOException {
+        beforeValue();
+        push();
+        out.write('[');
+        return this;
+    }
+
+    /**
+     * Close the current array.
+     *
+     * @return the current writer
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONStreamWriter endArray() throws IOException {
+        depth--;
+        out.write(']');
+        return this;
+    }
+
+    /**
+     * Write the name of the next property of the current object.
+     *
+     * @param n the property name
+     * @return the current writer
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONStreamWriter name(String n) throws IOException {
+        separator();
+        writeString(n);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Write a string.
+     *
+     * @param s the string to write
+     * @return the current writer
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONStreamWriter value(String s) throws IOException {
+        beforeValue();
+        writeString(s);
+        return this;
+    }
+
+    /**
+     * Write a UUID as a string.
+     *
+     * @param u the UUID to write
+     * @return the current writer
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONStreamWriter value(UUID u) throws IOException {
+        beforeValue();
+        out.write('"');
+        out.write(u.toString());
+        out.write('"');
+        return this;
+    }
+
+    /**
+     * Write an array of UUIDs.
+     *
+     * @param us the UUIDs to write
+     * @return the current writer
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONStreamWriter value(Collection<UUID> us) throws IOException {
+        beginArray();
+        for (UUID u : us) {
+            value(u);
+        }
+        return endArray();
+    }
+
+    /**
+     * Write a natural number.
+     *
+     * @param l the number to write
+     * @return the current writer
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONStreamWriter value(long l) throws IOException {
+        beforeValue();
+        out.write(Long.toString(l));
+        return this;
+    }
+
+    /**
+     * Write a real number.
+     *
+     * @param d the number to write
+     * @return the current writer
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONStreamWriter value(double d) throws IOException {
+        beforeValue();
+        out.write(Double.toString(d));
+        return this;
+    }
+
+    /**
+     * Write a boolean.
+     *
+     * @param b the boolean to write
+     * @return the current writer
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONStreamWriter value(boolean b) throws IOException {
+        beforeValue();
+        out.write(b ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Write any value supported by json-smart.
+     * This is typically used to write a {@link net.minidev.json.JSONObject}
+     * produced by one of the tree-based converters.
+     *
+     * @param o the value to write
+     * @return the current writer
+     * @throws IOException if an error occurred while writing
+     */
+    public JSONStreamWriter value(Object o) throws IOException {
+        beforeValue();
+        JSONValue.writeJSONString(o, out);
+        return this;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeString(String s) throws IOException {
+        out.write('"');
+        JSONValue.escape(s, out);
+        out.write('"');
+    }
+
+    private void push() {
+        if (depth == nonEmpty.length) {
+            boolean[] bigger = new boolean[depth * 2];
+            System.arraycopy(nonEmpty, 0, bigger, 0, depth);
+            nonEmpty = bigger;
+        }
+        nonEmpty[depth++] = false;
+    }
+
+    private void separator() throws IOException {
+        if (depth > 0) {
+            if (nonEmpty[depth - 1]) {
+                out.write(',');
+            }
+            nonEmpty[depth - 1] = true;
+        }
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+        } else {
+            separator();
+        }
+    }
+}
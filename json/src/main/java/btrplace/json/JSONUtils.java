@@ -38,9 +38,34 @@ import java.util.UUID;
  */
 public final class JSONUtils {
 
+    /**
+     * The cache shared by all the converters to parse UUIDs.
+     */
+    private static final UUIDCache UUIDS = new UUIDCache(1 << 16);
+
     private JSONUtils() {
     }
 
+    /**
+     * Get the UUID denoted by a string.
+     * The UUIDs are interned in a cache shared by all the converters
+     * so a UUID mentioned several times is only parsed once in most cases.
+     *
+     * @param s the string to parse
+     * @return the UUID
+     * @throws IllegalArgumentException if the string does not denote a UUID
+     */
+    public static UUID parseUUID(String s) {
+        return UUIDS.get(s);
+    }
+
+    /**
+     * Empty the cache used by {@link #parseUUID(String)}.
+     */
+    public static void clearUUIDCache() {
+        UUIDS.clear();
+    }
+
     /**
      * Convert an array of UUID in the json format to a set.
      *
@@ -50,7 +75,7 @@ public final class JSONUtils {
     public static Set<UUID> fromJSON(JSONArray a) {
         Set<UUID> s = new HashSet<UUID>(a.size());
         for (Object o : a) {
-            s.add(UUID.fromString((String) o));
+            s.add(parseUUID((String) o));
         }
         return s;
     }
@@ -118,7 +143,7 @@ public final class JSONUtils {
             throw new JSONConverterException("Key '" + id + "' expected to read a UUID");
         }
         try {
-            return UUID.fromString(o.get(id).toString());
+            return parseUUID(o.get(id).toString());
         } catch (Exception e) {
             throw new JSONConverterException("Unable to read a UUID from string '" + id + "'");
         }
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.json;
+
+import java.util.UUID;
+
+/**
+ * A bounded cache to intern the UUIDs parsed from their string representation.
+ * The same UUID is typically mentioned in the mapping, the views and several
+ * constraints so the cache saves the parsing and makes the converted objects
+ * share one instance per element.
+ * <p/>
+ * The cache is direct-mapped: an entry is selected by the hash of the string and
+ * it is replaced in case of collision. The entries are immutable so the cache can
+ * be used concurrently without synchronization.
+ *
+ * @author Fabien Hermenier
+ */
+final class UUIDCache {
+
+    private final Entry[] entries;
+
+    private final int mask;
+
+    /**
+     * Make a new cache.
+     *
+     * @param capacity the number of entries. Must be a power of 2
+     */
+    UUIDCache(int capacity) {
+        entries = new Entry[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Get the UUID denoted by a string.
+     *
+     * @param s the string
+     * @return the UUID
+     * @throws IllegalArgumentException if the string does not denote a UUID
+     */
+    UUID get(String s) {
+        int h = s.hashCode();
+        h ^= h >>> 16;
+        int i = h & mask;
+        Entry e = entries[i];
+        if (e != null && e.key.equals(s)) {
+            return e.value;
+        }
+        UUID u = UUID.fromString(s);
+        entries[i] = new Entry(s, u);
+        return u;
+    }
+
+    /**
+     * Remove all the entries.
+     */
+    void clear() {
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = null;
+        }
+    }
+
+    private static final class Entry {
+
+        private final String key;
+
+        private final UUID value;
+
+        Entry(String k, UUID v) {
+            key = k;
+            value = v;
+        }
+    }
+}
@@ -0,0 +1,748 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.json.binary;
+
+import btrplace.json.JSONConverterException;
+import btrplace.json.model.Instance;
+import btrplace.json.model.constraint.SatConstraintsConverter;
+import btrplace.json.model.view.ModelViewsConverter;
+import btrplace.json.plan.ActionConverter;
+import btrplace.model.*;
+import btrplace.model.constraint.*;
+import btrplace.model.view.ShareableResource;
+import btrplace.plan.Action;
+import btrplace.plan.Event;
+import btrplace.plan.DefaultReconfigurationPlan;
+import btrplace.plan.ReconfigurationPlan;
+import btrplace.plan.event.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Convert models, instances and reconfiguration plans to a compact binary format
+ * and vice-versa.
+ * <p/>
+ * A document starts with a header denoting the format version and the kind of
+ * the stored object. The elements of the mapping are then declared in a
+ * dictionary so every other occurrence of a UUID is a dense reference.
+ * The mapping, the {@link ShareableResource} views, the constraints of
+ * {@link btrplace.model.constraint} and the actions of {@link btrplace.plan.event}
+ * with their {@link AllocateEvent} hooks have a dedicated encoding that refers to
+ * the UUIDs through the dictionary.
+ * The other views, constraints and actions, including the actions decorated with other
+ * events, are encoded from their JSON representation so every converter registered
+ * in the JSON layer is supported and the two formats can be converted one to the other
+ * without loss.
+ *
+ * @author Fabien Hermenier
+ */
+public class BinaryConverter {
+
+    /**
+     * The magic number that starts a document.
+     */
+    public static final int MAGIC = 0x42545250;
+
+    /**
+     * The current version of the format.
+     */
+    public static final int VERSION = 3;
+
+    private static final int MODEL = 0;
+
+    private static final int INSTANCE = 1;
+
+    private static final int PLAN = 2;
+
+    private static final int JSON_VIEW = 0;
+
+    private static final int RESOURCE_VIEW = 1;
+
+    private static final int JSON_CONSTRAINT = 0;
+
+    private static final int SPREAD = 1;
+
+    private static final int AMONG = 2;
+
+    private static final int BAN = 3;
+
+    private static final int FENCE = 4;
+
+    private static final int GATHER = 5;
+
+    private static final int LONELY = 6;
+
+    private static final int SPLIT = 7;
+
+    private static final int SPLIT_AMONG = 8;
+
+    private static final int ROOT = 9;
+
+    private static final int QUARANTINE = 10;
+
+    private static final int PRESERVE = 11;
+
+    private static final int OVERBOOK = 12;
+
+    private static final int ONLINE = 13;
+
+    private static final int OFFLINE = 14;
+
+    private static final int RUNNING = 15;
+
+    private static final int SLEEPING = 16;
+
+    private static final int READY = 17;
+
+    private static final int KILLED = 18;
+
+    private static final int SINGLE_RUNNING_CAPACITY = 19;
+
+    private static final int CUMULATED_RUNNING_CAPACITY = 20;
+
+    private static final int SINGLE_RESOURCE_CAPACITY = 21;
+
+    private static final int CUMULATED_RESOURCE_CAPACITY = 22;
+
+    private static final int SEQUENTIAL_VM_TRANSITIONS = 23;
+
+    private static final int JSON_ACTION = 0;
+
+    private static final int MIGRATE_VM = 1;
+
+    private static final int BOOT_VM = 2;
+
+    private static final int SHUTDOWN_VM = 3;
+
+    private static final int BOOT_NODE = 4;
+
+    private static final int SHUTDOWN_NODE = 5;
+
+    private static final int FORGE_VM = 6;
+
+    private static final int KILL_VM = 7;
+
+    private static final int RESUME_VM = 8;
+
+    private static final int SUSPEND_VM = 9;
+
+    private static final int ALLOCATE = 10;
+
+    private ModelViewsConverter viewsConverter;
+
+    private SatConstraintsConverter cstrsConverter;
+
+    private ActionConverter actionConverter;
+
+    /**
+     * Make a new converter.
+     */
+    public BinaryConverter() {
+        viewsConverter = new ModelViewsConverter();
+        cstrsConverter = new SatConstraintsConverter();
+        actionConverter = new ActionConverter();
+    }
+
+    /**
+     * Get the converter that manage the views.
+     *
+     * @return the used converter
+     */
+    public ModelViewsConverter getViewsConverter() {
+        return viewsConverter;
+    }
+
+    /**
+     * Get the converter that manage the constraints.
+     *
+     * @return the used converter
+     */
+    public SatConstraintsConverter getConstraintsConverter() {
+        return cstrsConverter;
+    }
+
+    /**
+     * Write a model.
+     * The stream is flushed but not closed.
+     *
+     * @param mo  the model to write
+     * @param out the stream to write to
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if an error occurred during the conversion
+     */
+    public void write(Model mo, OutputStream out) throws IOException, JSONConverterException {
+        BinaryWriter w = begin(out, MODEL);
+        write(mo, w);
+        w.flush();
+    }
+
+    /**
+     * Write an instance.
+     * The stream is flushed but not closed.
+     *
+     * @param i   the instance to write
+     * @param out the stream to write to
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if an error occurred during the conversion
+     */
+    public void write(Instance i, OutputStream out) throws IOException, JSONConverterException {
+        BinaryWriter w = begin(out, INSTANCE);
+        write(i.getModel(), w);
+        w.writeNat(i.getConstraints().size());
+        for (SatConstraint c : i.getConstraints()) {
+            write(c, w);
+        }
+        w.flush();
+    }
+
+    /**
+     * Write a reconfiguration plan.
+     * The stream is flushed but not closed.
+     *
+     * @param p   the plan to write
+     * @param out the stream to write to
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if an error occurred during the conversion
+     */
+    public void write(ReconfigurationPlan p, OutputStream out) throws IOException, JSONConverterException {
+        BinaryWriter w = begin(out, PLAN);
+        write(p.getOrigin(), w);
+        w.writeNat(p.getSize());
+        for (Action a : p.getActions()) {
+            write(a, w);
+        }
+        w.flush();
+    }
+
+    /**
+     * Read a model.
+     * The stream is not closed.
+     *
+     * @param in the stream to read
+     * @return the resulting model
+     * @throws IOException            if an error occurred while reading
+     * @throws JSONConverterException if the stream does not contain a model
+     */
+    public Model readModel(InputStream in) throws IOException, JSONConverterException {
+        return readModel(begin(in, MODEL));
+    }
+
+    /**
+     * Read an instance.
+     * The stream is not closed.
+     *
+     * @param in the stream to read
+     * @return the resulting instance
+     * @throws IOException            if an error occurred while reading
+     * @throws JSONConverterException if the stream does not contain an instance
+     */
+    public Instance readInstance(InputStream in) throws IOException, JSONConverterException {
+        BinaryReader r = begin(in, INSTANCE);
+        Model mo = readModel(r);
+        int nb = r.readNat();
+        List<SatConstraint> cstrs = new ArrayList<SatConstraint>(nb);
+        for (int i = 0; i < nb; i++) {
+            cstrs.add(readConstraint(r));
+        }
+        return new Instance(mo, cstrs);
+    }
+
+    /**
+     * Read a reconfiguration plan.
+     * The stream is not closed.
+     *
+     * @param in the stream to read
+     * @return the resulting plan
+     * @throws IOException            if an error occurred while reading
+     * @throws JSONConverterException if the stream does not contain a plan
+     */
+    public ReconfigurationPlan readPlan(InputStream in) throws IOException, JSONConverterException {
+        BinaryReader r = begin(in, PLAN);
+        ReconfigurationPlan p = new DefaultReconfigurationPlan(readModel(r));
+        int nb = r.readNat();
+        for (int i = 0; i < nb; i++) {
+            p.add(readAction(r));
+        }
+        return p;
+    }
+
+    private BinaryWriter begin(OutputStream out, int kind) throws IOException {
+        BinaryWriter w = new BinaryWriter(new BufferedOutputStream(out));
+        w.writeByte(MAGIC >>> 24);
+        w.writeByte((MAGIC >>> 16) & 0xFF);
+        w.writeByte((MAGIC >>> 8) & 0xFF);
+        w.writeByte(MAGIC & 0xFF);
+        w.writeByte(VERSION);
+        w.writeByte(kind);
+        return w;
+    }
+
+    private BinaryReader begin(InputStream in, int kind) throws IOException, JSONConverterException {
+        BinaryReader r = new BinaryReader(new BufferedInputStream(in));
+        int m = 0;
+        for (int i = 0; i < 4; i++) {
+            m = (m << 8) | r.readByte();
+        }
+        if (m != MAGIC) {
+            throw new JSONConverterException("Not a binary btrplace document");
+        }
+        int v = r.readByte();
+        if (v != VERSION) {
+            throw new JSONConverterException("Unsupported format version '" + v + "'");
+        }
+        int k = r.readByte();
+        if (k != kind) {
+            throw new JSONConverterException("Unexpected kind of document '" + k + "'");
+        }
+        return r;
+    }
+
+    private void write(Model mo, BinaryWriter w) throws IOException, JSONConverterException {
+        Mapping map = mo.getMapping();
+        w.declare(map.getAllNodes());
+        w.declare(map.getAllVMs());
+
+        w.writeNat(map.getOnlineNodes().size());
+        for (UUID n : map.getOnlineNodes()) {
+            w.writeUUID(n);
+            w.writeUUIDs(map.getRunningVMs(n));
+            w.writeUUIDs(map.getSleepingVMs(n));
+        }
+        w.writeUUIDs(map.getOfflineNodes());
+        w.writeUUIDs(map.getReadyVMs());
+
+        Attributes attrs = mo.getAttributes();
+        Set<UUID> elems = attrs.getElements();
+        w.writeNat(elems.size());
+        for (UUID u : elems) {
+            w.writeUUID(u);
+            Set<String> keys = attrs.getKeys(u);
+            w.writeNat(keys.size());
+            for (String k : keys) {
+                w.writeString(k);
+                w.writeValue(attrs.get(u, k));
+            }
+        }
+
+        w.writeNat(mo.getViews().size());
+        for (ModelView v : mo.getViews()) {
+            if (v instanceof ShareableResource) {
+                ShareableResource rc = (ShareableResource) v;
+                w.writeByte(RESOURCE_VIEW);
+                w.writeString(rc.getResourceIdentifier());
+                w.writeLong(rc.getDefaultValue());
+                w.writeNat(rc.getDefined().size());
+                for (UUID u : rc.getDefined()) {
+                    w.writeUUID(u);
+                    w.writeLong(rc.get(u));
+                }
+            } else {
+                w.writeByte(JSON_VIEW);
+                w.writeValue(viewsConverter.toJSON(v));
+            }
+        }
+    }
+
+    private Model readModel(BinaryReader r) throws IOException, JSONConverterException {
+        r.declared();
+        r.declared();
+
+        Mapping map = new DefaultMapping();
+        int nb = r.readNat();
+        for (int i = 0; i < nb; i++) {
+            UUID n = r.readUUID();
+            map.addOnlineNode(n);
+            int nbVMs = r.readNat();
+            for (int j = 0; j < nbVMs; j++) {
+                map.addRunningVM(r.readUUID(), n);
+            }
+            nbVMs = r.readNat();
+            for (int j = 0; j < nbVMs; j++) {
+                map.addSleepingVM(r.readUUID(), n);
+            }
+        }
+        nb = r.readNat();
+        for (int i = 0; i < nb; i++) {
+            map.addOfflineNode(r.readUUID());
+        }
+        nb = r.readNat();
+        for (int i = 0; i < nb; i++) {
+            map.addReadyVM(r.readUUID());
+        }
+
+        Model mo = new DefaultModel(map);
+        Attributes attrs = mo.getAttributes();
+        nb = r.readNat();
+        for (int i = 0; i < nb; i++) {
+            UUID u = r.readUUID();
+            int nbKeys = r.readNat();
+            for (int j = 0; j < nbKeys; j++) {
+                String k = r.readString();
+                Object v = r.readValue();
+                if (v instanceof Boolean) {
+                    attrs.put(u, k, (Boolean) v);
+                } else if (v instanceof Double) {
+                    attrs.put(u, k, (Double) v);
+                } else if (v instanceof Number) {
+                    attrs.put(u, k, ((Number) v).longValue());
+                } else if (v instanceof String) {
+                    attrs.put(u, k, (String) v);
+                } else {
+                    throw new JSONConverterException("Unsupported value for attribute '" + k + "' of '" + u + "'");
+                }
+            }
+        }
+
+        nb = r.readNat();
+        for (int i = 0; i < nb; i++) {
+            int t = r.readByte();
+            if (t == RESOURCE_VIEW) {
+                ShareableResource rc = new ShareableResource(r.readString(), (int) r.readLong());
+                int nbValues = r.readNat();
+                for (int j = 0; j < nbValues; j++) {
+                    rc.set(r.readUUID(), (int) r.readLong());
+                }
+                mo.attach(rc);
+            } else if (t == JSON_VIEW) {
+                mo.attach(viewsConverter.fromJSON(r.readObject()));
+            } else {
+                throw new JSONConverterException("Unknown view type '" + t + "'");
+            }
+        }
+        return mo;
+    }
+
+    private void write(SatConstraint c, BinaryWriter w) throws IOException, JSONConverterException {
+        Class<?> cl = c.getClass();
+        if (cl == Spread.class) {
+            w.writeByte(SPREAD);
+            w.writeUUIDs(c.getInvolvedVMs());
+        } else if (cl == Among.class) {
+            Among a = (Among) c;
+            w.writeByte(AMONG);
+            w.writeUUIDs(a.getInvolvedVMs());
+            writeGroups(a.getGroupsOfNodes(), w);
+        } else if (cl == Ban.class) {
+            w.writeByte(BAN);
+            w.writeUUIDs(c.getInvolvedVMs());
+            w.writeUUIDs(c.getInvolvedNodes());
+            return;
+        } else if (cl == Fence.class) {
+            w.writeByte(FENCE);
+            w.writeUUIDs(c.getInvolvedVMs());
+            w.writeUUIDs(c.getInvolvedNodes());
+            return;
+        } else if (cl == Gather.class) {
+            w.writeByte(GATHER);
+            w.writeUUIDs(c.getInvolvedVMs());
+        } else if (cl == Lonely.class) {
+            w.writeByte(LONELY);
+            w.writeUUIDs(c.getInvolvedVMs());
+        } else if (cl == Split.class) {
+            w.writeByte(SPLIT);
+            writeGroups(((Split) c).getSets(), w);
+        } else if (cl == SplitAmong.class) {
+            SplitAmong s = (SplitAmong) c;
+            w.writeByte(SPLIT_AMONG);
+            writeGroups(s.getGroupsOfVMs(), w);
+            writeGroups(s.getGroupsOfNodes(), w);
+        } else if (cl == Overbook.class) {
+            Overbook o = (Overbook) c;
+            w.writeByte(OVERBOOK);
+            w.writeUUIDs(o.getInvolvedNodes());
+            w.writeString(o.getResource());
+            w.writeDouble(o.getRatio());
+        } else if (cl == SingleRunningCapacity.class) {
+            w.writeByte(SINGLE_RUNNING_CAPACITY);
+            w.writeUUIDs(c.getInvolvedNodes());
+            w.writeLong(((SingleRunningCapacity) c).getAmount());
+        } else if (cl == CumulatedRunningCapacity.class) {
+            w.writeByte(CUMULATED_RUNNING_CAPACITY);
+            w.writeUUIDs(c.getInvolvedNodes());
+            w.writeLong(((CumulatedRunningCapacity) c).getAmount());
+        } else if (cl == SingleResourceCapacity.class) {
+            SingleResourceCapacity s = (SingleResourceCapacity) c;
+            w.writeByte(SINGLE_RESOURCE_CAPACITY);
+            w.writeUUIDs(s.getInvolvedNodes());
+            w.writeString(s.getResource());
+            w.writeLong(s.getAmount());
+        } else if (cl == CumulatedResourceCapacity.class) {
+            CumulatedResourceCapacity s = (CumulatedResourceCapacity) c;
+            w.writeByte(CUMULATED_RESOURCE_CAPACITY);
+            w.writeUUIDs(s.getInvolvedNodes());
+            w.writeString(s.getResource());
+            w.writeLong(s.getAmount());
+        } else {
+            //The constraints that do not have a continuous flag
+            writeDiscrete(c, w);
+            return;
+        }
+        w.writeByte(c.isContinuous() ? 1 : 0);
+    }
+
+    private void writeDiscrete(SatConstraint c, BinaryWriter w) throws IOException, JSONConverterException {
+        Class<?> cl = c.getClass();
+        if (cl == Root.class) {
+            w.writeByte(ROOT);
+            w.writeUUIDs(c.getInvolvedVMs());
+        } else if (cl == Quarantine.class) {
+            w.writeByte(QUARANTINE);
+            w.writeUUIDs(c.getInvolvedNodes());
+        } else if (cl == Preserve.class) {
+            Preserve p = (Preserve) c;
+            w.writeByte(PRESERVE);
+            w.writeUUIDs(p.getInvolvedVMs());
+            w.writeString(p.getResource());
+            w.writeLong(p.getAmount());
+        } else if (cl == Online.class) {
+            w.writeByte(ONLINE);
+            w.writeUUIDs(c.getInvolvedNodes());
+        } else if (cl == Offline.class) {
+            w.writeByte(OFFLINE);
+            w.writeUUIDs(c.getInvolvedNodes());
+        } else if (cl == Running.class) {
+            w.writeByte(RUNNING);
+            w.writeUUIDs(c.getInvolvedVMs());
+        } else if (cl == Sleeping.class) {
+            w.writeByte(SLEEPING);
+            w.writeUUIDs(c.getInvolvedVMs());
+        } else if (cl == Ready.class) {
+            w.writeByte(READY);
+            w.writeUUIDs(c.getInvolvedVMs());
+        } else if (cl == Killed.class) {
+            w.writeByte(KILLED);
+            w.writeUUIDs(c.getInvolvedVMs());
+        } else if (cl == SequentialVMTransitions.class) {
+            //The order matters
+            List<UUID> seq = ((SequentialVMTransitions) c).getInvolvedVMs();
+            w.writeByte(SEQUENTIAL_VM_TRANSITIONS);
+            w.writeNat(seq.size());
+            for (UUID u : seq) {
+                w.writeUUID(u);
+            }
+        } else {
+            w.writeByte(JSON_CONSTRAINT);
+            w.writeValue(cstrsConverter.toJSON(c));
+        }
+    }
+
+    private static void writeGroups(Collection<Set<UUID>> grps, BinaryWriter w) throws IOException {
+        w.writeNat(grps.size());
+        for (Set<UUID> grp : grps) {
+            w.writeUUIDs(grp);
+        }
+    }
+
+    private static Set<Set<UUID>> readGroups(BinaryReader r) throws IOException, JSONConverterException {
+        int nb = r.readNat();
+        Set<Set<UUID>> grps = new HashSet<Set<UUID>>(nb);
+        for (int i = 0; i < nb; i++) {
+            grps.add(r.readUUIDs());
+        }
+        return grps;
+    }
+
+    private SatConstraint readConstraint(BinaryReader r) throws IOException, JSONConverterException {
+        int t = r.readByte();
+        switch (t) {
+            case SPREAD:
+                return new Spread(r.readUUIDs(), r.readByte() != 0);
+            case AMONG:
+                return new Among(r.readUUIDs(), readGroups(r), r.readByte() != 0);
+            case BAN:
+                return new Ban(r.readUUIDs(), r.readUUIDs());
+            case FENCE:
+                return new Fence(r.readUUIDs(), r.readUUIDs());
+            case GATHER:
+                return new Gather(r.readUUIDs(), r.readByte() != 0);
+            case LONELY:
+                return new Lonely(r.readUUIDs(), r.readByte() != 0);
+            case SPLIT:
+                return new Split(readGroups(r), r.readByte() != 0);
+            case SPLIT_AMONG:
+                return new SplitAmong(readGroups(r), readGroups(r), r.readByte() != 0);
+            case OVERBOOK:
+                return new Overbook(r.readUUIDs(), r.readString(), r.readDouble(), r.readByte() != 0);
+            case SINGLE_RUNNING_CAPACITY:
+                return new SingleRunningCapacity(r.readUUIDs(), (int) r.readLong(), r.readByte() != 0);
+            case CUMULATED_RUNNING_CAPACITY:
+                return new CumulatedRunningCapacity(r.readUUIDs(), (int) r.readLong(), r.readByte() != 0);
+            case SINGLE_RESOURCE_CAPACITY:
+                return new SingleResourceCapacity(r.readUUIDs(), r.readString(), (int) r.readLong(), r.readByte() != 0);
+            case CUMULATED_RESOURCE_CAPACITY:
+                return new CumulatedResourceCapacity(r.readUUIDs(), r.readString(), (int) r.readLong(), r.readByte() != 0);
+            case ROOT:
+                return new Root(r.readUUIDs());
+            case QUARANTINE:
+                return new Quarantine(r.readUUIDs());
+            case PRESERVE:
+                return new Preserve(r.readUUIDs(), r.readString(), (int) r.readLong());
+            case ONLINE:
+                return new Online(r.readUUIDs());
+            case OFFLINE:
+                return new Offline(r.readUUIDs());
+            case RUNNING:
+                return new Running(r.readUUIDs());
+            case SLEEPING:
+                return new Sleeping(r.readUUIDs());
+            case READY:
+                return new Ready(r.readUUIDs());
+            case KILLED:
+                return new Killed(r.readUUIDs());
+            case SEQUENTIAL_VM_TRANSITIONS:
+                int nb = r.readNat();
+                List<UUID> seq = new ArrayList<UUID>(nb);
+                for (int i = 0; i < nb; i++) {
+                    seq.add(r.readUUID());
+                }
+                return new SequentialVMTransitions(seq);
+            case JSON_CONSTRAINT:
+                return cstrsConverter.fromJSON(r.readObject());
+            default:
+                throw new JSONConverterException("Unknown constraint type '" + t + "'");
+        }
+    }
+
+    private void write(Action a, BinaryWriter w) throws IOException, JSONConverterException {
+        Class<?> cl = a.getClass();
+        //Only the allocation events have a dedicated encoding
+        for (Action.Hook k : Action.Hook.values()) {
+            for (Event e : a.getEvents(k)) {
+                if (e.getClass() != AllocateEvent.class) {
+                    cl = null;
+                }
+            }
+        }
+        if (cl == MigrateVM.class) {
+            MigrateVM m = (MigrateVM) a;
+            w.writeByte(MIGRATE_VM);
+            w.writeUUID(m.getVM());
+            w.writeUUID(m.getSourceNode());
+            w.writeUUID(m.getDestinationNode());
+        } else if (cl == BootVM.class) {
+            BootVM b = (BootVM) a;
+            w.writeByte(BOOT_VM);
+            w.writeUUID(b.getVM());
+            w.writeUUID(b.getDestinationNode());
+        } else if (cl == ShutdownVM.class) {
+            ShutdownVM s = (ShutdownVM) a;
+            w.writeByte(SHUTDOWN_VM);
+            w.writeUUID(s.getVM());
+            w.writeUUID(s.getNode());
+        } else if (cl == BootNode.class) {
+            w.writeByte(BOOT_NODE);
+            w.writeUUID(((BootNode) a).getNode());
+        } else if (cl == ShutdownNode.class) {
+            w.writeByte(SHUTDOWN_NODE);
+            w.writeUUID(((ShutdownNode) a).getNode());
+        } else if (cl == ForgeVM.class) {
+            w.writeByte(FORGE_VM);
+            w.writeUUID(((ForgeVM) a).getVM());
+        } else if (cl == KillVM.class) {
+            KillVM k = (KillVM) a;
+            w.writeByte(KILL_VM);
+            w.writeUUID(k.getVM());
+            w.writeUUID(k.getNode());
+        } else if (cl == ResumeVM.class) {
+            ResumeVM rv = (ResumeVM) a;
+            w.writeByte(RESUME_VM);
+            w.writeUUID(rv.getVM());
+            w.writeUUID(rv.getSourceNode());
+            w.writeUUID(rv.getDestinationNode());
+        } else if (cl == SuspendVM.class) {
+            SuspendVM sv = (SuspendVM) a;
+            w.writeByte(SUSPEND_VM);
+            w.writeUUID(sv.getVM());
+            w.writeUUID(sv.getSourceNode());
+            w.writeUUID(sv.getDestinationNode());
+        } else if (cl == Allocate.class) {
+            Allocate al = (Allocate) a;
+            w.writeByte(ALLOCATE);
+            w.writeUUID(al.getVM());
+            w.writeUUID(al.getHost());
+            w.writeString(al.getResourceId());
+            w.writeLong(al.getAmount());
+        } else {
+            w.writeByte(JSON_ACTION);
+            w.writeValue(actionConverter.toJSON(a));
+            return;
+        }
+        w.writeLong(a.getStart());
+        w.writeLong(a.getEnd());
+        for (Action.Hook k : Action.Hook.values()) {
+            List<Event> evts = a.getEvents(k);
+            w.writeNat(evts.size());
+            for (Event e : evts) {
+                AllocateEvent ae = (AllocateEvent) e;
+                w.writeUUID(ae.getVM());
+                w.writeString(ae.getResourceId());
+                w.writeLong(ae.getAmount());
+            }
+        }
+    }
+
+    private Action readAction(BinaryReader r) throws IOException, JSONConverterException {
+        int t = r.readByte();
+        Action a;
+        switch (t) {
+            case MIGRATE_VM:
+                a = new MigrateVM(r.readUUID(), r.readUUID(), r.readUUID(), (int) r.readLong(), (int) r.readLong());
+                break;
+            case BOOT_VM:
+                a = new BootVM(r.readUUID(), r.readUUID(), (int) r.readLong(), (int) r.readLong());
+                break;
+            case SHUTDOWN_VM:
+                a = new ShutdownVM(r.readUUID(), r.readUUID(), (int) r.readLong(), (int) r.readLong());
+                break;
+            case BOOT_NODE:
+                a = new BootNode(r.readUUID(), (int) r.readLong(), (int) r.readLong());
+                break;
+            case SHUTDOWN_NODE:
+                a = new ShutdownNode(r.readUUID(), (int) r.readLong(), (int) r.readLong());
+                break;
+            case FORGE_VM:
+                a = new ForgeVM(r.readUUID(), (int) r.readLong(), (int) r.readLong());
+                break;
+            case KILL_VM:
+                a = new KillVM(r.readUUID(), r.readUUID(), (int) r.readLong(), (int) r.readLong());
+                break;
+            case RESUME_VM:
+                a = new ResumeVM(r.readUUID(), r.readUUID(), r.readUUID(), (int) r.readLong(), (int) r.readLong());
+                break;
+            case SUSPEND_VM:
+                a = new SuspendVM(r.readUUID(), r.readUUID(), r.readUUID(), (int) r.readLong(), (int) r.readLong());
+                break;
+            case ALLOCATE:
+                a = new Allocate(r.readUUID(), r.readUUID(), r.readString(), (int) r.readLong(), (int) r.readLong(), (int) r.readLong());
+                break;
+            case JSON_ACTION:
+                return actionConverter.fromJSON(r.readObject());
+            default:
+                throw new JSONConverterException("Unknown action type '" + t + "'");
+        }
+        for (Action.Hook k : Action.Hook.values()) {
+            int nb = r.readNat();
+            for (int i = 0; i < nb; i++) {
+                a.addEvent(k, new AllocateEvent(r.readUUID(), r.readString(), (int) r.readLong()));
+            }
+        }
+        return a;
+    }
+}
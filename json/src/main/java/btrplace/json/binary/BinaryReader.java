@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.json.binary;
+
+import btrplace.json.JSONConverterException;
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * Low-level reader for the binary format.
+ *
+ * @author Fabien Hermenier
+ * @see BinaryWriter
+ */
+public class BinaryReader {
+
+    private DataInputStream in;
+
+    private List<UUID> uuids;
+
+    private List<String> strings;
+
+    /**
+     * Make a new reader.
+     *
+     * @param in the stream to read
+     */
+    public BinaryReader(InputStream in) {
+        this.in = new DataInputStream(in);
+        uuids = new ArrayList<UUID>();
+        strings = new ArrayList<String>();
+    }
+
+    /**
+     * Read a natural number.
+     *
+     * @return the number
+     * @throws IOException if an error occurred while reading
+     */
+    public int readNat() throws IOException {
+        int v = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return v;
+    }
+
+    /**
+     * Read a signed number.
+     *
+     * @return the number
+     * @throws IOException if an error occurred while reading
+     */
+    public long readLong() throws IOException {
+        long z = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            z |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (z >>> 1) ^ -(z & 1);
+    }
+
+    /**
+     * Read a real number.
+     *
+     * @return the number
+     * @throws IOException if an error occurred while reading
+     */
+    public double readDouble() throws IOException {
+        return in.readDouble();
+    }
+
+    /**
+     * Read a bulk of UUIDs declared using {@link BinaryWriter#declare(java.util.Collection)}.
+     *
+     * @throws IOException if an error occurred while reading
+     */
+    public void declared() throws IOException {
+        int nb = readNat();
+        for (int i = 0; i < nb; i++) {
+            uuids.add(readRawUUID());
+        }
+    }
+
+    /**
+     * Read a UUID.
+     *
+     * @return the UUID
+     * @throws IOException            if an error occurred while reading
+     * @throws JSONConverterException if the UUID reference is unknown
+     */
+    public UUID readUUID() throws IOException, JSONConverterException {
+        int idx = readNat();
+        if (idx == 0) {
+            UUID u = readRawUUID();
+            uuids.add(u);
+            return u;
+        }
+        if (idx > uuids.size()) {
+            throw new JSONConverterException("Unknown UUID reference '" + idx + "'");
+        }
+        return uuids.get(idx - 1);
+    }
+
+    /**
+     * Read a collection of UUIDs.
+     *
+     * @return the UUIDs
+     * @throws IOException            if an error occurred while reading
+     * @throws JSONConverterException if a UUID reference is unknown
+     */
+    public Set<UUID> readUUIDs() throws IOException, JSONConverterException {
+        int nb = readNat();
+        Set<UUID> s = new HashSet<UUID>(nb);
+        for (int i = 0; i < nb; i++) {
+            s.add(readUUID());
+        }
+        return s;
+    }
+
+    /**
+     * Read a string.
+     *
+     * @return the string
+     * @throws IOException            if an error occurred while reading
+     * @throws JSONConverterException if the string reference is unknown
+     */
+    public String readString() throws IOException, JSONConverterException {
+        int idx = readNat();
+        if (idx == 0) {
+            String s = in.readUTF();
+            strings.add(s);
+            return s;
+        }
+        if (idx > strings.size()) {
+            throw new JSONConverterException("Unknown string reference '" + idx + "'");
+        }
+        return strings.get(idx - 1);
+    }
+
+    /**
+     * Read a raw byte.
+     *
+     * @return the byte
+     * @throws IOException if an error occurred while reading
+     */
+    public int readByte() throws IOException {
+        return in.readUnsignedByte();
+    }
+
+    /**
+     * Read a JSON value.
+     * UUIDs are returned as strings and integers as {@link Integer} or {@link Long}
+     * depending on their magnitude, like the JSON parser does.
+     *
+     * @return the value
+     * @throws IOException            if an error occurred while reading
+     * @throws JSONConverterException if the content is not a value
+     */
+    public Object readValue() throws IOException, JSONConverterException {
+        int t = in.readUnsignedByte();
+        switch (t) {
+            case BinaryWriter.NULL:
+                return null;
+            case BinaryWriter.FALSE:
+                return Boolean.FALSE;
+            case BinaryWriter.TRUE:
+                return Boolean.TRUE;
+            case BinaryWriter.INTEGER:
+                long l = readLong();
+                if (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE) {
+                    return (int) l;
+                }
+                return l;
+            case BinaryWriter.DOUBLE:
+                return in.readDouble();
+            case BinaryWriter.STRING:
+                return readString();
+            case BinaryWriter.UUID_REF:
+                return readUUID().toString();
+            case BinaryWriter.ARRAY:
+                int nb = readNat();
+                JSONArray a = new JSONArray();
+                for (int i = 0; i < nb; i++) {
+                    a.add(readValue());
+                }
+                return a;
+            case BinaryWriter.OBJECT:
+                nb = readNat();
+                JSONObject o = new JSONObject();
+                for (int i = 0; i < nb; i++) {
+                    String k = readString();
+                    o.put(k, readValue());
+                }
+                return o;
+            default:
+                throw new JSONConverterException("Unknown value type '" + t + "'");
+        }
+    }
+
+    /**
+     * Read a JSON value that must be an object.
+     *
+     * @return the object
+     * @throws IOException            if an error occurred while reading
+     * @throws JSONConverterException if the content is not an object
+     */
+    public JSONObject readObject() throws IOException, JSONConverterException {
+        Object o = readValue();
+        if (!(o instanceof JSONObject)) {
+            throw new JSONConverterException("Object expected but was '" + o + "'");
+        }
+        return (JSONObject) o;
+    }
+
+    private UUID readRawUUID() throws IOException {
+        long msb = in.readLong();
+        long lsb = in.readLong();
+        return new UUID(msb, lsb);
+    }
+}
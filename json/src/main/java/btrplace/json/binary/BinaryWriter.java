@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.json.binary;
+
+import btrplace.json.JSONConverterException;
+
+import java.io.DataOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+
+/**
+ * Low-level writer for the binary format.
+ * <p/>
+ * Natural numbers are encoded using a variable number of bytes.
+ * UUIDs and strings are stored once in a dictionary and then
+ * referred to using their dense index in the dictionary.
+ * A dictionary entry is either declared in bulk using {@link #declare(java.util.Collection)}
+ * or inlined the first time the UUID or the string is written.
+ * <p/>
+ * Generic JSON values are supported through {@link #writeValue(Object)}
+ * to encode the objects produced by the JSON converters.
+ *
+ * @author Fabien Hermenier
+ * @see BinaryReader
+ */
+public class BinaryWriter implements Flushable {
+
+    static final int NULL = 0;
+
+    static final int FALSE = 1;
+
+    static final int TRUE = 2;
+
+    static final int INTEGER = 3;
+
+    static final int DOUBLE = 4;
+
+    static final int STRING = 5;
+
+    static final int UUID_REF = 6;
+
+    static final int ARRAY = 7;
+
+    static final int OBJECT = 8;
+
+    private DataOutputStream out;
+
+    private Map<UUID, Integer> uuids;
+
+    private Map<String, Integer> strings;
+
+    /**
+     * Make a new writer.
+     *
+     * @param out the stream to write to
+     */
+    public BinaryWriter(OutputStream out) {
+        this.out = new DataOutputStream(out);
+        uuids = new HashMap<UUID, Integer>();
+        strings = new HashMap<String, Integer>();
+    }
+
+    /**
+     * Write a natural number.
+     *
+     * @param v the number to write. Must be positive
+     * @throws IOException if an error occurred while writing
+     */
+    public void writeNat(int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    /**
+     * Write a signed number.
+     *
+     * @param v the number to write
+     * @throws IOException if an error occurred while writing
+     */
+    public void writeLong(long v) throws IOException {
+        long z = (v << 1) ^ (v >> 63);
+        while ((z & ~0x7FL) != 0) {
+            out.write((int) ((z & 0x7F) | 0x80));
+            z >>>= 7;
+        }
+        out.write((int) z);
+    }
+
+    /**
+     * Write a real number.
+     *
+     * @param d the number to write
+     * @throws IOException if an error occurred while writing
+     */
+    public void writeDouble(double d) throws IOException {
+        out.writeDouble(d);
+    }
+
+    /**
+     * Declare a bulk of UUIDs in the dictionary.
+     * UUIDs that are already declared are ignored.
+     *
+     * @param us the UUIDs to declare
+     * @throws IOException if an error occurred while writing
+     */
+    public void declare(Collection<UUID> us) throws IOException {
+        List<UUID> fresh = new ArrayList<UUID>(us.size());
+        for (UUID u : us) {
+            if (!uuids.containsKey(u)) {
+                uuids.put(u, uuids.size());
+                fresh.add(u);
+            }
+        }
+        writeNat(fresh.size());
+        for (UUID u : fresh) {
+            writeRawUUID(u);
+        }
+    }
+
+    /**
+     * Write a UUID.
+     *
+     * @param u the UUID to write
+     * @throws IOException if an error occurred while writing
+     */
+    public void writeUUID(UUID u) throws IOException {
+        Integer idx = uuids.get(u);
+        if (idx == null) {
+            writeNat(0);
+            writeRawUUID(u);
+            uuids.put(u, uuids.size());
+        } else {
+            writeNat(idx + 1);
+        }
+    }
+
+    /**
+     * Write a collection of UUIDs.
+     *
+     * @param us the UUIDs to write
+     * @throws IOException if an error occurred while writing
+     */
+    public void writeUUIDs(Collection<UUID> us) throws IOException {
+        writeNat(us.size());
+        for (UUID u : us) {
+            writeUUID(u);
+        }
+    }
+
+    /**
+     * Write a string.
+     *
+     * @param s the string to write
+     * @throws IOException if an error occurred while writing
+     */
+    public void writeString(String s) throws IOException {
+        Integer idx = strings.get(s);
+        if (idx == null) {
+            writeNat(0);
+            out.writeUTF(s);
+            strings.put(s, strings.size());
+        } else {
+            writeNat(idx + 1);
+        }
+    }
+
+    /**
+     * Write a raw byte.
+     *
+     * @param b the byte to write
+     * @throws IOException if an error occurred while writing
+     */
+    public void writeByte(int b) throws IOException {
+        out.write(b);
+    }
+
+    /**
+     * Write a JSON value.
+     * Strings denoting a UUID are stored as a UUID reference.
+     *
+     * @param o a {@link Map}, a {@link Collection}, a {@link String}, a {@link UUID},
+     *          a {@link Number}, a {@link Boolean} or {@code null}
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if the value is not supported
+     */
+    public void writeValue(Object o) throws IOException, JSONConverterException {
+        if (o == null) {
+            out.write(NULL);
+        } else if (o instanceof Boolean) {
+            out.write((Boolean) o ? TRUE : FALSE);
+        } else if (o instanceof Double || o instanceof Float) {
+            out.write(DOUBLE);
+            out.writeDouble(((Number) o).doubleValue());
+        } else if (o instanceof Number) {
+            out.write(INTEGER);
+            writeLong(((Number) o).longValue());
+        } else if (o instanceof UUID) {
+            out.write(UUID_REF);
+            writeUUID((UUID) o);
+        } else if (o instanceof String) {
+            String s = (String) o;
+            UUID u = asUUID(s);
+            if (u != null) {
+                out.write(UUID_REF);
+                writeUUID(u);
+            } else {
+                out.write(STRING);
+                writeString(s);
+            }
+        } else if (o instanceof Collection) {
+            Collection<?> c = (Collection<?>) o;
+            out.write(ARRAY);
+            writeNat(c.size());
+            for (Object x : c) {
+                writeValue(x);
+            }
+        } else if (o instanceof Map) {
+            Map<?, ?> m = (Map<?, ?>) o;
+            out.write(OBJECT);
+            writeNat(m.size());
+            for (Map.Entry<?, ?> e : m.entrySet()) {
+                writeString(e.getKey().toString());
+                writeValue(e.getValue());
+            }
+        } else {
+            throw new JSONConverterException("Unsupported value type: " + o.getClass());
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private void writeRawUUID(UUID u) throws IOException {
+        out.writeLong(u.getMostSignificantBits());
+        out.writeLong(u.getLeastSignificantBits());
+    }
+
+    /**
+     * Get the UUID denoted by a string if the string is its canonical representation.
+     *
+     * @param s the string
+     * @return the UUID, {@code null} if the string does not denote a UUID
+     */
+    private static UUID asUUID(String s) {
+        if (s.length() != 36 || s.charAt(8) != '-' || s.charAt(13) != '-' || s.charAt(18) != '-' || s.charAt(23) != '-') {
+            return null;
+        }
+        try {
+            UUID u = UUID.fromString(s);
+            return u.toString().equals(s) ? u : null;
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+}
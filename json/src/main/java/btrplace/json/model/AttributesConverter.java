@@ -19,10 +19,15 @@
 package btrplace.json.model;
 
 import btrplace.json.JSONConverter;
+import btrplace.json.JSONConverterException;
+import btrplace.json.JSONStreamReader;
+import btrplace.json.JSONStreamWriter;
+import btrplace.json.JSONUtils;
 import btrplace.model.Attributes;
 import btrplace.model.DefaultAttributes;
 import net.minidev.json.JSONObject;
 
+import java.io.IOException;
 import java.util.UUID;
 
 /**
@@ -39,7 +44,7 @@ public class AttributesConverter implements JSONConverter<Attributes> {
     public Attributes fromJSON(JSONObject o) {
         Attributes attrs = new DefaultAttributes();
         for (Object el : o.keySet()) {
-            UUID u = UUID.fromString(el.toString());
+            UUID u = JSONUtils.parseUUID(el.toString());
             JSONObject entries = (JSONObject) o.get(el);
             for (Object entry : entries.keySet()) {
                 Object value = entries.get(entry);
@@ -74,4 +79,66 @@ public class AttributesConverter implements JSONConverter<Attributes> {
         }
         return res;
     }
+
+    /**
+     * Write attributes directly into a stream.
+     *
+     * @param attributes the attributes to write
+     * @param out        the stream to write to
+     * @throws IOException if an error occurred while writing
+     */
+    public void toJSON(Attributes attributes, JSONStreamWriter out) throws IOException {
+        out.beginObject();
+        for (UUID e : attributes.getElements()) {
+            out.name(e.toString()).beginObject();
+            for (String k : attributes.getKeys(e)) {
+                out.name(k).value(attributes.get(e, k));
+            }
+            out.endObject();
+        }
+        out.endObject();
+    }
+
+    /**
+     * Read attributes from a stream.
+     *
+     * @param in the stream to read
+     * @return the resulting attributes
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the stream does not describe attributes
+     */
+    public Attributes fromJSON(JSONStreamReader in) throws IOException, JSONConverterException {
+        Attributes attrs = new DefaultAttributes();
+        in.beginObject();
+        while (in.hasNext()) {
+            String n = in.nextName();
+            UUID u;
+            try {
+                u = JSONUtils.parseUUID(n);
+            } catch (IllegalArgumentException ex) {
+                throw new JSONConverterException("Unable to read a UUID from string '" + n + "'");
+            }
+            in.beginObject();
+            while (in.hasNext()) {
+                String k = in.nextName();
+                Object value = in.nextValue();
+                if (value instanceof Boolean) {
+                    attrs.put(u, k, (Boolean) value);
+                } else if (value instanceof Long) {
+                    attrs.put(u, k, (Long) value);
+                } else if (value instanceof String) {
+                    attrs.put(u, k, (String) value);
+                } else if (value instanceof Double) {
+                    attrs.put(u, k, (Double) value);
+                } else if (value instanceof Integer) {
+                    attrs.put(u, k, (Integer) value);
+                } else {
+                    throw new JSONConverterException("Unsupported value for attribute '" + k + "' of '" + u + "'");
+                }
+            }
+            in.endObject();
+        }
+        in.endObject();
+        return attrs;
+    }
 }
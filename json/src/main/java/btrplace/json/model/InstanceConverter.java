@@ -20,11 +20,18 @@ package btrplace.json.model;
 
 import btrplace.json.JSONConverter;
 import btrplace.json.JSONConverterException;
+import btrplace.json.JSONStreamReader;
+import btrplace.json.JSONStreamWriter;
 import btrplace.json.model.constraint.SatConstraintsConverter;
 import btrplace.model.Model;
+import btrplace.model.SatConstraint;
 import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
 
+import java.io.*;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
 /**
  * A JSON converter for {@link btrplace.json.model.Instance}.
  *
@@ -33,10 +40,37 @@ import net.minidev.json.JSONObject;
 
 public class InstanceConverter implements JSONConverter<Instance> {
 
+    private ExecutorService executor = null;
+
+    /**
+     * Set the executor to use to convert the constraints in parallel.
+     *
+     * @param e the executor to use. {@code null} to convert the constraints sequentially
+     * @see SatConstraintsConverter#setExecutorService(java.util.concurrent.ExecutorService)
+     */
+    public void setExecutorService(ExecutorService e) {
+        this.executor = e;
+    }
+
+    /**
+     * Get the executor used to convert the constraints in parallel.
+     *
+     * @return the executor, {@code null} if the conversion is sequential
+     */
+    public ExecutorService getExecutorService() {
+        return executor;
+    }
+
+    private SatConstraintsConverter makeConstraintsConverter() {
+        SatConstraintsConverter c = new SatConstraintsConverter();
+        c.setExecutorService(executor);
+        return c;
+    }
+
     @Override
     public Instance fromJSON(JSONObject in) throws JSONConverterException {
         ModelConverter moc = new ModelConverter();
-        SatConstraintsConverter cstrc = new SatConstraintsConverter();
+        SatConstraintsConverter cstrc = makeConstraintsConverter();
 
         Model mo = moc.fromJSON((JSONObject) in.get("model"));
 
@@ -46,10 +80,98 @@ public class InstanceConverter implements JSONConverter<Instance> {
     @Override
     public JSONObject toJSON(Instance instance) throws JSONConverterException {
         ModelConverter moc = new ModelConverter();
-        SatConstraintsConverter cstrc = new SatConstraintsConverter();
+        SatConstraintsConverter cstrc = makeConstraintsConverter();
         JSONObject ob = new JSONObject();
         ob.put("model", moc.toJSON(instance.getModel()));
         ob.put("constraints", cstrc.toJSON(instance.getConstraints()));
         return ob;
     }
+
+    /**
+     * Write an instance directly into a stream.
+     *
+     * @param instance the instance to write
+     * @param out      the stream to write to
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if an error occurred during the conversion
+     */
+    public void toJSON(Instance instance, JSONStreamWriter out) throws IOException, JSONConverterException {
+        ModelConverter moc = new ModelConverter();
+        SatConstraintsConverter cstrc = makeConstraintsConverter();
+        out.beginObject();
+        out.name("model");
+        moc.toJSON(instance.getModel(), out);
+        out.name("constraints");
+        cstrc.toJSON(instance.getConstraints(), out);
+        out.endObject();
+    }
+
+    /**
+     * Write an instance directly into a writer.
+     * The writer is flushed but not closed.
+     *
+     * @param instance the instance to write
+     * @param out      the writer
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if an error occurred during the conversion
+     */
+    public void toJSON(Instance instance, Writer out) throws IOException, JSONConverterException {
+        JSONStreamWriter w = new JSONStreamWriter(new BufferedWriter(out));
+        toJSON(instance, w);
+        w.flush();
+    }
+
+    /**
+     * Read an instance from a stream.
+     *
+     * @param in the stream to read
+     * @return the resulting instance
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the stream does not describe an instance
+     */
+    public Instance fromJSON(JSONStreamReader in) throws IOException, JSONConverterException {
+        ModelConverter moc = new ModelConverter();
+        SatConstraintsConverter cstrc = makeConstraintsConverter();
+        Model mo = null;
+        List<SatConstraint> cstrs = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String k = in.nextName();
+            if (k.equals("model")) {
+                mo = moc.fromJSON(in);
+            } else if (k.equals("constraints")) {
+                cstrs = cstrc.fromJSON(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        if (mo == null) {
+            throw new JSONConverterException("Key 'model' is expected to extract the model from the instance");
+        }
+        if (cstrs == null) {
+            throw new JSONConverterException("Key 'constraints' is expected to extract the constraints from the instance");
+        }
+        return new Instance(mo, cstrs);
+    }
+
+    /**
+     * Read an instance from a reader.
+     * The reader is closed afterward.
+     *
+     * @param r the reader
+     * @return the resulting instance
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the stream does not describe an instance
+     */
+    public Instance fromJSON(Reader r) throws IOException, JSONConverterException {
+        JSONStreamReader in = new JSONStreamReader(r);
+        try {
+            Instance i = fromJSON(in);
+            in.endDocument();
+            return i;
+        } finally {
+            in.close();
+        }
+    }
 }
@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.json.model;
+
+import btrplace.json.JSONConverterException;
+import btrplace.json.JSONStreamReader;
+import btrplace.json.JSONUtils;
+import btrplace.json.model.constraint.SatConstraintsConverter;
+import btrplace.model.Model;
+import btrplace.model.SatConstraint;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * An instance read from a UTF-8 encoded JSON document where the constraints are
+ * only converted on demand.
+ * <p/>
+ * The document is scanned once: the model is converted while the constraints are
+ * only browsed to keep their byte offset in the document. The constraints are indexed by
+ * their JSON identifier and by the elements they mention, so a subset of
+ * the constraints, for example the ones related to a partition of the nodes,
+ * can be converted without converting the others.
+ * The document is not kept in memory: a constraint is converted by reading
+ * the document again from its offset. The converted constraints are cached.
+ * <p/>
+ * The instance must be closed once the constraints are no longer needed to release the document.
+ *
+ * @author Fabien Hermenier
+ */
+public class LazyInstance implements Closeable {
+
+    private FileChannel doc;
+
+    private Model model;
+
+    private SatConstraintsConverter converter;
+
+    private long[] starts;
+
+    private SatConstraint[] cstrs;
+
+    private Map<String, List<Integer>> byType;
+
+    private Map<UUID, List<Integer>> byElement;
+
+    /**
+     * Read an instance from a file using the default constraint converters.
+     *
+     * @param f the file containing the JSON document
+     * @throws IOException            if an error occurred while reading the file
+     * @throws JSONConverterException if the document does not describe an instance
+     */
+    public LazyInstance(File f) throws IOException, JSONConverterException {
+        this(f, new SatConstraintsConverter());
+    }
+
+    /**
+     * Read an instance from a file.
+     *
+     * @param f the file containing the JSON document
+     * @param c the converter to use to convert the constraints
+     * @throws IOException            if an error occurred while reading the file
+     * @throws JSONConverterException if the document does not describe an instance
+     */
+    public LazyInstance(File f, SatConstraintsConverter c) throws IOException, JSONConverterException {
+        this(new RandomAccessFile(f, "r").getChannel(), c);
+    }
+
+    /**
+     * Read an instance from a channel.
+     * The document is read from the beginning of the channel, that
+     * will be closed with the instance.
+     *
+     * @param ch the channel that provides the JSON document
+     * @param c  the converter to use to convert the constraints
+     * @throws IOException            if an error occurred while reading the channel
+     * @throws JSONConverterException if the document does not describe an instance
+     */
+    public LazyInstance(FileChannel ch, SatConstraintsConverter c) throws IOException, JSONConverterException {
+        this.doc = ch;
+        this.converter = c;
+        byType = new HashMap<String, List<Integer>>();
+        byElement = new HashMap<UUID, List<Integer>>();
+        List<Long> offsets = new ArrayList<Long>();
+        try {
+            ch.position(0);
+            //The stream is not closed as it would close the channel
+            JSONStreamReader in = new JSONStreamReader(Channels.newInputStream(ch));
+            in.beginObject();
+            while (in.hasNext()) {
+                String k = in.nextName();
+                if (k.equals("model")) {
+                    model = new ModelConverter().fromJSON(in);
+                } else if (k.equals("constraints")) {
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        in.peek();
+                        int idx = offsets.size();
+                        offsets.add(in.getBytePosition() - 1);
+                        index(idx, in);
+                    }
+                    in.endArray();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            in.endDocument();
+            if (model == null) {
+                throw new JSONConverterException("Key 'model' is expected to extract the model from the instance");
+            }
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        } catch (JSONConverterException e) {
+            ch.close();
+            throw e;
+        }
+        starts = new long[offsets.size()];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = offsets.get(i);
+        }
+        cstrs = new SatConstraint[starts.length];
+    }
+
+    /**
+     * Index a constraint while browsing it.
+     *
+     * @param idx the constraint index
+     * @param in  the stream, positioned on the constraint
+     */
+    private void index(int idx, JSONStreamReader in) throws IOException, JSONConverterException {
+        String id = null;
+        Set<UUID> elems = new HashSet<UUID>();
+        in.beginObject();
+        while (in.hasNext()) {
+            String k = in.nextName();
+            if (k.equals("id") && in.peek() == JSONStreamReader.Token.STRING) {
+                id = in.nextString();
+            } else {
+                collectUUIDs(in, elems);
+            }
+        }
+        in.endObject();
+        add(byType, id, idx);
+        for (UUID u : elems) {
+            add(byElement, u, idx);
+        }
+    }
+
+    private static <K> void add(Map<K, List<Integer>> m, K k, int idx) {
+        List<Integer> l = m.get(k);
+        if (l == null) {
+            l = new ArrayList<Integer>();
+            m.put(k, l);
+        }
+        l.add(idx);
+    }
+
+    /**
+     * Consume a JSON value and collect the UUIDs it mentions,
+     * either as strings or as property names.
+     *
+     * @param in    the stream, positioned on the value
+     * @param uuids the set to fill
+     */
+    private static void collectUUIDs(JSONStreamReader in, Set<UUID> uuids) throws IOException, JSONConverterException {
+        int d = 0;
+        do {
+            switch (in.peek()) {
+                case BEGIN_OBJECT:
+                    in.beginObject();
+                    d++;
+                    break;
+                case BEGIN_ARRAY:
+                    in.beginArray();
+                    d++;
+                    break;
+                case END_OBJECT:
+                    in.endObject();
+                    d--;
+                    break;
+                case END_ARRAY:
+                    in.endArray();
+                    d--;
+                    break;
+                case NAME:
+                    collectUUID(in.nextName(), uuids);
+                    break;
+                case STRING:
+                    collectUUID(in.nextString(), uuids);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        } while (d > 0);
+    }
+
+    private static void collectUUID(String s, Set<UUID> uuids) {
+        if (s.length() == 36 && s.charAt(8) == '-') {
+            try {
+                uuids.add(JSONUtils.parseUUID(s));
+            } catch (IllegalArgumentException ex) {
+                //Not a UUID
+            }
+        }
+    }
+
+    /**
+     * Get the model.
+     *
+     * @return the model, converted while reading the document
+     */
+    public Model getModel() {
+        return model;
+    }
+
+    /**
+     * Get the number of constraints.
+     *
+     * @return a positive number
+     */
+    public int getNbConstraints() {
+        return starts.length;
+    }
+
+    /**
+     * Get the JSON identifiers of the constraints in the instance.
+     *
+     * @return a set of identifiers
+     */
+    public Set<String> getConstraintTypes() {
+        return byType.keySet();
+    }
+
+    /**
+     * Get a constraint.
+     *
+     * @param i the index of the constraint in the document
+     * @return the constraint
+     * @throws JSONConverterException if the constraint cannot be converted
+     */
+    public synchronized SatConstraint getConstraint(int i) throws JSONConverterException {
+        if (cstrs[i] == null) {
+            try {
+                doc.position(starts[i]);
+                cstrs[i] = converter.fromJSON(new JSONStreamReader(Channels.newInputStream(doc)).nextObject());
+            } catch (IOException e) {
+                throw new JSONConverterException(e.getMessage());
+            }
+        }
+        return cstrs[i];
+    }
+
+    /**
+     * Get all the constraints.
+     *
+     * @return the constraints, in the order of the document
+     * @throws JSONConverterException if a constraint cannot be converted
+     */
+    public List<SatConstraint> getConstraints() throws JSONConverterException {
+        List<SatConstraint> l = new ArrayList<SatConstraint>(starts.length);
+        for (int i = 0; i < starts.length; i++) {
+            l.add(getConstraint(i));
+        }
+        return l;
+    }
+
+    /**
+     * Get the constraints having a given JSON identifier.
+     *
+     * @param id the constraint identifier, such as {@code "spread"}
+     * @return the constraints, in the order of the document. May be empty
+     * @throws JSONConverterException if a constraint cannot be converted
+     */
+    public List<SatConstraint> getConstraints(String id) throws JSONConverterException {
+        return materialize(byType.get(id));
+    }
+
+    /**
+     * Get the constraints that mention at least one of the given elements.
+     *
+     * @param elems the elements
+     * @return the constraints, in the order of the document. May be empty
+     * @throws JSONConverterException if a constraint cannot be converted
+     */
+    public List<SatConstraint> getConstraints(Collection<UUID> elems) throws JSONConverterException {
+        SortedSet<Integer> idx = new TreeSet<Integer>();
+        for (UUID u : elems) {
+            List<Integer> l = byElement.get(u);
+            if (l != null) {
+                idx.addAll(l);
+            }
+        }
+        return materialize(idx);
+    }
+
+    private List<SatConstraint> materialize(Collection<Integer> idx) throws JSONConverterException {
+        if (idx == null) {
+            return Collections.emptyList();
+        }
+        List<SatConstraint> l = new ArrayList<SatConstraint>(idx.size());
+        for (int i : idx) {
+            l.add(getConstraint(i));
+        }
+        return l;
+    }
+
+    /**
+     * Get the instance with all the constraints converted.
+     *
+     * @return the instance
+     * @throws JSONConverterException if a constraint cannot be converted
+     */
+    public Instance toInstance() throws JSONConverterException {
+        return new Instance(model, getConstraints());
+    }
+
+    /**
+     * Release the document.
+     * The constraints that were not converted are no longer available.
+     *
+     * @throws IOException if an error occurred while closing the document
+     */
+    @Override
+    public void close() throws IOException {
+        doc.close();
+    }
+}
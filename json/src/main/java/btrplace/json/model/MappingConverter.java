@@ -20,11 +20,14 @@ package btrplace.json.model;
 
 import btrplace.json.JSONConverter;
 import btrplace.json.JSONConverterException;
+import btrplace.json.JSONStreamReader;
+import btrplace.json.JSONStreamWriter;
 import btrplace.json.JSONUtils;
 import btrplace.model.DefaultMapping;
 import btrplace.model.Mapping;
 import net.minidev.json.JSONObject;
 
+import java.io.*;
 import java.util.UUID;
 
 /**
@@ -62,7 +65,7 @@ public class MappingConverter implements JSONConverter<Mapping> {
         }
         JSONObject ons = (JSONObject) o.get("onlineNodes");
         for (Object k : ons.keySet()) {
-            UUID u = UUID.fromString((String) k);
+            UUID u = JSONUtils.parseUUID((String) k);
             JSONObject on = (JSONObject) ons.get(k);
             c.addOnlineNode(u);
             for (UUID vmId : JSONUtils.requiredUUIDs(on, "runningVMs")) {
@@ -75,4 +78,131 @@ public class MappingConverter implements JSONConverter<Mapping> {
 
         return c;
     }
+
+    /**
+     * Write a mapping directly into a stream.
+     *
+     * @param c   the mapping to write
+     * @param out the stream to write to
+     * @throws IOException if an error occurred while writing
+     */
+    public void toJSON(Mapping c, JSONStreamWriter out) throws IOException {
+        out.beginObject();
+        out.name("offlineNodes").value(c.getOfflineNodes());
+        out.name("readyVMs").value(c.getReadyVMs());
+        out.name("onlineNodes").beginObject();
+        for (UUID n : c.getOnlineNodes()) {
+            out.name(n.toString()).beginObject();
+            out.name("runningVMs").value(c.getRunningVMs(n));
+            out.name("sleepingVMs").value(c.getSleepingVMs(n));
+            out.endObject();
+        }
+        out.endObject();
+        out.endObject();
+    }
+
+    /**
+     * Write a mapping directly into a writer.
+     * The writer is flushed but not closed.
+     *
+     * @param c   the mapping to write
+     * @param out the writer
+     * @throws IOException if an error occurred while writing
+     */
+    public void toJSON(Mapping c, Writer out) throws IOException {
+        JSONStreamWriter w = new JSONStreamWriter(new BufferedWriter(out));
+        toJSON(c, w);
+        w.flush();
+    }
+
+    /**
+     * Read a mapping from a stream.
+     * The elements are added to the mapping while the stream is read.
+     *
+     * @param in the stream to read
+     * @return the resulting mapping
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the stream does not describe a mapping
+     */
+    public Mapping fromJSON(JSONStreamReader in) throws IOException, JSONConverterException {
+        Mapping c = new DefaultMapping();
+        in.beginObject();
+        while (in.hasNext()) {
+            String k = in.nextName();
+            if (k.equals("offlineNodes")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    c.addOfflineNode(in.nextUUID());
+                }
+                in.endArray();
+            } else if (k.equals("readyVMs")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    c.addReadyVM(in.nextUUID());
+                }
+                in.endArray();
+            } else if (k.equals("onlineNodes")) {
+                in.beginObject();
+                while (in.hasNext()) {
+                    readOnlineNode(c, in);
+                }
+                in.endObject();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return c;
+    }
+
+    private void readOnlineNode(Mapping c, JSONStreamReader in) throws IOException, JSONConverterException {
+        String n = in.nextName();
+        UUID u;
+        try {
+            u = JSONUtils.parseUUID(n);
+        } catch (IllegalArgumentException ex) {
+            throw new JSONConverterException("Unable to read a UUID from string '" + n + "'");
+        }
+        c.addOnlineNode(u);
+        in.beginObject();
+        while (in.hasNext()) {
+            String k = in.nextName();
+            if (k.equals("runningVMs")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    c.addRunningVM(in.nextUUID(), u);
+                }
+                in.endArray();
+            } else if (k.equals("sleepingVMs")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    c.addSleepingVM(in.nextUUID(), u);
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    /**
+     * Read a mapping from a reader.
+     * The reader is closed afterward.
+     *
+     * @param r the reader
+     * @return the resulting mapping
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the stream does not describe a mapping
+     */
+    public Mapping fromJSON(Reader r) throws IOException, JSONConverterException {
+        JSONStreamReader in = new JSONStreamReader(r);
+        try {
+            Mapping c = fromJSON(in);
+            in.endDocument();
+            return c;
+        } finally {
+            in.close();
+        }
+    }
 }
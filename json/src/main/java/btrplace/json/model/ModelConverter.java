@@ -20,7 +20,10 @@ package btrplace.json.model;
 
 import btrplace.json.JSONConverter;
 import btrplace.json.JSONConverterException;
+import btrplace.json.JSONStreamReader;
+import btrplace.json.JSONStreamWriter;
 import btrplace.json.model.view.ModelViewsConverter;
+import btrplace.model.Attributes;
 import btrplace.model.DefaultModel;
 import btrplace.model.Mapping;
 import btrplace.model.Model;
@@ -28,6 +31,10 @@ import btrplace.model.ModelView;
 import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
 
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Class to serialize/unserialize a model using the JSON format.
  *
@@ -101,4 +108,105 @@ public class ModelConverter implements JSONConverter<Model> {
         }
         return i;
     }
+
+    /**
+     * Write a model directly into a stream.
+     *
+     * @param i   the model to write
+     * @param out the stream to write to
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if a view cannot be converted
+     */
+    public void toJSON(Model i, JSONStreamWriter out) throws IOException, JSONConverterException {
+        out.beginObject();
+        out.name("mapping");
+        cfgParser.toJSON(i.getMapping(), out);
+        out.name("attributes");
+        attrsParser.toJSON(i.getAttributes(), out);
+        out.name("views").beginArray();
+        for (ModelView v : i.getViews()) {
+            viewsConverter.toJSON(v, out);
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+    /**
+     * Write a model directly into a writer.
+     * The writer is flushed but not closed.
+     *
+     * @param i   the model to write
+     * @param out the writer
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if a view cannot be converted
+     */
+    public void toJSON(Model i, Writer out) throws IOException, JSONConverterException {
+        JSONStreamWriter w = new JSONStreamWriter(new BufferedWriter(out));
+        toJSON(i, w);
+        w.flush();
+    }
+
+    /**
+     * Read a model from a stream.
+     * The properties may come in any order.
+     *
+     * @param in the stream to read
+     * @return the resulting model. {@code null} if there is no mapping
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the stream does not describe a model
+     */
+    public Model fromJSON(JSONStreamReader in) throws IOException, JSONConverterException {
+        Mapping cfg = null;
+        Attributes attrs = null;
+        List<ModelView> views = new ArrayList<ModelView>();
+        in.beginObject();
+        while (in.hasNext()) {
+            String k = in.nextName();
+            if (k.equals("mapping")) {
+                cfg = cfgParser.fromJSON(in);
+            } else if (k.equals("attributes")) {
+                attrs = attrsParser.fromJSON(in);
+            } else if (k.equals("views")) {
+                in.beginArray();
+                while (in.hasNext()) {
+                    views.add(viewsConverter.fromJSON(in));
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        if (cfg == null) {
+            return null;
+        }
+        Model i = new DefaultModel(cfg);
+        if (attrs != null) {
+            i.setAttributes(attrs);
+        }
+        for (ModelView v : views) {
+            i.attach(v);
+        }
+        return i;
+    }
+
+    /**
+     * Read a model from a reader.
+     * The reader is closed afterward.
+     *
+     * @param r the reader
+     * @return the resulting model
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the stream does not describe a model
+     */
+    public Model fromJSON(Reader r) throws IOException, JSONConverterException {
+        JSONStreamReader in = new JSONStreamReader(r);
+        try {
+            Model mo = fromJSON(in);
+            in.endDocument();
+            return mo;
+        } finally {
+            in.close();
+        }
+    }
 }
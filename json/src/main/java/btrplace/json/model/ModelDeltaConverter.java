@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.json.model;
+
+import btrplace.json.JSONConverter;
+import btrplace.json.JSONConverterException;
+import btrplace.json.JSONUtils;
+import btrplace.json.model.view.ModelViewsConverter;
+import btrplace.model.ModelDelta;
+import btrplace.model.ModelView;
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * JSON converter for a {@link ModelDelta}.
+ * Only the sections that are not empty are written. The VMs are grouped by new state
+ * and by new host like in {@link MappingConverter}:
+ * <pre>
+ * {"online": [n1], "offline": [n2], "removedNodes": [],
+ *  "running": {"n1": [vm1, vm2]}, "sleeping": {}, "ready": [vm3], "removedVMs": [],
+ *  "resources": {"cpu": {"set": {"vm1": 3}, "unset": [vm3]}},
+ *  "attachedViews": [], "detachedViews": [],
+ *  "attributes": {"set": {"vm1": {"boot": 5}}, "unset": {"vm2": ["boot"]}}}
+ * </pre>
+ *
+ * @author Fabien Hermenier
+ */
+public class ModelDeltaConverter implements JSONConverter<ModelDelta> {
+
+    private ModelViewsConverter viewsConverter;
+
+    /**
+     * Make a new converter.
+     */
+    public ModelDeltaConverter() {
+        viewsConverter = new ModelViewsConverter();
+    }
+
+    /**
+     * Get the converter that manage the views.
+     *
+     * @return the used converter
+     */
+    public ModelViewsConverter getViewsConverter() {
+        return viewsConverter;
+    }
+
+    @Override
+    public JSONObject toJSON(ModelDelta d) throws JSONConverterException {
+        JSONObject o = new JSONObject();
+        JSONArray[] nodes = {new JSONArray(), new JSONArray(), new JSONArray()};
+        for (Map.Entry<UUID, ModelDelta.NodeState> e : d.getNodeStates().entrySet()) {
+            nodes[e.getValue().ordinal()].add(e.getKey().toString());
+        }
+        putNotEmpty(o, "online", nodes[ModelDelta.NodeState.ONLINE.ordinal()]);
+        putNotEmpty(o, "offline", nodes[ModelDelta.NodeState.OFFLINE.ordinal()]);
+        putNotEmpty(o, "removedNodes", nodes[ModelDelta.NodeState.REMOVED.ordinal()]);
+
+        JSONObject running = new JSONObject();
+        JSONObject sleeping = new JSONObject();
+        JSONArray ready = new JSONArray();
+        JSONArray removed = new JSONArray();
+        for (Map.Entry<UUID, ModelDelta.VMState> e : d.getVMStates().entrySet()) {
+            UUID vm = e.getKey();
+            switch (e.getValue()) {
+                case RUNNING:
+                    hosted(running, d.getVMHost(vm)).add(vm.toString());
+                    break;
+                case SLEEPING:
+                    hosted(sleeping, d.getVMHost(vm)).add(vm.toString());
+                    break;
+                case READY:
+                    ready.add(vm.toString());
+                    break;
+                default:
+                    removed.add(vm.toString());
+            }
+        }
+        putNotEmpty(o, "running", running);
+        putNotEmpty(o, "sleeping", sleeping);
+        putNotEmpty(o, "ready", ready);
+        putNotEmpty(o, "removedVMs", removed);
+
+        JSONObject rcs = new JSONObject();
+        for (Map.Entry<String, Map<UUID, Integer>> e : d.getResourceValues().entrySet()) {
+            JSONObject values = new JSONObject();
+            for (Map.Entry<UUID, Integer> v : e.getValue().entrySet()) {
+                values.put(v.getKey().toString(), v.getValue());
+            }
+            resource(rcs, e.getKey()).put("set", values);
+        }
+        for (Map.Entry<String, Set<UUID>> e : d.getUnsetResourceValues().entrySet()) {
+            resource(rcs, e.getKey()).put("unset", JSONUtils.toJSON(e.getValue()));
+        }
+        putNotEmpty(o, "resources", rcs);
+
+        JSONArray attached = new JSONArray();
+        for (ModelView v : d.getAttachedViews()) {
+            attached.add(viewsConverter.toJSON(v));
+        }
+        putNotEmpty(o, "attachedViews", attached);
+        JSONArray detached = new JSONArray();
+        detached.addAll(d.getDetachedViews());
+        putNotEmpty(o, "detachedViews", detached);
+
+        JSONObject attrs = new JSONObject();
+        JSONObject set = new JSONObject();
+        for (Map.Entry<UUID, Map<String, Object>> e : d.getAttributeValues().entrySet()) {
+            JSONObject values = new JSONObject();
+            values.putAll(e.getValue());
+            set.put(e.getKey().toString(), values);
+        }
+        putNotEmpty(attrs, "set", set);
+        JSONObject unset = new JSONObject();
+        for (Map.Entry<UUID, Set<String>> e : d.getUnsetAttributes().entrySet()) {
+            JSONArray keys = new JSONArray();
+            keys.addAll(e.getValue());
+            unset.put(e.getKey().toString(), keys);
+        }
+        putNotEmpty(attrs, "unset", unset);
+        putNotEmpty(o, "attributes", attrs);
+        return o;
+    }
+
+    private static JSONArray hosted(JSONObject o, UUID n) {
+        JSONArray a = (JSONArray) o.get(n.toString());
+        if (a == null) {
+            a = new JSONArray();
+            o.put(n.toString(), a);
+        }
+        return a;
+    }
+
+    private static JSONObject resource(JSONObject o, String rcId) {
+        JSONObject rc = (JSONObject) o.get(rcId);
+        if (rc == null) {
+            rc = new JSONObject();
+            o.put(rcId, rc);
+        }
+        return rc;
+    }
+
+    private static void putNotEmpty(JSONObject o, String k, Map<?, ?> m) {
+        if (!m.isEmpty()) {
+            o.put(k, m);
+        }
+    }
+
+    private static void putNotEmpty(JSONObject o, String k, JSONArray a) {
+        if (!a.isEmpty()) {
+            o.put(k, a);
+        }
+    }
+
+    @Override
+    public ModelDelta fromJSON(JSONObject o) throws JSONConverterException {
+        ModelDelta d = new ModelDelta();
+        for (UUID n : optionalUUIDs(o, "online")) {
+            d.setNodeState(n, ModelDelta.NodeState.ONLINE);
+        }
+        for (UUID n : optionalUUIDs(o, "offline")) {
+            d.setNodeState(n, ModelDelta.NodeState.OFFLINE);
+        }
+        for (UUID n : optionalUUIDs(o, "removedNodes")) {
+            d.setNodeState(n, ModelDelta.NodeState.REMOVED);
+        }
+
+        readHosted(d, o, "running", ModelDelta.VMState.RUNNING);
+        readHosted(d, o, "sleeping", ModelDelta.VMState.SLEEPING);
+        for (UUID vm : optionalUUIDs(o, "ready")) {
+            d.setVMState(vm, ModelDelta.VMState.READY, null);
+        }
+        for (UUID vm : optionalUUIDs(o, "removedVMs")) {
+            d.setVMState(vm, ModelDelta.VMState.REMOVED, null);
+        }
+
+        JSONObject rcs = optionalObject(o, "resources");
+        for (String rcId : rcs.keySet()) {
+            JSONObject rc = (JSONObject) rcs.get(rcId);
+            JSONObject values = optionalObject(rc, "set");
+            for (String k : values.keySet()) {
+                d.setResourceValue(rcId, JSONUtils.parseUUID(k), ((Number) values.get(k)).intValue());
+            }
+            for (UUID u : optionalUUIDs(rc, "unset")) {
+                d.unsetResourceValue(rcId, u);
+            }
+        }
+
+        if (o.containsKey("attachedViews")) {
+            for (Object v : (JSONArray) o.get("attachedViews")) {
+                d.attach(viewsConverter.fromJSON((JSONObject) v));
+            }
+        }
+        if (o.containsKey("detachedViews")) {
+            for (Object id : (JSONArray) o.get("detachedViews")) {
+                d.detach(id.toString());
+            }
+        }
+
+        JSONObject attrs = optionalObject(o, "attributes");
+        JSONObject set = optionalObject(attrs, "set");
+        for (String k : set.keySet()) {
+            UUID u = JSONUtils.parseUUID(k);
+            JSONObject values = (JSONObject) set.get(k);
+            for (String a : values.keySet()) {
+                d.putAttribute(u, a, values.get(a));
+            }
+        }
+        JSONObject unset = optionalObject(attrs, "unset");
+        for (String k : unset.keySet()) {
+            UUID u = JSONUtils.parseUUID(k);
+            for (Object a : (JSONArray) unset.get(k)) {
+                d.unsetAttribute(u, a.toString());
+            }
+        }
+        return d;
+    }
+
+    private static void readHosted(ModelDelta d, JSONObject o, String k, ModelDelta.VMState st) throws JSONConverterException {
+        JSONObject hosts = optionalObject(o, k);
+        for (String n : hosts.keySet()) {
+            UUID host = JSONUtils.parseUUID(n);
+            for (UUID vm : JSONUtils.requiredUUIDs(hosts, n)) {
+                d.setVMState(vm, st, host);
+            }
+        }
+    }
+
+    private static Set<UUID> optionalUUIDs(JSONObject o, String k) throws JSONConverterException {
+        if (!o.containsKey(k)) {
+            return Collections.emptySet();
+        }
+        return JSONUtils.requiredUUIDs(o, k);
+    }
+
+    private static JSONObject optionalObject(JSONObject o, String k) throws JSONConverterException {
+        Object x = o.get(k);
+        if (x == null) {
+            return new JSONObject();
+        }
+        if (!(x instanceof JSONObject)) {
+            throw new JSONConverterException("Object expected at key '" + k + "'");
+        }
+        return (JSONObject) x;
+    }
+}
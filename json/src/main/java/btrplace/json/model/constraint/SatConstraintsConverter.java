@@ -20,11 +20,18 @@ package btrplace.json.model.constraint;
 
 import btrplace.json.JSONConverter;
 import btrplace.json.JSONConverterException;
+import btrplace.json.JSONStreamReader;
+import btrplace.json.JSONStreamWriter;
 import btrplace.model.SatConstraint;
 import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Extensible converter for {@link btrplace.model.SatConstraint}.
@@ -36,6 +43,16 @@ public class SatConstraintsConverter implements JSONConverter<SatConstraint> {
     private Map<Class<? extends SatConstraint>, SatConstraintConverter<? extends SatConstraint>> java2json;
     private Map<String, SatConstraintConverter<? extends SatConstraint>> json2java;
 
+    /**
+     * The number of constraints converted by a single parallel task.
+     */
+    public static final int BATCH_SIZE = 256;
+
+    /**
+     * No parallel conversion by default.
+     */
+    private ExecutorService executor = null;
+
     /**
      * Make a new converter.
      */
@@ -82,6 +99,25 @@ public class SatConstraintsConverter implements JSONConverter<SatConstraint> {
 
     }
 
+    /**
+     * Set the executor to use to convert large arrays of constraints in parallel.
+     * The converters that are registered must then be thread-safe.
+     *
+     * @param e the executor to use. {@code null} to convert the constraints sequentially
+     */
+    public void setExecutorService(ExecutorService e) {
+        this.executor = e;
+    }
+
+    /**
+     * Get the executor used to convert the constraints in parallel.
+     *
+     * @return the executor, {@code null} if the conversion is sequential
+     */
+    public ExecutorService getExecutorService() {
+        return executor;
+    }
+
     /**
      * Get the Java constraints that are supported by the converter.
      *
@@ -145,10 +181,96 @@ public class SatConstraintsConverter implements JSONConverter<SatConstraint> {
      * @throws JSONConverterException if an error occurred
      */
     public List<SatConstraint> fromJSON(JSONArray arr) throws JSONConverterException {
-        List<SatConstraint> cstrs = new ArrayList<SatConstraint>(arr.size());
-        for (Object o : arr) {
-            cstrs.add(fromJSON((JSONObject) o));
+        return convert(arr);
+    }
+
+    /**
+     * Convert a list of JSON constraints.
+     * When an executor is available, the list is split into batches
+     * of {@link #BATCH_SIZE} constraints that are converted in parallel.
+     *
+     * @param in the constraints to convert
+     * @return the resulting constraints, in the same order
+     * @throws JSONConverterException if an error occurred
+     */
+    private List<SatConstraint> convert(List<Object> in) throws JSONConverterException {
+        List<SatConstraint> cstrs = new ArrayList<SatConstraint>(in.size());
+        if (executor == null || in.size() <= BATCH_SIZE) {
+            for (Object o : in) {
+                cstrs.add(fromJSON((JSONObject) o));
+            }
+            return cstrs;
+        }
+        List<Callable<List<SatConstraint>>> batches = new ArrayList<Callable<List<SatConstraint>>>();
+        for (int from = 0; from < in.size(); from += BATCH_SIZE) {
+            final List<Object> batch = in.subList(from, Math.min(from + BATCH_SIZE, in.size()));
+            batches.add(new Callable<List<SatConstraint>>() {
+                @Override
+                public List<SatConstraint> call() throws JSONConverterException {
+                    List<SatConstraint> res = new ArrayList<SatConstraint>(batch.size());
+                    for (Object o : batch) {
+                        res.add(fromJSON((JSONObject) o));
+                    }
+                    return res;
+                }
+            });
+        }
+        try {
+            for (Future<List<SatConstraint>> f : executor.invokeAll(batches)) {
+                cstrs.addAll(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JSONConverterException("Interrupted while converting the constraints");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof JSONConverterException) {
+                throw (JSONConverterException) e.getCause();
+            }
+            throw new JSONConverterException(e.getCause().getMessage());
+        }
+        return cstrs;
+    }
+
+    /**
+     * Write a collection of constraints directly into a stream.
+     *
+     * @param cstrs the constraints to write
+     * @param out   the stream to write to
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if a constraint cannot be converted
+     */
+    public void toJSON(Collection<SatConstraint> cstrs, JSONStreamWriter out) throws IOException, JSONConverterException {
+        out.beginArray();
+        for (SatConstraint cstr : cstrs) {
+            out.value(toJSON(cstr));
+        }
+        out.endArray();
+    }
+
+    /**
+     * Read an array of constraints from a stream.
+     * The constraints are converted by windows of several batches
+     * to process them in parallel when an executor is available.
+     *
+     * @param in the stream to read
+     * @return the resulting list of constraints
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if an error occurred
+     */
+    public List<SatConstraint> fromJSON(JSONStreamReader in) throws IOException, JSONConverterException {
+        List<SatConstraint> cstrs = new ArrayList<SatConstraint>();
+        List<Object> window = new ArrayList<Object>();
+        int max = executor == null ? 1 : BATCH_SIZE * 8;
+        in.beginArray();
+        while (in.hasNext()) {
+            window.add(in.nextObject());
+            if (window.size() == max) {
+                cstrs.addAll(convert(window));
+                window.clear();
+            }
         }
+        in.endArray();
+        cstrs.addAll(convert(window));
         return cstrs;
     }
 }
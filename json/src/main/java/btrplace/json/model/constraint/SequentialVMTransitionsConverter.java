@@ -50,7 +50,7 @@ public class SequentialVMTransitionsConverter extends SatConstraintConverter<Seq
         checkId(o);
         List<UUID> s = new ArrayList<UUID>();
         for (Object ob : (JSONArray) o.get("vms")) {
-            s.add(UUID.fromString((String) ob));
+            s.add(JSONUtils.parseUUID((String) ob));
         }
         return new SequentialVMTransitions(s);
     }
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.json.model.view;
+
+import btrplace.json.JSONConverterException;
+import btrplace.json.JSONStreamReader;
+import btrplace.json.JSONStreamWriter;
+import btrplace.model.ModelView;
+
+import java.io.IOException;
+
+/**
+ * A {@link ModelViewConverter} that can also convert a view
+ * directly from or to a JSON stream, without an intermediate tree.
+ * <p/>
+ * The JSON object of a view and its {@code id} property are managed
+ * by {@link ModelViewsConverter} as it needs the identifier first to choose
+ * the converter. The methods only deal with the properties that follow it.
+ *
+ * @author Fabien Hermenier
+ */
+public interface ModelViewStreamConverter<E extends ModelView> extends ModelViewConverter<E> {
+
+    /**
+     * Write the properties of a view, except its identifier.
+     *
+     * @param v   the view to write
+     * @param out the stream to write to. The object of the view is opened
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if the view cannot be converted
+     */
+    void toJSON(E v, JSONStreamWriter out) throws IOException, JSONConverterException;
+
+    /**
+     * Read the properties of a view, except its identifier.
+     * The properties may come in any order. The end of the object is not consumed.
+     *
+     * @param in the stream to read. The object of the view is opened and its identifier consumed
+     * @return the resulting view
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the stream does not describe the view
+     */
+    E fromJSON(JSONStreamReader in) throws IOException, JSONConverterException;
+}
@@ -20,9 +20,12 @@ package btrplace.json.model.view;
 
 import btrplace.json.JSONConverter;
 import btrplace.json.JSONConverterException;
+import btrplace.json.JSONStreamReader;
+import btrplace.json.JSONStreamWriter;
 import btrplace.model.ModelView;
 import net.minidev.json.JSONObject;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -85,19 +88,98 @@ public class ModelViewsConverter implements JSONConverter<ModelView> {
         if (id == null) {
             throw new JSONConverterException("No 'id' key in the object to choose the converter to use");
         }
-        ModelViewConverter<? extends ModelView> c = json2java.get(id.toString());
-        if (c == null) {
-            throw new JSONConverterException("No converter available for a view having id '" + id + "'");
+        return getJSONConverter(id.toString()).fromJSON(in);
+    }
+
+    /**
+     * Read a view from a stream.
+     * When the {@code id} property comes first and the converter is a {@link ModelViewStreamConverter},
+     * the view is read directly from the stream. Otherwise, the object is
+     * materialized to rely on the tree-based converter.
+     *
+     * @param in the stream to read
+     * @return the resulting view
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the stream does not describe a supported view
+     */
+    public ModelView fromJSON(JSONStreamReader in) throws IOException, JSONConverterException {
+        JSONObject o = new JSONObject();
+        in.beginObject();
+        if (in.hasNext()) {
+            String k = in.nextName();
+            if (k.equals("id")) {
+                String id = in.nextString();
+                ModelViewConverter<? extends ModelView> c = getJSONConverter(id);
+                if (c instanceof ModelViewStreamConverter) {
+                    ModelView v = ((ModelViewStreamConverter<? extends ModelView>) c).fromJSON(in);
+                    in.endObject();
+                    return v;
+                }
+                o.put(k, id);
+            } else {
+                o.put(k, in.nextValue());
+            }
+        }
+        while (in.hasNext()) {
+            String k = in.nextName();
+            o.put(k, in.nextValue());
+        }
+        in.endObject();
+        return fromJSON(o);
+    }
+
+    /**
+     * Write a view into a stream.
+     * The view is written directly into the stream when its converter is
+     * a {@link ModelViewStreamConverter}. Otherwise, it is converted to a tree first.
+     *
+     * @param o   the view to write
+     * @param out the stream to write to
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if the view cannot be converted
+     */
+    public void toJSON(ModelView o, JSONStreamWriter out) throws IOException, JSONConverterException {
+        ModelViewConverter c = getJavaConverter(o);
+        if (c instanceof ModelViewStreamConverter) {
+            out.beginObject();
+            out.name("id").value(c.getJSONId());
+            ((ModelViewStreamConverter) c).toJSON(o, out);
+            out.endObject();
+        } else {
+            out.value(c.toJSON(o));
         }
-        return c.fromJSON(in);
     }
 
+    /**
+     * {@inheritDoc}
+     * When there is no converter for the class of the view, the converter
+     * of its closest superclass is used.
+     */
     @Override
     public JSONObject toJSON(ModelView o) throws JSONConverterException {
-        ModelViewConverter c = java2json.get(o.getClass());
+        return getJavaConverter(o).toJSON(o);
+    }
+
+    private ModelViewConverter<? extends ModelView> getJSONConverter(String id) throws JSONConverterException {
+        ModelViewConverter<? extends ModelView> c = json2java.get(id);
+        if (c == null) {
+            throw new JSONConverterException("No converter available for a view having id '" + id + "'");
+        }
+        return c;
+    }
+
+    /**
+     * Get the converter for the class of a view.
+     * When there is none, the converter of its closest superclass is used.
+     */
+    private ModelViewConverter getJavaConverter(ModelView o) throws JSONConverterException {
+        ModelViewConverter c = null;
+        for (Class<?> cl = o.getClass(); c == null && cl != null; cl = cl.getSuperclass()) {
+            c = java2json.get(cl);
+        }
         if (c == null) {
             throw new JSONConverterException("No converter available for a view with the '" + o.getClass() + "' classname");
         }
-        return c.toJSON(o);
+        return c;
     }
 }
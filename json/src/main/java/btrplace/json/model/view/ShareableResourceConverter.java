@@ -18,9 +18,16 @@
 
 package btrplace.json.model.view;
 
+import btrplace.json.JSONConverterException;
+import btrplace.json.JSONStreamReader;
+import btrplace.json.JSONStreamWriter;
+import btrplace.json.JSONUtils;
 import btrplace.model.view.ShareableResource;
 import net.minidev.json.JSONObject;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
@@ -29,7 +36,7 @@ import java.util.UUID;
  *
  * @author Fabien Hermenier
  */
-public class ShareableResourceConverter implements ModelViewConverter<ShareableResource> {
+public class ShareableResourceConverter implements ModelViewStreamConverter<ShareableResource> {
 
     @Override
     public Class<ShareableResource> getSupportedConstraint() {
@@ -70,10 +77,58 @@ public class ShareableResourceConverter implements ModelViewConverter<ShareableR
         ShareableResource rc = new ShareableResource(rcId);
         JSONObject values = (JSONObject) o.get("values");
         for (String k : values.keySet()) {
-            UUID u = UUID.fromString(k);
+            UUID u = JSONUtils.parseUUID(k);
             int v = Integer.parseInt(values.get(k).toString());
             rc.set(u, v);
         }
         return rc;
     }
+
+    @Override
+    public void toJSON(ShareableResource rc, JSONStreamWriter out) throws IOException {
+        out.name("rcId").value(rc.getResourceIdentifier());
+        out.name("values").beginObject();
+        for (UUID u : rc.getDefined()) {
+            out.name(u.toString()).value(rc.get(u));
+        }
+        out.endObject();
+    }
+
+    /**
+     * {@inheritDoc}
+     * The values are buffered when they come before the resource identifier.
+     */
+    @Override
+    public ShareableResource fromJSON(JSONStreamReader in) throws IOException, JSONConverterException {
+        ShareableResource rc = null;
+        List<UUID> elems = new ArrayList<UUID>();
+        List<Integer> values = new ArrayList<Integer>();
+        while (in.hasNext()) {
+            String k = in.nextName();
+            if (k.equals("rcId")) {
+                rc = new ShareableResource(in.nextString());
+            } else if (k.equals("values")) {
+                in.beginObject();
+                while (in.hasNext()) {
+                    String u = in.nextName();
+                    try {
+                        elems.add(JSONUtils.parseUUID(u));
+                    } catch (IllegalArgumentException ex) {
+                        throw new JSONConverterException("Unable to read a UUID from string '" + u + "'");
+                    }
+                    values.add((int) in.nextLong());
+                }
+                in.endObject();
+            } else {
+                in.skipValue();
+            }
+        }
+        if (rc == null) {
+            throw new JSONConverterException("No 'rcId' key in the view");
+        }
+        for (int i = 0; i < elems.size(); i++) {
+            rc.set(elems.get(i), values.get(i));
+        }
+        return rc;
+    }
 }
@@ -2,6 +2,8 @@ package btrplace.json.plan;
 
 import btrplace.json.JSONConverter;
 import btrplace.json.JSONConverterException;
+import btrplace.json.JSONStreamReader;
+import btrplace.json.JSONStreamWriter;
 import btrplace.json.JSONUtils;
 import btrplace.plan.Action;
 import btrplace.plan.Event;
@@ -9,6 +11,7 @@ import btrplace.plan.event.*;
 import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -304,6 +307,41 @@ public class ActionConverter implements JSONConverter<Action>, ActionVisitor {
         return l;
     }
 
+    /**
+     * Write a collection of actions directly into a stream.
+     *
+     * @param actions the actions to write
+     * @param out     the stream to write to
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if an error occurred during the conversion
+     */
+    public void toJSON(Collection<Action> actions, JSONStreamWriter out) throws IOException, JSONConverterException {
+        out.beginArray();
+        for (Action a : actions) {
+            out.value(toJSON(a));
+        }
+        out.endArray();
+    }
+
+    /**
+     * Read an array of actions from a stream.
+     * Each action is converted as soon as it is read.
+     *
+     * @param in the stream to read
+     * @return a collection of actions
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if an error occurred during the conversion
+     */
+    public Collection<Action> fromJSON(JSONStreamReader in) throws IOException, JSONConverterException {
+        List<Action> l = new ArrayList<Action>();
+        in.beginArray();
+        while (in.hasNext()) {
+            l.add(fromJSON(in.nextObject()));
+        }
+        in.endArray();
+        return l;
+    }
+
     /**
      * Just create the JSONObject and set the start and the end attribute.
      *
@@ -2,14 +2,20 @@ package btrplace.json.plan;
 
 import btrplace.json.JSONConverter;
 import btrplace.json.JSONConverterException;
+import btrplace.json.JSONStreamReader;
+import btrplace.json.JSONStreamWriter;
 import btrplace.json.model.ModelConverter;
 import btrplace.model.Model;
 import btrplace.plan.Action;
 import btrplace.plan.DefaultReconfigurationPlan;
 import btrplace.plan.ReconfigurationPlan;
+import btrplace.plan.ReconfigurationPlanListener;
 import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
 
+import java.io.*;
+import java.util.Collection;
+
 /**
  * JSON converter for {@link ReconfigurationPlan}.
  *
@@ -55,4 +61,142 @@ public class ReconfigurationPlanConverter implements JSONConverter<Reconfigurati
         return ob;
     }
 
+    /**
+     * Write a plan directly into a stream.
+     *
+     * @param plan the plan to write
+     * @param out  the stream to write to
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if an error occurred during the conversion
+     */
+    public void toJSON(ReconfigurationPlan plan, JSONStreamWriter out) throws IOException, JSONConverterException {
+        ModelConverter c = new ModelConverter();
+        ActionConverter ac = new ActionConverter();
+        out.beginObject();
+        out.name("origin");
+        c.toJSON(plan.getOrigin(), out);
+        out.name("actions");
+        ac.toJSON(plan.getActions(), out);
+        out.endObject();
+    }
+
+    /**
+     * Write a plan directly into a writer.
+     * The writer is flushed but not closed.
+     *
+     * @param plan the plan to write
+     * @param out  the writer
+     * @throws IOException            if an error occurred while writing
+     * @throws JSONConverterException if an error occurred during the conversion
+     */
+    public void toJSON(ReconfigurationPlan plan, Writer out) throws IOException, JSONConverterException {
+        JSONStreamWriter w = new JSONStreamWriter(new BufferedWriter(out));
+        toJSON(plan, w);
+        w.flush();
+    }
+
+    /**
+     * Read a plan from a stream.
+     *
+     * @param in the stream to read
+     * @return the resulting plan
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the stream does not describe a plan
+     */
+    public ReconfigurationPlan fromJSON(JSONStreamReader in) throws IOException, JSONConverterException {
+        ModelConverter c = new ModelConverter();
+        ActionConverter ac = new ActionConverter();
+        Model m = null;
+        Collection<Action> actions = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String k = in.nextName();
+            if (k.equals("origin")) {
+                m = c.fromJSON(in);
+            } else if (k.equals("actions")) {
+                actions = ac.fromJSON(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        if (m == null) {
+            throw new JSONConverterException("Key 'origin' is expected to extract the source model from the plan");
+        }
+        if (actions == null) {
+            throw new JSONConverterException("Key 'actions' is expected to extract the list of actions from the plan");
+        }
+        ReconfigurationPlan plan = new DefaultReconfigurationPlan(m);
+        for (Action a : actions) {
+            plan.add(a);
+        }
+        return plan;
+    }
+
+    /**
+     * Read a plan from a stream and notify a listener with each action as soon as it is read.
+     * The plan is not built so the execution of the first actions can start
+     * while the following ones are still transferred. The plan is not checked again,
+     * it is expected to be checked by the producer of the stream.
+     * The origin of the plan must precede the actions in the stream, as written by
+     * {@link #toJSON(ReconfigurationPlan, JSONStreamWriter)} or {@link ReconfigurationPlanStreamWriter}.
+     *
+     * @param in the stream to read
+     * @param l  the listener to notify
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the stream does not describe a plan
+     */
+    public void fromJSON(JSONStreamReader in, ReconfigurationPlanListener l) throws IOException, JSONConverterException {
+        ActionConverter ac = new ActionConverter();
+        boolean origin = false;
+        boolean actions = false;
+        in.beginObject();
+        while (in.hasNext()) {
+            String k = in.nextName();
+            if (k.equals("origin")) {
+                l.beginPlan(new ModelConverter().fromJSON(in));
+                origin = true;
+            } else if (k.equals("actions")) {
+                if (!origin) {
+                    throw new JSONConverterException("Key 'origin' is expected before the key 'actions' to stream the plan");
+                }
+                in.beginArray();
+                while (in.hasNext()) {
+                    l.onAction(ac.fromJSON(in.nextObject()));
+                }
+                in.endArray();
+                actions = true;
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        if (!origin) {
+            throw new JSONConverterException("Key 'origin' is expected to extract the source model from the plan");
+        }
+        if (!actions) {
+            throw new JSONConverterException("Key 'actions' is expected to extract the list of actions from the plan");
+        }
+        l.endPlan();
+    }
+
+    /**
+     * Read a plan from a reader.
+     * The reader is closed afterward.
+     *
+     * @param r the reader
+     * @return the resulting plan
+     * @throws IOException            if an error occurred while reading the stream
+     * @throws JSONConverterException if the stream does not describe a plan
+     */
+    public ReconfigurationPlan fromJSON(Reader r) throws IOException, JSONConverterException {
+        JSONStreamReader in = new JSONStreamReader(r);
+        try {
+            ReconfigurationPlan p = fromJSON(in);
+            in.endDocument();
+            return p;
+        } finally {
+            in.close();
+        }
+    }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.json.plan;
+
+import btrplace.json.JSONConverterException;
+import btrplace.json.JSONStreamWriter;
+import btrplace.json.model.ModelConverter;
+import btrplace.model.Model;
+import btrplace.plan.Action;
+import btrplace.plan.ReconfigurationPlanListener;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A listener that writes the actions of a plan into a stream as soon as they are notified.
+ * The document is the one produced by {@link ReconfigurationPlanConverter}, with
+ * the origin written before the actions, so the plan can be read back action per action
+ * using {@link ReconfigurationPlanConverter#fromJSON(btrplace.json.JSONStreamReader, ReconfigurationPlanListener)}.
+ * <p/>
+ * The stream is flushed after each action.
+ * As the notifications cannot throw checked exceptions, the first error
+ * is retained and the next notifications are ignored.
+ * Use {@link #getError()} to check if the plan has been written entirely.
+ *
+ * @author Fabien Hermenier
+ */
+public class ReconfigurationPlanStreamWriter implements ReconfigurationPlanListener {
+
+    private JSONStreamWriter out;
+
+    private ActionConverter ac;
+
+    private Exception error;
+
+    /**
+     * Make a new listener.
+     *
+     * @param out the stream to write to
+     */
+    public ReconfigurationPlanStreamWriter(JSONStreamWriter out) {
+        this.out = out;
+        this.ac = new ActionConverter();
+    }
+
+    /**
+     * Make a new listener.
+     * The writer is flushed but not closed.
+     *
+     * @param w the writer to write to
+     */
+    public ReconfigurationPlanStreamWriter(Writer w) {
+        this(new JSONStreamWriter(new BufferedWriter(w)));
+    }
+
+    @Override
+    public void beginPlan(Model origin) {
+        if (error != null) {
+            return;
+        }
+        try {
+            out.beginObject();
+            out.name("origin");
+            new ModelConverter().toJSON(origin, out);
+            out.name("actions");
+            out.beginArray();
+            out.flush();
+        } catch (IOException e) {
+            error = e;
+        } catch (JSONConverterException e) {
+            error = e;
+        }
+    }
+
+    @Override
+    public void onAction(Action a) {
+        if (error != null) {
+            return;
+        }
+        try {
+            out.value(ac.toJSON(a));
+            out.flush();
+        } catch (IOException e) {
+            error = e;
+        } catch (JSONConverterException e) {
+            error = e;
+        }
+    }
+
+    @Override
+    public void endPlan() {
+        if (error != null) {
+            return;
+        }
+        try {
+            out.endArray();
+            out.endObject();
+            out.flush();
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    /**
+     * Get the first error that occurred while writing the plan.
+     *
+     * @return an {@link IOException} or a {@link JSONConverterException}. {@code null} if no error occurred
+     */
+    public Exception getError() {
+        return error;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.json;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Unit tests for {@link JSONStreamReader} and {@link JSONStreamWriter}.
+ *
+ * @author Fabien Hermenier
+ */
+public class JSONStreamReaderTest {
+
+    @Test
+    public void testReadTokens() throws IOException, JSONConverterException {
+        String json = " {\"foo\":\"f\\\"o\\u0041\", \"bar\":[1,-2.5e1,true,null], \"obj\":{}, \"skip\":{\"a\":[[],{}]}}";
+        JSONStreamReader in = new JSONStreamReader(new StringReader(json));
+        in.beginObject();
+        Assert.assertEquals(in.nextName(), "foo");
+        Assert.assertEquals(in.nextString(), "f\"oA");
+        Assert.assertEquals(in.nextName(), "bar");
+        in.beginArray();
+        Assert.assertEquals(in.nextLong(), 1);
+        Assert.assertEquals(in.nextDouble(), -25.0, 0.0001);
+        Assert.assertTrue(in.nextBoolean());
+        Assert.assertEquals(in.peek(), JSONStreamReader.Token.NULL);
+        in.nextNull();
+        Assert.assertFalse(in.hasNext());
+        in.endArray();
+        Assert.assertEquals(in.nextName(), "obj");
+        Assert.assertTrue(in.nextObject().isEmpty());
+        Assert.assertEquals(in.nextName(), "skip");
+        in.skipValue();
+        in.endObject();
+        in.endDocument();
+    }
+
+    @Test
+    public void testNextValue() throws IOException, JSONConverterException {
+        String json = "{\"i\":3,\"l\":12345678901,\"d\":1.5,\"a\":[\"x\"]}";
+        JSONObject o = new JSONStreamReader(new StringReader(json)).nextObject();
+        Assert.assertEquals(o.get("i"), 3);
+        Assert.assertEquals(o.get("l"), 12345678901L);
+        Assert.assertEquals(o.get("d"), 1.5);
+        Assert.assertTrue(o.get("a") instanceof JSONArray);
+    }
+
+    @Test(expectedExceptions = {JSONConverterException.class})
+    public void testMalformed() throws IOException, JSONConverterException {
+        JSONStreamReader in = new JSONStreamReader(new StringReader("{\"a\":1 \"b\":2}"));
+        in.beginObject();
+        in.nextName();
+        in.nextLong();
+        in.nextName();
+    }
+
+    @Test
+    public void testWriteThenRead() throws IOException, JSONConverterException {
+        UUID u1 = UUID.randomUUID();
+        UUID u2 = UUID.randomUUID();
+        StringWriter sw = new StringWriter();
+        JSONStreamWriter out = new JSONStreamWriter(sw);
+        out.beginObject();
+        out.name("uuids").value(Arrays.asList(u1, u2));
+        out.name("s").value("a\nb");
+        out.name("n").value(7L);
+        out.name("nested").beginArray().beginObject().endObject().value(false).endArray();
+        out.endObject();
+        out.flush();
+
+        JSONStreamReader in = new JSONStreamReader(new StringReader(sw.toString()));
+        in.beginObject();
+        Assert.assertEquals(in.nextName(), "uuids");
+        in.beginArray();
+        Assert.assertEquals(in.nextUUID(), u1);
+        Assert.assertEquals(in.nextUUID(), u2);
+        in.endArray();
+        Assert.assertEquals(in.nextName(), "s");
+        Assert.assertEquals(in.nextString(), "a\nb");
+        Assert.assertEquals(in.nextName(), "n");
+        Assert.assertEquals(in.nextLong(), 7);
+        Assert.assertEquals(in.nextName(), "nested");
+        in.skipValue();
+        in.endObject();
+        in.endDocument();
+    }
+
+    @Test
+    public void testBytePosition() throws IOException, JSONConverterException {
+        String json = "[\"\u00e9\u2603\ud834\udd1e\",{}]";
+        JSONStreamReader in = new JSONStreamReader(new StringReader(json));
+        in.beginArray();
+        in.nextString();
+        Assert.assertEquals(in.peek(), JSONStreamReader.Token.BEGIN_OBJECT);
+        Assert.assertEquals(in.getPosition() - 1, json.indexOf('{'));
+        Assert.assertEquals(in.getBytePosition() - 1, json.substring(0, json.indexOf('{')).getBytes("UTF-8").length);
+    }
+}
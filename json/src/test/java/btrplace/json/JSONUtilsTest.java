@@ -24,6 +24,8 @@ import net.minidev.json.JSONObject;
 import net.minidev.json.parser.ParseException;
 import org.testng.annotations.Test;
 
+import java.util.UUID;
+
 /**
  * Unit tests for {@link JSONUtils}.
  *
@@ -39,4 +41,19 @@ public class JSONUtilsTest {
         Assert.assertTrue(o.get("bool") instanceof Boolean);
         Assert.assertTrue(o.get("bar") instanceof JSONArray);
     }
+
+    @Test
+    public void testParseUUID() {
+        String s = "00000000-0000-0001-0000-000000000042";
+        UUID u = JSONUtils.parseUUID(s);
+        Assert.assertEquals(UUID.fromString(s), u);
+        Assert.assertSame(u, JSONUtils.parseUUID(new String(s)));
+        JSONUtils.clearUUIDCache();
+        Assert.assertEquals(u, JSONUtils.parseUUID(s));
+    }
+
+    @Test(expectedExceptions = {IllegalArgumentException.class})
+    public void testParseBadUUID() {
+        JSONUtils.parseUUID("foo");
+    }
 }
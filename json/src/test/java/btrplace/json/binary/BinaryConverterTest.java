@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.json.binary;
+
+import btrplace.json.JSONConverterException;
+import btrplace.json.JSONUtils;
+import btrplace.json.model.Instance;
+import btrplace.json.model.InstanceConverter;
+import btrplace.json.model.ModelConverter;
+import btrplace.model.*;
+import btrplace.model.constraint.*;
+import btrplace.model.snapshot.Snapshots;
+import btrplace.plan.Action;
+import btrplace.plan.DefaultReconfigurationPlan;
+import btrplace.plan.ReconfigurationPlan;
+import btrplace.plan.event.*;
+import btrplace.test.WorkloadGenerator;
+import btrplace.test.PremadeElements;
+import net.minidev.json.parser.ParseException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Unit tests for {@link BinaryConverter}.
+ *
+ * @author Fabien Hermenier
+ */
+public class BinaryConverterTest implements PremadeElements {
+
+    @Test
+    public void testModel() throws IOException, JSONConverterException {
+        WorkloadGenerator g = new WorkloadGenerator(3).setNbNodes(20).setNbVMs(60);
+        Model mo = g.generateModel();
+        mo.getAttributes().put(vm1, "template", "small");
+        mo.getAttributes().put(n1, "boot", 7);
+        mo.getAttributes().put(n1, "ratio", 0.5);
+        mo.getAttributes().put(n2, "fast", true);
+        BinaryConverter conv = new BinaryConverter();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        conv.write(mo, out);
+        Model mo2 = conv.readModel(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(mo2, mo);
+        Assert.assertEquals(mo2.getAttributes(), mo.getAttributes());
+    }
+
+    @Test
+    public void testInstance() throws IOException, JSONConverterException, ParseException {
+        WorkloadGenerator g = new WorkloadGenerator(7).setNbNodes(30).setNbVMs(100).setConstraintMix(3, 3, 3, 3, 3);
+        Model mo = g.generateModel();
+        Instance i = new Instance(mo, g.generateConstraints(mo));
+        BinaryConverter conv = new BinaryConverter();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        conv.write(i, out);
+        Instance i2 = conv.readInstance(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(i2.getModel(), mo);
+        Assert.assertEquals(i2.getConstraints(), i.getConstraints());
+
+        //An instance read from JSON gives the same binary document, which is way smaller
+        InstanceConverter jsonConv = new InstanceConverter();
+        String json = jsonConv.toJSON(i).toJSONString();
+        Instance i3 = jsonConv.fromJSON(JSONUtils.readObject(json));
+        Assert.assertEquals(i3.getModel(), mo);
+        Assert.assertTrue(out.size() < json.length() / 3);
+    }
+
+    @Test
+    public void testPlan() throws IOException, JSONConverterException {
+        Mapping map = new DefaultMapping();
+        map.addOnlineNode(n1);
+        map.addOfflineNode(n2);
+        map.addOnlineNode(n3);
+        map.addReadyVM(vm1);
+        map.addRunningVM(vm2, n1);
+        map.addSleepingVM(vm4, n3);
+        ReconfigurationPlan plan = new DefaultReconfigurationPlan(new DefaultModel(map));
+        plan.add(new MigrateVM(vm2, n1, n3, 0, 1));
+        plan.add(new BootVM(vm1, n3, 0, 1));
+        plan.add(new BootNode(n2, 0, 5));
+        plan.add(new ShutdownVM(vm2, n3, 1, 2));
+        plan.add(new ShutdownNode(n1, 2, 4));
+        plan.add(new ResumeVM(vm4, n3, n1, 0, 2));
+        plan.add(new SuspendVM(vm2, n3, n3, 0, 1));
+        plan.add(new KillVM(vm5, n1, 0, 1));
+        plan.add(new ForgeVM(vm6, 0, 3));
+        plan.add(new Allocate(vm2, n3, "cpu", 5, 1, 2));
+        Action withEvent = new BootVM(vm3, n1, 4, 6);
+        withEvent.addEvent(Action.Hook.pre, new AllocateEvent(vm3, "cpu", 3));
+        withEvent.addEvent(Action.Hook.post, new AllocateEvent(vm3, "mem", 7));
+        withEvent.addEvent(Action.Hook.post, new AllocateEvent(vm3, "cpu", 2));
+        plan.add(withEvent);
+
+        BinaryConverter conv = new BinaryConverter();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        conv.write(plan, out);
+        ReconfigurationPlan p2 = conv.readPlan(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(p2, plan);
+        for (Action a : p2) {
+            if (a.equals(withEvent)) {
+                Assert.assertEquals(a.getEvents(Action.Hook.pre), withEvent.getEvents(Action.Hook.pre));
+                Assert.assertEquals(a.getEvents(Action.Hook.post), withEvent.getEvents(Action.Hook.post));
+            } else {
+                Assert.assertTrue(a.getEvents(Action.Hook.pre).isEmpty());
+                Assert.assertTrue(a.getEvents(Action.Hook.post).isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void testConstraints() throws IOException, JSONConverterException {
+        Mapping map = new DefaultMapping();
+        map.addOnlineNode(n1);
+        map.addOnlineNode(n2);
+        map.addOnlineNode(n3);
+        map.addOnlineNode(n4);
+        map.addRunningVM(vm1, n1);
+        map.addRunningVM(vm2, n1);
+        map.addRunningVM(vm3, n2);
+        map.addReadyVM(vm4);
+        Set<UUID> vms = new HashSet<UUID>(Arrays.asList(vm1, vm2, vm3));
+        Set<UUID> nodes = new HashSet<UUID>(Arrays.asList(n1, n2));
+        Set<Set<UUID>> grps = new HashSet<Set<UUID>>();
+        grps.add(nodes);
+        grps.add(new HashSet<UUID>(Arrays.asList(n3, n4)));
+        List<SatConstraint> cstrs = new ArrayList<SatConstraint>();
+        cstrs.add(new Spread(vms, true));
+        cstrs.add(new Spread(vms, false));
+        cstrs.add(new Among(vms, grps, true));
+        cstrs.add(new Among(Collections.singleton(vm4), grps, false));
+        cstrs.add(new Ban(vms, nodes));
+        cstrs.add(new Fence(Collections.singleton(vm4), nodes));
+        cstrs.add(new Gather(vms, true));
+        cstrs.add(new Lonely(vms, false));
+        Set<Set<UUID>> vGrps = new HashSet<Set<UUID>>(Arrays.asList(Collections.singleton(vm1), Collections.singleton(vm3)));
+        cstrs.add(new Split(vGrps, true));
+        cstrs.add(new SplitAmong(vGrps, grps, false));
+        cstrs.add(new Overbook(nodes, "cpu", 1.5, true));
+        cstrs.add(new SingleRunningCapacity(nodes, 2, false));
+        cstrs.add(new CumulatedRunningCapacity(nodes, 3, true));
+        cstrs.add(new SingleResourceCapacity(nodes, "mem", 10, true));
+        cstrs.add(new CumulatedResourceCapacity(nodes, "mem", 20, false));
+        cstrs.add(new Root(Collections.singleton(vm1)));
+        cstrs.add(new Quarantine(Collections.singleton(n2)));
+        cstrs.add(new Preserve(vms, "cpu", 4));
+        cstrs.add(new Online(Collections.singleton(n3)));
+        cstrs.add(new Offline(Collections.singleton(n4)));
+        cstrs.add(new Running(Collections.singleton(vm4)));
+        cstrs.add(new Sleeping(Collections.singleton(vm2)));
+        cstrs.add(new Ready(Collections.singleton(vm3)));
+        cstrs.add(new Killed(Collections.singleton(vm1)));
+        cstrs.add(new SequentialVMTransitions(Arrays.asList(vm3, vm1, vm2)));
+        Instance i = new Instance(new DefaultModel(map), cstrs);
+
+        BinaryConverter conv = new BinaryConverter();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        conv.write(i, out);
+        Instance i2 = conv.readInstance(new ByteArrayInputStream(out.toByteArray()));
+        List<SatConstraint> res = new ArrayList<SatConstraint>(i2.getConstraints());
+        Assert.assertEquals(res, cstrs);
+        for (int x = 0; x < cstrs.size(); x++) {
+            Assert.assertEquals(res.get(x).isContinuous(), cstrs.get(x).isContinuous());
+        }
+        Assert.assertEquals(((SequentialVMTransitions) res.get(res.size() - 1)).getInvolvedVMs(), Arrays.asList(vm3, vm1, vm2));
+    }
+
+    /**
+     * The read-only views of a snapshot must be converted as regular views.
+     */
+    @Test
+    public void testSnapshot() throws IOException, JSONConverterException {
+        Model mo = new WorkloadGenerator(5).setNbNodes(10).setNbVMs(30).generateModel();
+        mo.getAttributes().put(vm1, "template", "small");
+        File f = File.createTempFile("snapshot", ".bin");
+        f.deleteOnExit();
+        Snapshots.write(mo, f);
+        Model mm = Snapshots.open(f);
+        Assert.assertFalse(mm.getViews().isEmpty());
+
+        ModelConverter jsonConv = new ModelConverter();
+        Assert.assertEquals(jsonConv.fromJSON(jsonConv.toJSON(mm)), mo);
+        StringWriter w = new StringWriter();
+        jsonConv.toJSON(mm, w);
+        Assert.assertEquals(jsonConv.fromJSON(new StringReader(w.toString())), mo);
+
+        BinaryConverter conv = new BinaryConverter();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        conv.write(mm, out);
+        Assert.assertEquals(conv.readModel(new ByteArrayInputStream(out.toByteArray())), mo);
+    }
+
+    @Test(expectedExceptions = {JSONConverterException.class})
+    public void testBadKind() throws IOException, JSONConverterException {
+        BinaryConverter conv = new BinaryConverter();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        conv.write(new DefaultModel(new DefaultMapping()), out);
+        conv.readPlan(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    public void testNumbers() throws IOException, JSONConverterException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryWriter w = new BinaryWriter(out);
+        long[] values = {0, 1, -1, 127, 128, -65, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long v : values) {
+            w.writeLong(v);
+        }
+        w.writeNat(300);
+        w.flush();
+        BinaryReader r = new BinaryReader(new ByteArrayInputStream(out.toByteArray()));
+        for (long v : values) {
+            Assert.assertEquals(r.readLong(), v);
+        }
+        Assert.assertEquals(r.readNat(), 300);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.json.model;
+
+import btrplace.json.JSONConverterException;
+import btrplace.json.JSONUtils;
+import btrplace.model.Model;
+import btrplace.test.WorkloadGenerator;
+import net.minidev.json.parser.ParseException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+/**
+ * Unit tests for {@link InstanceConverter}.
+ *
+ * @author Fabien Hermenier
+ */
+public class InstanceConverterTest {
+
+    @Test
+    public void testGeneratedInstance() throws JSONConverterException, ParseException {
+        WorkloadGenerator g = new WorkloadGenerator(7).setNbNodes(30).setNbVMs(100).setConstraintMix(3, 3, 3, 3, 3);
+        Model mo = g.generateModel();
+        Instance i = new Instance(mo, g.generateConstraints(mo));
+        InstanceConverter conv = new InstanceConverter();
+        String str = conv.toJSON(i).toJSONString();
+        Instance i2 = conv.fromJSON(JSONUtils.readObject(str));
+        Assert.assertEquals(i2.getModel(), mo);
+        Assert.assertEquals(i2.getConstraints(), i.getConstraints());
+    }
+
+    @Test
+    public void testStreamedInstance() throws JSONConverterException, ParseException, IOException {
+        WorkloadGenerator g = new WorkloadGenerator(7).setNbNodes(30).setNbVMs(100).setConstraintMix(3, 3, 3, 3, 3);
+        Model mo = g.generateModel();
+        Instance i = new Instance(mo, g.generateConstraints(mo));
+        InstanceConverter conv = new InstanceConverter();
+        StringWriter out = new StringWriter();
+        conv.toJSON(i, out);
+        Instance i2 = conv.fromJSON(new StringReader(out.toString()));
+        Assert.assertEquals(i2.getModel(), mo);
+        Assert.assertEquals(i2.getConstraints(), i.getConstraints());
+
+        //Interoperability with the tree-based converter
+        Instance i3 = conv.fromJSON(JSONUtils.readObject(out.toString()));
+        Assert.assertEquals(i3.getModel(), mo);
+        Instance i4 = conv.fromJSON(new StringReader(conv.toJSON(i).toJSONString()));
+        Assert.assertEquals(i4.getModel(), mo);
+        Assert.assertEquals(i4.getConstraints(), i.getConstraints());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.json.model;
+
+import btrplace.json.JSONConverterException;
+import btrplace.model.Model;
+import btrplace.model.SatConstraint;
+import btrplace.test.WorkloadGenerator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Unit tests for {@link LazyInstance}.
+ *
+ * @author Fabien Hermenier
+ */
+public class LazyInstanceTest {
+
+    private static Instance makeInstance() {
+        WorkloadGenerator g = new WorkloadGenerator(11).setNbNodes(30).setNbVMs(100).setConstraintMix(3, 3, 3, 3, 3);
+        Model mo = g.generateModel();
+        return new Instance(mo, g.generateConstraints(mo));
+    }
+
+    private static String toJSON(Instance i) throws IOException, JSONConverterException {
+        StringWriter out = new StringWriter();
+        new InstanceConverter().toJSON(i, out);
+        return out.toString();
+    }
+
+    private static File store(String json) throws IOException {
+        File f = File.createTempFile("instance", ".json");
+        f.deleteOnExit();
+        Writer out = new OutputStreamWriter(new FileOutputStream(f), Charset.forName("UTF-8"));
+        try {
+            out.write(json);
+        } finally {
+            out.close();
+        }
+        return f;
+    }
+
+    private static LazyInstance open(Instance i) throws IOException, JSONConverterException {
+        return new LazyInstance(store(toJSON(i)));
+    }
+
+    @Test
+    public void testWholeInstance() throws IOException, JSONConverterException {
+        Instance i = makeInstance();
+        LazyInstance li = open(i);
+        Assert.assertEquals(li.getModel(), i.getModel());
+        Assert.assertEquals(li.getNbConstraints(), i.getConstraints().size());
+        Assert.assertEquals(li.getConstraints(), i.getConstraints());
+        Assert.assertSame(li.getConstraint(0), li.getConstraint(0));
+        Assert.assertEquals(li.toInstance().getConstraints(), i.getConstraints());
+        li.close();
+    }
+
+    /**
+     * The offsets are in bytes so the multi-bytes characters
+     * must not shift the constraints.
+     */
+    @Test
+    public void testMultiBytesCharacters() throws IOException, JSONConverterException {
+        Instance i = makeInstance();
+        String json = toJSON(i);
+        json = "{\"comment\":\"h\u00e9llo \u2603 \ud834\udd1e\"," + json.substring(1);
+        LazyInstance li = new LazyInstance(store(json));
+        List<SatConstraint> cstrs = new ArrayList<SatConstraint>(i.getConstraints());
+        //Converted in the reverse order to seek backward as well
+        for (int x = cstrs.size() - 1; x >= 0; x--) {
+            Assert.assertEquals(li.getConstraint(x), cstrs.get(x));
+        }
+        li.close();
+    }
+
+    @Test
+    public void testConstraintsByType() throws IOException, JSONConverterException {
+        Instance i = makeInstance();
+        LazyInstance li = open(i);
+        int nb = 0;
+        for (String t : li.getConstraintTypes()) {
+            List<SatConstraint> l = li.getConstraints(t);
+            Assert.assertFalse(l.isEmpty());
+            Class<?> cl = l.get(0).getClass();
+            for (SatConstraint c : l) {
+                Assert.assertEquals(c.getClass(), cl);
+            }
+            nb += l.size();
+        }
+        Assert.assertEquals(nb, i.getConstraints().size());
+        Assert.assertTrue(li.getConstraints("unknown").isEmpty());
+        li.close();
+    }
+
+    @Test
+    public void testConstraintsByElements() throws IOException, JSONConverterException {
+        Instance i = makeInstance();
+        LazyInstance li = open(i);
+        //Half of the nodes and their VMs
+        Set<UUID> shard = new HashSet<UUID>();
+        Model mo = i.getModel();
+        int x = 0;
+        for (UUID n : mo.getMapping().getAllNodes()) {
+            if (x++ % 2 == 0) {
+                shard.add(n);
+                shard.addAll(mo.getMapping().getRunningVMs(n));
+                shard.addAll(mo.getMapping().getSleepingVMs(n));
+            }
+        }
+        List<SatConstraint> expected = new ArrayList<SatConstraint>();
+        for (SatConstraint c : i.getConstraints()) {
+            if (!Collections.disjoint(c.getInvolvedNodes(), shard) || !Collections.disjoint(c.getInvolvedVMs(), shard)) {
+                expected.add(c);
+            }
+        }
+        Assert.assertEquals(li.getConstraints(shard), expected);
+        Assert.assertTrue(li.getConstraints(Collections.singleton(UUID.randomUUID())).isEmpty());
+        li.close();
+    }
+
+    @Test(expectedExceptions = {JSONConverterException.class})
+    public void testMissingModel() throws IOException, JSONConverterException {
+        new LazyInstance(store("{\"constraints\":[]}"));
+    }
+}
@@ -19,13 +19,19 @@
 package btrplace.json.model;
 
 import btrplace.json.JSONConverterException;
+import btrplace.json.JSONUtils;
 import btrplace.model.DefaultMapping;
 import btrplace.model.Mapping;
 import btrplace.test.PremadeElements;
 import junit.framework.Assert;
 import net.minidev.json.JSONObject;
+import net.minidev.json.parser.ParseException;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
 /**
  * Unit tests for {@link btrplace.json.model.MappingConverter}.
  *
@@ -49,4 +55,23 @@ public class MappingConverterTest implements PremadeElements {
         Mapping c2 = json.fromJSON(ob);
         Assert.assertEquals(c, c2);
     }
+
+    @Test
+    public void testStreaming() throws JSONConverterException, IOException, ParseException {
+        Mapping c = new DefaultMapping();
+        c.addOnlineNode(n1);
+        c.addOfflineNode(n2);
+        c.addRunningVM(vm1, n1);
+        c.addSleepingVM(vm2, n1);
+        c.addReadyVM(vm3);
+        c.addOnlineNode(n3);
+        c.addRunningVM(vm4, n3);
+        MappingConverter json = new MappingConverter();
+        StringWriter out = new StringWriter();
+        json.toJSON(c, out);
+        Assert.assertEquals(c, json.fromJSON(new StringReader(out.toString())));
+        //The tree-based converter must read the streamed output and vice-versa
+        Assert.assertEquals(c, json.fromJSON(JSONUtils.readObject(out.toString())));
+        Assert.assertEquals(c, json.fromJSON(new StringReader(json.toJSON(c).toJSONString())));
+    }
 }
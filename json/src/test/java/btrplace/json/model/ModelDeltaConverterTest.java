@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2012 University of Nice Sophia-Antipolis
+ *
+ * This file is part of btrplace.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package btrplace.json.model;
+
+import btrplace.json.JSONConverterException;
+import btrplace.json.JSONUtils;
+import btrplace.model.*;
+import btrplace.model.view.ShareableResource;
+import btrplace.test.WorkloadGenerator;
+import net.minidev.json.JSONObject;
+import net.minidev.json.parser.ParseException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.UUID;
+
+/**
+ * Unit tests for {@link ModelDeltaConverter}.
+ *
+ * @author Fabien Hermenier
+ */
+public class ModelDeltaConverterTest {
+
+    @Test
+    public void testConversion() throws JSONConverterException, ParseException {
+        WorkloadGenerator g = new WorkloadGenerator(11).setNbNodes(20).setNbVMs(60);
+        Model src = g.generateModel();
+        Model dst = src.clone();
+        Mapping map = dst.getMapping();
+        UUID[] vms = map.getRunningVMs().toArray(new UUID[0]);
+        UUID[] nodes = map.getOnlineNodes().toArray(new UUID[0]);
+        map.addRunningVM(vms[0], nodes[1]);
+        map.addSleepingVM(vms[1], nodes[2]);
+        map.addReadyVM(vms[2]);
+        map.removeVM(vms[3]);
+        UUID n = UUID.randomUUID();
+        map.addOfflineNode(n);
+        ShareableResource cpu = (ShareableResource) dst.getView(ShareableResource.VIEW_ID_BASE + WorkloadGenerator.CPU);
+        cpu.set(vms[0], 12).unset(vms[3]);
+        dst.attach(new ShareableResource("net"));
+        dst.getAttributes().put(vms[0], "boot", 7);
+        dst.getAttributes().put(n, "ratio", 0.5);
+
+        ModelDelta d = ModelDelta.diff(src, dst);
+        ModelDeltaConverter conv = new ModelDeltaConverter();
+        String json = conv.toJSON(d).toJSONString();
+        ModelDelta d2 = conv.fromJSON(JSONUtils.readObject(json));
+        Model cpy = src.clone();
+        Assert.assertTrue(d2.applyTo(cpy));
+        Assert.assertEquals(cpy, dst);
+
+        //The delta is way smaller than the model
+        String full = new ModelConverter().toJSON(dst).toJSONString();
+        Assert.assertTrue(json.length() * 10 < full.length());
+    }
+
+    @Test
+    public void testEmptyDelta() throws JSONConverterException {
+        Model mo = new WorkloadGenerator(1).setNbNodes(5).setNbVMs(10).generateModel();
+        JSONObject o = new ModelDeltaConverter().toJSON(ModelDelta.diff(mo, mo.clone()));
+        Assert.assertTrue(o.isEmpty());
+        Assert.assertTrue(new ModelDeltaConverter().fromJSON(o).isEmpty());
+    }
+}
@@ -21,12 +21,17 @@ package btrplace.json.model.constraint;
 import btrplace.json.JSONConverterException;
 import btrplace.model.Model;
 import btrplace.model.SatConstraint;
+import btrplace.test.WorkloadGenerator;
 import junit.framework.Assert;
+import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
 import org.testng.annotations.Test;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Unit tests for {@link btrplace.json.model.constraint.SatConstraintsConverter}.
@@ -119,4 +124,42 @@ public class SatConstraintsConverterTest {
         Assert.assertNull(c.register(new MockSatConstraintConverter()));
         c.fromJSON(ob);
     }
+
+    @Test
+    public void testParallelConversion() throws JSONConverterException {
+        WorkloadGenerator g = new WorkloadGenerator(3).setNbNodes(100).setNbVMs(400).setConstraintMix(200, 200, 200, 10, 10);
+        Model mo = g.generateModel();
+        List<SatConstraint> cstrs = g.generateConstraints(mo);
+        SatConstraintsConverter c = new SatConstraintsConverter();
+        JSONArray arr = c.toJSON(cstrs);
+        ExecutorService exec = Executors.newFixedThreadPool(4);
+        try {
+            c.setExecutorService(exec);
+            Assert.assertEquals(exec, c.getExecutorService());
+            Assert.assertTrue(cstrs.size() > SatConstraintsConverter.BATCH_SIZE);
+            Assert.assertEquals(cstrs, c.fromJSON(arr));
+        } finally {
+            exec.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = {JSONConverterException.class})
+    public void testParallelConversionWithError() throws JSONConverterException {
+        JSONArray arr = new JSONArray();
+        for (int i = 0; i < SatConstraintsConverter.BATCH_SIZE * 2; i++) {
+            JSONObject o = new JSONObject();
+            o.put("id", i == SatConstraintsConverter.BATCH_SIZE + 1 ? "unknown" : "mock");
+            o.put("value", Integer.toString(i));
+            arr.add(o);
+        }
+        SatConstraintsConverter c = new SatConstraintsConverter();
+        c.register(new MockSatConstraintConverter());
+        ExecutorService exec = Executors.newFixedThreadPool(2);
+        try {
+            c.setExecutorService(exec);
+            c.fromJSON(arr);
+        } finally {
+            exec.shutdown();
+        }
+    }
 }
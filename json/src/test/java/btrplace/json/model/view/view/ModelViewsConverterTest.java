@@ -19,6 +19,8 @@
 package btrplace.json.model.view.view;
 
 import btrplace.json.JSONConverterException;
+import btrplace.json.JSONStreamReader;
+import btrplace.json.JSONStreamWriter;
 import btrplace.json.model.view.ModelViewConverter;
 import btrplace.json.model.view.ModelViewsConverter;
 import btrplace.model.ModelView;
@@ -26,6 +28,10 @@ import junit.framework.Assert;
 import net.minidev.json.JSONObject;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
 /**
  * Unit tests for {@link btrplace.json.model.view.ModelViewsConverter}.
  *
@@ -120,4 +126,23 @@ public class ModelViewsConverterTest {
         Assert.assertNull(c.register(new MockModelViewConverter()));
         c.fromJSON(ob);
     }
+
+    /**
+     * A converter that does not support streams is used through a tree,
+     * even when the identifier is not the first property.
+     */
+    @Test(dependsOnMethods = {"testRegister"})
+    public void testStreamingWithTreeConverter() throws JSONConverterException, IOException {
+        ModelViewsConverter c = new ModelViewsConverter();
+        c.register(new MockModelViewConverter());
+        StringWriter out = new StringWriter();
+        JSONStreamWriter w = new JSONStreamWriter(out);
+        c.toJSON(new MockModelView("bar"), w);
+        w.flush();
+        MockModelView m = (MockModelView) c.fromJSON(new JSONStreamReader(new StringReader(out.toString())));
+        Assert.assertEquals(m.value, "bar");
+
+        m = (MockModelView) c.fromJSON(new JSONStreamReader(new StringReader("{\"value\":\"foo\",\"id\":\"mockView\"}")));
+        Assert.assertEquals(m.value, "foo");
+    }
 }
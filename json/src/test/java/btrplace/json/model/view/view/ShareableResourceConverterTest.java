@@ -18,12 +18,21 @@
 
 package btrplace.json.model.view.view;
 
+import btrplace.json.JSONConverterException;
+import btrplace.json.JSONStreamReader;
+import btrplace.json.JSONStreamWriter;
+import btrplace.json.JSONUtils;
+import btrplace.json.model.view.ModelViewsConverter;
 import btrplace.json.model.view.ShareableResourceConverter;
 import btrplace.model.view.ShareableResource;
 import btrplace.test.PremadeElements;
 import junit.framework.Assert;
+import net.minidev.json.parser.ParseException;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.UUID;
 
 /**
@@ -50,4 +59,41 @@ public class ShareableResourceConverterTest implements PremadeElements {
             Assert.assertEquals(rc.get(u), rc2.get(u));
         }
     }
+
+    @Test
+    public void testStreaming() throws IOException, JSONConverterException, ParseException {
+        ShareableResource rc = new ShareableResource("foo");
+        rc.set(vm1, 3);
+        rc.set(vm2, 4);
+        rc.set(n1, 10);
+        ModelViewsConverter c = new ModelViewsConverter();
+        StringWriter out = new StringWriter();
+        JSONStreamWriter w = new JSONStreamWriter(out);
+        c.toJSON(rc, w);
+        w.flush();
+        //The tree-based converter must read the streamed output and vice-versa
+        ShareableResource[] rcs = {
+                (ShareableResource) c.fromJSON(new JSONStreamReader(new StringReader(out.toString()))),
+                (ShareableResource) c.fromJSON(JSONUtils.readObject(out.toString())),
+                (ShareableResource) c.fromJSON(new JSONStreamReader(new StringReader(c.toJSON(rc).toJSONString())))
+        };
+        for (ShareableResource rc2 : rcs) {
+            Assert.assertEquals(rc.getResourceIdentifier(), rc2.getResourceIdentifier());
+            Assert.assertEquals(rc.getDefined(), rc2.getDefined());
+            for (UUID u : rc.getDefined()) {
+                Assert.assertEquals(rc.get(u), rc2.get(u));
+            }
+        }
+    }
+
+    /**
+     * The values may come before the resource identifier.
+     */
+    @Test
+    public void testStreamingUnorderedProperties() throws IOException, JSONConverterException {
+        String json = "{\"id\":\"shareableResource\",\"values\":{\"" + vm1 + "\":3},\"rcId\":\"foo\"}";
+        ShareableResource rc = (ShareableResource) new ModelViewsConverter().fromJSON(new JSONStreamReader(new StringReader(json)));
+        Assert.assertEquals(rc.getResourceIdentifier(), "foo");
+        Assert.assertEquals(rc.get(vm1), 3);
+    }
 }
@@ -1,12 +1,15 @@
 package btrplace.json.plan;
 
 import btrplace.json.JSONConverterException;
+import btrplace.json.JSONStreamReader;
 import btrplace.model.DefaultMapping;
 import btrplace.model.DefaultModel;
 import btrplace.model.Mapping;
 import btrplace.model.Model;
+import btrplace.plan.Action;
 import btrplace.plan.DefaultReconfigurationPlan;
 import btrplace.plan.ReconfigurationPlan;
+import btrplace.plan.ReconfigurationPlanListener;
 import btrplace.plan.event.BootNode;
 import btrplace.plan.event.BootVM;
 import btrplace.plan.event.MigrateVM;
@@ -15,6 +18,12 @@ import net.minidev.json.JSONObject;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Unit tests for {@link ReconfigurationPlanConverter}.
  *
@@ -48,4 +57,93 @@ public class ReconfigurationPlanConverterTest implements PremadeElements {
         Assert.assertEquals(rcp.fromJSON(o), plan);
 
     }
+
+    @Test
+    public void testStreamedConversion() throws JSONConverterException, IOException {
+        Mapping map = new DefaultMapping();
+        map.addOnlineNode(n1);
+        map.addOfflineNode(n2);
+        map.addOnlineNode(n3);
+        map.addReadyVM(vm1);
+        map.addRunningVM(vm2, n1);
+        map.addSleepingVM(vm4, n3);
+
+        Model mo = new DefaultModel(map);
+        mo.getAttributes().put(vm2, "template", "small");
+        mo.getAttributes().put(n1, "cpu", 4);
+
+        ReconfigurationPlan plan = new DefaultReconfigurationPlan(mo);
+        plan.add(new MigrateVM(vm2, n1, n3, 0, 1));
+        plan.add(new BootVM(vm1, n3, 0, 1));
+        plan.add(new BootNode(n2, 0, 5));
+
+        ReconfigurationPlanConverter rcp = new ReconfigurationPlanConverter();
+        StringWriter out = new StringWriter();
+        rcp.toJSON(plan, out);
+        ReconfigurationPlan p2 = rcp.fromJSON(new StringReader(out.toString()));
+        Assert.assertEquals(p2, plan);
+        Assert.assertEquals(p2.getOrigin().getAttributes(), mo.getAttributes());
+    }
+
+    @Test
+    public void testActionStreaming() throws JSONConverterException, IOException {
+        Mapping map = new DefaultMapping();
+        map.addOnlineNode(n1);
+        map.addOfflineNode(n2);
+        map.addOnlineNode(n3);
+        map.addReadyVM(vm1);
+        map.addRunningVM(vm2, n1);
+        Model mo = new DefaultModel(map);
+
+        final ReconfigurationPlan plan = new DefaultReconfigurationPlan(mo);
+        plan.add(new BootNode(n2, 0, 5));
+        plan.add(new MigrateVM(vm2, n1, n3, 3, 4));
+        plan.add(new BootVM(vm1, n3, 1, 2));
+
+        StringWriter out = new StringWriter();
+        ReconfigurationPlanStreamWriter w = new ReconfigurationPlanStreamWriter(out);
+        w.beginPlan(mo);
+        int nb = 0;
+        for (Action a : plan) {
+            w.onAction(a);
+            nb++;
+            //Each action is available once notified
+            Assert.assertTrue(out.toString().endsWith("}"));
+        }
+        Assert.assertEquals(nb, 3);
+        w.endPlan();
+        Assert.assertNull(w.getError());
+
+        //Regular reading
+        ReconfigurationPlanConverter rcp = new ReconfigurationPlanConverter();
+        Assert.assertEquals(rcp.fromJSON(new StringReader(out.toString())), plan);
+
+        //Action per action reading
+        final List<Action> read = new ArrayList<Action>();
+        final Model[] origin = new Model[1];
+        rcp.fromJSON(new JSONStreamReader(new StringReader(out.toString())), new ReconfigurationPlanListener() {
+            @Override
+            public void beginPlan(Model o) {
+                origin[0] = o;
+            }
+
+            @Override
+            public void onAction(Action a) {
+                Assert.assertNotNull(origin[0]);
+                read.add(a);
+            }
+
+            @Override
+            public void endPlan() {
+                Assert.assertEquals(read.size(), plan.getSize());
+            }
+        });
+        Assert.assertEquals(origin[0], mo);
+        Assert.assertEquals(read, new ArrayList<Action>(plan.getActions()));
+    }
+
+    @Test(expectedExceptions = {JSONConverterException.class})
+    public void testActionStreamingWithoutOrigin() throws JSONConverterException, IOException {
+        new ReconfigurationPlanConverter().fromJSON(new JSONStreamReader(new StringReader("{\"actions\":[]}")), null);
+    }
 }